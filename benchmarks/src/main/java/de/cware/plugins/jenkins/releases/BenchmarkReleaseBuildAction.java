@@ -0,0 +1,40 @@
+package de.cware.plugins.jenkins.releases;
+
+import hudson.maven.MavenModuleSet;
+import org.apache.maven.model.Model;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Makes the model helpers of the ReleaseBuildAction accessible to the benchmarks. The
+ * project is a mock without any modules, as none of the helpers uses it.
+ */
+public class BenchmarkReleaseBuildAction extends ReleaseBuildAction {
+
+    public BenchmarkReleaseBuildAction() {
+        super(mock(MavenModuleSet.class));
+    }
+
+    public Map<String, Model> parse(File rootPomFile) throws IOException, XmlPullParserException {
+        return parseMavenModel(rootPomFile);
+    }
+
+    public List<String> prepareDependencies(String moduleKey, Map<String, Model> mavenModels) {
+        return prepareDependenciesMap(moduleKey, mavenModels);
+    }
+
+    public Map<String, List<String>> calculateReferences(Map<String, Model> mavenModels) {
+        return calculateReferencesClosure(mavenModels);
+    }
+
+    public List<String> calculateClosure(String moduleKey, Map<String, List<String>> dependencies) {
+        return calculateDependencyClosure(moduleKey, dependencies);
+    }
+
+}
@@ -0,0 +1,86 @@
+package de.cware.plugins.jenkins.releases.benchmarks;
+
+import de.cware.plugins.jenkins.releases.MajorReleaseInterceptorAction;
+import de.cware.plugins.jenkins.releases.MinorReleaseInterceptorAction;
+import de.cware.plugins.jenkins.releases.ReleaseBuildWrapper;
+import hudson.maven.MavenModule;
+import hudson.maven.MavenModuleSet;
+import hudson.maven.MavenModuleSetBuild;
+import hudson.maven.ModuleName;
+import hudson.model.Descriptor;
+import hudson.tasks.BuildWrapper;
+import hudson.util.DescribableList;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Benchmarks for building the Maven command lines of release builds. For minor releases
+ * half of the modules are released and the other half is pinned.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CommandLineBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    public int size;
+
+    private MavenModuleSetBuild build;
+    private MajorReleaseInterceptorAction majorAction;
+    private MinorReleaseInterceptorAction minorAction;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        final MavenModule rootModule = createModule(SyntheticReactor.ROOT_ARTIFACT_ID);
+        final DescribableList<BuildWrapper, Descriptor<BuildWrapper>> buildWrappers = mock(DescribableList.class);
+        when(buildWrappers.get(ReleaseBuildWrapper.class)).thenReturn(new ReleaseBuildWrapper("-DskipTests", null, null, null));
+
+        final MavenModuleSet project = mock(MavenModuleSet.class);
+        when(project.getRootModule()).thenReturn(rootModule);
+        when(project.getBuildWrappersList()).thenReturn(buildWrappers);
+        build = mock(MavenModuleSetBuild.class);
+        when(build.getProject()).thenReturn(project);
+
+        final Map<String, String> releaseVersions = new HashMap<String, String>();
+        final Map<String, String> latestVersions = new HashMap<String, String>();
+        releaseVersions.put(SyntheticReactor.GROUP_ID + ":" + SyntheticReactor.ROOT_ARTIFACT_ID, "1.0.4");
+        for(int i = 0; i < size; i++) {
+            final String moduleKey = SyntheticReactor.GROUP_ID + ":" + SyntheticReactor.getArtifactId(i);
+            if(i % 2 == 0) {
+                releaseVersions.put(moduleKey, "1.0.4");
+            } else {
+                latestVersions.put(moduleKey, "1.0.3");
+            }
+        }
+        majorAction = new MajorReleaseInterceptorAction("1.0.4");
+        minorAction = new MinorReleaseInterceptorAction(releaseVersions, latestVersions, true);
+    }
+
+    @Benchmark
+    public String majorReleaseGoalsAndOptions() {
+        return majorAction.getGoalsAndOptions(build);
+    }
+
+    @Benchmark
+    public String minorReleaseGoalsAndOptions() {
+        return minorAction.getGoalsAndOptions(build);
+    }
+
+    private static MavenModule createModule(String artifactId) {
+        final MavenModule module = mock(MavenModule.class);
+        when(module.getModuleName()).thenReturn(new ModuleName(SyntheticReactor.GROUP_ID, artifactId));
+        when(module.getVersion()).thenReturn(SyntheticReactor.VERSION);
+        return module;
+    }
+
+}
@@ -0,0 +1,132 @@
+package de.cware.plugins.jenkins.releases.benchmarks;
+
+import de.cware.plugins.jenkins.releases.BenchmarkReleaseBuildAction;
+import de.cware.plugins.jenkins.releases.plan.ReleasePlan;
+import de.cware.plugins.jenkins.releases.plan.ReleasePlanner;
+import de.cware.plugins.jenkins.releases.versions.BenchmarkVersionHandler;
+import org.apache.maven.model.Model;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the processing of the module graph: parsing the poms, building the inverse
+ * dependency map, calculating its transitive closure and planning minor releases.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class ReactorBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    public int size;
+
+    @Param({"CHAIN", "DIAMOND", "TREE"})
+    public SyntheticReactor.Shape shape;
+
+    private BenchmarkReleaseBuildAction action;
+    private Map<String, Model> mavenModels;
+    private Map<String, List<String>> references;
+    private ReleasePlanner planner;
+    private File directory;
+    private File rootPomFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        action = new BenchmarkReleaseBuildAction();
+        mavenModels = SyntheticReactor.create(shape, size);
+
+        directory = File.createTempFile("reactor", "");
+        if(!directory.delete() || !directory.mkdirs()) {
+            throw new IllegalStateException("Couldn't create " + directory);
+        }
+        rootPomFile = SyntheticReactor.write(mavenModels, directory);
+
+        // The direct inverse dependencies, the input of the closure calculation.
+        references = new HashMap<String, List<String>>();
+        for(final String moduleKey : mavenModels.keySet()) {
+            for(final String dependencyKey : action.prepareDependencies(moduleKey, mavenModels)) {
+                if(!references.containsKey(dependencyKey)) {
+                    references.put(dependencyKey, new ArrayList<String>());
+                }
+                references.get(dependencyKey).add(moduleKey);
+            }
+        }
+
+        // Every module has been released once before.
+        final Map<String, String> releasedVersions = new HashMap<String, String>();
+        for(final String moduleKey : mavenModels.keySet()) {
+            releasedVersions.put(moduleKey, "1.0.3");
+        }
+        planner = new ReleasePlanner(SyntheticReactor.getRootModuleKey(), mavenModels,
+                action.calculateReferences(mavenModels), new BenchmarkVersionHandler("1.0", releasedVersions));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        delete(directory);
+    }
+
+    @Benchmark
+    public Map<String, Model> parseMavenModel() throws Exception {
+        return action.parse(rootPomFile);
+    }
+
+    @Benchmark
+    public void prepareDependenciesMap(Blackhole blackhole) {
+        for(final String moduleKey : mavenModels.keySet()) {
+            blackhole.consume(action.prepareDependencies(moduleKey, mavenModels));
+        }
+    }
+
+    /**
+     * Closure of the module all other modules depend on, the worst case for a single module.
+     */
+    @Benchmark
+    public List<String> calculateDependencyClosure() {
+        return action.calculateClosure(SyntheticReactor.getModuleKey(0), references);
+    }
+
+    /**
+     * Closures of all modules, as calculated whenever the workspace changed.
+     */
+    @Benchmark
+    public Map<String, List<String>> calculateReferencesClosure() {
+        return action.calculateReferences(mavenModels);
+    }
+
+    /**
+     * Selecting the module all other modules depend on, so all of them have to be added.
+     */
+    @Benchmark
+    public ReleasePlan planMinorReleaseOfBaseModule() {
+        return planner.planMinorRelease(Collections.singletonList(SyntheticReactor.getModuleKey(0)),
+                Collections.<String, String>emptyMap(), true, SyntheticReactor.VERSION);
+    }
+
+    /**
+     * Selecting a module no other module depends on, so all other modules are pinned.
+     */
+    @Benchmark
+    public ReleasePlan planMinorReleaseOfLeafModule() {
+        return planner.planMinorRelease(Collections.singletonList(SyntheticReactor.getModuleKey(size - 1)),
+                Collections.<String, String>emptyMap(), true, SyntheticReactor.VERSION);
+    }
+
+    private static void delete(File file) {
+        final File[] children = file.listFiles();
+        if(children != null) {
+            for(final File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+}
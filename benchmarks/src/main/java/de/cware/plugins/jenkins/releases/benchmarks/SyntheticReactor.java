@@ -0,0 +1,133 @@
+package de.cware.plugins.jenkins.releases.benchmarks;
+
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Parent;
+import org.apache.maven.model.io.xpp3.MavenXpp3Writer;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Generates the Maven models of artificial multi-module projects. All modules are direct
+ * children of the root module and depend on each other in the shape of the given graph:
+ *
+ * - CHAIN: every module depends on the module before it, so the graph is as deep as possible,
+ * - DIAMOND: the modules are arranged in layers and every module depends on two neighbouring
+ *   modules of the layer before it, so the same modules are reached over many paths,
+ * - TREE: every module depends on one module half its index, a balanced binary tree.
+ */
+public class SyntheticReactor {
+
+    public enum Shape {
+        CHAIN, DIAMOND, TREE
+    }
+
+    public static final String GROUP_ID = "de.cware.benchmark";
+    public static final String ROOT_ARTIFACT_ID = "root";
+    public static final String VERSION = "1.0-SNAPSHOT";
+
+    /**
+     * @param shape the shape of the dependency graph.
+     * @param size the number of modules, not counting the root module.
+     * @return the models of all modules including the root module, keyed by "groupId:artifactId".
+     */
+    public static Map<String, Model> create(Shape shape, int size) {
+        final Map<String, Model> models = new LinkedHashMap<String, Model>();
+
+        final Model root = new Model();
+        root.setModelVersion("4.0.0");
+        root.setGroupId(GROUP_ID);
+        root.setArtifactId(ROOT_ARTIFACT_ID);
+        root.setVersion(VERSION);
+        root.setPackaging("pom");
+        models.put(getRootModuleKey(), root);
+
+        final int width = Math.max(2, (int) Math.sqrt(size));
+        for(int i = 0; i < size; i++) {
+            final Model model = new Model();
+            model.setModelVersion("4.0.0");
+            final Parent parent = new Parent();
+            parent.setGroupId(GROUP_ID);
+            parent.setArtifactId(ROOT_ARTIFACT_ID);
+            parent.setVersion(VERSION);
+            model.setParent(parent);
+            model.setGroupId(GROUP_ID);
+            model.setArtifactId(getArtifactId(i));
+            model.setVersion(VERSION);
+
+            switch(shape) {
+                case CHAIN:
+                    if(i > 0) {
+                        model.addDependency(createDependency(i - 1));
+                    }
+                    break;
+                case DIAMOND:
+                    if(i >= width) {
+                        final int layerStart = (i / width - 1) * width;
+                        model.addDependency(createDependency(layerStart + (i % width)));
+                        model.addDependency(createDependency(layerStart + ((i + 1) % width)));
+                    }
+                    break;
+                case TREE:
+                    if(i > 0) {
+                        model.addDependency(createDependency((i - 1) / 2));
+                    }
+                    break;
+            }
+
+            root.addModule(getArtifactId(i));
+            models.put(getModuleKey(i), model);
+        }
+        return models;
+    }
+
+    /**
+     * Write the poms of the models into the given directory, every module in a directory
+     * named like its artifactId.
+     *
+     * @return the root pom.
+     */
+    public static File write(Map<String, Model> models, File directory) throws IOException {
+        final MavenXpp3Writer writer = new MavenXpp3Writer();
+        for(final Model model : models.values()) {
+            final File moduleDirectory = ROOT_ARTIFACT_ID.equals(model.getArtifactId()) ?
+                    directory : new File(directory, model.getArtifactId());
+            if(!moduleDirectory.isDirectory() && !moduleDirectory.mkdirs()) {
+                throw new IOException("Couldn't create " + moduleDirectory);
+            }
+            final Writer pomWriter = new FileWriter(new File(moduleDirectory, "pom.xml"));
+            try {
+                writer.write(pomWriter, model);
+            } finally {
+                pomWriter.close();
+            }
+        }
+        return new File(directory, "pom.xml");
+    }
+
+    public static String getArtifactId(int index) {
+        return "module-" + index;
+    }
+
+    public static String getModuleKey(int index) {
+        return GROUP_ID + ":" + getArtifactId(index);
+    }
+
+    public static String getRootModuleKey() {
+        return GROUP_ID + ":" + ROOT_ARTIFACT_ID;
+    }
+
+    private static Dependency createDependency(int index) {
+        final Dependency dependency = new Dependency();
+        dependency.setGroupId(GROUP_ID);
+        dependency.setArtifactId(getArtifactId(index));
+        dependency.setVersion(VERSION);
+        return dependency;
+    }
+
+}
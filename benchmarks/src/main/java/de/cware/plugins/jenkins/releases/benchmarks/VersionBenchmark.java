@@ -0,0 +1,36 @@
+package de.cware.plugins.jenkins.releases.benchmarks;
+
+import de.cware.plugins.jenkins.releases.versions.BenchmarkVersionHandler;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for calculating the next version of a module, which is done for every module
+ * whenever the release page is shown.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class VersionBenchmark {
+
+    @Param({"1.0", "4.13.7", "4.13.1234"})
+    public String currentVersion;
+
+    private BenchmarkVersionHandler versionHandler;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        versionHandler = new BenchmarkVersionHandler("4.13", Collections.<String, String>emptyMap());
+    }
+
+    @Benchmark
+    public String getNextVersion() {
+        return versionHandler.nextVersion(currentVersion);
+    }
+
+}
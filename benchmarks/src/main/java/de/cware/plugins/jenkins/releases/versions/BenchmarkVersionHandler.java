@@ -0,0 +1,30 @@
+package de.cware.plugins.jenkins.releases.versions;
+
+import hudson.maven.MavenModuleSet;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * VersionHandler with a fixed set of released versions instead of the versions found in
+ * a Maven repository.
+ */
+public class BenchmarkVersionHandler extends VersionHandler {
+
+    /**
+     * @param majorVersion the major version of the project without "-SNAPSHOT".
+     * @param releasedVersions latest released versions keyed by "groupId:artifactId".
+     */
+    public BenchmarkVersionHandler(String majorVersion, Map<String, String> releasedVersions) {
+        super(mock(MavenModuleSet.class));
+        this.majorVersion = majorVersion;
+        this.moduleVersions = new HashMap<String, String>(releasedVersions);
+    }
+
+    public String nextVersion(String currentVersion) {
+        return getNextVersion(currentVersion);
+    }
+
+}
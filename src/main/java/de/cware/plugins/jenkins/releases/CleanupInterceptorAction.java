@@ -1,8 +1,11 @@
 package de.cware.plugins.jenkins.releases;
 
 import hudson.maven.MavenModuleSetBuild;
+import hudson.model.Action;
 import hudson.util.ArgumentListBuilder;
 
+import java.util.List;
+
 /**
  * Initially Jenkins only knew Actions as being extensions to the Actions menu
  * on the left hand side. In this case the Action is an invisible Action passed
@@ -35,6 +38,31 @@ public class CleanupInterceptorAction implements ReleaseInterceptorAction {
         return null;
     }
 
+    ////////////////////////////////////////////////////////////////
+    // QueueAction methods
+    ////////////////////////////////////////////////////////////////
+
+    /**
+     * Identical requests already waiting in the queue are not scheduled again.
+     */
+    public boolean shouldSchedule(List<Action> actions) {
+        return !actions.contains(this);
+    }
+
+    public String getSummary() {
+        return "Cleanup";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof CleanupInterceptorAction;
+    }
+
+    @Override
+    public int hashCode() {
+        return CleanupInterceptorAction.class.hashCode();
+    }
+
     ////////////////////////////////////////////////////////////////
     // Action methods
     ////////////////////////////////////////////////////////////////
@@ -1,8 +1,11 @@
 package de.cware.plugins.jenkins.releases;
 
 import hudson.maven.MavenModuleSetBuild;
+import hudson.model.Action;
 import hudson.util.ArgumentListBuilder;
 
+import java.util.List;
+
 /**
  * Initially Jenkins only knew Actions as being extensions to the Actions menu
  * on the left hand side. In this case the Action is an invisible Action passed
@@ -19,7 +22,22 @@ import hudson.util.ArgumentListBuilder;
  */
 public class InitializeInterceptorAction implements ReleaseInterceptorAction {
 
+    private final boolean lightweight;
+
     public InitializeInterceptorAction() {
+        this(false);
+    }
+
+    /**
+     * @param lightweight if true, the project is only checked out and the poms are parsed.
+     *                    Nothing is compiled, tested or installed.
+     */
+    public InitializeInterceptorAction(boolean lightweight) {
+        this.lightweight = lightweight;
+    }
+
+    public boolean isLightweight() {
+        return lightweight;
     }
 
     ////////////////////////////////////////////////////////////////
@@ -27,6 +45,11 @@ public class InitializeInterceptorAction implements ReleaseInterceptorAction {
     ////////////////////////////////////////////////////////////////
 
     public String getGoalsAndOptions(MavenModuleSetBuild build) {
+        // Jenkins parses the poms and registers the modules before Maven is started. In lightweight
+        // mode we therefore only run the first lifecycle phase, which has no plugins bound to it.
+        if(lightweight) {
+            return "--batch-mode validate";
+        }
         return "install";
     }
 
@@ -34,6 +57,31 @@ public class InitializeInterceptorAction implements ReleaseInterceptorAction {
         return null;
     }
 
+    ////////////////////////////////////////////////////////////////
+    // QueueAction methods
+    ////////////////////////////////////////////////////////////////
+
+    /**
+     * Identical requests already waiting in the queue are not scheduled again.
+     */
+    public boolean shouldSchedule(List<Action> actions) {
+        return !actions.contains(this);
+    }
+
+    public String getSummary() {
+        return lightweight ? "Lightweight initialize" : "Initialize";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return (o instanceof InitializeInterceptorAction) && (lightweight == ((InitializeInterceptorAction) o).lightweight);
+    }
+
+    @Override
+    public int hashCode() {
+        return lightweight ? 1 : 0;
+    }
+
     ////////////////////////////////////////////////////////////////
     // Action methods
     ////////////////////////////////////////////////////////////////
@@ -2,11 +2,16 @@ package de.cware.plugins.jenkins.releases;
 
 import hudson.maven.MavenModuleSet;
 import hudson.maven.MavenModuleSetBuild;
+import hudson.model.Action;
 import hudson.util.ArgumentListBuilder;
 import hudson.util.RunList;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * Initially Jenkins only knew Actions as being extensions to the Actions menu
@@ -24,15 +29,48 @@ import java.io.IOException;
 public class MajorReleaseInterceptorAction implements ReleaseInterceptorAction {
 
     private final String majorReleaseVersion;
+    private final boolean serverSideTagging;
+    private final Map<String, String> dependencyReleaseVersions;
+    private final Map<String, String> dependencyDevelopmentVersions;
 
     public MajorReleaseInterceptorAction(String majorReleaseVersion) {
+        this(majorReleaseVersion, false);
+    }
+
+    public MajorReleaseInterceptorAction(String majorReleaseVersion, boolean serverSideTagging) {
+        this(majorReleaseVersion, serverSideTagging, Collections.<String, String>emptyMap(),
+                Collections.<String, String>emptyMap());
+    }
+
+    /**
+     * @param majorReleaseVersion the version all modules are released as.
+     * @param serverSideTagging if true, the ReleaseBuildWrapper creates the tag and Maven only
+     *                          deploys the modules, instead of running the release plugin.
+     * @param dependencyReleaseVersions versions SNAPSHOT dependencies to modules of other jobs should be
+     *                                  released with, keyed by "groupId:artifactId".
+     * @param dependencyDevelopmentVersions versions these dependencies should have after the release.
+     */
+    public MajorReleaseInterceptorAction(String majorReleaseVersion, boolean serverSideTagging,
+                                         Map<String, String> dependencyReleaseVersions,
+                                         Map<String, String> dependencyDevelopmentVersions) {
         this.majorReleaseVersion = majorReleaseVersion;
+        this.serverSideTagging = serverSideTagging;
+        this.dependencyReleaseVersions = new TreeMap<String, String>(dependencyReleaseVersions);
+        this.dependencyDevelopmentVersions = new TreeMap<String, String>(dependencyDevelopmentVersions);
     }
 
     public String getMajorReleaseVersion() {
         return majorReleaseVersion;
     }
 
+    public boolean isServerSideTagging() {
+        return serverSideTagging;
+    }
+
+    public Map<String, String> getDependencyReleaseVersions() {
+        return (dependencyReleaseVersions != null) ? dependencyReleaseVersions : Collections.<String, String>emptyMap();
+    }
+
     ////////////////////////////////////////////////////////////////
     // MavenArgumentInterceptorAction methods
     ////////////////////////////////////////////////////////////////
@@ -40,6 +78,27 @@ public class MajorReleaseInterceptorAction implements ReleaseInterceptorAction {
     public String getGoalsAndOptions(MavenModuleSetBuild build) {
         final StringBuilder cmd = new StringBuilder();
 
+        if((majorReleaseVersion != null) && serverSideTagging) {
+            // The tag has already been created and the poms in the workspace contain the release
+            // version, so the modules only have to be built and deployed.
+            cmd.append(" --batch-mode");
+
+            // Activate the same profile the release plugin would activate.
+            cmd.append(" -DperformRelease=true");
+
+            // There is no forked Maven process, so the arguments are passed on directly.
+            ReleaseArguments.forBuild(build).appendDirectlyTo(cmd);
+
+            final ReleaseBuildWrapper releaseBuildWrapper = build.getProject().getBuildWrappersList().get(ReleaseBuildWrapper.class);
+            if(releaseBuildWrapper.getMavenArgs() != null) {
+                cmd.append(" ").append(releaseBuildWrapper.getMavenArgs().trim());
+            }
+
+            cmd.append(" deploy");
+
+            return cmd.toString();
+        }
+
         if(majorReleaseVersion != null) {
             // Save the current version as will be passed to the release plugin as development version.
             final String currentVersion = build.getProject().getRootModule().getVersion();
@@ -58,6 +117,21 @@ public class MajorReleaseInterceptorAction implements ReleaseInterceptorAction {
             // Define the version of the modules will have in their poms after the release is finished.
             cmd.append(" -DdevelopmentVersion=").append(currentVersion);
 
+            // Resolve SNAPSHOT dependencies to modules of other jobs, which have been released
+            // just before this one, the same way the user would in an interactive release.
+            for(final Map.Entry<String, String> dependencyVersion : getDependencyReleaseVersions().entrySet()) {
+                cmd.append(" -Ddependency.").append(dependencyVersion.getKey()).append(".release=");
+                cmd.append(dependencyVersion.getValue());
+                if((dependencyDevelopmentVersions != null) &&
+                        dependencyDevelopmentVersions.containsKey(dependencyVersion.getKey())) {
+                    cmd.append(" -Ddependency.").append(dependencyVersion.getKey()).append(".development=");
+                    cmd.append(dependencyDevelopmentVersions.get(dependencyVersion.getKey()));
+                }
+            }
+
+            // Pass on arguments to the Maven processes forked by the release plugin.
+            ReleaseArguments.forBuild(build).appendTo(cmd);
+
             // if the user specified additional maven parameters, append them to the command.
             final ReleaseBuildWrapper releaseBuildWrapper = build.getProject().getBuildWrappersList().get(ReleaseBuildWrapper.class);
             if(releaseBuildWrapper.getMavenArgs() != null) {
@@ -92,6 +166,40 @@ public class MajorReleaseInterceptorAction implements ReleaseInterceptorAction {
         return null;
     }
 
+    ////////////////////////////////////////////////////////////////
+    // QueueAction methods
+    ////////////////////////////////////////////////////////////////
+
+    /**
+     * Identical requests already waiting in the queue are not scheduled again.
+     */
+    public boolean shouldSchedule(List<Action> actions) {
+        return !actions.contains(this);
+    }
+
+    public String getSummary() {
+        return "Major release " + majorReleaseVersion + (serverSideTagging ? " (server side tagging)" : "");
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) {
+            return true;
+        }
+        if(!(o instanceof MajorReleaseInterceptorAction)) {
+            return false;
+        }
+        final MajorReleaseInterceptorAction that = (MajorReleaseInterceptorAction) o;
+        return (serverSideTagging == that.serverSideTagging) && ((majorReleaseVersion != null) ?
+                majorReleaseVersion.equals(that.majorReleaseVersion) : (that.majorReleaseVersion == null)) &&
+                getDependencyReleaseVersions().equals(that.getDependencyReleaseVersions());
+    }
+
+    @Override
+    public int hashCode() {
+        return ((majorReleaseVersion != null) ? majorReleaseVersion.hashCode() : 0) + (serverSideTagging ? 1 : 0);
+    }
+
     ////////////////////////////////////////////////////////////////
     // Action methods
     ////////////////////////////////////////////////////////////////
@@ -2,9 +2,17 @@ package de.cware.plugins.jenkins.releases;
 
 import hudson.maven.MavenModule;
 import hudson.maven.MavenModuleSetBuild;
+import hudson.maven.ModuleName;
+import hudson.model.Action;
 import hudson.util.ArgumentListBuilder;
+import org.eclipse.aether.util.version.GenericVersionScheme;
+import org.eclipse.aether.version.InvalidVersionSpecificationException;
+import org.eclipse.aether.version.VersionScheme;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * Initially Jenkins only knew Actions as being extensions to the Actions menu
@@ -17,26 +25,128 @@ import java.util.Map;
  * both the information about which modules are to be released as well as which
  * versions these should have.
  *
+ * Requests for minor releases can be merged into the action while its build is still
+ * waiting in the queue, so all access to its state is synchronized and the maps are only
+ * handed out as copies.
+ *
+ * Versions of the plugin before the maps were keyed by "groupId:artifactId" stored
+ * the MavenModules themselves, so actions read from an old queue.xml or build.xml are
+ * converted when they are loaded.
+ *
  * User: cdutz
  * Date: 26.10.12
  * Time: 10:42
  */
 public class MinorReleaseInterceptorAction implements ReleaseInterceptorAction {
 
-    private final Map<MavenModule, String> releaseVersions;
-    private final Map<MavenModule, String> latestVersions;
+    private final Map<String, String> releaseVersions;
+    private final Map<String, String> latestVersions;
+    private boolean snapshotsVerified;
+
+    /**
+     * The maps are keyed by the "groupId:artifactId" of the modules, so the action stays small
+     * when it is persisted with the queue and the build.
+     *
+     * @param releaseVersions versions of the modules that should be released.
+     * @param latestVersions latest released versions of the modules that are not released.
+     * @param snapshotsVerified true, if the SnapshotAnalyzer verified that all SNAPSHOT references
+     *                          of the released modules are replaced by the release plugin.
+     */
+    public MinorReleaseInterceptorAction(Map<String, String> releaseVersions,
+                                         Map<String, String> latestVersions, boolean snapshotsVerified) {
+        this.releaseVersions = new TreeMap<String, String>(releaseVersions);
+        this.latestVersions = new TreeMap<String, String>(latestVersions);
+        this.snapshotsVerified = snapshotsVerified;
+    }
+
+    /**
+     * Convert actions stored with MavenModule keys. XStream doesn't check the generic types,
+     * so they would only fail with a ClassCastException when the maps are used.
+     */
+    protected Object readResolve() {
+        return new MinorReleaseInterceptorAction(
+                toModuleKeys(releaseVersions), toModuleKeys(latestVersions), snapshotsVerified);
+    }
+
+    private static Map<String, String> toModuleKeys(Map<?, ?> versions) {
+        final Map<String, String> convertedVersions = new TreeMap<String, String>();
+        if(versions == null) {
+            return convertedVersions;
+        }
+        for(final Map.Entry<?, ?> version : versions.entrySet()) {
+            final Object module = version.getKey();
+            final String moduleKey;
+            if(module instanceof MavenModule) {
+                final ModuleName moduleName = ((MavenModule) module).getModuleName();
+                if(moduleName == null) {
+                    continue;
+                }
+                moduleKey = moduleName.groupId + ":" + moduleName.artifactId;
+            } else {
+                moduleKey = String.valueOf(module);
+            }
+            convertedVersions.put(moduleKey, (String) version.getValue());
+        }
+        return convertedVersions;
+    }
+
+    public synchronized Map<String, String> getReleaseVersions() {
+        return Collections.unmodifiableMap(new TreeMap<String, String>(releaseVersions));
+    }
+
+    public synchronized Map<String, String> getLatestVersions() {
+        return Collections.unmodifiableMap(new TreeMap<String, String>(latestVersions));
+    }
+
+    public synchronized boolean isSnapshotsVerified() {
+        return snapshotsVerified;
+    }
+
+    /**
+     * Merge the selection of another minor release request into this one, so both are
+     * released by the same build. The result is the same, no matter in which order the
+     * requests are merged:
+     *
+     * - a module is released, if any of the requests releases it,
+     * - if both requests release a module with different versions, the higher version wins,
+     * - modules released by any of the requests are no longer pinned to their latest version.
+     *
+     * As every request contains all modules depending on the modules it releases, so does
+     * the merged request.
+     *
+     * @param other the request to merge into this one.
+     */
+    public synchronized void merge(MinorReleaseInterceptorAction other) {
+        final VersionScheme versionScheme = new GenericVersionScheme();
+        for(final Map.Entry<String, String> otherVersion : other.getReleaseVersions().entrySet()) {
+            final String version = releaseVersions.get(otherVersion.getKey());
+            if((version == null) || (compareVersions(versionScheme, otherVersion.getValue(), version) > 0)) {
+                releaseVersions.put(otherVersion.getKey(), otherVersion.getValue());
+            }
+        }
+        for(final Map.Entry<String, String> otherVersion : other.getLatestVersions().entrySet()) {
+            if(!latestVersions.containsKey(otherVersion.getKey())) {
+                latestVersions.put(otherVersion.getKey(), otherVersion.getValue());
+            }
+        }
+        latestVersions.keySet().removeAll(releaseVersions.keySet());
+        snapshotsVerified = snapshotsVerified && other.isSnapshotsVerified();
+    }
 
-    public MinorReleaseInterceptorAction(
-            Map<MavenModule, String> releaseVersions, Map<MavenModule, String> latestVersions) {
-        this.releaseVersions = releaseVersions;
-        this.latestVersions = latestVersions;
+    protected int compareVersions(VersionScheme versionScheme, String version1, String version2) {
+        try {
+            return versionScheme.parseVersion(version1).compareTo(versionScheme.parseVersion(version2));
+        } catch (InvalidVersionSpecificationException e) {
+            // Fall back to the string representation, so the result is still deterministic.
+            return version1.compareTo(version2);
+        }
     }
 
     ////////////////////////////////////////////////////////////////
     // MavenArgumentInterceptorAction methods
     ////////////////////////////////////////////////////////////////
 
-    public String getGoalsAndOptions(MavenModuleSetBuild build) {
+    public synchronized String getGoalsAndOptions(MavenModuleSetBuild build) {
         final StringBuilder cmd = new StringBuilder();
 
         if((releaseVersions != null) && (releaseVersions.size() > 0)) {
@@ -44,7 +154,8 @@ public class MinorReleaseInterceptorAction implements ReleaseInterceptorAction {
             final String currentVersion = build.getProject().getRootModule().getVersion();
 
             // Define the name of he tag the release plugin will use.
-            cmd.append(" -Dtag=").append(releaseVersions.get(build.getProject().getRootModule()));
+            final ModuleName rootModuleName = build.getProject().getRootModule().getModuleName();
+            cmd.append(" -Dtag=").append(releaseVersions.get(rootModuleName.groupId + ":" + rootModuleName.artifactId));
             // Make sure the tag name is just the version.
             cmd.append(" -DtagNameFormat=@{project.version}");
 
@@ -53,10 +164,10 @@ public class MinorReleaseInterceptorAction implements ReleaseInterceptorAction {
 
             // Limit maven to only release the modules that should be released
             // and configure the desired versions of those artifacts.
-            for(final MavenModule module : releaseVersions.keySet()) {
-                final String moduleName = module.getModuleName().groupId + ":" + module.getModuleName().artifactId;
+            for(final Map.Entry<String, String> releaseVersion : releaseVersions.entrySet()) {
+                final String moduleName = releaseVersion.getKey();
 
-                final String moduleReleaseVersion = releaseVersions.get(module);
+                final String moduleReleaseVersion = releaseVersion.getValue();
                 releasePluginVersionsFragment.append(" -Dproject.rel.").append(moduleName).append("=");
                 releasePluginVersionsFragment.append(moduleReleaseVersion);
                 releasePluginVersionsFragment.append(" -Dproject.dev.").append(moduleName).append("=");
@@ -70,9 +181,9 @@ public class MinorReleaseInterceptorAction implements ReleaseInterceptorAction {
 
             // Tell the release plugin the latest versions of all of the modules not in the build. This way
             // the release plugin can update the dependencies to non-release modules too (Hopefully).
-            for(final MavenModule module : latestVersions.keySet()) {
-                final String moduleName = module.getModuleName().groupId + ":" + module.getModuleName().artifactId;
-                final String moduleLatestVersion = latestVersions.get(module);
+            for(final Map.Entry<String, String> latestVersion : latestVersions.entrySet()) {
+                final String moduleName = latestVersion.getKey();
+                final String moduleLatestVersion = latestVersion.getValue();
 
                 releasePluginVersionsFragment.append(" -Dproject.rel.").append(moduleName).append("=");
                 releasePluginVersionsFragment.append(moduleLatestVersion);
@@ -87,12 +198,19 @@ public class MinorReleaseInterceptorAction implements ReleaseInterceptorAction {
             cmd.append(releasePluginVersionsFragment);
 
             // As not all projects are in the reactor, the project will contain modules
-            // that contain SNAPSHOT versions, so we have to disable this test.
-            cmd.append(" -DignoreSnapshots=true");
+            // that contain SNAPSHOT versions. The release plugin would report these, even if
+            // they are pinned to released versions. So we disable this test, but only if the
+            // SnapshotAnalyzer made sure there are no SNAPSHOT references left that are not pinned.
+            if(snapshotsVerified) {
+                cmd.append(" -DignoreSnapshots=true");
+            }
 
             // Limit the build to only handle the projects we want to release.
             cmd.append(" --projects ").append(projectsFragment.toString());
 
+            // Pass on arguments to the Maven processes forked by the release plugin.
+            ReleaseArguments.forBuild(build).appendTo(cmd);
+
             // if the user specified additional maven parameters, append them to the command.
             final ReleaseBuildWrapper releaseBuildWrapper =
                     build.getProject().getBuildWrappersList().get(ReleaseBuildWrapper.class);
@@ -110,6 +228,43 @@ public class MinorReleaseInterceptorAction implements ReleaseInterceptorAction {
         return null;
     }
 
+    ////////////////////////////////////////////////////////////////
+    // QueueAction methods
+    ////////////////////////////////////////////////////////////////
+
+    /**
+     * Identical requests already waiting in the queue are not scheduled again.
+     */
+    public boolean shouldSchedule(List<Action> actions) {
+        return !actions.contains(this);
+    }
+
+    public synchronized String getSummary() {
+        return "Minor release of " + ((releaseVersions != null) ? releaseVersions.size() : 0) + " modules";
+    }
+
+    /**
+     * Only one of the actions is locked at a time, so comparing two actions concurrently can't deadlock.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) {
+            return true;
+        }
+        if(!(o instanceof MinorReleaseInterceptorAction)) {
+            return false;
+        }
+        final MinorReleaseInterceptorAction that = (MinorReleaseInterceptorAction) o;
+        return (isSnapshotsVerified() == that.isSnapshotsVerified()) &&
+                getReleaseVersions().equals(that.getReleaseVersions()) &&
+                getLatestVersions().equals(that.getLatestVersions());
+    }
+
+    @Override
+    public synchronized int hashCode() {
+        return (releaseVersions != null) ? releaseVersions.hashCode() : 0;
+    }
+
     ////////////////////////////////////////////////////////////////
     // Action methods
     ////////////////////////////////////////////////////////////////
@@ -0,0 +1,69 @@
+package de.cware.plugins.jenkins.releases;
+
+import hudson.maven.MavenModuleSetBuild;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The release plugin forks additional Maven processes for building and deploying the
+ * release. Arguments for these processes can only be passed in using the "arguments"
+ * property and this property can only be passed once. Therefore all parts of this
+ * plugin contributing arguments to the forked processes collect them in here.
+ */
+public class ReleaseArguments {
+
+    private final List<String> arguments = new ArrayList<String>();
+
+    /**
+     * @param build the current build.
+     * @return arguments for the forked Maven processes, initialized with the arguments
+     * the configuration of the ReleaseBuildWrapper requires.
+     */
+    public static ReleaseArguments forBuild(MavenModuleSetBuild build) {
+        final ReleaseArguments releaseArguments = new ReleaseArguments();
+        final ReleaseBuildWrapper releaseBuildWrapper =
+                build.getProject().getBuildWrappersList().get(ReleaseBuildWrapper.class);
+        if(releaseBuildWrapper != null) {
+            releaseBuildWrapper.contributeReleaseArguments(build, releaseArguments);
+        }
+        return releaseArguments;
+    }
+
+    public ReleaseArguments add(String argument) {
+        arguments.add(argument);
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return arguments.isEmpty();
+    }
+
+    /**
+     * Append the arguments directly to the given command. This is used if the release is
+     * built without forking a Maven process.
+     */
+    public void appendDirectlyTo(StringBuilder cmd) {
+        for(final String argument : arguments) {
+            cmd.append(" ").append(argument);
+        }
+    }
+
+    /**
+     * Append the arguments as "-Darguments" property to the given command.
+     */
+    public void appendTo(StringBuilder cmd) {
+        if(arguments.isEmpty()) {
+            return;
+        }
+        cmd.append(" \"-Darguments=");
+        for(int i = 0; i < arguments.size(); i++) {
+            if(i > 0) {
+                cmd.append(" ");
+            }
+            cmd.append(arguments.get(i));
+        }
+        cmd.append("\"");
+    }
+
+}
@@ -1,15 +1,32 @@
 package de.cware.plugins.jenkins.releases;
 
+import de.cware.plugins.jenkins.releases.maintenance.RollbackTask;
+import de.cware.plugins.jenkins.releases.metrics.ReleaseMetrics;
+import de.cware.plugins.jenkins.releases.plan.ReleasePlan;
+import de.cware.plugins.jenkins.releases.plan.ReleasePlanner;
+import de.cware.plugins.jenkins.releases.scm.ChangedModulesDetector;
 import de.cware.plugins.jenkins.releases.versions.VersionHandler;
 
+import hudson.FilePath;
+import hudson.maven.MavenBuild;
 import hudson.maven.MavenModule;
 import hudson.maven.MavenModuleSet;
 import hudson.maven.MavenModuleSetBuild;
 import hudson.model.Action;
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.model.Result;
 
-import hudson.model.ParametersAction;
+import hudson.scm.SubversionTagAction;
+import hudson.security.ACL;
+import hudson.slaves.WorkspaceList;
 import hudson.util.RunList;
+import hudson.util.StreamTaskListener;
+import jenkins.model.Jenkins;
 import net.sf.json.JSONObject;
+import org.acegisecurity.Authentication;
+import org.acegisecurity.context.SecurityContext;
+import org.acegisecurity.context.SecurityContextHolder;
 import org.apache.maven.model.Dependency;
 import org.apache.maven.model.Model;
 import org.apache.maven.model.Parent;
@@ -21,6 +38,7 @@ import org.kohsuke.stapler.StaplerResponse;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.net.URLEncoder;
 import java.util.*;
 
 /**
@@ -39,6 +57,17 @@ public class ReleaseBuildAction implements Action {
 
     protected VersionHandler versionHandler;
 
+    // Parsing the poms of big projects takes quite some time, so the parsed models and the
+    // dependency closure are kept until the next build changes the workspace.
+    private transient Map<String, Model> mavenModelsCache;
+    private transient Map<String, List<String>> referencesClosureCache;
+    private transient int mavenModelsBuildNumber = -1;
+
+    // Comparing the modules with the last release tag requires quite a lot of requests to the
+    // Subversion server, so the result is kept until the tag or the revision changes.
+    private transient Set<String> preselectedModulesCache;
+    private transient String preselectedModulesKey;
+
     public ReleaseBuildAction(MavenModuleSet project) {
         this.project = project;
 
@@ -62,6 +91,24 @@ public class ReleaseBuildAction implements Action {
         return "release";
     }
 
+    /**
+     * @return the release build currently holding the release lock of this job or null.
+     */
+    public ReleaseLock.Holder getReleaseLockHolder() {
+        return ReleaseLock.forJob(project).getHolder();
+    }
+
+    /**
+     * @return true, if a minor release is waiting in the queue and further minor release
+     *         requests are merged into it.
+     */
+    public boolean isMinorReleaseBatching() {
+        final ReleaseBuildWrapper wrapper = project.getBuildWrappersList().get(ReleaseBuildWrapper.class);
+        final ReleaseLock.Holder holder = getReleaseLockHolder();
+        return (wrapper != null) && (wrapper.getBatchWindowSeconds() > 0) && (holder != null) &&
+                holder.isQueued() && (holder.getAction() instanceof MinorReleaseInterceptorAction);
+    }
+
     public MavenModuleSet getProject() {
         return project;
     }
@@ -113,6 +160,28 @@ public class ReleaseBuildAction implements Action {
         return false;
     }
 
+    /**
+     * If the last build was a release build which failed after the tag has been created and
+     * the release.properties of this attempt are still available, the release can be resumed.
+     *
+     * @return progress of the release that can be resumed or null.
+     */
+    public ReleaseProgressAction getResumableRelease() {
+        final MavenModuleSetBuild lastBuild = project.getLastBuild();
+        if((lastBuild == null) || lastBuild.isBuilding() || (lastBuild.getResult() != Result.FAILURE)) {
+            return null;
+        }
+        final ReleaseProgressAction progressAction = lastBuild.getAction(ReleaseProgressAction.class);
+        if((progressAction == null) || !progressAction.isPerformStarted()) {
+            return null;
+        }
+        final File projectWorkDir = getProjectWorkDir();
+        if((projectWorkDir == null) || !new File(projectWorkDir, "release.properties").exists()) {
+            return null;
+        }
+        return progressAction;
+    }
+
     protected File getProjectWorkDir() {
         final RunList<MavenModuleSetBuild> builds = project.getBuilds();
         // This code assumes that the builds work dir stays the same during builds.
@@ -133,16 +202,24 @@ public class ReleaseBuildAction implements Action {
 
     public void doPerformInitialize(StaplerRequest request, StaplerResponse response) {
         try {
-            final InitializeInterceptorAction action = new InitializeInterceptorAction();
+            final ReleaseBuildWrapper releaseBuildWrapper =
+                    project.getBuildWrappersList().get(ReleaseBuildWrapper.class);
+            final InitializeInterceptorAction action =
+                    new InitializeInterceptorAction(releaseBuildWrapper.isLightweightInitialize());
 
             // Schedule the build.
             // This will make jenkins trigger the build. While performing the build all registered BuildWrappers
             // can contribute. Particularly the ReleaseBuildWrapper will react on the ReleaseCause cause class and
             // trigger the release build.
             //
-            // Depending on the result of the scheduleBuild method the user is then redirected to the main page of
-            // the current Job or redirected to a failure-page, if something went wrong.
-            if(project.scheduleBuild(0, new ReleaseCause(), action)) {
+            // The ReleaseLock decides if the build may be scheduled (see there).
+            // Depending on the result the user is then redirected to the main page of the current Job or
+            // redirected to a failure-page, if something went wrong.
+            final ReleaseLock.Result result = ReleaseLock.forJob(project).schedule(action);
+            if(result == ReleaseLock.Result.LOCKED) {
+                response.sendRedirect(request.getContextPath() + '/' + project.getUrl() +
+                        getUrlName() + "/failure?reason=locked");
+            } else if(result != ReleaseLock.Result.FAILED) {
                 response.sendRedirect(request.getContextPath() + '/' + project.getUrl());
             } else {
                 response.sendRedirect(request.getContextPath() + '/' + project.getUrl() + '/' +
@@ -156,6 +233,12 @@ public class ReleaseBuildAction implements Action {
 
     public void doPerformCleanup(StaplerRequest request, StaplerResponse response) {
         try {
+            // Try to roll back the release without starting Maven first.
+            if(startNativeRollback()) {
+                response.sendRedirect(request.getContextPath() + '/' + project.getUrl());
+                return;
+            }
+
             final CleanupInterceptorAction action = new CleanupInterceptorAction();
 
             // Schedule the build.
@@ -163,9 +246,14 @@ public class ReleaseBuildAction implements Action {
             // can contribute. Particularly the ReleaseBuildWrapper will react on the ReleaseCause cause class and
             // trigger the release build.
             //
-            // Depending on the result of the scheduleBuild method the user is then redirected to the main page of
-            // the current Job or redirected to a failure-page, if something went wrong.
-            if(project.scheduleBuild(0, new ReleaseCause(), action)) {
+            // The ReleaseLock decides if the build may be scheduled (see there).
+            // Depending on the result the user is then redirected to the main page of the current Job or
+            // redirected to a failure-page, if something went wrong.
+            final ReleaseLock.Result result = ReleaseLock.forJob(project).schedule(action);
+            if(result == ReleaseLock.Result.LOCKED) {
+                response.sendRedirect(request.getContextPath() + '/' + project.getUrl() +
+                        getUrlName() + "/failure?reason=locked");
+            } else if(result != ReleaseLock.Result.FAILED) {
                 response.sendRedirect(request.getContextPath() + '/' + project.getUrl());
             } else {
                 response.sendRedirect(request.getContextPath() + '/' + project.getUrl() + '/' +
@@ -177,25 +265,148 @@ public class ReleaseBuildAction implements Action {
         }
     }
 
+    /**
+     * Roll back a failed release directly on the node the workspace is located on, in the
+     * background. The job is locked while the rollback is running, which keeps all builds of
+     * the job in the queue, and the workspace is leased like a build would lease it. If the
+     * release plugin has to roll back the release, a cleanup build is scheduled afterwards.
+     * The output is written to the release-maintenance.log in the directory of the job.
+     *
+     * @return true, if the rollback has been started, false if a Maven build is needed right away.
+     */
+    protected boolean startNativeRollback() {
+        final ReleaseBuildWrapper releaseBuildWrapper = project.getBuildWrappersList().get(ReleaseBuildWrapper.class);
+        final MavenModuleSetBuild lastBuild = project.getLastBuild();
+        if((releaseBuildWrapper == null) || !releaseBuildWrapper.isNativeMaintenance() || project.isBuilding() ||
+                (lastBuild == null)) {
+            return false;
+        }
+        final FilePath workspace = lastBuild.getWorkspace();
+        final Node node = lastBuild.getBuiltOn();
+        final Computer computer = (node != null) ? node.toComputer() : null;
+        final ReleaseLock lock = ReleaseLock.forJob(project);
+        if((workspace == null) || (computer == null) || !lock.lockForMaintenance(new CleanupInterceptorAction())) {
+            return false;
+        }
+        final Authentication authentication = Jenkins.getAuthentication();
+        Computer.threadPoolForRemoting.submit(new Runnable() {
+            public void run() {
+                final SecurityContext previousContext = ACL.impersonate(authentication);
+                try {
+                    final boolean rolledBack;
+                    try {
+                        rolledBack = performNativeRollback(computer, workspace);
+                    } finally {
+                        lock.unlockMaintenance();
+                    }
+                    if(!rolledBack) {
+                        lock.schedule(new CleanupInterceptorAction());
+                    }
+                } finally {
+                    SecurityContextHolder.setContext(previousContext);
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * @return true, if the release was rolled back, false if a Maven build is needed.
+     */
+    protected boolean performNativeRollback(Computer computer, FilePath workspace) {
+        try {
+            final StreamTaskListener listener =
+                    new StreamTaskListener(new File(project.getRootDir(), "release-maintenance.log"));
+            try {
+                // Wait for a build that is still using the workspace.
+                final WorkspaceList.Lease lease = computer.getWorkspaceList().acquire(workspace);
+                try {
+                    return workspace.act(new RollbackTask(listener));
+                } finally {
+                    lease.release();
+                }
+            } catch (IOException e) {
+                e.printStackTrace(listener.error("[release] Rolling back the release failed"));
+                return false;
+            } finally {
+                listener.close();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    public void doPerformResume(StaplerRequest request, StaplerResponse response) {
+        try {
+            final ReleaseProgressAction progressAction = getResumableRelease();
+            if(progressAction == null) {
+                response.sendRedirect(request.getContextPath() + '/' + project.getUrl() +
+                        getUrlName() + "/failure?reason=notResumable");
+                return;
+            }
+
+            // The log of the failed build is checked against the repository by the resumed build,
+            // so the request doesn't have to wait for the repository.
+            final List<String> deployedModules = progressAction.getModules(ReleaseProgressAction.State.DEPLOYED);
+
+            final ResumeReleaseInterceptorAction action = new ResumeReleaseInterceptorAction(
+                    progressAction.getTag(), progressAction.getReleaseVersions(), deployedModules);
+
+            // Schedule the build.
+            // This will make jenkins trigger the build. While performing the build all registered BuildWrappers
+            // can contribute. Particularly the ReleaseBuildWrapper will react on the ReleaseCause cause class and
+            // trigger the release build.
+            //
+            // The ReleaseLock decides if the build may be scheduled (see there).
+            // Depending on the result the user is then redirected to the main page of the current Job or
+            // redirected to a failure-page, if something went wrong.
+            final ReleaseLock.Result result = ReleaseLock.forJob(project).schedule(action);
+            if(result == ReleaseLock.Result.LOCKED) {
+                response.sendRedirect(request.getContextPath() + '/' + project.getUrl() +
+                        getUrlName() + "/failure?reason=locked");
+            } else if(result != ReleaseLock.Result.FAILED) {
+                response.sendRedirect(request.getContextPath() + '/' + project.getUrl());
+            } else {
+                response.sendRedirect(request.getContextPath() + '/' + project.getUrl() +
+                        getUrlName() + "/failure?reason=couldntSchedule");
+            }
+
+        } catch(Exception e) {
+            e.printStackTrace();
+        }
+    }
+
     public void doPerformMajorRelease(StaplerRequest request, StaplerResponse response) {
         try {
-            // Action that saves the configuration settings that were active during the build and attaches this to
-            // the build results, so in the future the information, which properties were active during a build is
-            // still available.
-            final ParametersAction parameters = new ParametersAction();
+            final String releaseVersion = versionHandler.getNextReleaseVersion(project.getRootModule().getModuleName());
 
-            final MajorReleaseInterceptorAction action =
-                    new MajorReleaseInterceptorAction(versionHandler.getNextReleaseVersion(
-                            project.getRootModule().getModuleName()));
+            // Simulate the release before scheduling it, so releases that are bound to fail
+            // are rejected before a long running build is queued.
+            final ReleasePlan plan = getMajorReleasePlan(releaseVersion);
+            if((plan != null) && !plan.isSchedulable()) {
+                sendPlanFailure(request, response, plan);
+                return;
+            }
+
+            final ReleaseBuildWrapper releaseBuildWrapper =
+                    project.getBuildWrappersList().get(ReleaseBuildWrapper.class);
+            final MajorReleaseInterceptorAction action = new MajorReleaseInterceptorAction(releaseVersion,
+                    (releaseBuildWrapper != null) && releaseBuildWrapper.isServerSideTagging());
 
             // Schedule the build.
             // This will make jenkins trigger the build. While performing the build all registered BuildWrappers
             // can contribute. Particularly the ReleaseBuildWrapper will react on the ReleaseCause cause class and
             // trigger the release build.
             //
-            // Depending on the result of the scheduleBuild method the user is then redirected to the main page of
-            // the current Job or redirected to a failure-page, if something went wrong.
-            if(project.scheduleBuild(0, new ReleaseCause(), parameters, action)) {
+            // The ReleaseLock decides if the build may be scheduled (see there).
+            // Depending on the result the user is then redirected to the main page of the current Job or
+            // redirected to a failure-page, if something went wrong.
+            final ReleaseLock.Result result = ReleaseLock.forJob(project).schedule(action);
+            if(result == ReleaseLock.Result.LOCKED) {
+                response.sendRedirect(request.getContextPath() + '/' + project.getUrl() +
+                        getUrlName() + "/failure?reason=locked");
+            } else if(result != ReleaseLock.Result.FAILED) {
                 response.sendRedirect(request.getContextPath() + '/' + project.getUrl());
             } else {
                 response.sendRedirect(request.getContextPath() + '/' + project.getUrl() + '/' +
@@ -216,39 +427,14 @@ public class ReleaseBuildAction implements Action {
             // all modules that depend on this are also released.
             ////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
-            // First parse the root pom and build a maven model of this project.
-            final File rootPomFile = new File(getProjectWorkDir(), "pom.xml");
-            if(!rootPomFile.exists()) {
+            // Get the maven models of all artifacts this project consists of.
+            final Map<String, Model> mavenModels = getMavenModels();
+            if(mavenModels == null) {
                 response.sendRedirect(request.getContextPath() + '/' + project.getUrl() +
                         getUrlName() + "/failure?reason=couldntParseProjectRootPom");
                 return;
             }
 
-            // Prepare a list of all maven models of all artifacts this project consists of.
-            final Map<String, Model> mavenModels = parseMavenModel(rootPomFile);
-
-            // Prepare a map containing information about which modules depend on a particular artifact.
-            final Map<String, List<String>> references = new HashMap<String, List<String>>();
-            for(final String curModuleKey : mavenModels.keySet()) {
-                final List<String> moduleReferences = prepareDependenciesMap(curModuleKey, mavenModels);
-                for(final String dependencyKey : moduleReferences) {
-                    if(mavenModels.containsKey(dependencyKey)) {
-                        if(!references.containsKey(dependencyKey)) {
-                            references.put(dependencyKey, new ArrayList<String>());
-                        }
-                        references.get(dependencyKey).add(curModuleKey);
-                    }
-                }
-            }
-
-            // Create a transitive closure of all dependencies, as processing the modules directly doesn't
-            // directly handle transitive dependencies.
-            final Map<String, List<String>> referencesClosure = new HashMap<String, List<String>>();
-            for(final String curModuleKey : mavenModels.keySet()) {
-                final List<String> closure = calculateDependencyClosure(curModuleKey, references);
-                referencesClosure.put(curModuleKey, closure);
-            }
-
             ////////////////////////////////////////////////////////////////////////////////////////////////////////////
             // Build a map of all modules that should be released.
             ////////////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -257,110 +443,61 @@ public class ReleaseBuildAction implements Action {
             final boolean autoSelectMissingModules = form.getBoolean("autoSelectMissingModules");
             final JSONObject artifacts = form.getJSONObject("artifacts");
 
-            // Get a list of all selected modules.
+            // Get a list of all selected modules and the versions requested for all modules.
             final List<String> selectedModules = new ArrayList<String>();
+            final Map<String, String> requestedVersions = new HashMap<String, String>();
             for(final String artifactName : (Collection<String>) artifacts.keySet()) {
                 final JSONObject artifactSettings = artifacts.getJSONObject(artifactName);
+                final String moduleKey = artifactSettings.getString("groupId") + ":" +
+                        artifactSettings.getString("artifactId");
+                requestedVersions.put(moduleKey, artifactSettings.getString("version"));
                 if(artifactSettings.getBoolean("release")) {
-                    final String moduleKey = artifactSettings.getString("groupId") + ":" +
-                            artifactSettings.getString("artifactId");
                     selectedModules.add(moduleKey);
                 }
             }
 
-            // Build a list of all missing modules because of dependencies.
-            final List<String> missingModules = new ArrayList<String>();
-            for(final String selectedModule : selectedModules) {
-                if(referencesClosure.get(selectedModule) != null) {
-                    for(final String referencingModule : referencesClosure.get(selectedModule)) {
-                        if(!selectedModules.contains(referencingModule) && !missingModules.contains(referencingModule)) {
-                            missingModules.add(referencingModule);
-                        }
-                    }
-                }
-            }
-
-            // Additionally add any missing parent modules.
-            for(final String moduleName : selectedModules) {
-                final Model module = mavenModels.get(moduleName);
-                if(module.getParent() != null) {
-                    Parent parent = module.getParent();
-                    while(parent != null) {
-                        final String parentKey = parent.getGroupId() + ":" + parent.getArtifactId();
-
-                        // Get the parent module.
-                        final Model parentModule = mavenModels.get(parentKey);
-
-                        // The parent is no longer part of this project, so we can abort.
-                        if(parentModule == null) {
-                            break;
-                        }
-
-                        // If the parent is part of this project and it is not part of the selection
-                        // and has not yet been added to the missing modules list, then add it to that
-                        // list.
-                        if(!selectedModules.contains(parentKey) && !missingModules.contains(parentKey)) {
-                            missingModules.add(parentKey);
-                        }
-                        parent = parentModule.getParent();
-                    }
-                }
-            }
-
-            // Depending on the value of autoSelectMissingModules add missing modules or cause the build to fail.
-            if(!missingModules.isEmpty()) {
-                // Automatically add all missing modules.
-                if(autoSelectMissingModules) {
-                    selectedModules.addAll(missingModules);
-                }
-                // Cause the build to fail.
-                else {
-                    final StringBuilder moduleList = new StringBuilder();
-                    for(final String missingModuleKey : missingModules) {
-                        if(moduleList.length() > 0) {
-                            moduleList.append(",");
-                        }
-                        moduleList.append(missingModuleKey);
-                    }
-                    response.sendRedirect(request.getContextPath() + '/' + project.getUrl() +
-                            getUrlName() + "/failure?reason=missingModules&moduleList=" + moduleList);
-                    return;
-                }
+            // Simulate the release. Depending on the value of autoSelectMissingModules this adds missing
+            // modules or reports them, which causes the release to fail. The same applies to SNAPSHOT
+            // references which are neither pinned nor released.
+            final ReleasePlan plan = getReleasePlanner().planMinorRelease(selectedModules, requestedVersions,
+                    autoSelectMissingModules, project.getRootModule().getVersion());
+            if(!plan.isSchedulable()) {
+                sendPlanFailure(request, response, plan);
+                return;
             }
 
             // Get the versions of all modules, depending on if they should be released or not.
-            final Map<MavenModule, String> releaseVersions = new HashMap<MavenModule, String>();
-            final Map<MavenModule, String> notReleaseVersions = new HashMap<MavenModule, String>();
-            for(final String currentModule : mavenModels.keySet()) {
-                final MavenModule module = modules.get(currentModule);
-                if(selectedModules.contains(currentModule)) {
-                    final JSONObject artifactSettings = artifacts.getJSONObject(module.getModuleName().artifactId);
-                    final String releaseVersion = artifactSettings.getString("version");
-                    releaseVersions.put(module, releaseVersion);
-                } else {
-                    final String latestVersion = versionHandler.getCurrentReleaseVersion(module.getModuleName());
-                    notReleaseVersions.put(module, latestVersion);
+            final Map<String, String> releaseVersions = new HashMap<String, String>();
+            final Map<String, String> notReleaseVersions = new HashMap<String, String>();
+            for(final String currentModule : plan.getReactor()) {
+                releaseVersions.put(currentModule, plan.getReleaseVersions().get(currentModule));
+            }
+            for(final String currentModule : plan.getPinnedVersions().keySet()) {
+                if(modules.containsKey(currentModule)) {
+                    notReleaseVersions.put(currentModule, plan.getPinnedVersions().get(currentModule));
                 }
             }
 
             ////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
-            // Action that saves the configuration settings that were active during the build and attaches this to
-            // the build results, so in the future the information, which properties were active during a build is
-            // still available.
-            final ParametersAction parameters = new ParametersAction();
-
-            final MinorReleaseInterceptorAction action =
-                    new MinorReleaseInterceptorAction(releaseVersions, notReleaseVersions);
+            // At this point the plan is schedulable, so all SNAPSHOT references found are pinned. If some
+            // versions couldn't be resolved, the release plugin still has to check for SNAPSHOTs itself.
+            final MinorReleaseInterceptorAction action = new MinorReleaseInterceptorAction(
+                    releaseVersions, notReleaseVersions, plan.isSnapshotsVerified());
 
             // Schedule the build.
             // This will make jenkins trigger the build. While performing the build all registered BuildWrappers
             // can contribute. Particularly the ReleaseBuildWrapper will react on the ReleaseCause cause class and
             // trigger the release build.
             //
-            // Depending on the result of the scheduleBuild method the user is then redirected to the main page of
-            // the current Job or redirected to a failure-page, if something went wrong.
-            if(project.scheduleBuild(0, new ReleaseCause(), parameters, action)) {
+            // The ReleaseLock decides if the build may be scheduled (see there).
+            // Depending on the result the user is then redirected to the main page of the current Job or
+            // redirected to a failure-page, if something went wrong.
+            final ReleaseLock.Result result = ReleaseLock.forJob(project).schedule(action);
+            if(result == ReleaseLock.Result.LOCKED) {
+                response.sendRedirect(request.getContextPath() + '/' + project.getUrl() +
+                        getUrlName() + "/failure?reason=locked");
+            } else if(result != ReleaseLock.Result.FAILED) {
                 response.sendRedirect(request.getContextPath() + '/' + project.getUrl());
             } else {
                 response.sendRedirect(request.getContextPath() + '/' + project.getUrl() +
@@ -372,6 +509,206 @@ public class ReleaseBuildAction implements Action {
         }
     }
 
+    /**
+     * Simulate a release and return the resulting plan as JSON document. Without any parameters
+     * a major release is simulated. Passing "type=minor" together with a comma separated list
+     * of module keys in the parameter "modules" simulates a minor release of these modules.
+     * If "autoSelectMissingModules=true" is passed, missing modules are added to the plan.
+     */
+    public void doPlan(StaplerRequest request, StaplerResponse response) throws IOException {
+        ReleasePlan plan = null;
+        try {
+            if("minor".equals(request.getParameter("type"))) {
+                final List<String> selectedModules = new ArrayList<String>();
+                if(request.getParameter("modules") != null) {
+                    for(final String moduleKey : request.getParameter("modules").split(",")) {
+                        if(moduleKey.trim().length() > 0) {
+                            selectedModules.add(moduleKey.trim());
+                        }
+                    }
+                }
+                final ReleasePlanner planner = getReleasePlanner();
+                if(planner != null) {
+                    plan = planner.planMinorRelease(selectedModules, null,
+                            Boolean.parseBoolean(request.getParameter("autoSelectMissingModules")),
+                            project.getRootModule().getVersion());
+                }
+            } else {
+                plan = getMajorReleasePlan(
+                        versionHandler.getNextReleaseVersion(project.getRootModule().getModuleName()));
+            }
+        } catch(Exception e) {
+            e.printStackTrace();
+        }
+
+        if(plan == null) {
+            response.sendError(StaplerResponse.SC_SERVICE_UNAVAILABLE, "The project is not initialized.");
+            return;
+        }
+        response.setContentType("application/json;charset=UTF-8");
+        response.setHeader("Content-Disposition", "attachment; filename=release-plan.json");
+        response.getWriter().print(plan.toJSON().toString(2));
+    }
+
+    /**
+     * @param releaseVersion version all modules will be released as.
+     * @return plan of a major release or null, if the project is not initialized.
+     */
+    protected ReleasePlan getMajorReleasePlan(String releaseVersion) throws IOException, XmlPullParserException {
+        final ReleasePlanner planner = getReleasePlanner();
+        if(planner == null) {
+            return null;
+        }
+        return planner.planMajorRelease(releaseVersion, project.getRootModule().getVersion());
+    }
+
+    /**
+     * @return planner for simulating releases or null, if the project is not initialized.
+     */
+    protected ReleasePlanner getReleasePlanner() throws IOException, XmlPullParserException {
+        final Map<String, Model> mavenModels = getMavenModels();
+        if(mavenModels == null) {
+            return null;
+        }
+        final String rootModuleKey = project.getRootModule().getModuleName().groupId + ":" +
+                project.getRootModule().getModuleName().artifactId;
+        return new ReleasePlanner(rootModuleKey, mavenModels, getReferencesClosure(), versionHandler);
+    }
+
+    protected void sendPlanFailure(StaplerRequest request, StaplerResponse response, ReleasePlan plan)
+            throws IOException {
+        final boolean missingModules = !plan.getMissingModules().isEmpty();
+        final List<String> moduleKeys = missingModules ? plan.getMissingModules() : plan.getBlockingSnapshots();
+        final StringBuilder moduleList = new StringBuilder();
+        for(final String moduleKey : moduleKeys) {
+            if(moduleList.length() > 0) {
+                moduleList.append(",");
+            }
+            moduleList.append(moduleKey);
+        }
+        response.sendRedirect(request.getContextPath() + '/' + project.getUrl() + getUrlName() +
+                "/failure?reason=" + (missingModules ? "missingModules" : "blockingSnapshots") +
+                "&moduleList=" + URLEncoder.encode(moduleList.toString(), "UTF-8"));
+    }
+
+    /**
+     * @return map containing the Maven model for each module of this project or null, if
+     * the project has not been checked out yet.
+     */
+    public synchronized Map<String, Model> getMavenModels() throws IOException, XmlPullParserException {
+        final MavenModuleSetBuild lastBuild = project.getLastBuild();
+        final int buildNumber = (lastBuild != null) ? lastBuild.getNumber() : -1;
+        if((mavenModelsCache == null) || (buildNumber != mavenModelsBuildNumber)) {
+            final File projectWorkDir = getProjectWorkDir();
+            if(projectWorkDir == null) {
+                return null;
+            }
+            final File rootPomFile = new File(projectWorkDir, "pom.xml");
+            if(!rootPomFile.exists()) {
+                return null;
+            }
+            final ReleaseMetrics metrics = ReleaseMetrics.get();
+            metrics.increment("poms.cache.miss");
+            long startTime = System.nanoTime();
+            mavenModelsCache = parseMavenModel(rootPomFile);
+            metrics.time("poms.parse", startTime);
+            startTime = System.nanoTime();
+            referencesClosureCache = calculateReferencesClosure(mavenModelsCache);
+            metrics.time("graph.build", startTime);
+            mavenModelsBuildNumber = buildNumber;
+        } else {
+            ReleaseMetrics.get().increment("poms.cache.hit");
+        }
+        return mavenModelsCache;
+    }
+
+    /**
+     * @return map containing all modules (transitively) depending on a given module.
+     */
+    protected synchronized Map<String, List<String>> getReferencesClosure()
+            throws IOException, XmlPullParserException {
+        if(getMavenModels() == null) {
+            return null;
+        }
+        return referencesClosureCache;
+    }
+
+    /**
+     * @param module a module of the project.
+     * @return true, if the module should be preselected for a minor release.
+     */
+    public boolean isPreselected(MavenModule module) {
+        if(versionHandler.isNotReleased(module.getModuleName())) {
+            return true;
+        }
+        return getPreselectedModules().contains(
+                module.getModuleName().groupId + ":" + module.getModuleName().artifactId);
+    }
+
+    /**
+     * Modules that have been changed since the last release as well as all modules depending
+     * on them should be released in the next minor release. The result is cached per tag and
+     * revision of the last build, so rendering the release page multiple times is cheap.
+     *
+     * @return keys of all modules changed since the last release and of their dependents.
+     */
+    public synchronized Set<String> getPreselectedModules() {
+        final MavenModuleSetBuild lastBuild = project.getLastBuild();
+        final SubversionTagAction tagAction = (lastBuild != null) ? lastBuild.getAction(SubversionTagAction.class) : null;
+        if((tagAction == null) || tagAction.getTags().isEmpty()) {
+            return Collections.emptySet();
+        }
+        final long revision = tagAction.getTags().keySet().iterator().next().revision;
+        if(versionHandler.isNotReleased(project.getRootModule().getModuleName())) {
+            return Collections.emptySet();
+        }
+        final String tagName = versionHandler.getCurrentReleaseVersion(project.getRootModule().getModuleName());
+
+        final String cacheKey = tagName + "@" + revision;
+        if((preselectedModulesCache == null) || !cacheKey.equals(preselectedModulesKey)) {
+            final Set<String> preselectedModules = new HashSet<String>();
+            try {
+                final Map<String, Model> mavenModels = getMavenModels();
+                if(mavenModels != null) {
+                    final Map<String, List<String>> referencesClosure = getReferencesClosure();
+                    final ChangedModulesDetector detector = new ChangedModulesDetector(project, mavenModels);
+                    for(final String moduleKey : detector.getChangedModules(tagName, revision)) {
+                        preselectedModules.add(moduleKey);
+                        if(referencesClosure.containsKey(moduleKey)) {
+                            preselectedModules.addAll(referencesClosure.get(moduleKey));
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            preselectedModulesCache = preselectedModules;
+            preselectedModulesKey = cacheKey;
+        }
+        return preselectedModulesCache;
+    }
+
+    /**
+     * @return map containing the duration in milliseconds each module took in the last
+     * successful build of this project.
+     */
+    public Map<String, Long> getModuleDurations() {
+        final Map<String, Long> moduleDurations = new HashMap<String, Long>();
+        final MavenModuleSetBuild lastSuccessfulBuild = project.getLastSuccessfulBuild();
+        if(lastSuccessfulBuild == null) {
+            return moduleDurations;
+        }
+        for(final Map.Entry<MavenModule, MavenBuild> moduleBuild :
+                lastSuccessfulBuild.getModuleLastBuilds().entrySet()) {
+            if(moduleBuild.getValue() != null) {
+                final MavenModule module = moduleBuild.getKey();
+                moduleDurations.put(module.getModuleName().groupId + ":" + module.getModuleName().artifactId,
+                        moduleBuild.getValue().getDuration());
+            }
+        }
+        return moduleDurations;
+    }
+
     public VersionHandler getVersionHandler() {
         return versionHandler;
     }
@@ -441,6 +778,36 @@ public class ReleaseBuildAction implements Action {
         return result;
     }
 
+    /**
+     * Build an inverse view of the dependencies of all modules and calculate its transitive closure.
+     *
+     * @param mavenModels map containing all Maven Models of all modules.
+     * @return map containing all modules (transitively) depending on a given module.
+     */
+    protected Map<String, List<String>> calculateReferencesClosure(Map<String, Model> mavenModels) {
+        // Prepare a map containing information about which modules depend on a particular artifact.
+        final Map<String, List<String>> references = new HashMap<String, List<String>>();
+        for(final String curModuleKey : mavenModels.keySet()) {
+            final List<String> moduleReferences = prepareDependenciesMap(curModuleKey, mavenModels);
+            for(final String dependencyKey : moduleReferences) {
+                if(mavenModels.containsKey(dependencyKey)) {
+                    if(!references.containsKey(dependencyKey)) {
+                        references.put(dependencyKey, new ArrayList<String>());
+                    }
+                    references.get(dependencyKey).add(curModuleKey);
+                }
+            }
+        }
+
+        // Create a transitive closure of all dependencies, as processing the modules directly doesn't
+        // directly handle transitive dependencies.
+        final Map<String, List<String>> referencesClosure = new HashMap<String, List<String>>();
+        for(final String curModuleKey : mavenModels.keySet()) {
+            calculateDependencyClosure(curModuleKey, references, referencesClosure);
+        }
+        return referencesClosure;
+    }
+
     /**
      * Method for make sure that the dependencies contain all transitive dependencies.
      * @param curModuleKey current module key.
@@ -449,21 +816,60 @@ public class ReleaseBuildAction implements Action {
      */
     protected List<String> calculateDependencyClosure(
             String curModuleKey, Map<String, List<String>> dependencies) {
-        final List<String> result = new ArrayList<String>();
+        return calculateDependencyClosure(curModuleKey, dependencies, new HashMap<String, List<String>>());
+    }
 
-        if(dependencies.containsKey(curModuleKey)) {
-            for(final String currentModuleKey : dependencies.get(curModuleKey)) {
-                result.add(currentModuleKey);
-                final List<String> dependencyClosure = calculateDependencyClosure(currentModuleKey, dependencies);
-                for(final String dependencyKey : dependencyClosure) {
-                    if(!result.contains(dependencyKey)) {
-                        result.add(dependencyKey);
+    /**
+     * Same as calculateDependencyClosure(String, Map), but remembers the closures of all modules
+     * already processed. Without this diamond shaped dependency graphs would be processed over
+     * and over again. The modules are processed with an explicit stack instead of recursively,
+     * so long chains of dependencies can't overflow the stack of the request thread.
+     * @param curModuleKey current module key.
+     * @param dependencies map of all non-transitive dependencies.
+     * @param closures map of all closures already calculated.
+     * @return list of transitive dependencies.
+     */
+    protected List<String> calculateDependencyClosure(String curModuleKey, Map<String, List<String>> dependencies,
+                                                      Map<String, List<String>> closures) {
+        final Deque<String> stack = new ArrayDeque<String>();
+        final Set<String> inProgress = new HashSet<String>();
+        stack.push(curModuleKey);
+        while(!stack.isEmpty()) {
+            final String moduleKey = stack.peek();
+            if(closures.containsKey(moduleKey)) {
+                stack.pop();
+                continue;
+            }
+
+            // Calculate the closures of all dependent modules first. Modules that are still in
+            // progress are part of a cycle, which Maven wouldn't build anyway.
+            boolean pending = false;
+            if(inProgress.add(moduleKey) && dependencies.containsKey(moduleKey)) {
+                for(final String currentModuleKey : dependencies.get(moduleKey)) {
+                    if(!closures.containsKey(currentModuleKey) && !inProgress.contains(currentModuleKey)) {
+                        stack.push(currentModuleKey);
+                        pending = true;
                     }
                 }
             }
-        }
+            if(pending) {
+                continue;
+            }
 
-        return result;
+            final Set<String> result = new LinkedHashSet<String>();
+            if(dependencies.containsKey(moduleKey)) {
+                for(final String currentModuleKey : dependencies.get(moduleKey)) {
+                    result.add(currentModuleKey);
+                    if(closures.containsKey(currentModuleKey)) {
+                        result.addAll(closures.get(currentModuleKey));
+                    }
+                }
+            }
+            closures.put(moduleKey, new ArrayList<String>(result));
+            inProgress.remove(moduleKey);
+            stack.pop();
+        }
+        return closures.get(curModuleKey);
     }
 
 }
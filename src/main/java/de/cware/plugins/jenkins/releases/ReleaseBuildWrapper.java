@@ -1,15 +1,44 @@
 package de.cware.plugins.jenkins.releases;
 
+import de.cware.plugins.jenkins.releases.deploy.StagedDeployer;
+import de.cware.plugins.jenkins.releases.history.ReleaseRecord;
+import de.cware.plugins.jenkins.releases.history.ReleaseRecordAction;
+import de.cware.plugins.jenkins.releases.plan.ParallelismAdvice;
+import de.cware.plugins.jenkins.releases.plan.ParallelismAdvisor;
+import de.cware.plugins.jenkins.releases.reuse.ArtifactPromoter;
+import de.cware.plugins.jenkins.releases.reuse.ContentHashCalculator;
+import de.cware.plugins.jenkins.releases.reuse.SourceHasher;
+import de.cware.plugins.jenkins.releases.scm.ChangedModulesDetector;
+import de.cware.plugins.jenkins.releases.scm.ReleasePomRewriter;
+import de.cware.plugins.jenkins.releases.scm.ServerSideTagger;
+import de.cware.plugins.jenkins.releases.versions.Booter;
+import de.cware.plugins.jenkins.releases.versions.DependencyPrewarmer;
+import de.cware.plugins.jenkins.releases.versions.DeploymentChecker;
+import hudson.FilePath;
 import hudson.Launcher;
+import hudson.maven.MavenModule;
 import hudson.maven.MavenModuleSet;
+import hudson.maven.MavenModuleSetBuild;
 import hudson.model.*;
+import hudson.scm.SubversionSCM;
+import hudson.scm.SubversionTagAction;
 import hudson.tasks.BuildWrapper;
+import hudson.tasks.Maven;
+import jenkins.mvn.GlobalSettingsProvider;
+import jenkins.mvn.SettingsProvider;
 
+import org.apache.maven.model.Model;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNURL;
 
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.Collection;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Created with IntelliJ IDEA.
@@ -19,12 +48,32 @@ import java.util.Collection;
  */
 public class ReleaseBuildWrapper extends BuildWrapper {
 
+    private static final int PREWARM_THREADS = 8;
+    private static final Pattern REPO_LOCAL_PATTERN = Pattern.compile("-Dmaven\\.repo\\.local=[\"']?([^\\s\"']+)");
+
     private String mavenArgs;
 
     private String mavenRepoUrl;
     private String mavenRepoUser;
     private String mavenRepoPassword;
 
+    private boolean lightweightInitialize;
+    private boolean prewarmDependencies;
+    private boolean adaptiveParallelism;
+    private boolean reuseUnchangedModules;
+    private boolean serverSideTagging;
+    private boolean nativeMaintenance;
+    private int maxReactorThreads;
+    private int batchWindowSeconds;
+    private String releaseLabel;
+    private boolean reserveReleaseNodes;
+    private boolean prioritizeReleases;
+
+    private boolean stagedDeployment;
+    private String deployRepoUrl;
+    private int deployConcurrency;
+    private int deployRetries;
+
     @DataBoundConstructor
     public ReleaseBuildWrapper(String mavenArgs, String mavenRepoUrl, String mavenRepoUser, String mavenRepoPassword) {
         this.mavenArgs = mavenArgs;
@@ -62,7 +111,114 @@ public class ReleaseBuildWrapper extends BuildWrapper {
     @Override
     public Collection<? extends Action> getProjectActions(AbstractProject job) {
         final ReleaseBuildAction releaseBuildAction = new ReleaseBuildAction((MavenModuleSet) job);
-        return Arrays.asList(releaseBuildAction);
+        final ReleaseTimelineTrendAction timelineTrendAction = new ReleaseTimelineTrendAction((MavenModuleSet) job);
+        return Arrays.asList(releaseBuildAction, timelineTrendAction);
+    }
+
+    /**
+     * Release builds get an additional ReleaseProgressAction, which is kept up to date by
+     * parsing the build log. The log of all other builds is not touched.
+     */
+    @Override
+    public OutputStream decorateLogger(AbstractBuild build, OutputStream logger)
+            throws IOException, InterruptedException, Run.RunnerAbortedException {
+        final ReleaseQueueTimeAction queueTimeAction = build.getAction(ReleaseQueueTimeAction.class);
+        if(queueTimeAction != null) {
+            queueTimeAction.started(build.getTimeInMillis());
+        }
+
+        final ReleaseProgressAction progressAction = createProgressAction(build);
+        if(progressAction == null) {
+            return logger;
+        }
+        build.addAction(progressAction);
+        build.addAction(new ReleaseRecordAction(createReleaseRecord(build, progressAction)));
+
+        final ReleaseLogParser parser = new ReleaseLogParser(logger, build.getCharset());
+        parser.addListener(progressAction);
+        if(!progressAction.getAmbiguousArtifactIds().isEmpty()) {
+            logger.write(("[release] Several modules share the artifactIds " +
+                    progressAction.getAmbiguousArtifactIds() +
+                    ", their progress is only tracked with Maven 3.6 or later\n").getBytes(build.getCharset()));
+        }
+
+        // Trace the phases of the release, starting with the time the build waited in the queue.
+        final ReleaseTimelineAction timelineAction = new ReleaseTimelineAction(
+                (queueTimeAction != null) ? queueTimeAction.getQueuedSince() : build.getTimeInMillis());
+        if(queueTimeAction != null) {
+            timelineAction.add(ReleaseTimelineAction.QUEUE, null, queueTimeAction.getQueuedSince(),
+                    build.getTimeInMillis());
+        }
+        timelineAction.begin(ReleaseTimelineAction.CHECKOUT, null);
+        build.addAction(timelineAction);
+        parser.addListener(timelineAction);
+
+        // Without the release plugin, Maven deploys the modules directly.
+        final MajorReleaseInterceptorAction majorAction = build.getAction(MajorReleaseInterceptorAction.class);
+        if((majorAction != null) && majorAction.isServerSideTagging()) {
+            final String goals = ((MavenModuleSet) build.getProject()).getGoals();
+            parser.setDirectPhase("perform", isParallel(goals) || isParallel(mavenArgs));
+        }
+        return parser;
+    }
+
+    /**
+     * @return true, if the given Maven arguments make Maven build the reactor with several threads.
+     */
+    protected static boolean isParallel(String arguments) {
+        return (arguments != null) && arguments.matches("(?s)(.*\\s)?(-T\\s*|--threads[\\s=])\\d.*");
+    }
+
+    /**
+     * @param build the current build.
+     * @return progress action for the release performed by the build or null, if it is no release build.
+     */
+    protected ReleaseProgressAction createProgressAction(AbstractBuild build) {
+        final MavenModuleSet project = (MavenModuleSet) build.getProject();
+
+        final MajorReleaseInterceptorAction majorAction = build.getAction(MajorReleaseInterceptorAction.class);
+        if((majorAction != null) && (majorAction.getMajorReleaseVersion() != null)) {
+            final Map<String, String> releaseVersions = new LinkedHashMap<String, String>();
+            for(final MavenModule module : project.getModules()) {
+                releaseVersions.put(module.getModuleName().groupId + ":" + module.getModuleName().artifactId,
+                        majorAction.getMajorReleaseVersion());
+            }
+            return new ReleaseProgressAction(majorAction.getMajorReleaseVersion(), releaseVersions,
+                    Collections.<String>emptyList());
+        }
+
+        final MinorReleaseInterceptorAction minorAction = build.getAction(MinorReleaseInterceptorAction.class);
+        if((minorAction != null) && (minorAction.getReleaseVersions() != null)) {
+            final String rootModuleKey = project.getRootModule().getModuleName().groupId + ":" +
+                    project.getRootModule().getModuleName().artifactId;
+            return new ReleaseProgressAction(minorAction.getReleaseVersions().get(rootModuleKey),
+                    minorAction.getReleaseVersions(), Collections.<String>emptyList());
+        }
+
+        final ResumeReleaseInterceptorAction resumeAction = build.getAction(ResumeReleaseInterceptorAction.class);
+        if(resumeAction != null) {
+            // The deployed modules are only known after checking the repository in setUp.
+            final ReleaseProgressAction progressAction = new ReleaseProgressAction(resumeAction.getTag(),
+                    resumeAction.getReleaseVersions(), Collections.<String>emptyList());
+            // The tag already exists, so the release can be resumed again, even if Maven fails early.
+            progressAction.phaseStarted("perform");
+            return progressAction;
+        }
+
+        return null;
+    }
+
+    protected ReleaseRecord createReleaseRecord(AbstractBuild build, ReleaseProgressAction progressAction) {
+        final ReleaseRecord.Type type;
+        if(build.getAction(MajorReleaseInterceptorAction.class) != null) {
+            type = ReleaseRecord.Type.MAJOR;
+        } else if(build.getAction(MinorReleaseInterceptorAction.class) != null) {
+            type = ReleaseRecord.Type.MINOR;
+        } else {
+            type = ReleaseRecord.Type.RESUME;
+        }
+        return new ReleaseRecord(type, progressAction.getTag(), progressAction.getReleaseVersions(),
+                build.getTimeInMillis(), null);
     }
 
     /**
@@ -77,8 +233,566 @@ public class ReleaseBuildWrapper extends BuildWrapper {
     @Override
     public Environment setUp(AbstractBuild build, Launcher launcher, BuildListener listener)
             throws IOException, InterruptedException {
-        // Return an empty environment as we are not changing anything.
-        return new Environment() {};
+        // The workspace has been checked out.
+        final ReleaseTimelineAction timelineAction = build.getAction(ReleaseTimelineAction.class);
+        if(timelineAction != null) {
+            timelineAction.end(ReleaseTimelineAction.CHECKOUT);
+        }
+
+        // In lightweight mode Maven doesn't do anything, so we parse the poms here in order to have
+        // the models available as soon as the initialization is finished.
+        final InitializeInterceptorAction initializeAction = build.getAction(InitializeInterceptorAction.class);
+        if((initializeAction != null) && initializeAction.isLightweight()) {
+            final ReleaseBuildAction releaseBuildAction = build.getProject().getAction(ReleaseBuildAction.class);
+            if(releaseBuildAction != null) {
+                try {
+                    final Map<String, Model> mavenModels = releaseBuildAction.getMavenModels();
+                    if(mavenModels != null) {
+                        listener.getLogger().println("[release] Discovered " + mavenModels.size() + " modules.");
+                    } else {
+                        listener.getLogger().println("[release] No pom.xml found in the workspace.");
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace(listener.error("[release] Failed parsing the poms"));
+                }
+            }
+        }
+
+        // Don't trust the log of the failed attempt and check which modules actually made it into
+        // the repository, before the remaining modules are deployed.
+        final ResumeReleaseInterceptorAction resumeAction = build.getAction(ResumeReleaseInterceptorAction.class);
+        if((resumeAction != null) && !checkDeployedModules(build, resumeAction, listener)) {
+            return null;
+        }
+
+        // Remove anything a previous release left in the staging directory.
+        if(isStagedDeployment() && isPerformingRelease(build)) {
+            getStagingDirectory(build).deleteRecursive();
+        }
+
+        // Fill the local repository of the node, before Maven starts resolving dependencies serially.
+        if(isPrewarmDependencies() && isPerformingRelease(build)) {
+            prewarmDependencies(build, launcher, listener);
+        }
+
+        // Create the tag on the server, before anything is deployed.
+        final MajorReleaseInterceptorAction majorAction = build.getAction(MajorReleaseInterceptorAction.class);
+        if((majorAction != null) && (majorAction.getMajorReleaseVersion() != null) &&
+                majorAction.isServerSideTagging()) {
+            final ReleaseTimelineAction.Span tagSpan = (timelineAction != null) ?
+                    timelineAction.begin(ReleaseTimelineAction.TAG, null) : null;
+            final boolean tagged = createServerSideTag(build, majorAction.getMajorReleaseVersion(), listener);
+            if(timelineAction != null) {
+                timelineAction.end(tagSpan);
+            }
+            if(!tagged) {
+                return null;
+            }
+        }
+
+        // Exclude modules that haven't changed since the last major release from the build.
+        if(isReuseUnchangedModules() && (majorAction != null) && (majorAction.getMajorReleaseVersion() != null)) {
+            reuseUnchangedModules(build, majorAction.getMajorReleaseVersion(), listener);
+        }
+
+        // Choose the number of threads used for building the reactor of the release.
+        if(isAdaptiveParallelism() && isPerformingRelease(build)) {
+            chooseParallelism(build, launcher, listener);
+        }
+
+        return new Environment() {
+            @Override
+            public boolean tearDown(AbstractBuild build, BuildListener listener)
+                    throws IOException, InterruptedException {
+                // Restore the SNAPSHOT versions in the poms of the workspace.
+                final MajorReleaseInterceptorAction majorAction = build.getAction(MajorReleaseInterceptorAction.class);
+                if((majorAction != null) && majorAction.isServerSideTagging()) {
+                    build.getWorkspace().act(ReleasePomRewriter.restore(getPomPaths((MavenModuleSet) build.getProject())));
+                }
+
+                final ReleaseParallelismAction parallelismAction = build.getAction(ReleaseParallelismAction.class);
+                if(parallelismAction != null) {
+                    parallelismAction.finished();
+                    listener.getLogger().println("[release] Release built with " +
+                            parallelismAction.getThreads() + " threads in " + parallelismAction.getWallTime() + "ms");
+                }
+                final ReleaseTimelineAction timelineAction = build.getAction(ReleaseTimelineAction.class);
+                if(timelineAction != null) {
+                    timelineAction.finished();
+                }
+                final Result result = build.getResult();
+                final ReleaseRecordAction recordAction = build.getAction(ReleaseRecordAction.class);
+                if((recordAction != null) && (recordAction.getRecord() != null)) {
+                    recordAction.update(recordAction.getRecord().withResult(
+                            ((result != null) ? result : Result.SUCCESS).toString()));
+                }
+                if((result != null) && result.isWorseThan(Result.SUCCESS)) {
+                    return true;
+                }
+                if(isStagedDeployment() && isPerformingRelease(build)) {
+                    final ReleaseTimelineAction.Span deploySpan = (timelineAction != null) ?
+                            timelineAction.begin(ReleaseTimelineAction.DEPLOY, null) : null;
+                    try {
+                        if(!deployStagedArtifacts(build, listener)) {
+                            return false;
+                        }
+                    } finally {
+                        if(timelineAction != null) {
+                            timelineAction.end(deploySpan);
+                        }
+                    }
+                }
+
+                // Only now that the rest of the release has been built and deployed, the unchanged
+                // modules are published in the new version.
+                final ReleaseHashesAction hashesAction = build.getAction(ReleaseHashesAction.class);
+                if((hashesAction != null) && !hashesAction.getReusedModules().isEmpty()) {
+                    return promoteReusedModules(build, hashesAction, listener);
+                }
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Add all arguments the forked Maven processes of the release plugin require.
+     *
+     * @param build the current build.
+     * @param releaseArguments the arguments for the forked Maven processes.
+     */
+    public void contributeReleaseArguments(MavenModuleSetBuild build, ReleaseArguments releaseArguments) {
+        // Make the forked Maven process deploy into the staging directory instead of the release
+        // repository. The artifacts are pushed to the repository after Maven has finished.
+        if(isStagedDeployment() && (build.getWorkspace() != null)) {
+            releaseArguments.add("-DaltDeploymentRepository=release-staging::default::file://" +
+                    getStagingDirectory(build).getRemote());
+        }
+
+        // Modules that have been promoted from the previous release must not be built again.
+        final ReleaseHashesAction hashesAction = build.getAction(ReleaseHashesAction.class);
+        if((hashesAction != null) && !hashesAction.getReusedModules().isEmpty()) {
+            final StringBuilder projectsFragment = new StringBuilder();
+            for(final String moduleKey : hashesAction.getReusedModules()) {
+                if(projectsFragment.length() > 0) {
+                    projectsFragment.append(",");
+                }
+                projectsFragment.append("!").append(moduleKey);
+            }
+            releaseArguments.add("--projects").add(projectsFragment.toString());
+        }
+
+        // Build the reactor of the forked Maven processes with the chosen number of threads.
+        final ReleaseParallelismAction parallelismAction = build.getAction(ReleaseParallelismAction.class);
+        if((parallelismAction != null) && (parallelismAction.getThreads() > 1)) {
+            releaseArguments.add("-T").add(Integer.toString(parallelismAction.getThreads()));
+        }
+    }
+
+    /**
+     * @param build the current build.
+     * @return true, if the build will deploy release artifacts.
+     */
+    protected boolean isPerformingRelease(AbstractBuild build) {
+        return (build.getAction(MajorReleaseInterceptorAction.class) != null) ||
+                (build.getAction(MinorReleaseInterceptorAction.class) != null) ||
+                ((build.getAction(ResumeReleaseInterceptorAction.class) != null) &&
+                        !build.getAction(ResumeReleaseInterceptorAction.class).isFinished());
+    }
+
+    /**
+     * Change the versions in the poms of the workspace to the release version and create the
+     * tag on the Subversion server as a copy of the revision the workspace was checked out
+     * from. Only the changed poms are committed to the tag. The workspace is then used for
+     * building and deploying the release, so no fresh checkout of the tag is needed.
+     *
+     * @return true, if the tag was created.
+     */
+    protected boolean createServerSideTag(AbstractBuild build, String releaseVersion, BuildListener listener)
+            throws IOException, InterruptedException {
+        final MavenModuleSet project = (MavenModuleSet) build.getProject();
+        final SubversionTagAction tagAction = build.getAction(SubversionTagAction.class);
+        if(!(project.getScm() instanceof SubversionSCM) || (tagAction == null) || tagAction.getTags().isEmpty()) {
+            listener.error("[release] Server side tagging requires a Subversion checkout");
+            return false;
+        }
+        final ReleaseBuildAction releaseBuildAction = project.getAction(ReleaseBuildAction.class);
+        final long startTime = System.currentTimeMillis();
+        try {
+            final SubversionSCM.SvnInfo svnInfo = tagAction.getTags().keySet().iterator().next();
+            final SVNURL sourceUrl = SVNURL.parseURIEncoded(svnInfo.url);
+            final SVNURL tagUrl = new ChangedModulesDetector(project, releaseBuildAction.getMavenModels())
+                    .getTagUrl(sourceUrl, releaseVersion);
+            if(tagUrl == null) {
+                listener.error("[release] Could not determine the tag url for " + sourceUrl);
+                return false;
+            }
+
+            // In a major release all modules are released with the same version, no matter
+            // which SNAPSHOT version they currently have.
+            final Map<String, String> releaseVersions = new HashMap<String, String>();
+            for(final MavenModule module : project.getModules()) {
+                releaseVersions.put(module.getModuleName().groupId + ":" + module.getModuleName().artifactId,
+                        releaseVersion);
+            }
+            // The rewriter refuses to release poms, which still reference SNAPSHOT versions.
+            final List<String> pomPaths = getPomPaths(project);
+            final Map<String, byte[][]> changedPoms;
+            try {
+                changedPoms = build.getWorkspace().act(ReleasePomRewriter.rewrite(pomPaths, releaseVersions));
+            } catch (IOException e) {
+                e.printStackTrace(listener.error("[release] Rewriting the poms failed"));
+                build.getWorkspace().act(ReleasePomRewriter.restore(pomPaths));
+                return false;
+            }
+
+            // The paths in the repository are relative to the checkout location, not to the workspace.
+            final String localDir = ((SubversionSCM) project.getScm()).getLocations()[0].getLocalDir();
+            final String localDirPrefix = ((localDir == null) || ".".equals(localDir)) ? "" : localDir + "/";
+            final Map<String, byte[][]> changedFiles = new LinkedHashMap<String, byte[][]>();
+            for(final Map.Entry<String, byte[][]> changedPom : changedPoms.entrySet()) {
+                final String pomPath = changedPom.getKey();
+                changedFiles.put(pomPath.startsWith(localDirPrefix) ?
+                        pomPath.substring(localDirPrefix.length()) : pomPath, changedPom.getValue());
+            }
+
+            final long revision = new ServerSideTagger(project).createTag(sourceUrl, svnInfo.revision, tagUrl,
+                    changedFiles, releaseVersion);
+            listener.getLogger().println("[release] Created tag " + tagUrl + " in revision " + revision + " with " +
+                    changedFiles.size() + " changed poms in " + (System.currentTimeMillis() - startTime) + "ms");
+            return true;
+        } catch (SVNException e) {
+            e.printStackTrace(listener.error("[release] Creating the tag failed"));
+        } catch (XmlPullParserException e) {
+            e.printStackTrace(listener.error("[release] Failed parsing the poms"));
+        }
+        // Leave the workspace the way it was.
+        build.getWorkspace().act(ReleasePomRewriter.restore(getPomPaths(project)));
+        return false;
+    }
+
+    /**
+     * @return paths of the poms of all modules relative to the workspace.
+     */
+    protected List<String> getPomPaths(MavenModuleSet project) {
+        final List<String> pomPaths = new ArrayList<String>();
+        for(final MavenModule module : project.getModules()) {
+            final String relativePath = module.getRelativePath().replace('\\', '/');
+            pomPaths.add((relativePath.length() > 0) ? relativePath + "/pom.xml" : "pom.xml");
+        }
+        return pomPaths;
+    }
+
+    /**
+     * Check which modules of the resumed release are deployed in the repository. Modules which
+     * are only partially deployed can neither be skipped nor deployed again, so the release
+     * can't be resumed, until they have been removed from the repository.
+     *
+     * @return true, if the release can be resumed.
+     */
+    protected boolean checkDeployedModules(AbstractBuild build, ResumeReleaseInterceptorAction resumeAction,
+                                           BuildListener listener) throws InterruptedException {
+        final ReleaseBuildAction releaseBuildAction = build.getProject().getAction(ReleaseBuildAction.class);
+        // Get the packaging of all modules, so we know which artifacts to look for.
+        final Map<String, String> packagings = new HashMap<String, String>();
+        try {
+            final Map<String, Model> mavenModels = (releaseBuildAction != null) ?
+                    releaseBuildAction.getMavenModels() : null;
+            if(mavenModels != null) {
+                for(final Map.Entry<String, Model> mavenModel : mavenModels.entrySet()) {
+                    packagings.put(mavenModel.getKey(), mavenModel.getValue().getPackaging());
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace(listener.error("[release] Failed parsing the poms"));
+        }
+
+        final long startTime = System.currentTimeMillis();
+        final Map<String, DeploymentChecker.Deployment> deployments;
+        try {
+            deployments = new DeploymentChecker(this, build.getProject().getFullName())
+                    .getDeployments(resumeAction.getReleaseVersions(), packagings, 8);
+        } catch (IOException e) {
+            e.printStackTrace(listener.error("[release] Checking the deployed modules failed"));
+            return false;
+        }
+        final List<String> deployedModules = new ArrayList<String>();
+        final List<String> partialModules = new ArrayList<String>();
+        for(final Map.Entry<String, DeploymentChecker.Deployment> deployment : deployments.entrySet()) {
+            if(deployment.getValue() == DeploymentChecker.Deployment.DEPLOYED) {
+                deployedModules.add(deployment.getKey());
+            } else if(deployment.getValue() == DeploymentChecker.Deployment.PARTIAL) {
+                partialModules.add(deployment.getKey());
+            }
+        }
+        if(!partialModules.isEmpty()) {
+            listener.error("[release] The modules " + partialModules + " have only partially been deployed. " +
+                    "Remove their artifacts of the release from the repository and resume the release again.");
+            return false;
+        }
+
+        resumeAction.setDeployedModules(deployedModules);
+        final ReleaseProgressAction progressAction = build.getAction(ReleaseProgressAction.class);
+        if(progressAction != null) {
+            for(final String moduleKey : deployedModules) {
+                progressAction.markDeployed(moduleKey);
+            }
+        }
+        listener.getLogger().println("[release] " + deployedModules.size() + " of " + deployments.size() +
+                " modules have already been deployed, checked in " + (System.currentTimeMillis() - startTime) + "ms");
+        if(resumeAction.isFinished()) {
+            listener.getLogger().println("[release] All modules have already been deployed, " +
+                    "finishing the release without running release:perform.");
+        }
+        return true;
+    }
+
+    /**
+     * Calculate the content hashes of all modules and compare them with the ones of the last
+     * major release. Modules with unchanged content hashes, which none of the built modules
+     * require, are excluded from the Maven build and promoted to the new version after the
+     * release has been built successfully. The root module is always built, as the release
+     * plugin is executed on it.
+     */
+    protected void reuseUnchangedModules(AbstractBuild build, String releaseVersion, BuildListener listener)
+            throws IOException, InterruptedException {
+        final ReleaseBuildAction releaseBuildAction = build.getProject().getAction(ReleaseBuildAction.class);
+        if((releaseBuildAction == null) || (build.getWorkspace() == null)) {
+            return;
+        }
+        final MavenModuleSet project = (MavenModuleSet) build.getProject();
+        final Map<String, Model> mavenModels;
+        try {
+            mavenModels = releaseBuildAction.getMavenModels();
+        } catch (XmlPullParserException e) {
+            e.printStackTrace(listener.error("[release] Failed parsing the poms"));
+            return;
+        }
+        if(mavenModels == null) {
+            return;
+        }
+
+        final Map<String, String> modulePaths = new HashMap<String, String>();
+        for(final MavenModule module : project.getModules()) {
+            final String moduleKey = module.getModuleName().groupId + ":" + module.getModuleName().artifactId;
+            if(mavenModels.containsKey(moduleKey)) {
+                modulePaths.put(moduleKey, module.getRelativePath());
+            }
+        }
+        final Map<String, String> sourceHashes = build.getWorkspace().act(new SourceHasher(modulePaths));
+        final Map<String, String> contentHashes = new ContentHashCalculator(mavenModels, sourceHashes).calculate();
+
+        final ReleaseHashesAction previousRelease = getPreviousReleaseHashes(build);
+        final List<String> reusedModules = new ArrayList<String>();
+        int unchangedModules = 0;
+        if(previousRelease != null) {
+            final String rootModuleKey = project.getRootModule().getModuleName().groupId + ":" +
+                    project.getRootModule().getModuleName().artifactId;
+            for(final Map.Entry<String, String> contentHash : contentHashes.entrySet()) {
+                if(contentHash.getValue().equals(previousRelease.getContentHashes().get(contentHash.getKey()))) {
+                    unchangedModules++;
+                }
+            }
+            // Unchanged modules required by the modules that are built have to be built too, as
+            // they are only promoted to the new version after the build.
+            reusedModules.addAll(new ContentHashCalculator(mavenModels, sourceHashes).getReusableModules(
+                    contentHashes, previousRelease.getContentHashes(), Collections.singleton(rootModuleKey)));
+        }
+
+        build.addAction(new ReleaseHashesAction(releaseVersion, contentHashes, reusedModules,
+                (previousRelease != null) ? previousRelease.getReleaseVersion() : null));
+        listener.getLogger().println("[release] " + unchangedModules + " of " + contentHashes.size() +
+                " modules are unchanged since " + ((previousRelease != null) ?
+                previousRelease.getReleaseVersion() : "- no previous release -") + ", " + reusedModules.size() +
+                " of them are not required by the built modules and will be promoted after the release has been built");
+    }
+
+    /**
+     * Promote the artifacts of the unchanged modules from the previous release to the new version.
+     * As the modules haven't been built, the release is incomplete if one of them can't be promoted.
+     *
+     * @return true, if all unchanged modules have been promoted.
+     */
+    protected boolean promoteReusedModules(AbstractBuild build, ReleaseHashesAction hashesAction,
+                                           BuildListener listener) throws IOException {
+        final ReleaseBuildAction releaseBuildAction = build.getProject().getAction(ReleaseBuildAction.class);
+        final Map<String, Model> mavenModels;
+        try {
+            mavenModels = (releaseBuildAction != null) ? releaseBuildAction.getMavenModels() : null;
+        } catch (XmlPullParserException e) {
+            e.printStackTrace(listener.error("[release] Failed parsing the poms"));
+            return false;
+        }
+        if(mavenModels == null) {
+            listener.error("[release] The modules to promote are unknown");
+            return false;
+        }
+
+        final long startTime = System.currentTimeMillis();
+        final ReleaseProgressAction progressAction = build.getAction(ReleaseProgressAction.class);
+        final ArtifactPromoter promoter = new ArtifactPromoter(
+                Booter.newRemoteRepository(mavenRepoUrl, mavenRepoUser, mavenRepoPassword),
+                Booter.newRemoteRepository(getDeployRepoUrl(), mavenRepoUser, mavenRepoPassword),
+                listener.getLogger(), build.getProject().getFullName());
+        int promoted = 0;
+        try {
+            for(final String moduleKey : hashesAction.getReusedModules()) {
+                try {
+                    promoter.promote(moduleKey, mavenModels.get(moduleKey).getPackaging(),
+                            hashesAction.getPreviousReleaseVersion(), hashesAction.getReleaseVersion(),
+                            mavenModels.keySet());
+                    if(progressAction != null) {
+                        progressAction.markDeployed(moduleKey);
+                    }
+                    promoted++;
+                } catch (IOException e) {
+                    e.printStackTrace(listener.error("[release] Promoting " + moduleKey + " failed"));
+                }
+            }
+        } finally {
+            promoter.dispose();
+        }
+        listener.getLogger().println("[release] Promoted " + promoted + " of " +
+                hashesAction.getReusedModules().size() + " unchanged modules from " +
+                hashesAction.getPreviousReleaseVersion() + " in " + (System.currentTimeMillis() - startTime) + "ms");
+        return promoted == hashesAction.getReusedModules().size();
+    }
+
+    /**
+     * @return content hashes of the last successful major release before the given build or null.
+     */
+    protected ReleaseHashesAction getPreviousReleaseHashes(AbstractBuild build) {
+        AbstractBuild previousBuild = build.getPreviousBuild();
+        while(previousBuild != null) {
+            final ReleaseHashesAction hashesAction = previousBuild.getAction(ReleaseHashesAction.class);
+            if((hashesAction != null) && (previousBuild.getResult() == Result.SUCCESS)) {
+                return hashesAction;
+            }
+            previousBuild = previousBuild.getPreviousBuild();
+        }
+        return null;
+    }
+
+    /**
+     * Work out how many threads Maven should use for the modules of the release, based on the
+     * dependency graph and the durations of the modules in the last successful build. Maven
+     * never gets more threads than the node building the release has processors.
+     */
+    protected void chooseParallelism(AbstractBuild build, Launcher launcher, BuildListener listener)
+            throws InterruptedException {
+        final ReleaseBuildAction releaseBuildAction = build.getProject().getAction(ReleaseBuildAction.class);
+        final ReleaseProgressAction progressAction = build.getAction(ReleaseProgressAction.class);
+        if((releaseBuildAction == null) || (progressAction == null)) {
+            return;
+        }
+        try {
+            final Map<String, Model> mavenModels = releaseBuildAction.getMavenModels();
+            if(mavenModels == null) {
+                return;
+            }
+            final List<String> moduleKeys = new ArrayList<String>(progressAction.getReleaseVersions().keySet());
+            moduleKeys.removeAll(progressAction.getModules(ReleaseProgressAction.State.DEPLOYED));
+            int maxThreads = getMaxReactorThreads();
+            if(launcher.getChannel() != null) {
+                final int processors = launcher.getChannel().call(new ParallelismAdvisor.AvailableProcessors());
+                maxThreads = (maxThreads > 0) ? Math.min(maxThreads, processors) : processors;
+            }
+            final ParallelismAdvice advice = new ParallelismAdvisor(mavenModels,
+                    releaseBuildAction.getModuleDurations()).advise(moduleKeys, maxThreads);
+            build.addAction(new ReleaseParallelismAction(advice));
+            listener.getLogger().println("[release] Building the release with " + advice);
+        } catch (IOException e) {
+            e.printStackTrace(listener.error("[release] Failed choosing the reactor parallelism"));
+        } catch (XmlPullParserException e) {
+            e.printStackTrace(listener.error("[release] Failed parsing the poms"));
+        }
+    }
+
+    /**
+     * Resolve the external dependencies of all modules in parallel into the local repository
+     * Maven will be using on the node the build is running on. Like the Maven build, the local
+     * repository strategy of the job comes first, then a maven.repo.local passed to Maven and
+     * then the localRepository of the settings the job uses, which are read on the node.
+     */
+    protected void prewarmDependencies(AbstractBuild build, Launcher launcher, BuildListener listener)
+            throws InterruptedException {
+        final ReleaseBuildAction releaseBuildAction = build.getProject().getAction(ReleaseBuildAction.class);
+        if((releaseBuildAction == null) || (launcher.getChannel() == null)) {
+            return;
+        }
+        try {
+            final Map<String, Model> mavenModels = releaseBuildAction.getMavenModels();
+            if(mavenModels == null) {
+                return;
+            }
+            final MavenModuleSet project = (MavenModuleSet) build.getProject();
+            final FilePath localRepo = project.getLocalRepository().locate((MavenModuleSetBuild) build);
+            String localRepoPath = (localRepo != null) ? localRepo.getRemote() : getRepoLocalOption(project);
+            if((localRepo == null) && (localRepoPath != null) && (build.getWorkspace() != null)) {
+                // Maven resolves a relative path against the directory it is started in.
+                localRepoPath = build.getWorkspace().child(localRepoPath).getRemote();
+            }
+            final String userSettingsPath =
+                    SettingsProvider.getSettingsRemotePath(project.getSettings(), build, listener);
+            String globalSettingsPath =
+                    GlobalSettingsProvider.getSettingsRemotePath(project.getGlobalSettings(), build, listener);
+            final Maven.MavenInstallation maven = project.getMaven();
+            if((globalSettingsPath == null) && (maven != null) && (build.getBuiltOn() != null)) {
+                final String mavenHome = maven.forNode(build.getBuiltOn(), listener).getHome();
+                if(mavenHome != null) {
+                    globalSettingsPath = new FilePath(launcher.getChannel(), mavenHome).child("conf")
+                            .child("settings.xml").getRemote();
+                }
+            }
+            launcher.getChannel().call(new DependencyPrewarmer(DependencyPrewarmer.getExternalDependencies(mavenModels),
+                    localRepoPath, userSettingsPath, globalSettingsPath, mavenRepoUrl, mavenRepoUser,
+                    mavenRepoPassword, PREWARM_THREADS, listener));
+        } catch (IOException e) {
+            e.printStackTrace(listener.error("[release] Pre-warming the local repository failed"));
+        } catch (XmlPullParserException e) {
+            e.printStackTrace(listener.error("[release] Failed parsing the poms"));
+        }
+    }
+
+    /**
+     * @return the maven.repo.local passed to the Maven process of the release or null, if there is none.
+     */
+    protected String getRepoLocalOption(MavenModuleSet project) {
+        final Matcher matcher = REPO_LOCAL_PATTERN.matcher(
+                ((project.getMavenOpts() != null) ? project.getMavenOpts() : "") + " " +
+                ((getMavenArgs() != null) ? getMavenArgs() : ""));
+        String localRepoPath = null;
+        // The last definition wins, as the arguments come after the MAVEN_OPTS.
+        while(matcher.find()) {
+            localRepoPath = matcher.group(1);
+        }
+        return localRepoPath;
+    }
+
+    protected FilePath getStagingDirectory(AbstractBuild build) {
+        return build.getWorkspace().child("target").child("release-staging");
+    }
+
+    /**
+     * Push all staged artifacts to the release repository. This is done on the node the
+     * build was running on, as this is where the staged artifacts are located.
+     *
+     * @return true if all artifacts were deployed and verified successfully.
+     */
+    protected boolean deployStagedArtifacts(AbstractBuild build, BuildListener listener)
+            throws IOException, InterruptedException {
+        final FilePath stagingDirectory = getStagingDirectory(build);
+        if(!stagingDirectory.exists()) {
+            listener.error("[release] No staged artifacts found in " + stagingDirectory);
+            return false;
+        }
+        try {
+            stagingDirectory.act(new StagedDeployer(getDeployRepoUrl(), mavenRepoUser, mavenRepoPassword,
+                    getDeployConcurrency(), getDeployRetries(), listener));
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace(listener.error("[release] Deploying the staged artifacts failed"));
+            return false;
+        }
     }
 
     public String getMavenArgs() {
@@ -97,4 +811,193 @@ public class ReleaseBuildWrapper extends BuildWrapper {
         return mavenRepoPassword;
     }
 
+    public boolean isLightweightInitialize() {
+        return lightweightInitialize;
+    }
+
+    /**
+     * @param lightweightInitialize if true, initializing a project only checks it out and parses
+     *                              the poms instead of running a full "install" build.
+     */
+    @DataBoundSetter
+    public void setLightweightInitialize(boolean lightweightInitialize) {
+        this.lightweightInitialize = lightweightInitialize;
+    }
+
+    public boolean isPrewarmDependencies() {
+        return prewarmDependencies;
+    }
+
+    /**
+     * @param prewarmDependencies if true, the external dependencies of all modules are resolved in
+     *                            parallel into the local repository before a release is performed.
+     */
+    @DataBoundSetter
+    public void setPrewarmDependencies(boolean prewarmDependencies) {
+        this.prewarmDependencies = prewarmDependencies;
+    }
+
+    public boolean isAdaptiveParallelism() {
+        return adaptiveParallelism;
+    }
+
+    /**
+     * @param adaptiveParallelism if true, the number of threads used for building the release
+     *                            is chosen based on the dependency graph and previous build times.
+     */
+    @DataBoundSetter
+    public void setAdaptiveParallelism(boolean adaptiveParallelism) {
+        this.adaptiveParallelism = adaptiveParallelism;
+    }
+
+    /**
+     * @return maximum number of threads used for building the release or 0, if there is no limit.
+     */
+    public int getMaxReactorThreads() {
+        return maxReactorThreads;
+    }
+
+    @DataBoundSetter
+    public void setMaxReactorThreads(int maxReactorThreads) {
+        this.maxReactorThreads = maxReactorThreads;
+    }
+
+    public boolean isReuseUnchangedModules() {
+        return reuseUnchangedModules;
+    }
+
+    /**
+     * @param reuseUnchangedModules if true, modules which haven't changed since the last major release
+     *                              are not built again, but their artifacts are promoted to the new version.
+     */
+    @DataBoundSetter
+    public void setReuseUnchangedModules(boolean reuseUnchangedModules) {
+        this.reuseUnchangedModules = reuseUnchangedModules;
+    }
+
+    public boolean isServerSideTagging() {
+        return serverSideTagging;
+    }
+
+    /**
+     * @param serverSideTagging if true, major releases are tagged by a server side copy in Subversion
+     *                          and deployed from the workspace instead of using the release plugin.
+     */
+    @DataBoundSetter
+    public void setServerSideTagging(boolean serverSideTagging) {
+        this.serverSideTagging = serverSideTagging;
+    }
+
+    public boolean isNativeMaintenance() {
+        return nativeMaintenance;
+    }
+
+    /**
+     * @param nativeMaintenance if true, failed releases are rolled back directly on the node of the
+     *                          workspace instead of starting a Maven build, whenever possible.
+     */
+    @DataBoundSetter
+    public void setNativeMaintenance(boolean nativeMaintenance) {
+        this.nativeMaintenance = nativeMaintenance;
+    }
+
+    /**
+     * @return seconds minor releases wait in the queue for further requests to be merged into them,
+     *         0 if minor releases are not batched.
+     */
+    public int getBatchWindowSeconds() {
+        return batchWindowSeconds;
+    }
+
+    @DataBoundSetter
+    public void setBatchWindowSeconds(int batchWindowSeconds) {
+        this.batchWindowSeconds = Math.max(batchWindowSeconds, 0);
+    }
+
+    /**
+     * @return label expression of the nodes release builds have to run on or null, if they may run anywhere.
+     */
+    public String getReleaseLabel() {
+        if((releaseLabel == null) || (releaseLabel.trim().length() == 0)) {
+            return null;
+        }
+        return releaseLabel.trim();
+    }
+
+    @DataBoundSetter
+    public void setReleaseLabel(String releaseLabel) {
+        this.releaseLabel = releaseLabel;
+    }
+
+    public boolean isReserveReleaseNodes() {
+        return reserveReleaseNodes;
+    }
+
+    /**
+     * @param reserveReleaseNodes if true, the nodes matching the release label only run release builds
+     *                            and builds explicitly assigned to the release label.
+     */
+    @DataBoundSetter
+    public void setReserveReleaseNodes(boolean reserveReleaseNodes) {
+        this.reserveReleaseNodes = reserveReleaseNodes;
+    }
+
+    public boolean isPrioritizeReleases() {
+        return prioritizeReleases;
+    }
+
+    /**
+     * @param prioritizeReleases if true, release builds are started before all other builds waiting in the queue.
+     */
+    @DataBoundSetter
+    public void setPrioritizeReleases(boolean prioritizeReleases) {
+        this.prioritizeReleases = prioritizeReleases;
+    }
+
+    public boolean isStagedDeployment() {
+        return stagedDeployment;
+    }
+
+    /**
+     * @param stagedDeployment if true, release:perform deploys into a local staging directory and
+     *                         the plugin pushes the staged artifacts to the repository in parallel.
+     */
+    @DataBoundSetter
+    public void setStagedDeployment(boolean stagedDeployment) {
+        this.stagedDeployment = stagedDeployment;
+    }
+
+    /**
+     * @return url of the repository releases are deployed to. Defaults to the maven repo url.
+     */
+    public String getDeployRepoUrl() {
+        if((deployRepoUrl == null) || (deployRepoUrl.trim().length() == 0)) {
+            return mavenRepoUrl;
+        }
+        return deployRepoUrl;
+    }
+
+    @DataBoundSetter
+    public void setDeployRepoUrl(String deployRepoUrl) {
+        this.deployRepoUrl = deployRepoUrl;
+    }
+
+    public int getDeployConcurrency() {
+        return (deployConcurrency > 0) ? deployConcurrency : 4;
+    }
+
+    @DataBoundSetter
+    public void setDeployConcurrency(int deployConcurrency) {
+        this.deployConcurrency = deployConcurrency;
+    }
+
+    public int getDeployRetries() {
+        return deployRetries;
+    }
+
+    @DataBoundSetter
+    public void setDeployRetries(int deployRetries) {
+        this.deployRetries = deployRetries;
+    }
+
 }
@@ -1,9 +1,16 @@
 package de.cware.plugins.jenkins.releases;
 
+import de.cware.plugins.jenkins.releases.versions.RepositoryRateLimiter;
 import hudson.Extension;
+import hudson.Util;
 import hudson.maven.AbstractMavenProject;
 import hudson.model.AbstractProject;
 import hudson.tasks.BuildWrapperDescriptor;
+import net.sf.json.JSONObject;
+import org.kohsuke.stapler.StaplerRequest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * This Jenkins Extension is the central extension point for including the release plugin
@@ -16,6 +23,9 @@ import hudson.tasks.BuildWrapperDescriptor;
  *
  * This is also why isApplicable only returns true, if the project is a Maven project.
  *
+ * The global configuration contains the limits of the RepositoryRateLimiter, which are
+ * shared by all jobs.
+ *
  * User: cdutz
  * Date: 26.10.12
  * Time: 11:19
@@ -23,6 +33,16 @@ import hudson.tasks.BuildWrapperDescriptor;
 @Extension
 public class ReleaseBuildWrapperDescriptor extends BuildWrapperDescriptor {
 
+    /**
+     * Maximum number of requests per second sent to a Maven repository, 0 for no limit.
+     */
+    private int repositoryRequestsPerSecond = 20;
+
+    /**
+     * Limits for single repositories, one "url requestsPerSecond" per line.
+     */
+    private String repositoryRateLimits;
+
     public ReleaseBuildWrapperDescriptor() {
         super(ReleaseBuildWrapper.class);
 
@@ -40,4 +60,42 @@ public class ReleaseBuildWrapperDescriptor extends BuildWrapperDescriptor {
         return Messages.ReleaseBuildWrapperDescriptor_DisplayName();
     }
 
+    @Override
+    public boolean configure(StaplerRequest req, JSONObject json) throws FormException {
+        repositoryRequestsPerSecond = Math.max(0, json.optInt("repositoryRequestsPerSecond", 0));
+        repositoryRateLimits = Util.fixEmptyAndTrim(json.optString("repositoryRateLimits"));
+        save();
+        RepositoryRateLimiter.get().reset();
+        return true;
+    }
+
+    public int getRepositoryRequestsPerSecond() {
+        return repositoryRequestsPerSecond;
+    }
+
+    public String getRepositoryRateLimits() {
+        return repositoryRateLimits;
+    }
+
+    /**
+     * @return the limits of single repositories keyed by their url. Invalid lines are ignored.
+     */
+    public Map<String, Integer> getRepositoryRateLimitMap() {
+        final Map<String, Integer> limits = new LinkedHashMap<String, Integer>();
+        if(repositoryRateLimits == null) {
+            return limits;
+        }
+        for(final String line : repositoryRateLimits.split("\\r?\\n")) {
+            final String[] parts = line.trim().split("\\s+");
+            if(parts.length == 2) {
+                try {
+                    limits.put(parts[0], Math.max(0, Integer.parseInt(parts[1])));
+                } catch (NumberFormatException e) {
+                    // Ignore the line.
+                }
+            }
+        }
+        return limits;
+    }
+
 }
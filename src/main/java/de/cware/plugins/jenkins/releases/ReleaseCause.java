@@ -3,6 +3,9 @@ package de.cware.plugins.jenkins.releases;
 import hudson.model.Cause;
 import hudson.model.Hudson;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Created with IntelliJ IDEA.
  * User: cdutz
@@ -12,6 +15,10 @@ import hudson.model.Hudson;
 public class ReleaseCause extends Cause.UserCause {
 
     private String authenticationName;
+    /**
+     * Users whose release requests have been merged into the build.
+     */
+    private List<String> coRequesters;
 
     public ReleaseCause() {
         this.authenticationName = Hudson.getAuthentication().getName();
@@ -22,9 +29,44 @@ public class ReleaseCause extends Cause.UserCause {
         return authenticationName;
     }
 
+    /**
+     * Credit another user for the build, because the release requested by that user
+     * has been merged into it.
+     */
+    public synchronized void addRequester(String userName) {
+        if((userName == null) || userName.equals(authenticationName)) {
+            return;
+        }
+        if(coRequesters == null) {
+            coRequesters = new ArrayList<String>();
+        }
+        if(!coRequesters.contains(userName)) {
+            coRequesters.add(userName);
+        }
+    }
+
+    /**
+     * @return names of all users that requested the build, starting with the user that triggered it.
+     */
+    public synchronized List<String> getRequesters() {
+        final List<String> requesters = new ArrayList<String>();
+        requesters.add(authenticationName);
+        if(coRequesters != null) {
+            requesters.addAll(coRequesters);
+        }
+        return requesters;
+    }
+
     @Override
     public String getShortDescription() {
-        return Messages.ReleaseCause_ShortDescription(authenticationName);
+        final StringBuilder userNames = new StringBuilder();
+        for(final String requester : getRequesters()) {
+            if(userNames.length() > 0) {
+                userNames.append(", ");
+            }
+            userNames.append(requester);
+        }
+        return Messages.ReleaseCause_ShortDescription(userNames.toString());
     }
 
 }
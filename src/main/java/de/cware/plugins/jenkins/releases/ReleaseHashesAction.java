@@ -0,0 +1,72 @@
+package de.cware.plugins.jenkins.releases;
+
+import hudson.model.Action;
+
+import java.util.*;
+
+/**
+ * Remembers the content hashes of all modules of a major release. The next major release
+ * compares its content hashes with these and modules with unchanged content hashes are
+ * not built again, but their released artifacts are promoted to the new version, once
+ * the rest of the release has been built successfully.
+ */
+public class ReleaseHashesAction implements Action {
+
+    private final String releaseVersion;
+    private final Map<String, String> contentHashes;
+    private final List<String> reusedModules;
+    private final String previousReleaseVersion;
+
+    /**
+     * @param releaseVersion version of the release.
+     * @param contentHashes map containing the content hash of every module.
+     * @param reusedModules keys of the modules that are promoted from the previous release.
+     * @param previousReleaseVersion version of the previous release the modules are promoted from.
+     */
+    public ReleaseHashesAction(String releaseVersion, Map<String, String> contentHashes,
+                               Collection<String> reusedModules, String previousReleaseVersion) {
+        this.releaseVersion = releaseVersion;
+        this.previousReleaseVersion = previousReleaseVersion;
+        this.contentHashes = new HashMap<String, String>(contentHashes);
+        this.reusedModules = new ArrayList<String>(reusedModules);
+    }
+
+    public String getReleaseVersion() {
+        return releaseVersion;
+    }
+
+    public Map<String, String> getContentHashes() {
+        return Collections.unmodifiableMap(contentHashes);
+    }
+
+    public List<String> getReusedModules() {
+        return Collections.unmodifiableList(reusedModules);
+    }
+
+    public String getPreviousReleaseVersion() {
+        return previousReleaseVersion;
+    }
+
+    ////////////////////////////////////////////////////////////////
+    // Action methods
+    ////////////////////////////////////////////////////////////////
+    // Note:
+    //
+    // This Action does not contribute anything to the UI so by
+    // returning 'null' for all of the 3 Action interface methods
+    // this Action will be ignored by the Stapler framework.
+    ////////////////////////////////////////////////////////////////
+
+    public String getIconFileName() {
+        return null;
+    }
+
+    public String getDisplayName() {
+        return null;
+    }
+
+    public String getUrlName() {
+        return null;
+    }
+
+}
@@ -1,15 +1,25 @@
 package de.cware.plugins.jenkins.releases;
 
 import hudson.maven.MavenArgumentInterceptorAction;
+import hudson.model.Queue;
 
 /**
  * Base interface for all ReleaseInterceptorActions. Having one base interface
  * allows the ReleaseBuildWrapper to generally react on any type of release build
  * triggered by this plugin.
  *
+ * All ReleaseInterceptorActions are QueueActions: if an equal action is already
+ * waiting in the queue, the request is not scheduled a second time.
+ *
  * User: cdutz
  * Date: 26.10.12
  * Time: 13:57
  */
-public interface ReleaseInterceptorAction extends MavenArgumentInterceptorAction {
+public interface ReleaseInterceptorAction extends MavenArgumentInterceptorAction, Queue.QueueAction {
+
+    /**
+     * @return short human readable description of the requested build.
+     */
+    String getSummary();
+
 }
@@ -0,0 +1,296 @@
+package de.cware.plugins.jenkins.releases;
+
+import de.cware.plugins.jenkins.releases.metrics.ReleaseMetrics;
+import de.cware.plugins.jenkins.releases.queue.ReleaseLabelAssignmentAction;
+import hudson.maven.MavenModuleSet;
+import hudson.maven.MavenModuleSetBuild;
+import hudson.model.Action;
+import hudson.model.Queue;
+import hudson.model.queue.QueueTaskFuture;
+import jenkins.model.Jenkins;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Makes sure only one build triggered by this plugin is queued or running per job at any
+ * time. Without this, double clicks and concurrent users would queue several release
+ * builds, which would then fight over the same workspace and tags. A request identical
+ * to the one of the build waiting in the queue is coalesced with it, all other requests
+ * are rejected while the lock is held.
+ *
+ * The lock is not stored anywhere, it is held by the release build that is currently
+ * waiting in the queue or running. So a lock can never outlive the build holding it, not
+ * even if Jenkins is restarted. Checking the lock and scheduling a build is synchronized
+ * per job, so two concurrent requests can't both see an unlocked job.
+ *
+ * Rolling back a release without Maven doesn't need a build, so the lock can also be held
+ * by such a maintenance task for as long as it is running. The ReleaseQueueDispatcher keeps
+ * all builds of the job in the queue during that time.
+ *
+ * If the ReleaseBuildWrapper of the job defines a batching window, minor releases wait
+ * in the queue for that window and further minor release requests arriving in the
+ * meantime are merged into the waiting build instead of being rejected.
+ */
+public class ReleaseLock {
+
+    public enum Result {
+        /** The build has been scheduled. */
+        SCHEDULED,
+        /** An identical request is already waiting in the queue, so nothing has been scheduled. */
+        COALESCED,
+        /** The request has been merged into a minor release waiting in the queue. */
+        BATCHED,
+        /** Another release build holds the lock. */
+        LOCKED,
+        /** Jenkins refused to schedule the build. */
+        FAILED
+    }
+
+    /**
+     * Information about the build holding the lock.
+     */
+    public static class Holder {
+
+        private final String userName;
+        private final ReleaseInterceptorAction action;
+        private final boolean queued;
+
+        public Holder(String userName, ReleaseInterceptorAction action, boolean queued) {
+            this.userName = userName;
+            this.action = action;
+            this.queued = queued;
+        }
+
+        public String getUserName() {
+            return userName;
+        }
+
+        public ReleaseInterceptorAction getAction() {
+            return action;
+        }
+
+        public String getSummary() {
+            return action.getSummary();
+        }
+
+        /**
+         * @return true if the build is still waiting in the queue, false if it is running.
+         */
+        public boolean isQueued() {
+            return queued;
+        }
+
+    }
+
+    private static final Map<String, ReleaseLock> LOCKS = new HashMap<String, ReleaseLock>();
+
+    private final MavenModuleSet project;
+    private Holder maintenanceHolder;
+
+    private ReleaseLock(MavenModuleSet project) {
+        this.project = project;
+    }
+
+    public static synchronized ReleaseLock forJob(MavenModuleSet project) {
+        ReleaseLock lock = LOCKS.get(project.getFullName());
+        if((lock == null) || (lock.project != project)) {
+            lock = new ReleaseLock(project);
+            LOCKS.put(project.getFullName(), lock);
+        }
+        return lock;
+    }
+
+    /**
+     * @return the build holding the lock or null, if the job is not locked.
+     */
+    public synchronized Holder getHolder() {
+        if(maintenanceHolder != null) {
+            return maintenanceHolder;
+        }
+
+        final Queue.Item item = getQueuedReleaseItem();
+        if(item != null) {
+            final ReleaseCause cause = getReleaseCause(item.getCauses());
+            return new Holder(getUserNames(cause), item.getAction(ReleaseInterceptorAction.class), true);
+        }
+
+        final MavenModuleSetBuild lastBuild = project.getLastBuild();
+        if((lastBuild != null) && lastBuild.isBuilding()) {
+            final ReleaseInterceptorAction action = lastBuild.getAction(ReleaseInterceptorAction.class);
+            if(action != null) {
+                final ReleaseCause cause = lastBuild.getCause(ReleaseCause.class);
+                return new Holder(getUserNames(cause), action, false);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Schedule a release build, if the job is not locked.
+     *
+     * @param action the action describing the release build.
+     * @param actions additional actions that should be attached to the build.
+     * @return the result of the request.
+     */
+    public synchronized Result schedule(ReleaseInterceptorAction action, Action... actions) {
+        final Result result = doSchedule(action, actions);
+        ReleaseMetrics.get().increment("builds.schedule." + result.name().toLowerCase());
+        ReleaseMetrics.get().increment("builds.schedule." + action.getClass().getSimpleName());
+        return result;
+    }
+
+    protected Result doSchedule(ReleaseInterceptorAction action, Action... actions) {
+        final int batchWindow = (action instanceof MinorReleaseInterceptorAction) ? getBatchWindow() : 0;
+        final Holder holder = getHolder();
+        if(holder != null) {
+            if(holder.isQueued() && holder.getAction().equals(action)) {
+                return Result.COALESCED;
+            }
+            if(holder.isQueued() && (batchWindow > 0) && (holder.getAction() instanceof MinorReleaseInterceptorAction)) {
+                return batch((MinorReleaseInterceptorAction) action, (MinorReleaseInterceptorAction) holder.getAction());
+            }
+            return Result.LOCKED;
+        }
+
+        final List<Action> buildActions = new ArrayList<Action>(Arrays.asList(actions));
+        buildActions.add(action);
+        buildActions.add(new ReleaseQueueTimeAction(batchWindow));
+        addReleaseLabel(buildActions);
+        if(project.scheduleBuild2(batchWindow, new ReleaseCause(), buildActions) != null) {
+            return Result.SCHEDULED;
+        }
+        return Result.FAILED;
+    }
+
+    /**
+     * Schedule a release build, if the job is not locked, and return a handle for waiting
+     * for the build. Used by the ReleaseOrchestration, which needs to know when a release
+     * is finished, so requests are neither coalesced nor batched.
+     *
+     * @param action the action describing the release build.
+     * @param actions additional actions that should be attached to the build.
+     * @return the future of the build or null, if the job is locked or the build couldn't be scheduled.
+     */
+    public synchronized QueueTaskFuture<MavenModuleSetBuild> scheduleExclusively(ReleaseInterceptorAction action,
+                                                                               Action... actions) {
+        if(getHolder() != null) {
+            ReleaseMetrics.get().increment("builds.schedule.locked");
+            return null;
+        }
+        final List<Action> buildActions = new ArrayList<Action>(Arrays.asList(actions));
+        buildActions.add(action);
+        buildActions.add(new ReleaseQueueTimeAction(0));
+        addReleaseLabel(buildActions);
+        ReleaseMetrics.get().increment("builds.schedule.orchestrated");
+        return project.scheduleBuild2(0, new ReleaseCause(), buildActions);
+    }
+
+    /**
+     * Take the lock for a maintenance task, which is executed without a build.
+     *
+     * @param action the action describing the maintenance task.
+     * @return true, if the lock has been taken, false if the job is locked.
+     */
+    public synchronized boolean lockForMaintenance(ReleaseInterceptorAction action) {
+        if(getHolder() != null) {
+            return false;
+        }
+        maintenanceHolder = new Holder(Jenkins.getAuthentication().getName(), action, false);
+        return true;
+    }
+
+    /**
+     * @return true, if a maintenance task holds the lock.
+     */
+    public synchronized boolean isLockedForMaintenance() {
+        return maintenanceHolder != null;
+    }
+
+    /**
+     * Release the lock taken by lockForMaintenance.
+     */
+    public synchronized void unlockMaintenance() {
+        maintenanceHolder = null;
+    }
+
+    /**
+     * Merge a minor release request into the one waiting in the queue and credit the
+     * current user for the build. Requests are only merged while the build is waiting or
+     * blocked. As soon as it is buildable, it may be handed to an executor at any time.
+     */
+    protected Result batch(MinorReleaseInterceptorAction action, MinorReleaseInterceptorAction queuedAction) {
+        final Queue queue = Jenkins.getInstance().getQueue();
+        final Queue.Item item = getQueuedReleaseItem();
+        if((item == null) || (item.getAction(ReleaseInterceptorAction.class) != queuedAction) ||
+                !((item instanceof Queue.WaitingItem) || (item instanceof Queue.BlockedItem))) {
+            // The build has left the queue or is about to leave it in the meantime.
+            return Result.LOCKED;
+        }
+        queuedAction.merge(action);
+        final ReleaseCause cause = getReleaseCause(item.getCauses());
+        if(cause != null) {
+            cause.addRequester(Jenkins.getAuthentication().getName());
+        }
+        // Persist the merged request, so it isn't lost if Jenkins is restarted before the build starts.
+        queue.save();
+        return Result.BATCHED;
+    }
+
+    /**
+     * @return the release build of the job waiting in the queue or null, if there is none.
+     */
+    protected Queue.Item getQueuedReleaseItem() {
+        for(final Queue.Item item : Jenkins.getInstance().getQueue().getItems(project)) {
+            if(item.getAction(ReleaseInterceptorAction.class) != null) {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Route the build to the release label of the job, even if the job has a label of its own.
+     */
+    protected void addReleaseLabel(List<Action> buildActions) {
+        final ReleaseBuildWrapper wrapper = project.getBuildWrappersList().get(ReleaseBuildWrapper.class);
+        if((wrapper != null) && (wrapper.getReleaseLabel() != null)) {
+            buildActions.add(new ReleaseLabelAssignmentAction(wrapper.getReleaseLabel()));
+        }
+    }
+
+    /**
+     * @return the batching window for minor releases in seconds, 0 if minor releases are not batched.
+     */
+    protected int getBatchWindow() {
+        final ReleaseBuildWrapper wrapper = project.getBuildWrappersList().get(ReleaseBuildWrapper.class);
+        return (wrapper != null) ? wrapper.getBatchWindowSeconds() : 0;
+    }
+
+    private static String getUserNames(ReleaseCause cause) {
+        if(cause == null) {
+            return null;
+        }
+        final StringBuilder userNames = new StringBuilder();
+        for(final String requester : cause.getRequesters()) {
+            if(userNames.length() > 0) {
+                userNames.append(", ");
+            }
+            userNames.append(requester);
+        }
+        return userNames.toString();
+    }
+
+    private static ReleaseCause getReleaseCause(List<? extends Object> causes) {
+        for(final Object cause : causes) {
+            if(cause instanceof ReleaseCause) {
+                return (ReleaseCause) cause;
+            }
+        }
+        return null;
+    }
+
+}
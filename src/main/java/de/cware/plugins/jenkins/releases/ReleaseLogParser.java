@@ -0,0 +1,216 @@
+package de.cware.plugins.jenkins.releases;
+
+import hudson.console.ConsoleNote;
+import hudson.console.LineTransformationOutputStream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The release plugin forks Maven processes for preparing and performing a release.
+ * Their output is passed through to the build log, prefixed with an additional "[INFO]".
+ * This output stream is installed by the ReleaseBuildWrapper and watches the build log
+ * for the lines Maven 3 outputs when starting a goal in a module, so listeners can keep
+ * track of the progress of the release on a per-module level. The log itself is passed
+ * on unchanged.
+ *
+ * Starting goals only tells which module is being built as long as the reactor is built
+ * serially. If Maven builds the reactor with several threads ("-T"), the output of the
+ * modules is interleaved, so no module and goal events are reported at all. The upload of
+ * the maven-metadata.xml of a module, which is the last thing the maven-deploy-plugin does
+ * for every module, is reported in both cases.
+ */
+public class ReleaseLogParser extends LineTransformationOutputStream {
+
+    /**
+     * Gets informed about what is going on in the build.
+     */
+    public interface Listener {
+
+        /**
+         * Called when a goal of the release plugin (e.g. "prepare" or "perform") is started.
+         */
+        void phaseStarted(String phase);
+
+        /**
+         * Called when the forked Maven process starts working on a module. Only called if the
+         * reactor is built serially.
+         *
+         * @param module "groupId:artifactId" of the module, if Maven reports it, otherwise only the artifactId.
+         */
+        void moduleStarted(String phase, String module);
+
+        /**
+         * Called for every goal the forked Maven process executes. Only called if the reactor
+         * is built serially.
+         *
+         * @param module "groupId:artifactId" of the module, if Maven reports it, otherwise only the artifactId.
+         */
+        void goalStarted(String phase, String module, String plugin, String goal);
+
+        /**
+         * Called when the maven-metadata.xml of a module has been uploaded, which finishes the
+         * deployment of the module.
+         *
+         * @param metadataUrl url the metadata has been uploaded to.
+         */
+        void metadataUploaded(String phase, String metadataUrl);
+
+        /**
+         * Called when the forked Maven process has finished.
+         */
+        void forkedBuildFinished(String phase, boolean success);
+
+    }
+
+    // Matches lines like "[INFO] [INFO] --- maven-deploy-plugin:2.7:deploy (default-deploy) @ my-module ---".
+    // The second "[INFO] " is only present for the output of the forked Maven processes.
+    private static final Pattern GOAL_PATTERN = Pattern.compile(
+            "^\\[INFO\\] (\\[INFO\\] )?--- ([^:\\s]+):([^:\\s]+):([^\\s]+) (?:\\([^)]*\\) )?@ ([^\\s]+) ---.*");
+    // Matches the header Maven 3.6 and later print before building a module,
+    // like "[INFO] [INFO] -------------------< de.cware:my-module >-------------------".
+    private static final Pattern MODULE_HEADER_PATTERN = Pattern.compile(
+            "^\\[INFO\\] (\\[INFO\\] )?-+< ([^\\s>]+) >-+\\s*$");
+    // Matches "Uploaded: <url> (...)" and "Uploaded to <repository>: <url> (...)".
+    private static final Pattern METADATA_UPLOAD_PATTERN = Pattern.compile(
+            "^(?:\\[INFO\\] )*Uploaded(?: to [^:\\s]+)?: (\\S+/maven-metadata\\.xml).*");
+    // The release plugin logs the command line of the forked Maven process, the parallel
+    // builder logs the number of threads it uses.
+    private static final Pattern PARALLEL_PATTERN = Pattern.compile(
+            "^\\[INFO\\] (?:Executing: .*\\s(?:-T\\s*|--threads[\\s=])\\d.*|" +
+            "(?:\\[INFO\\] )?Using the MultiThreadedBuilder implementation with a thread count of \\d+.*)");
+    private static final Pattern FORKED_RESULT_PATTERN = Pattern.compile(
+            "^\\[INFO\\] \\[(?:INFO|ERROR)\\] BUILD (SUCCESS|FAILURE).*");
+    private static final Pattern DIRECT_RESULT_PATTERN = Pattern.compile(
+            "^\\[(?:INFO|ERROR)\\] BUILD (SUCCESS|FAILURE).*");
+
+    private final OutputStream out;
+    private final Charset charset;
+    private final List<Listener> listeners = new ArrayList<Listener>();
+
+    private String phase;
+    private String currentModule;
+    private String currentHeader;
+    private boolean direct;
+    private boolean parallel;
+
+    public ReleaseLogParser(OutputStream out, Charset charset) {
+        this.out = out;
+        this.charset = charset;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * If a release is built without the release plugin, the output of the Maven process
+     * itself is handled like the output of a forked process in the given phase.
+     *
+     * @param parallel true, if the Maven process builds the reactor with several threads.
+     */
+    public void setDirectPhase(String phase, boolean parallel) {
+        this.phase = phase;
+        this.direct = true;
+        this.parallel = parallel;
+        for(final Listener listener : listeners) {
+            listener.phaseStarted(phase);
+        }
+    }
+
+    @Override
+    protected void eol(byte[] b, int len) throws IOException {
+        try {
+            parseLine(trimEOL(ConsoleNote.removeNotes(new String(b, 0, len, charset))));
+        } catch (RuntimeException e) {
+            // Never let a problem with the parsing break the build log.
+            e.printStackTrace();
+        }
+        out.write(b, 0, len);
+    }
+
+    protected void parseLine(String line) {
+        final Matcher goalMatcher = GOAL_PATTERN.matcher(line);
+        if(goalMatcher.matches()) {
+            final boolean forked = direct || (goalMatcher.group(1) != null);
+            final String plugin = goalMatcher.group(2);
+            final String goal = goalMatcher.group(4);
+            final String artifactId = goalMatcher.group(5);
+            if(!forked) {
+                if("maven-release-plugin".equals(plugin)) {
+                    phase = goal;
+                    currentModule = null;
+                    currentHeader = null;
+                    parallel = false;
+                    for(final Listener listener : listeners) {
+                        listener.phaseStarted(phase);
+                    }
+                }
+                return;
+            }
+            if(parallel) {
+                return;
+            }
+            final String module = ((currentHeader != null) && currentHeader.endsWith(":" + artifactId)) ?
+                    currentHeader : artifactId;
+            if(!module.equals(currentModule)) {
+                currentModule = module;
+                for(final Listener listener : listeners) {
+                    listener.moduleStarted(phase, module);
+                }
+            }
+            for(final Listener listener : listeners) {
+                listener.goalStarted(phase, module, plugin, goal);
+            }
+            return;
+        }
+
+        final Matcher headerMatcher = MODULE_HEADER_PATTERN.matcher(line);
+        if(headerMatcher.matches()) {
+            if(direct || (headerMatcher.group(1) != null)) {
+                currentHeader = headerMatcher.group(2);
+            }
+            return;
+        }
+
+        final Matcher uploadMatcher = METADATA_UPLOAD_PATTERN.matcher(line);
+        if(uploadMatcher.matches()) {
+            for(final Listener listener : listeners) {
+                listener.metadataUploaded(phase, uploadMatcher.group(1));
+            }
+            return;
+        }
+
+        if(PARALLEL_PATTERN.matcher(line).matches()) {
+            parallel = true;
+            return;
+        }
+
+        final Matcher resultMatcher = (direct ? DIRECT_RESULT_PATTERN : FORKED_RESULT_PATTERN).matcher(line);
+        if(resultMatcher.matches()) {
+            currentModule = null;
+            currentHeader = null;
+            final boolean success = "SUCCESS".equals(resultMatcher.group(1));
+            for(final Listener listener : listeners) {
+                listener.forkedBuildFinished(phase, success);
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        super.close();
+        out.close();
+    }
+
+}
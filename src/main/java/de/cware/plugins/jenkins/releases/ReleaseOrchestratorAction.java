@@ -0,0 +1,123 @@
+package de.cware.plugins.jenkins.releases;
+
+import de.cware.plugins.jenkins.releases.orchestration.JobGraph;
+import de.cware.plugins.jenkins.releases.orchestration.ReleaseOrchestration;
+import hudson.Extension;
+import hudson.maven.MavenModuleSet;
+import hudson.model.Item;
+import hudson.model.RootAction;
+import jenkins.model.Jenkins;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+import org.kohsuke.stapler.interceptor.RequirePOST;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Adds the release orchestration view to the main page of Jenkins. From there all jobs
+ * using the ReleaseBuildWrapper can be released together: the jobs are ordered by the
+ * dependencies between their modules and released in waves by a ReleaseOrchestration.
+ *
+ * Only one orchestration can run at a time. The last orchestration is kept in memory, so
+ * its outcome can still be looked at after it has finished.
+ */
+@Extension
+public class ReleaseOrchestratorAction implements RootAction {
+
+    private transient ReleaseOrchestration orchestration;
+
+    public String getIconFileName() {
+        return "/plugin/release-plugin/img/release.png";
+    }
+
+    public String getDisplayName() {
+        return "Release Orchestration";
+    }
+
+    public String getUrlName() {
+        return "release-orchestration";
+    }
+
+    /**
+     * @return all jobs using the ReleaseBuildWrapper, the current user may build.
+     */
+    public List<MavenModuleSet> getReleaseJobs() {
+        final List<MavenModuleSet> jobs = new ArrayList<MavenModuleSet>();
+        for(final MavenModuleSet job : Jenkins.getInstance().getAllItems(MavenModuleSet.class)) {
+            if((job.getBuildWrappersList().get(ReleaseBuildWrapper.class) != null) && job.hasPermission(Item.BUILD)) {
+                jobs.add(job);
+            }
+        }
+        return jobs;
+    }
+
+    /**
+     * @return the waves all release jobs would be released in.
+     */
+    public List<List<MavenModuleSet>> getWaves() {
+        try {
+            return new JobGraph(getReleaseJobs()).getWaves();
+        } catch (IllegalStateException e) {
+            return null;
+        }
+    }
+
+    public JobGraph getJobGraph() {
+        return new JobGraph(getReleaseJobs());
+    }
+
+    /**
+     * @return the running or last orchestration or null.
+     */
+    public synchronized ReleaseOrchestration getOrchestration() {
+        return orchestration;
+    }
+
+    @RequirePOST
+    public synchronized void doStart(StaplerRequest request, StaplerResponse response) {
+        try {
+            if((orchestration != null) && !orchestration.isFinished()) {
+                response.sendRedirect(request.getContextPath() + '/' + getUrlName() +
+                        "/?error=running");
+                return;
+            }
+
+            final String[] selectedJobNames = request.getParameterValues("job");
+            final List<String> jobNames = (selectedJobNames != null) ?
+                    Arrays.asList(selectedJobNames) : new ArrayList<String>();
+            final List<MavenModuleSet> jobs = new ArrayList<MavenModuleSet>();
+            for(final MavenModuleSet job : getReleaseJobs()) {
+                if(jobNames.contains(job.getFullName())) {
+                    if(ReleaseLock.forJob(job).getHolder() != null) {
+                        response.sendRedirect(request.getContextPath() + '/' + getUrlName() + "/?error=locked");
+                        return;
+                    }
+                    jobs.add(job);
+                }
+            }
+            if(jobs.isEmpty()) {
+                response.sendRedirect(request.getContextPath() + '/' + getUrlName() +
+                        "/?error=noJobs");
+                return;
+            }
+
+            try {
+                orchestration = new ReleaseOrchestration(new JobGraph(jobs), Jenkins.getAuthentication());
+            } catch (IllegalStateException e) {
+                response.sendRedirect(request.getContextPath() + '/' + getUrlName() +
+                        "/?error=cyclicDependencies");
+                return;
+            }
+            final Thread thread = new Thread(orchestration, "Release orchestration");
+            thread.setDaemon(true);
+            thread.start();
+
+            response.sendRedirect(request.getContextPath() + '/' + getUrlName() + "/");
+        } catch(Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+}
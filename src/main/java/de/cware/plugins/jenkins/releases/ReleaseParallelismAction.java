@@ -0,0 +1,65 @@
+package de.cware.plugins.jenkins.releases;
+
+import de.cware.plugins.jenkins.releases.plan.ParallelismAdvice;
+import hudson.model.Action;
+
+/**
+ * Records the reactor parallelism the ReleaseBuildWrapper chose for a release build together
+ * with the wall time the release actually took, so the effect of the setting can be compared
+ * between releases. The information is shown in the summary of the build.
+ */
+public class ReleaseParallelismAction implements Action {
+
+    private final ParallelismAdvice advice;
+    private final long startTime;
+    private long wallTime = -1;
+
+    public ReleaseParallelismAction(ParallelismAdvice advice) {
+        this.advice = advice;
+        this.startTime = System.currentTimeMillis();
+    }
+
+    public ParallelismAdvice getAdvice() {
+        return advice;
+    }
+
+    public int getThreads() {
+        return advice.getThreads();
+    }
+
+    /**
+     * @return the time the release took in milliseconds or -1, if the release is not finished yet.
+     */
+    public long getWallTime() {
+        return wallTime;
+    }
+
+    /**
+     * Called by the ReleaseBuildWrapper as soon as Maven has finished.
+     */
+    public void finished() {
+        wallTime = System.currentTimeMillis() - startTime;
+    }
+
+    ////////////////////////////////////////////////////////////////
+    // Action methods
+    ////////////////////////////////////////////////////////////////
+    // Note:
+    //
+    // This Action only contributes to the summary of the build,
+    // therefore it doesn't need an entry in the Actions menu.
+    ////////////////////////////////////////////////////////////////
+
+    public String getIconFileName() {
+        return null;
+    }
+
+    public String getDisplayName() {
+        return null;
+    }
+
+    public String getUrlName() {
+        return null;
+    }
+
+}
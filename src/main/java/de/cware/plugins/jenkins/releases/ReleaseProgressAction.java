@@ -0,0 +1,209 @@
+package de.cware.plugins.jenkins.releases;
+
+import hudson.model.Action;
+
+import java.util.*;
+
+/**
+ * Keeps track of the progress of a release build on a per-module level. The action is
+ * attached to every release build by the ReleaseBuildWrapper and gets updated by the
+ * ReleaseLogParser while the release plugin is preparing and performing the release.
+ *
+ * If a release fails while performing, this information allows the ReleaseBuildAction
+ * to resume the release instead of rolling it back and starting over again.
+ *
+ * A module only counts as deployed once the maven-deploy-plugin uploaded its metadata,
+ * so this works for serial and parallel reactor builds. The intermediate states are only
+ * known, if the reactor is built serially. If Maven doesn't report the groupId of a
+ * module and several modules share its artifactId, the intermediate states of these
+ * modules are not tracked either.
+ */
+public class ReleaseProgressAction implements Action, ReleaseLogParser.Listener {
+
+    public enum State {
+        PENDING, BUILDING, DEPLOYING, DEPLOYED
+    }
+
+    private final String tag;
+    private final Map<String, String> releaseVersions;
+    private final Map<String, State> states;
+    private boolean performStarted;
+
+    private transient Map<String, String> moduleKeys;
+    private transient Set<String> ambiguousArtifactIds;
+    private transient Map<String, String> metadataPaths;
+
+    /**
+     * @param tag name of the tag the release is created from.
+     * @param releaseVersions versions of all modules that are part of the release.
+     * @param deployedModules modules already deployed by a previous attempt of the same release.
+     */
+    public ReleaseProgressAction(String tag, Map<String, String> releaseVersions, Collection<String> deployedModules) {
+        this.tag = tag;
+        this.releaseVersions = new LinkedHashMap<String, String>(releaseVersions);
+        this.states = new HashMap<String, State>();
+        for(final String moduleKey : releaseVersions.keySet()) {
+            states.put(moduleKey, deployedModules.contains(moduleKey) ? State.DEPLOYED : State.PENDING);
+        }
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    public Map<String, String> getReleaseVersions() {
+        return Collections.unmodifiableMap(releaseVersions);
+    }
+
+    public synchronized State getState(String moduleKey) {
+        return states.get(moduleKey);
+    }
+
+    /**
+     * @return true, if the release plugin started performing the release, which means the tag has been created.
+     */
+    public synchronized boolean isPerformStarted() {
+        return performStarted;
+    }
+
+    /**
+     * @return keys of all modules in the given state.
+     */
+    public synchronized List<String> getModules(State state) {
+        final List<String> result = new ArrayList<String>();
+        for(final String moduleKey : releaseVersions.keySet()) {
+            if(states.get(moduleKey) == state) {
+                result.add(moduleKey);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return artifactIds shared by several modules, which can't be told apart by the
+     *         artifactId Maven versions before 3.6 print.
+     */
+    public synchronized Set<String> getAmbiguousArtifactIds() {
+        indexArtifactIds();
+        return Collections.unmodifiableSet(ambiguousArtifactIds);
+    }
+
+    public synchronized int getDeployedCount() {
+        return getModules(State.DEPLOYED).size();
+    }
+
+    /**
+     * Mark a module as deployed, which is not deployed by the release plugin itself.
+     */
+    public synchronized void markDeployed(String moduleKey) {
+        if(states.containsKey(moduleKey)) {
+            states.put(moduleKey, State.DEPLOYED);
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////
+    // ReleaseLogParser.Listener methods
+    ////////////////////////////////////////////////////////////////
+
+    public synchronized void phaseStarted(String phase) {
+        if("perform".equals(phase)) {
+            performStarted = true;
+        }
+    }
+
+    public synchronized void moduleStarted(String phase, String module) {
+        if(!"perform".equals(phase)) {
+            return;
+        }
+        final String moduleKey = getModuleKey(module);
+        if((moduleKey != null) && (states.get(moduleKey) == State.PENDING)) {
+            states.put(moduleKey, State.BUILDING);
+        }
+    }
+
+    public synchronized void goalStarted(String phase, String module, String plugin, String goal) {
+        if(!"perform".equals(phase) || !"deploy".equals(goal)) {
+            return;
+        }
+        final String moduleKey = getModuleKey(module);
+        if((moduleKey != null) && (states.get(moduleKey) != State.DEPLOYED)) {
+            states.put(moduleKey, State.DEPLOYING);
+        }
+    }
+
+    public synchronized void metadataUploaded(String phase, String metadataUrl) {
+        if(!"perform".equals(phase)) {
+            return;
+        }
+        if(metadataPaths == null) {
+            metadataPaths = new HashMap<String, String>();
+            for(final String moduleKey : releaseVersions.keySet()) {
+                final int separator = moduleKey.indexOf(':');
+                metadataPaths.put("/" + moduleKey.substring(0, separator).replace('.', '/') + "/" +
+                        moduleKey.substring(separator + 1) + "/maven-metadata.xml", moduleKey);
+            }
+        }
+        for(final Map.Entry<String, String> metadataPath : metadataPaths.entrySet()) {
+            if(metadataUrl.endsWith(metadataPath.getKey())) {
+                states.put(metadataPath.getValue(), State.DEPLOYED);
+                return;
+            }
+        }
+    }
+
+    public synchronized void forkedBuildFinished(String phase, boolean success) {
+        // Maven doesn't finish successfully, unless all modules have been deployed.
+        if("perform".equals(phase) && success) {
+            for(final Map.Entry<String, State> state : states.entrySet()) {
+                if(state.getValue() == State.DEPLOYING) {
+                    state.setValue(State.DEPLOYED);
+                }
+            }
+        }
+    }
+
+    /**
+     * Older Maven versions only log artifact ids, so we have to find the matching module.
+     *
+     * @return the key of the module or null, if the module is unknown or the artifactId is ambiguous.
+     */
+    private String getModuleKey(String module) {
+        if(module.indexOf(':') != -1) {
+            return releaseVersions.containsKey(module) ? module : null;
+        }
+        indexArtifactIds();
+        return moduleKeys.get(module);
+    }
+
+    private void indexArtifactIds() {
+        if(moduleKeys != null) {
+            return;
+        }
+        moduleKeys = new HashMap<String, String>();
+        ambiguousArtifactIds = new TreeSet<String>();
+        for(final String moduleKey : releaseVersions.keySet()) {
+            final String artifactId = moduleKey.substring(moduleKey.indexOf(':') + 1);
+            if(moduleKeys.put(artifactId, moduleKey) != null) {
+                ambiguousArtifactIds.add(artifactId);
+            }
+        }
+        moduleKeys.keySet().removeAll(ambiguousArtifactIds);
+    }
+
+    ////////////////////////////////////////////////////////////////
+    // Action methods
+    ////////////////////////////////////////////////////////////////
+
+    public String getIconFileName() {
+        return "/plugin/release-plugin/img/release.png";
+    }
+
+    public String getDisplayName() {
+        return "Release Progress";
+    }
+
+    public String getUrlName() {
+        return "releaseProgress";
+    }
+
+}
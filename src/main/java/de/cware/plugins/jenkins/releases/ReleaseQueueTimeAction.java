@@ -0,0 +1,78 @@
+package de.cware.plugins.jenkins.releases;
+
+import hudson.model.Action;
+
+/**
+ * Records how long a release build had to wait in the queue before it was started. The
+ * action is attached when the build is scheduled and completed when the build starts.
+ * A batching window the build deliberately waited for is not counted as waiting time.
+ * The information is shown in the summary of the build.
+ */
+public class ReleaseQueueTimeAction implements Action {
+
+    private final long queuedSince;
+    private final long quietPeriod;
+    private long startTime = -1;
+
+    /**
+     * @param quietPeriod the quiet period in seconds the build was scheduled with.
+     */
+    public ReleaseQueueTimeAction(int quietPeriod) {
+        this.queuedSince = System.currentTimeMillis();
+        this.quietPeriod = quietPeriod * 1000L;
+    }
+
+    public long getQueuedSince() {
+        return queuedSince;
+    }
+
+    public long getQuietPeriod() {
+        return quietPeriod;
+    }
+
+    /**
+     * Called by the ReleaseBuildWrapper as soon as the build has been started.
+     */
+    public void started(long startTime) {
+        if(this.startTime < 0) {
+            this.startTime = startTime;
+        }
+    }
+
+    /**
+     * @return the time the build waited for an executor in milliseconds or -1, if the build hasn't started yet.
+     */
+    public long getWaitTime() {
+        if(startTime < 0) {
+            return -1;
+        }
+        return Math.max(startTime - queuedSince - quietPeriod, 0);
+    }
+
+    public String getWaitTimeString() {
+        final long seconds = getWaitTime() / 1000;
+        return (seconds >= 60) ? (seconds / 60) + " min " + (seconds % 60) + " s" : seconds + " s";
+    }
+
+    ////////////////////////////////////////////////////////////////
+    // Action methods
+    ////////////////////////////////////////////////////////////////
+    // Note:
+    //
+    // This Action only contributes to the summary of the build,
+    // therefore it doesn't need an entry in the Actions menu.
+    ////////////////////////////////////////////////////////////////
+
+    public String getIconFileName() {
+        return null;
+    }
+
+    public String getDisplayName() {
+        return null;
+    }
+
+    public String getUrlName() {
+        return null;
+    }
+
+}
@@ -0,0 +1,405 @@
+package de.cware.plugins.jenkins.releases;
+
+import hudson.model.Run;
+import jenkins.model.RunAction2;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Trace of the phases of a release build: waiting in the queue, checkout, preparing each
+ * module, tagging, performing each module, deploying each module and the deployment of
+ * staged artifacts. The phases of the release plugin are reported by the ReleaseLogParser,
+ * all other phases by the Environment of the ReleaseBuildWrapper.
+ *
+ * The spans of the modules are only recorded, if the reactor is built serially. With
+ * several threads the output of the modules is interleaved, so the ReleaseLogParser
+ * doesn't report modules and the timeline only contains the phases.
+ *
+ * As a release of a big project consists of thousands of spans, every span only stores
+ * its name, the module and its start and duration relative to the start
+ * of the trace in milliseconds. The spans are not stored in the build.xml, but written to
+ * a separate file in the directory of the build when the build is finished, with every
+ * name and module only written once. They are read the first time they are needed, so
+ * loading the build history stays cheap, and the ReleaseTimelineTrendAction can read the
+ * timelines of several builds without loading the builds.
+ */
+public class ReleaseTimelineAction implements RunAction2, ReleaseLogParser.Listener {
+
+    public static final String QUEUE = "queue";
+    public static final String CHECKOUT = "checkout";
+    public static final String PREPARE = "prepare";
+    public static final String TAG = "tag";
+    public static final String PERFORM = "perform";
+    public static final String DEPLOY = "deploy";
+
+    /**
+     * Name of the file in the directory of the build the spans are stored in.
+     */
+    public static final String FILE_NAME = "release-timeline.dat";
+
+    private static final int FILE_VERSION = 1;
+
+    /**
+     * A phase of the release, optionally restricted to a module.
+     */
+    public static class Span {
+
+        private final String name;
+        private final String module;
+        private final int start;
+        private int duration = -1;
+
+        public Span(String name, String module, int start) {
+            this.name = name;
+            this.module = module;
+            this.start = start;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return "groupId:artifactId" of the module or only the artifactId, if Maven didn't report
+         *         the groupId, null if the span covers the whole project.
+         */
+        public String getModule() {
+            return module;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        /**
+         * @return the duration in milliseconds or -1, if the span is not finished.
+         */
+        public int getDuration() {
+            return duration;
+        }
+
+    }
+
+    private final long startTime;
+
+    private transient Run<?, ?> run;
+    private transient List<Span> spans;
+    private transient Span phaseSpan;
+    private transient Span moduleSpan;
+    private transient Span deploySpan;
+    private transient Span tagSpan;
+
+    /**
+     * @param startTime the start of the trace, which is the time the build has been queued.
+     */
+    public ReleaseTimelineAction(long startTime) {
+        this.startTime = startTime;
+        this.spans = new ArrayList<Span>();
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public synchronized List<Span> getSpans() {
+        return new ArrayList<Span>(spans());
+    }
+
+    /**
+     * Add a span that has already finished.
+     */
+    public synchronized void add(String name, String module, long start, long end) {
+        final Span span = new Span(name, module, (int) (start - startTime));
+        span.duration = (int) (end - start);
+        spans().add(span);
+    }
+
+    /**
+     * Start a new span now.
+     */
+    public synchronized Span begin(String name, String module) {
+        final Span span = new Span(name, module, (int) (System.currentTimeMillis() - startTime));
+        spans().add(span);
+        return span;
+    }
+
+    /**
+     * Finish the given span now. Finishing a span twice or finishing null is ignored.
+     */
+    public synchronized void end(Span span) {
+        if((span != null) && (span.duration < 0)) {
+            span.duration = (int) (System.currentTimeMillis() - startTime) - span.start;
+        }
+    }
+
+    /**
+     * Finish all open spans with the given name now.
+     */
+    public synchronized void end(String name) {
+        for(final Span span : spans()) {
+            if(span.name.equals(name)) {
+                end(span);
+            }
+        }
+    }
+
+    /**
+     * Called by the ReleaseBuildWrapper when the build is finished. All spans still open are finished.
+     */
+    public synchronized void finished() {
+        for(final Span span : spans()) {
+            end(span);
+        }
+        phaseSpan = null;
+        moduleSpan = null;
+        deploySpan = null;
+        tagSpan = null;
+        if(run != null) {
+            try {
+                save(run.getRootDir());
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * @return the spans, which are read from the directory of the build the first time they are needed.
+     */
+    protected synchronized List<Span> spans() {
+        if(spans == null) {
+            final List<Span> loadedSpans = (run != null) ? loadSpans(run.getRootDir()) : null;
+            spans = (loadedSpans != null) ? loadedSpans : new ArrayList<Span>();
+        }
+        return spans;
+    }
+
+    /**
+     * @return the time from the start of the trace until the end of the last span.
+     */
+    public synchronized int getTotalDuration() {
+        int total = 0;
+        for(final Span span : spans()) {
+            total = Math.max(total, span.start + Math.max(span.duration, 0));
+        }
+        return total;
+    }
+
+    /**
+     * @return the spans covering the whole project, in the order they started.
+     */
+    public synchronized List<Span> getPhases() {
+        final List<Span> phases = new ArrayList<Span>();
+        for(final Span span : spans()) {
+            if(span.module == null) {
+                phases.add(span);
+            }
+        }
+        return phases;
+    }
+
+    /**
+     * @return the time each module took in total in the prepare and perform phases, slowest modules first.
+     */
+    public synchronized Map<String, Integer> getModuleDurations() {
+        final Map<String, Integer> durations = new HashMap<String, Integer>();
+        for(final Span span : spans()) {
+            if((span.module != null) && (PREPARE.equals(span.name) || PERFORM.equals(span.name)) &&
+                    (span.duration > 0)) {
+                final Integer duration = durations.get(span.module);
+                durations.put(span.module, ((duration != null) ? duration : 0) + span.duration);
+            }
+        }
+        return sortByValue(durations);
+    }
+
+    /**
+     * Sort a map by its values, highest values first.
+     */
+    public static <T extends Comparable<T>> Map<String, T> sortByValue(Map<String, T> map) {
+        final List<Map.Entry<String, T>> entries = new ArrayList<Map.Entry<String, T>>(map.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, T>>() {
+            public int compare(Map.Entry<String, T> entry1, Map.Entry<String, T> entry2) {
+                final int result = entry2.getValue().compareTo(entry1.getValue());
+                return (result != 0) ? result : entry1.getKey().compareTo(entry2.getKey());
+            }
+        });
+        final Map<String, T> sorted = new LinkedHashMap<String, T>();
+        for(final Map.Entry<String, T> entry : entries) {
+            sorted.put(entry.getKey(), entry.getValue());
+        }
+        return sorted;
+    }
+
+    ////////////////////////////////////////////////////////////////
+    // Persistence
+    ////////////////////////////////////////////////////////////////
+
+    /**
+     * Write the spans to the directory of the build. The names and modules are written once
+     * to a table and the spans only refer to them by index.
+     */
+    public synchronized void save(File buildDir) throws IOException {
+        final List<String> strings = new ArrayList<String>();
+        final Map<String, Integer> indexes = new HashMap<String, Integer>();
+        for(final Span span : spans()) {
+            for(final String string : new String[] {span.name, span.module}) {
+                if((string != null) && !indexes.containsKey(string)) {
+                    indexes.put(string, strings.size());
+                    strings.add(string);
+                }
+            }
+        }
+
+        // Write to a temporary file first, so readers never see a half written timeline.
+        final File file = new File(buildDir, FILE_NAME);
+        final File tempFile = new File(buildDir, FILE_NAME + ".tmp");
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+        try {
+            out.writeInt(FILE_VERSION);
+            out.writeInt(strings.size());
+            for(final String string : strings) {
+                out.writeUTF(string);
+            }
+            out.writeInt(spans().size());
+            for(final Span span : spans()) {
+                out.writeInt(indexes.get(span.name));
+                out.writeInt((span.module != null) ? indexes.get(span.module) : -1);
+                out.writeInt(span.start);
+                out.writeInt(span.duration);
+            }
+        } finally {
+            out.close();
+        }
+        if(!tempFile.renameTo(file)) {
+            if(!file.delete() || !tempFile.renameTo(file)) {
+                throw new IOException("Could not write " + file);
+            }
+        }
+    }
+
+    /**
+     * Read the timeline of a build without loading the build.
+     *
+     * @param buildDir directory of a build.
+     * @param startTime the start of the trace.
+     * @return the timeline stored in the directory or null, if there is none.
+     */
+    public static ReleaseTimelineAction load(File buildDir, long startTime) {
+        final List<Span> spans = loadSpans(buildDir);
+        if(spans == null) {
+            return null;
+        }
+        final ReleaseTimelineAction timeline = new ReleaseTimelineAction(startTime);
+        timeline.spans = spans;
+        return timeline;
+    }
+
+    protected static List<Span> loadSpans(File buildDir) {
+        final File file = new File(buildDir, FILE_NAME);
+        if(!file.isFile()) {
+            return null;
+        }
+        try {
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if(in.readInt() != FILE_VERSION) {
+                    return null;
+                }
+                final String[] strings = new String[in.readInt()];
+                for(int i = 0; i < strings.length; i++) {
+                    strings[i] = in.readUTF();
+                }
+                final int count = in.readInt();
+                final List<Span> spans = new ArrayList<Span>(count);
+                for(int i = 0; i < count; i++) {
+                    final String name = strings[in.readInt()];
+                    final int moduleIndex = in.readInt();
+                    final Span span = new Span(name, (moduleIndex >= 0) ? strings[moduleIndex] : null, in.readInt());
+                    span.duration = in.readInt();
+                    spans.add(span);
+                }
+                return spans;
+            } finally {
+                in.close();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////
+    // RunAction2 methods
+    ////////////////////////////////////////////////////////////////
+
+    public synchronized void onAttached(Run<?, ?> run) {
+        this.run = run;
+    }
+
+    public synchronized void onLoad(Run<?, ?> run) {
+        this.run = run;
+    }
+
+    ////////////////////////////////////////////////////////////////
+    // ReleaseLogParser.Listener methods
+    ////////////////////////////////////////////////////////////////
+
+    public synchronized void phaseStarted(String phase) {
+        end(deploySpan);
+        end(moduleSpan);
+        // Tagging is the last step of release:prepare, which ends when release:perform starts.
+        end(tagSpan);
+        end(phaseSpan);
+        deploySpan = null;
+        moduleSpan = null;
+        tagSpan = null;
+        phaseSpan = begin(phase, null);
+    }
+
+    public synchronized void moduleStarted(String phase, String module) {
+        end(deploySpan);
+        end(moduleSpan);
+        deploySpan = null;
+        moduleSpan = begin(phase, module);
+    }
+
+    public synchronized void goalStarted(String phase, String module, String plugin, String goal) {
+        if(PERFORM.equals(phase) && DEPLOY.equals(goal) && (deploySpan == null)) {
+            deploySpan = begin(DEPLOY, module);
+        }
+    }
+
+    public void metadataUploaded(String phase, String metadataUrl) {
+        // The deploy span of a module ends with the next module.
+    }
+
+    public synchronized void forkedBuildFinished(String phase, boolean success) {
+        end(deploySpan);
+        end(moduleSpan);
+        deploySpan = null;
+        moduleSpan = null;
+        // After the forked build of release:prepare the release plugin commits and creates the tag.
+        if(PREPARE.equals(phase) && success) {
+            tagSpan = begin(TAG, null);
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////
+    // Action methods
+    ////////////////////////////////////////////////////////////////
+
+    public String getIconFileName() {
+        return "/plugin/release-plugin/img/release.png";
+    }
+
+    public String getDisplayName() {
+        return "Release Timeline";
+    }
+
+    public String getUrlName() {
+        return "releaseTimeline";
+    }
+
+}
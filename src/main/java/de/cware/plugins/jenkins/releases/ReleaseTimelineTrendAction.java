@@ -0,0 +1,162 @@
+package de.cware.plugins.jenkins.releases;
+
+import hudson.maven.MavenModuleSet;
+import hudson.model.Action;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * Compares the timelines of the last releases of a job, so it is visible which phases of
+ * the release got slower and which modules take the most time.
+ *
+ * Only the timeline files in the directories of the last builds are read, the builds
+ * themselves are not loaded. The page reads the releases once per request and passes
+ * them to the other methods.
+ */
+public class ReleaseTimelineTrendAction implements Action {
+
+    /**
+     * Number of releases that are compared.
+     */
+    private static final int MAX_RELEASES = 20;
+
+    /**
+     * Number of builds that are searched for releases.
+     */
+    private static final int MAX_BUILDS = 200;
+
+    /**
+     * Number of modules shown as slowest modules.
+     */
+    private static final int MAX_MODULES = 20;
+
+    public static final String[] PHASES = {
+            ReleaseTimelineAction.QUEUE, ReleaseTimelineAction.CHECKOUT, ReleaseTimelineAction.PREPARE,
+            ReleaseTimelineAction.TAG, ReleaseTimelineAction.PERFORM, ReleaseTimelineAction.DEPLOY
+    };
+
+    /**
+     * The timeline of a release build.
+     */
+    public static class Release {
+
+        private final int number;
+        private final ReleaseTimelineAction timeline;
+
+        public Release(int number, ReleaseTimelineAction timeline) {
+            this.number = number;
+            this.timeline = timeline;
+        }
+
+        public int getNumber() {
+            return number;
+        }
+
+        public String getDisplayName() {
+            return "#" + number;
+        }
+
+        public ReleaseTimelineAction getTimeline() {
+            return timeline;
+        }
+
+    }
+
+    private final MavenModuleSet project;
+
+    public ReleaseTimelineTrendAction(MavenModuleSet project) {
+        this.project = project;
+    }
+
+    public MavenModuleSet getProject() {
+        return project;
+    }
+
+    public String[] getPhaseNames() {
+        return PHASES;
+    }
+
+    /**
+     * @return the last release builds with a timeline, latest first.
+     */
+    public List<Release> getReleases() {
+        final List<Release> releases = new ArrayList<Release>();
+        final int lastBuild = project.getNextBuildNumber() - 1;
+        for(int number = lastBuild; (number > 0) && (number > lastBuild - MAX_BUILDS); number--) {
+            // The start time is only needed for drawing a single timeline.
+            final ReleaseTimelineAction timeline =
+                    ReleaseTimelineAction.load(new File(project.getBuildDir(), Integer.toString(number)), 0);
+            if(timeline != null) {
+                releases.add(new Release(number, timeline));
+                if(releases.size() >= MAX_RELEASES) {
+                    break;
+                }
+            }
+        }
+        return releases;
+    }
+
+    /**
+     * @return the time the release spent in the given phase in milliseconds.
+     */
+    public long getPhaseDuration(Release release, String phase) {
+        long duration = 0;
+        for(final ReleaseTimelineAction.Span span : release.getTimeline().getPhases()) {
+            if(phase.equals(span.getName()) && (span.getDuration() > 0)) {
+                duration += span.getDuration();
+            }
+        }
+        return duration;
+    }
+
+    /**
+     * @return the time from queueing the release until its end in milliseconds.
+     */
+    public long getTotalDuration(Release release) {
+        return release.getTimeline().getTotalDuration();
+    }
+
+    /**
+     * @param releases the releases returned by getReleases().
+     * @return the average time of the slowest modules over the releases, slowest modules first.
+     */
+    public Map<String, Long> getSlowestModules(List<Release> releases) {
+        final Map<String, Long> totals = new HashMap<String, Long>();
+        final Map<String, Integer> counts = new HashMap<String, Integer>();
+        for(final Release release : releases) {
+            final Map<String, Integer> moduleDurations = release.getTimeline().getModuleDurations();
+            for(final Map.Entry<String, Integer> moduleDuration : moduleDurations.entrySet()) {
+                final Long total = totals.get(moduleDuration.getKey());
+                totals.put(moduleDuration.getKey(), ((total != null) ? total : 0) + moduleDuration.getValue());
+                final Integer count = counts.get(moduleDuration.getKey());
+                counts.put(moduleDuration.getKey(), ((count != null) ? count : 0) + 1);
+            }
+        }
+        final Map<String, Long> averages = new HashMap<String, Long>();
+        for(final Map.Entry<String, Long> total : totals.entrySet()) {
+            averages.put(total.getKey(), total.getValue() / counts.get(total.getKey()));
+        }
+        final Map<String, Long> slowest = new LinkedHashMap<String, Long>();
+        for(final Map.Entry<String, Long> average : ReleaseTimelineAction.sortByValue(averages).entrySet()) {
+            if(slowest.size() >= MAX_MODULES) {
+                break;
+            }
+            slowest.put(average.getKey(), average.getValue());
+        }
+        return slowest;
+    }
+
+    public String getIconFileName() {
+        return "/plugin/release-plugin/img/release.png";
+    }
+
+    public String getDisplayName() {
+        return "Release Timeline Trend";
+    }
+
+    public String getUrlName() {
+        return "releaseTimelineTrend";
+    }
+
+}
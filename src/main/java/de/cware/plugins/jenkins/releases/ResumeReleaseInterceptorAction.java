@@ -0,0 +1,182 @@
+package de.cware.plugins.jenkins.releases;
+
+import hudson.maven.MavenModuleSetBuild;
+import hudson.model.Action;
+import hudson.util.ArgumentListBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Initially Jenkins only knew Actions as being extensions to the Actions menu
+ * on the left hand side. In this case the Action is an invisible Action passed
+ * from the ReleaseBuildAction to the ReleaseBuildWrapper. In order to keep it
+ * invisible the 3 Action interface methods must all return null.
+ *
+ * This interceptor action is used when a previous release-attempt failed while
+ * performing the release. As the tag already exists, instead of rolling back the
+ * release, the perform goal is executed again, but only for the modules that have
+ * not been deployed yet. Which modules have been deployed is checked against the
+ * repository by the ReleaseBuildWrapper, before Maven is started.
+ */
+public class ResumeReleaseInterceptorAction implements ReleaseInterceptorAction {
+
+    private final String tag;
+    private final Map<String, String> releaseVersions;
+    private List<String> deployedModules;
+
+    /**
+     * @param tag name of the tag the release was created from.
+     * @param releaseVersions versions of all modules that are part of the release.
+     * @param deployedModules keys of the modules that have been deployed according to the log of the failed attempt.
+     */
+    public ResumeReleaseInterceptorAction(String tag, Map<String, String> releaseVersions,
+                                          List<String> deployedModules) {
+        this.tag = tag;
+        this.releaseVersions = new LinkedHashMap<String, String>(releaseVersions);
+        this.deployedModules = new ArrayList<String>(deployedModules);
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    public Map<String, String> getReleaseVersions() {
+        return Collections.unmodifiableMap(releaseVersions);
+    }
+
+    public synchronized List<String> getDeployedModules() {
+        return Collections.unmodifiableList(deployedModules);
+    }
+
+    /**
+     * @param deployedModules keys of the modules that are actually deployed in the repository.
+     */
+    public synchronized void setDeployedModules(List<String> deployedModules) {
+        this.deployedModules = new ArrayList<String>(deployedModules);
+    }
+
+    /**
+     * @return keys of all modules that still have to be deployed.
+     */
+    public synchronized List<String> getRemainingModules() {
+        final List<String> remainingModules = new ArrayList<String>();
+        for(final String moduleKey : releaseVersions.keySet()) {
+            if(!deployedModules.contains(moduleKey)) {
+                remainingModules.add(moduleKey);
+            }
+        }
+        return remainingModules;
+    }
+
+    /**
+     * @return true, if all modules have already been deployed and there is nothing left to perform.
+     */
+    public boolean isFinished() {
+        return getRemainingModules().isEmpty();
+    }
+
+    ////////////////////////////////////////////////////////////////
+    // MavenArgumentInterceptorAction methods
+    ////////////////////////////////////////////////////////////////
+
+    public String getGoalsAndOptions(MavenModuleSetBuild build) {
+        final StringBuilder cmd = new StringBuilder();
+
+        // Prevent maven from asking questions.
+        cmd.append(" --batch-mode");
+
+        // Everything has been deployed before the previous attempt failed. Passing an empty list of
+        // projects would make release:perform fail, so only the root pom is validated, which finishes
+        // the build successfully without deploying anything again.
+        if(isFinished()) {
+            cmd.append(" --non-recursive validate");
+            return cmd.toString();
+        }
+
+        // The release.properties of the failed attempt still point to the existing tag. Only the
+        // modules that have not been deployed yet are passed to the Maven process perform forks.
+        final StringBuilder projectsFragment = new StringBuilder();
+        for(final String moduleKey : getRemainingModules()) {
+            if(projectsFragment.length() > 0) {
+                projectsFragment.append(",");
+            }
+            projectsFragment.append(moduleKey);
+        }
+        ReleaseArguments.forBuild(build).add("--projects").add(projectsFragment.toString()).appendTo(cmd);
+
+        // if the user specified additional maven parameters, append them to the command.
+        final ReleaseBuildWrapper releaseBuildWrapper =
+                build.getProject().getBuildWrappersList().get(ReleaseBuildWrapper.class);
+        if(releaseBuildWrapper.getMavenArgs() != null) {
+            cmd.append(" ").append(releaseBuildWrapper.getMavenArgs().trim());
+        }
+
+        cmd.append(" release:perform");
+
+        return cmd.toString();
+    }
+
+    public ArgumentListBuilder intercept(ArgumentListBuilder mavenArgs, MavenModuleSetBuild build) {
+        return null;
+    }
+
+    ////////////////////////////////////////////////////////////////
+    // QueueAction methods
+    ////////////////////////////////////////////////////////////////
+
+    /**
+     * Identical requests already waiting in the queue are not scheduled again.
+     */
+    public boolean shouldSchedule(List<Action> actions) {
+        return !actions.contains(this);
+    }
+
+    public String getSummary() {
+        return "Resume release " + tag;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) {
+            return true;
+        }
+        if(!(o instanceof ResumeReleaseInterceptorAction)) {
+            return false;
+        }
+        final ResumeReleaseInterceptorAction that = (ResumeReleaseInterceptorAction) o;
+        return ((tag != null) ? tag.equals(that.tag) : (that.tag == null)) &&
+                releaseVersions.equals(that.releaseVersions) && getDeployedModules().equals(that.getDeployedModules());
+    }
+
+    @Override
+    public int hashCode() {
+        return releaseVersions.hashCode();
+    }
+
+    ////////////////////////////////////////////////////////////////
+    // Action methods
+    ////////////////////////////////////////////////////////////////
+    // Note:
+    //
+    // This Action does not contribute anything to the UI so by
+    // returning 'null' for all of the 3 Action interface methods
+    // this Action will be ignored by the Stapler framework.
+    ////////////////////////////////////////////////////////////////
+
+    public String getIconFileName() {
+        return null;
+    }
+
+    public String getDisplayName() {
+        return null;
+    }
+
+    public String getUrlName() {
+        return null;
+    }
+
+}
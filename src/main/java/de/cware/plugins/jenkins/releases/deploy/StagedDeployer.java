@@ -0,0 +1,249 @@
+package de.cware.plugins.jenkins.releases.deploy;
+
+import de.cware.plugins.jenkins.releases.versions.Booter;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.deployment.DeployRequest;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.repository.RepositoryPolicy;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResult;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Pushes all artifacts the release plugin installed into a local staging directory to the
+ * release repository. Other than the maven-deploy-plugin, which deploys one module after
+ * another, the modules are deployed in parallel using the plugin's own RepositorySystem.
+ * Failed uploads are retried with an exponential backoff and after everything is uploaded
+ * all artifacts are downloaded again and their checksums are compared to the staged files.
+ *
+ * The deployer is executed on the node the build is running on, as this is where the
+ * staging directory is located.
+ */
+public class StagedDeployer extends MasterToSlaveFileCallable<Integer> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String repoUrl;
+    private final String repoUser;
+    private final String repoPassword;
+    private final int concurrency;
+    private final int retries;
+    private final TaskListener listener;
+
+    /**
+     * @param repoUrl url of the repository the artifacts should be deployed to.
+     * @param repoUser username used for authenticating (optional).
+     * @param repoPassword password used for authenticating (optional).
+     * @param concurrency number of modules deployed in parallel.
+     * @param retries number of times a failed deployment is retried.
+     * @param listener listener used for logging.
+     */
+    public StagedDeployer(String repoUrl, String repoUser, String repoPassword, int concurrency, int retries,
+                          TaskListener listener) {
+        this.repoUrl = repoUrl;
+        this.repoUser = repoUser;
+        this.repoPassword = repoPassword;
+        this.concurrency = Math.max(1, concurrency);
+        this.retries = Math.max(0, retries);
+        this.listener = listener;
+    }
+
+    /**
+     * @param stagingDir directory containing the staged artifacts in the Maven repository layout.
+     * @param channel the channel.
+     * @return number of deployed artifacts.
+     */
+    public Integer invoke(File stagingDir, VirtualChannel channel) throws IOException, InterruptedException {
+        final List<List<Artifact>> modules = new ArrayList<List<Artifact>>();
+        collectArtifacts(stagingDir, "", modules);
+        int artifactCount = 0;
+        for(final List<Artifact> module : modules) {
+            artifactCount += module.size();
+        }
+        listener.getLogger().println("[release] Deploying " + artifactCount + " staged artifacts of " +
+                modules.size() + " modules with " + concurrency + " threads to " + repoUrl);
+
+        final RepositorySystem system = Booter.newRepositorySystem();
+        final RemoteRepository repo = Booter.newRemoteRepository(repoUrl, repoUser, repoPassword);
+        final File localRepoDir = new File(stagingDir.getParentFile(), stagingDir.getName() + "-repo");
+        final File verifyRepoDir = new File(stagingDir.getParentFile(), stagingDir.getName() + "-verify");
+        final ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        try {
+            final long startTime = System.currentTimeMillis();
+            final DefaultRepositorySystemSession deploySession = Booter.newRepositorySystemSession(system, localRepoDir,
+                    listener.getLogger());
+            final List<Future<Void>> deployments = new ArrayList<Future<Void>>();
+            for(final List<Artifact> module : modules) {
+                deployments.add(executor.submit(new Callable<Void>() {
+                    public Void call() throws Exception {
+                        deploy(system, deploySession, repo, module);
+                        return null;
+                    }
+                }));
+            }
+            waitFor(deployments);
+            listener.getLogger().println("[release] Deployed " + artifactCount + " artifacts in " +
+                    (System.currentTimeMillis() - startTime) + "ms");
+            Booter.getTransferListener(deploySession).printSummary("Deployment to");
+
+            // Download everything again and make sure the repository contains what we staged.
+            final DefaultRepositorySystemSession verifySession =
+                    Booter.newRepositorySystemSession(system, verifyRepoDir, listener.getLogger());
+            verifySession.setChecksumPolicy(RepositoryPolicy.CHECKSUM_POLICY_FAIL);
+            verifySession.setUpdatePolicy(RepositoryPolicy.UPDATE_POLICY_ALWAYS);
+            final List<Future<Void>> verifications = new ArrayList<Future<Void>>();
+            for(final List<Artifact> module : modules) {
+                for(final Artifact artifact : module) {
+                    verifications.add(executor.submit(new Callable<Void>() {
+                        public Void call() throws Exception {
+                            verify(system, verifySession, repo, artifact);
+                            return null;
+                        }
+                    }));
+                }
+            }
+            waitFor(verifications);
+            listener.getLogger().println("[release] Verified the checksums of " + artifactCount + " artifacts");
+            Booter.getTransferListener(verifySession).printSummary("Verification from");
+        } finally {
+            executor.shutdownNow();
+            Booter.deleteDirectory(localRepoDir);
+            Booter.deleteDirectory(verifyRepoDir);
+        }
+        return artifactCount;
+    }
+
+    protected void deploy(RepositorySystem system, DefaultRepositorySystemSession session, RemoteRepository repo,
+                          List<Artifact> module) throws Exception {
+        final DeployRequest request = new DeployRequest();
+        request.setRepository(repo);
+        for(final Artifact artifact : module) {
+            request.addArtifact(artifact);
+        }
+
+        long backoff = 1000;
+        for(int attempt = 0; ; attempt++) {
+            try {
+                system.deploy(session, request);
+                return;
+            } catch (Exception e) {
+                if(attempt >= retries) {
+                    throw e;
+                }
+                listener.getLogger().println("[release] Deploying " + module.get(0) + " failed (" +
+                        e.getMessage() + "), retrying in " + backoff + "ms");
+                Thread.sleep(backoff);
+                backoff *= 2;
+            }
+        }
+    }
+
+    protected void verify(RepositorySystem system, DefaultRepositorySystemSession session, RemoteRepository repo,
+                          Artifact artifact) throws Exception {
+        final ArtifactRequest request = new ArtifactRequest();
+        request.setArtifact(new DefaultArtifact(artifact.getGroupId(), artifact.getArtifactId(),
+                artifact.getClassifier(), artifact.getExtension(), artifact.getVersion()));
+        request.addRepository(repo);
+        final ArtifactResult result = system.resolveArtifact(session, request);
+        if(!sha1(artifact.getFile()).equals(sha1(result.getArtifact().getFile()))) {
+            throw new IOException("Checksum of deployed artifact " + artifact + " doesn't match the staged file");
+        }
+    }
+
+    /**
+     * Walk the staging directory and group all artifacts by module version. A directory is
+     * considered a version directory, if it contains files named "artifactId-version*".
+     */
+    protected void collectArtifacts(File dir, String path, List<List<Artifact>> modules) {
+        final File[] files = dir.listFiles();
+        if(files == null) {
+            return;
+        }
+        final String version = dir.getName();
+        final String artifactId = (dir.getParentFile() != null) ? dir.getParentFile().getName() : null;
+        final String prefix = artifactId + "-" + version;
+        // The path of a version directory is groupId/artifactId/version.
+        final int versionSeparator = path.lastIndexOf('/');
+        final int artifactSeparator = (versionSeparator > 0) ? path.lastIndexOf('/', versionSeparator - 1) : -1;
+
+        final List<Artifact> artifacts = new ArrayList<Artifact>();
+        for(final File file : files) {
+            if(file.isDirectory()) {
+                collectArtifacts(file, (path.length() > 0) ? path + "/" + file.getName() : file.getName(), modules);
+                continue;
+            }
+            final String name = file.getName();
+            if((artifactSeparator <= 0) || !name.startsWith(prefix) || name.endsWith(".md5") ||
+                    name.endsWith(".sha1")) {
+                continue;
+            }
+            final String rest = name.substring(prefix.length());
+            String classifier = "";
+            String extension;
+            if(rest.startsWith("-") && rest.indexOf('.') > 0) {
+                classifier = rest.substring(1, rest.indexOf('.'));
+                extension = rest.substring(rest.indexOf('.') + 1);
+            } else if(rest.startsWith(".")) {
+                extension = rest.substring(1);
+            } else {
+                continue;
+            }
+            final String groupPath = path.substring(0, artifactSeparator);
+            artifacts.add(new DefaultArtifact(groupPath.replace('/', '.'), artifactId, classifier, extension,
+                    version).setFile(file));
+        }
+        if(!artifacts.isEmpty()) {
+            modules.add(artifacts);
+        }
+    }
+
+    private void waitFor(List<Future<Void>> futures) throws IOException, InterruptedException {
+        for(final Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause().getMessage(), e.getCause());
+            }
+        }
+    }
+
+    protected static String sha1(File file) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        final InputStream in = new FileInputStream(file);
+        try {
+            final byte[] buffer = new byte[8192];
+            int read;
+            while((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        final StringBuilder result = new StringBuilder();
+        for(final byte b : digest.digest()) {
+            result.append(String.format("%02x", b));
+        }
+        return result.toString();
+    }
+
+}
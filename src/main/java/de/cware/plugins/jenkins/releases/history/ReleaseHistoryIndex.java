@@ -0,0 +1,315 @@
+package de.cware.plugins.jenkins.releases.history;
+
+import hudson.XmlFile;
+import hudson.maven.MavenModuleSet;
+import hudson.maven.MavenModuleSetBuild;
+import org.eclipse.aether.util.version.GenericVersionScheme;
+import org.eclipse.aether.version.InvalidVersionSpecificationException;
+import org.eclipse.aether.version.Version;
+import org.eclipse.aether.version.VersionScheme;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Index of all versions released by the builds of a job. It allows answering which is the
+ * latest released version of a module without asking the Maven repository.
+ *
+ * The index is built from the ReleaseRecords of the completed release builds and stored
+ * in the release-history.xml in the directory of the job. It remembers the number of the
+ * last build it has indexed, so after a restart only newer builds have to be read. A
+ * completed build is added directly from its record.
+ *
+ * As modules might be released without Jenkins, the versions found in the Maven
+ * repository are merged into the index from time to time. Every range of versions is
+ * only considered up to date for RECONCILE_INTERVAL after that.
+ */
+public class ReleaseHistoryIndex {
+
+    /**
+     * Name of the file in the directory of the job the index is stored in.
+     */
+    public static final String FILE_NAME = "release-history.xml";
+
+    /**
+     * Time in milliseconds a range of versions is trusted after reconciling it with the repository.
+     */
+    public static final long RECONCILE_INTERVAL =
+            Long.getLong(ReleaseHistoryIndex.class.getName() + ".reconcileInterval", 60L * 60L * 1000L);
+
+    /**
+     * A released version of a module.
+     */
+    public static class Release {
+
+        private final String version;
+        private final long timestamp;
+        private final int build;
+
+        /**
+         * @param version the released version.
+         * @param timestamp time of the release or the time it was found in the repository.
+         * @param build number of the build performing the release or 0, if it was found in the repository.
+         */
+        public Release(String version, long timestamp, int build) {
+            this.version = version;
+            this.timestamp = timestamp;
+            this.build = build;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public int getBuild() {
+            return build;
+        }
+
+    }
+
+    private static final Map<String, ReleaseHistoryIndex> INDEXES = new HashMap<String, ReleaseHistoryIndex>();
+
+    private transient MavenModuleSet project;
+    private transient VersionScheme versionScheme;
+
+    private int lastBuild;
+    private Map<String, List<Release>> releases = new TreeMap<String, List<Release>>();
+    private Map<String, Long> reconciled = new HashMap<String, Long>();
+
+    private ReleaseHistoryIndex() {
+    }
+
+    protected Object readResolve() {
+        if(releases == null) {
+            releases = new TreeMap<String, List<Release>>();
+        }
+        if(reconciled == null) {
+            reconciled = new HashMap<String, Long>();
+        }
+        return this;
+    }
+
+    /**
+     * @return the index of the given job, which includes all builds completed so far.
+     */
+    public static ReleaseHistoryIndex forJob(MavenModuleSet project) {
+        final ReleaseHistoryIndex index = getIndex(project);
+        index.update();
+        return index;
+    }
+
+    /**
+     * @return the index of the given job as it was last saved, without reading newer builds.
+     */
+    static ReleaseHistoryIndex getIndex(MavenModuleSet project) {
+        synchronized(INDEXES) {
+            ReleaseHistoryIndex index = INDEXES.get(project.getFullName());
+            if((index == null) || (index.project != project)) {
+                index = load(project);
+                INDEXES.put(project.getFullName(), index);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Add the records of all builds completed since the index was last updated. Only the
+     * directories of these builds are read.
+     */
+    public synchronized void update() {
+        final int lastCompletedBuild = getLastCompletedBuild();
+        if(lastCompletedBuild <= lastBuild) {
+            return;
+        }
+        final SortedMap<Integer, ReleaseRecord> records =
+                ReleaseRecord.forBuilds(project, lastBuild + 1, lastCompletedBuild);
+        for(final Map.Entry<Integer, ReleaseRecord> record : records.entrySet()) {
+            doAdd(record.getKey(), record.getValue());
+        }
+        lastBuild = lastCompletedBuild;
+        save();
+    }
+
+    /**
+     * Add the record of a completed build.
+     */
+    public synchronized void add(int build, ReleaseRecord record) {
+        doAdd(build, record);
+        lastBuild = Math.max(lastBuild, build);
+        save();
+    }
+
+    /**
+     * @param lowerBound lowest version of the range (inclusive).
+     * @param upperBound highest version of the range (exclusive).
+     * @return true, if the range has been reconciled with the repository recently.
+     */
+    public boolean isReconciled(String lowerBound, String upperBound) {
+        return isReconciled(lowerBound, upperBound, RECONCILE_INTERVAL);
+    }
+
+    /**
+     * @param lowerBound lowest version of the range (inclusive).
+     * @param upperBound highest version of the range (exclusive).
+     * @param maxAge maximum time in milliseconds since the last reconciliation.
+     * @return true, if the range has been reconciled with the repository within the given time.
+     */
+    public synchronized boolean isReconciled(String lowerBound, String upperBound, long maxAge) {
+        final Long time = reconciled.get(lowerBound + "," + upperBound);
+        return (time != null) && (System.currentTimeMillis() - time < maxAge);
+    }
+
+    /**
+     * Merge the latest versions found in the repository into the index.
+     *
+     * @param lowerBound lowest version of the range (inclusive) the versions were looked up for.
+     * @param upperBound highest version of the range (exclusive) the versions were looked up for.
+     * @param repositoryVersions latest version of every module found in the repository.
+     */
+    public synchronized void reconcile(String lowerBound, String upperBound, Map<String, String> repositoryVersions) {
+        final long now = System.currentTimeMillis();
+        for(final Map.Entry<String, String> repositoryVersion : repositoryVersions.entrySet()) {
+            if(getRelease(repositoryVersion.getKey(), repositoryVersion.getValue()) == null) {
+                getReleases(repositoryVersion.getKey()).add(new Release(repositoryVersion.getValue(), now, 0));
+            }
+        }
+        reconciled.put(lowerBound + "," + upperBound, now);
+        save();
+    }
+
+    /**
+     * @param lowerBound lowest version of the range (inclusive).
+     * @param upperBound highest version of the range (exclusive).
+     * @return the latest released version in the given range for every module, which has been released in it.
+     */
+    public synchronized Map<String, String> getLatestVersions(String lowerBound, String upperBound) {
+        final Map<String, String> latestVersions = new HashMap<String, String>();
+        try {
+            final Version lower = getVersionScheme().parseVersion(lowerBound);
+            final Version upper = getVersionScheme().parseVersion(upperBound);
+            for(final Map.Entry<String, List<Release>> moduleReleases : releases.entrySet()) {
+                Version latest = null;
+                for(final Release release : moduleReleases.getValue()) {
+                    final Version version = getVersionScheme().parseVersion(release.getVersion());
+                    if((version.compareTo(lower) >= 0) && (version.compareTo(upper) < 0) &&
+                            ((latest == null) || (version.compareTo(latest) > 0))) {
+                        latest = version;
+                    }
+                }
+                if(latest != null) {
+                    latestVersions.put(moduleReleases.getKey(), latest.toString());
+                }
+            }
+        } catch (InvalidVersionSpecificationException e) {
+            e.printStackTrace();
+        }
+        return latestVersions;
+    }
+
+    /**
+     * @return all known releases of a module in the order they were added.
+     */
+    public synchronized List<Release> getReleases(String moduleKey) {
+        List<Release> moduleReleases = releases.get(moduleKey);
+        if(moduleReleases == null) {
+            moduleReleases = new ArrayList<Release>();
+            releases.put(moduleKey, moduleReleases);
+        }
+        return moduleReleases;
+    }
+
+    /**
+     * @return time of the latest release performed by a build of the job or 0, if there was none.
+     */
+    public synchronized long getLastReleaseTime() {
+        long lastReleaseTime = 0;
+        for(final List<Release> moduleReleases : releases.values()) {
+            for(final Release release : moduleReleases) {
+                if(release.getBuild() > 0) {
+                    lastReleaseTime = Math.max(lastReleaseTime, release.getTimestamp());
+                }
+            }
+        }
+        return lastReleaseTime;
+    }
+
+    public synchronized int getLastBuild() {
+        return lastBuild;
+    }
+
+    protected void doAdd(int build, ReleaseRecord record) {
+        if(!record.isSuccessful()) {
+            return;
+        }
+        for(final Map.Entry<String, String> releaseVersion : record.getReleaseVersions().entrySet()) {
+            if(getRelease(releaseVersion.getKey(), releaseVersion.getValue()) == null) {
+                getReleases(releaseVersion.getKey()).add(
+                        new Release(releaseVersion.getValue(), record.getTimestamp(), build));
+            }
+        }
+    }
+
+    protected Release getRelease(String moduleKey, String version) {
+        for(final Release release : getReleases(moduleKey)) {
+            if(release.getVersion().equals(version)) {
+                return release;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return number of the last build, which is no longer running.
+     */
+    protected int getLastCompletedBuild() {
+        int lastCompletedBuild = project.getNextBuildNumber() - 1;
+        final MavenModuleSetBuild lastBuild = project.getLastBuild();
+        if((lastBuild != null) && lastBuild.isBuilding()) {
+            lastCompletedBuild = lastBuild.getNumber() - 1;
+        }
+        return lastCompletedBuild;
+    }
+
+    protected VersionScheme getVersionScheme() {
+        if(versionScheme == null) {
+            versionScheme = new GenericVersionScheme();
+        }
+        return versionScheme;
+    }
+
+    protected void save() {
+        try {
+            getXmlFile(project).write(this);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static ReleaseHistoryIndex load(MavenModuleSet project) {
+        ReleaseHistoryIndex index = null;
+        final XmlFile xmlFile = getXmlFile(project);
+        if(xmlFile.exists()) {
+            try {
+                index = (ReleaseHistoryIndex) xmlFile.read();
+            } catch (IOException e) {
+                // Start over, the index is rebuilt from the records of the builds.
+                e.printStackTrace();
+            }
+        }
+        if(index == null) {
+            index = new ReleaseHistoryIndex();
+        }
+        index.project = project;
+        return index;
+    }
+
+    private static XmlFile getXmlFile(MavenModuleSet project) {
+        return new XmlFile(new File(project.getRootDir(), FILE_NAME));
+    }
+
+}
@@ -0,0 +1,64 @@
+package de.cware.plugins.jenkins.releases.history;
+
+import de.cware.plugins.jenkins.releases.ReleaseBuildAction;
+import de.cware.plugins.jenkins.releases.ReleaseBuildWrapper;
+import hudson.Extension;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.maven.MavenModuleSet;
+import hudson.maven.MavenModuleSetBuild;
+import hudson.model.Result;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import jenkins.model.Jenkins;
+
+/**
+ * Keeps the ReleaseHistoryIndex of the jobs up to date. Every completed release build
+ * gets the final result written to its ReleaseRecord and is added to the index of its job.
+ * When Jenkins starts, the indexes of all jobs using the release plugin are brought up
+ * to date with the builds completed since they were last saved.
+ *
+ * The versions of a successful release are also passed to the VersionHandler of the
+ * release page, so the page shows them right away, without asking the repository again.
+ */
+@Extension
+public class ReleaseHistoryListener extends RunListener<MavenModuleSetBuild> {
+
+    public ReleaseHistoryListener() {
+        super(MavenModuleSetBuild.class);
+    }
+
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void updateIndexes() {
+        for(final MavenModuleSet project : Jenkins.getInstance().getAllItems(MavenModuleSet.class)) {
+            if(project.getBuildWrappersList().get(ReleaseBuildWrapper.class) != null) {
+                try {
+                    ReleaseHistoryIndex.forJob(project);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onCompleted(MavenModuleSetBuild build, TaskListener listener) {
+        final ReleaseRecordAction recordAction = build.getAction(ReleaseRecordAction.class);
+        if((recordAction == null) || (recordAction.getRecord() == null)) {
+            return;
+        }
+        final Result result = build.getResult();
+        final ReleaseRecord record = recordAction.getRecord().withResult(
+                ((result != null) ? result : Result.SUCCESS).toString());
+        recordAction.update(record);
+        // Only add this build, bringing the index up to date would read the directories of other builds.
+        ReleaseHistoryIndex.getIndex(build.getProject()).add(build.getNumber(), record);
+
+        // The release page keeps its versions, so only the released modules are updated there.
+        final ReleaseBuildAction releaseBuildAction = build.getProject().getAction(ReleaseBuildAction.class);
+        if(record.isSuccessful() && (releaseBuildAction != null) && (releaseBuildAction.getVersionHandler() != null)) {
+            releaseBuildAction.getVersionHandler().released(record.getReleaseVersions());
+        }
+    }
+
+}
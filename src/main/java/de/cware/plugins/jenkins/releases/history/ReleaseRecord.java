@@ -0,0 +1,232 @@
+package de.cware.plugins.jenkins.releases.history;
+
+import hudson.model.Job;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Compact and immutable description of a release performed by a build: the type of the
+ * release, the tag, the modules and the versions they were released with as well as the
+ * result of the build.
+ *
+ * Besides being referenced by the ReleaseRecordAction of the build, every record is
+ * stored in a small file in the directory of the build. This way the releases of a job
+ * can be queried without loading the builds, which would deserialize the complete
+ * build.xml including all actions of every build.
+ */
+public class ReleaseRecord implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Name of the file in the directory of the build the record is stored in.
+     */
+    public static final String FILE_NAME = "release-record.properties";
+
+    public enum Type {
+        MAJOR, MINOR, RESUME
+    }
+
+    private final Type type;
+    private final String tag;
+    private final String[] modules;
+    private final String[] versions;
+    private final long timestamp;
+    private final String result;
+
+    /**
+     * @param type type of the release.
+     * @param tag name of the tag the release is created from.
+     * @param releaseVersions versions of all released modules, keyed by "groupId:artifactId".
+     * @param timestamp start time of the build.
+     * @param result result of the build or null, if it is still running.
+     */
+    public ReleaseRecord(Type type, String tag, Map<String, String> releaseVersions, long timestamp, String result) {
+        this.type = type;
+        this.tag = tag;
+        final Map<String, String> sortedVersions = new TreeMap<String, String>(releaseVersions);
+        this.modules = sortedVersions.keySet().toArray(new String[sortedVersions.size()]);
+        this.versions = sortedVersions.values().toArray(new String[sortedVersions.size()]);
+        this.timestamp = timestamp;
+        this.result = result;
+    }
+
+    private ReleaseRecord(Type type, String tag, String[] modules, String[] versions, long timestamp,
+                          String result) {
+        this.type = type;
+        this.tag = tag;
+        this.modules = modules;
+        this.versions = versions;
+        this.timestamp = timestamp;
+        this.result = result;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return the result of the build or null, if the build was still running when the record was written.
+     */
+    public String getResult() {
+        return result;
+    }
+
+    public boolean isSuccessful() {
+        return "SUCCESS".equals(result) || "UNSTABLE".equals(result);
+    }
+
+    public int getModuleCount() {
+        return modules.length;
+    }
+
+    /**
+     * @return keys of all released modules in alphabetical order.
+     */
+    public List<String> getModules() {
+        return Collections.unmodifiableList(Arrays.asList(modules));
+    }
+
+    /**
+     * @return the version the given module was released with or null, if it isn't part of the release.
+     */
+    public String getVersion(String moduleKey) {
+        final int index = Arrays.binarySearch(modules, moduleKey);
+        return (index >= 0) ? versions[index] : null;
+    }
+
+    public Map<String, String> getReleaseVersions() {
+        final Map<String, String> releaseVersions = new LinkedHashMap<String, String>();
+        for(int i = 0; i < modules.length; i++) {
+            releaseVersions.put(modules[i], versions[i]);
+        }
+        return releaseVersions;
+    }
+
+    /**
+     * @return a copy of this record with the given result.
+     */
+    public ReleaseRecord withResult(String result) {
+        return new ReleaseRecord(type, tag, modules, versions, timestamp, result);
+    }
+
+    ////////////////////////////////////////////////////////////////
+    // Persistence
+    ////////////////////////////////////////////////////////////////
+
+    public void save(File buildDir) throws IOException {
+        final Properties properties = new Properties();
+        properties.setProperty("type", type.name());
+        if(tag != null) {
+            properties.setProperty("tag", tag);
+        }
+        properties.setProperty("timestamp", Long.toString(timestamp));
+        if(result != null) {
+            properties.setProperty("result", result);
+        }
+        properties.setProperty("modules", join(modules));
+        properties.setProperty("versions", join(versions));
+
+        // Write to a temporary file first, so readers never see a half written record.
+        final File file = new File(buildDir, FILE_NAME);
+        final File tempFile = new File(buildDir, FILE_NAME + ".tmp");
+        final OutputStream out = new FileOutputStream(tempFile);
+        try {
+            properties.store(out, null);
+        } finally {
+            out.close();
+        }
+        if(!tempFile.renameTo(file)) {
+            if(!file.delete() || !tempFile.renameTo(file)) {
+                throw new IOException("Could not write " + file);
+            }
+        }
+    }
+
+    /**
+     * @param buildDir directory of a build.
+     * @return the record stored in the directory or null, if the build performed no release.
+     */
+    public static ReleaseRecord load(File buildDir) {
+        final File file = new File(buildDir, FILE_NAME);
+        if(!file.isFile()) {
+            return null;
+        }
+        try {
+            final Properties properties = new Properties();
+            final InputStream in = new FileInputStream(file);
+            try {
+                properties.load(in);
+            } finally {
+                in.close();
+            }
+            final String[] modules = split(properties.getProperty("modules"));
+            final String[] versions = split(properties.getProperty("versions"));
+            if(modules.length != versions.length) {
+                return null;
+            }
+            return new ReleaseRecord(Type.valueOf(properties.getProperty("type")), properties.getProperty("tag"),
+                    modules, versions, Long.parseLong(properties.getProperty("timestamp", "0")),
+                    properties.getProperty("result"));
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Read the records of a range of builds of a job, without loading the builds. Only the
+     * directories of the given builds are looked at, so the cost depends on the size of the
+     * range and not on the number of builds the job has.
+     *
+     * @param job the job.
+     * @param firstBuild number of the first build to read (inclusive).
+     * @param lastBuild number of the last build to read (inclusive).
+     * @return the records of the release builds in the range, keyed by build number, newest first.
+     */
+    public static SortedMap<Integer, ReleaseRecord> forBuilds(Job<?, ?> job, int firstBuild, int lastBuild) {
+        final SortedMap<Integer, ReleaseRecord> records =
+                new TreeMap<Integer, ReleaseRecord>(Collections.<Integer>reverseOrder());
+        for(int number = Math.max(firstBuild, 1); number <= lastBuild; number++) {
+            final ReleaseRecord record = load(new File(job.getBuildDir(), Integer.toString(number)));
+            if(record != null) {
+                records.put(number, record);
+            }
+        }
+        return records;
+    }
+
+    private static String join(String[] values) {
+        final StringBuilder joined = new StringBuilder();
+        for(final String value : values) {
+            if(joined.length() > 0) {
+                joined.append(",");
+            }
+            joined.append(value);
+        }
+        return joined.toString();
+    }
+
+    private static String[] split(String joined) {
+        if((joined == null) || (joined.length() == 0)) {
+            return new String[0];
+        }
+        return joined.split(",");
+    }
+
+    @Override
+    public String toString() {
+        return type + " release " + tag + " of " + modules.length + " modules" +
+                ((result != null) ? " (" + result + ")" : "");
+    }
+
+}
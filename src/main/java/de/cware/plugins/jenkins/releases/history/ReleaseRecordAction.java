@@ -0,0 +1,77 @@
+package de.cware.plugins.jenkins.releases.history;
+
+import hudson.model.Run;
+import jenkins.model.RunAction2;
+
+/**
+ * Attaches the ReleaseRecord to a release build. The record itself is not stored in the
+ * build.xml, only this empty marker is. The record is read from the file in the directory
+ * of the build the first time it is needed, so loading the build history stays cheap.
+ *
+ * In order to keep it invisible the 3 Action interface methods all return null.
+ */
+public class ReleaseRecordAction implements RunAction2 {
+
+    private transient Run<?, ?> run;
+    private transient volatile ReleaseRecord record;
+
+    public ReleaseRecordAction(ReleaseRecord record) {
+        this.record = record;
+    }
+
+    /**
+     * @return the record of the release or null, if it could not be read.
+     */
+    public ReleaseRecord getRecord() {
+        if((record == null) && (run != null)) {
+            record = ReleaseRecord.load(run.getRootDir());
+        }
+        return record;
+    }
+
+    /**
+     * Replace the record and write it to the directory of the build.
+     */
+    public synchronized void update(ReleaseRecord record) {
+        this.record = record;
+        if(run != null) {
+            try {
+                record.save(run.getRootDir());
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////
+    // RunAction2 methods
+    ////////////////////////////////////////////////////////////////
+
+    public void onAttached(Run<?, ?> run) {
+        this.run = run;
+        if(record != null) {
+            update(record);
+        }
+    }
+
+    public void onLoad(Run<?, ?> run) {
+        this.run = run;
+    }
+
+    ////////////////////////////////////////////////////////////////
+    // Action methods
+    ////////////////////////////////////////////////////////////////
+
+    public String getIconFileName() {
+        return null;
+    }
+
+    public String getDisplayName() {
+        return null;
+    }
+
+    public String getUrlName() {
+        return null;
+    }
+
+}
@@ -0,0 +1,107 @@
+package de.cware.plugins.jenkins.releases.maintenance;
+
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * Rolls back a failed release attempt the same way "release:rollback" would, but without
+ * starting Maven. The task is executed on the node the workspace is located on.
+ *
+ * As long as the release plugin didn't commit anything, rolling back only means restoring
+ * the backups of the poms and removing the files the release plugin created. If the release
+ * plugin already committed the release poms, the commits have to be reverted too, which is
+ * left to the release plugin. In this case the task doesn't change anything and returns false.
+ */
+public class RollbackTask extends MasterToSlaveFileCallable<Boolean> {
+
+    private static final long serialVersionUID = 1L;
+
+    // Phases of release:prepare after which nothing has been committed yet.
+    private static final Set<String> UNCOMMITTED_PHASES = new HashSet<String>(Arrays.asList(
+            "check-poms", "scm-check-modifications", "check-dependency-snapshots", "create-backup-poms",
+            "map-release-versions", "input-variables", "map-development-versions", "rewrite-poms-for-release",
+            "generate-release-poms", "run-preparation-goals"));
+
+    private static final String[] RELEASE_FILES = {"pom.xml.tag", "pom.xml.next", "release-pom.xml"};
+
+    private final TaskListener listener;
+
+    /**
+     * @param listener listener used for logging.
+     */
+    public RollbackTask(TaskListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @return true, if the release was rolled back, false if the release plugin has to do it.
+     */
+    public Boolean invoke(File workspace, VirtualChannel channel) throws IOException, InterruptedException {
+        return rollback(workspace);
+    }
+
+    protected boolean rollback(File workspace) throws IOException {
+        final long startTime = System.currentTimeMillis();
+        final File releaseProperties = new File(workspace, "release.properties");
+        if(releaseProperties.exists()) {
+            final Properties properties = new Properties();
+            final InputStream in = new FileInputStream(releaseProperties);
+            try {
+                properties.load(in);
+            } finally {
+                in.close();
+            }
+            final String completedPhase = properties.getProperty("completedPhase");
+            if((completedPhase != null) && !UNCOMMITTED_PHASES.contains(completedPhase)) {
+                listener.getLogger().println("[release] The release has already been committed (" +
+                        completedPhase + "), the release plugin has to roll it back");
+                return false;
+            }
+        }
+
+        final List<File> backups = new ArrayList<File>();
+        collectBackups(workspace, backups);
+        for(final File backup : backups) {
+            final File pom = new File(backup.getParentFile(), "pom.xml");
+            if((pom.exists() && !pom.delete()) || !backup.renameTo(pom)) {
+                throw new IOException("Could not restore " + pom);
+            }
+            for(final String releaseFile : RELEASE_FILES) {
+                final File file = new File(backup.getParentFile(), releaseFile);
+                if(file.exists() && !file.delete()) {
+                    throw new IOException("Could not delete " + file);
+                }
+            }
+        }
+        if(releaseProperties.exists() && !releaseProperties.delete()) {
+            throw new IOException("Could not delete " + releaseProperties);
+        }
+        listener.getLogger().println("[release] Restored " + backups.size() + " poms in " +
+                (System.currentTimeMillis() - startTime) + "ms");
+        return true;
+    }
+
+    protected void collectBackups(File dir, List<File> backups) {
+        final File[] files = dir.listFiles();
+        if(files == null) {
+            return;
+        }
+        for(final File file : files) {
+            if(file.isDirectory()) {
+                if(!"target".equals(file.getName()) && !file.getName().startsWith(".")) {
+                    collectBackups(file, backups);
+                }
+            } else if("pom.xml.releaseBackup".equals(file.getName())) {
+                backups.add(file);
+            }
+        }
+    }
+
+}
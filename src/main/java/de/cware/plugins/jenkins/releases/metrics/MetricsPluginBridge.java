@@ -0,0 +1,23 @@
+package de.cware.plugins.jenkins.releases.metrics;
+
+import jenkins.metrics.api.Metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports the metrics to the registry of the Metrics plugin. This class must only be
+ * loaded, if the plugin is installed, as it is an optional dependency.
+ */
+class MetricsPluginBridge {
+
+    private static final String PREFIX = "release-plugin.";
+
+    static void increment(String name) {
+        Metrics.metricRegistry().counter(PREFIX + name).inc();
+    }
+
+    static void time(String name, long durationNanos) {
+        Metrics.metricRegistry().timer(PREFIX + name).update(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+}
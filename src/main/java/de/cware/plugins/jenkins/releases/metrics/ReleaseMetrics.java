@@ -0,0 +1,194 @@
+package de.cware.plugins.jenkins.releases.metrics;
+
+import jenkins.model.Jenkins;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters and timers of the internals of the plugin, like version lookups, parsing poms,
+ * building the dependency graph, rendering the release page and scheduling release builds.
+ * The metrics are kept in memory since the start of Jenkins and shown by the
+ * ReleaseMetricsLink. If the Metrics plugin is installed, all values are additionally
+ * reported to its registry with the prefix "release-plugin.".
+ *
+ * Names are dot separated, for example "versions.lookup" or "poms.parse".
+ */
+public class ReleaseMetrics {
+
+    /**
+     * Upper bounds of the buckets of the latency histograms in milliseconds.
+     */
+    public static final long[] BUCKETS = {1, 5, 10, 50, 100, 500, 1000, 5000, 10000};
+
+    private static final ReleaseMetrics INSTANCE = new ReleaseMetrics();
+
+    private final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<String, AtomicLong>();
+    private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<String, Timer>();
+    private final long startTime = System.currentTimeMillis();
+
+    private volatile Boolean metricsPluginInstalled;
+
+    public static ReleaseMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Increment a counter by one.
+     */
+    public void increment(String name) {
+        AtomicLong counter = counters.get(name);
+        if(counter == null) {
+            counters.putIfAbsent(name, new AtomicLong());
+            counter = counters.get(name);
+        }
+        counter.incrementAndGet();
+        if(isMetricsPluginInstalled()) {
+            MetricsPluginBridge.increment(name);
+        }
+    }
+
+    /**
+     * Record the time since the given start.
+     *
+     * @param name name of the timer.
+     * @param startNanos the start as returned by System.nanoTime().
+     */
+    public void time(String name, long startNanos) {
+        final long duration = System.nanoTime() - startNanos;
+        Timer timer = timers.get(name);
+        if(timer == null) {
+            timers.putIfAbsent(name, new Timer());
+            timer = timers.get(name);
+        }
+        timer.update(duration);
+        if(isMetricsPluginInstalled()) {
+            MetricsPluginBridge.time(name, duration);
+        }
+    }
+
+    public SortedMap<String, Long> getCounters() {
+        final SortedMap<String, Long> result = new TreeMap<String, Long>();
+        for(final Map.Entry<String, AtomicLong> counter : counters.entrySet()) {
+            result.put(counter.getKey(), counter.getValue().get());
+        }
+        return result;
+    }
+
+    public SortedMap<String, Timer> getTimers() {
+        return new TreeMap<String, Timer>(timers);
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public void reset() {
+        counters.clear();
+        timers.clear();
+    }
+
+    public JSONObject toJSON() {
+        final JSONObject json = new JSONObject();
+        json.put("since", startTime);
+        final JSONObject countersJson = new JSONObject();
+        for(final Map.Entry<String, Long> counter : getCounters().entrySet()) {
+            countersJson.put(counter.getKey(), counter.getValue());
+        }
+        json.put("counters", countersJson);
+        final JSONObject timersJson = new JSONObject();
+        for(final Map.Entry<String, Timer> timer : getTimers().entrySet()) {
+            timersJson.put(timer.getKey(), timer.getValue().toJSON());
+        }
+        json.put("timers", timersJson);
+        return json;
+    }
+
+    protected boolean isMetricsPluginInstalled() {
+        if(metricsPluginInstalled == null) {
+            final Jenkins jenkins = Jenkins.getInstance();
+            if(jenkins == null) {
+                return false;
+            }
+            metricsPluginInstalled = jenkins.getPlugin("metrics") != null;
+        }
+        return metricsPluginInstalled;
+    }
+
+    /**
+     * Number, total and maximum duration of an operation together with a histogram of the durations.
+     */
+    public static class Timer {
+
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+        private final long[] buckets = new long[BUCKETS.length + 1];
+
+        public synchronized void update(long durationNanos) {
+            count++;
+            totalNanos += durationNanos;
+            maxNanos = Math.max(maxNanos, durationNanos);
+            final long durationMillis = durationNanos / 1000000;
+            int bucket = 0;
+            while((bucket < BUCKETS.length) && (durationMillis > BUCKETS[bucket])) {
+                bucket++;
+            }
+            buckets[bucket]++;
+        }
+
+        public synchronized long getCount() {
+            return count;
+        }
+
+        public synchronized double getMeanMillis() {
+            return (count > 0) ? totalNanos / 1000000.0 / count : 0;
+        }
+
+        public synchronized double getMaxMillis() {
+            return maxNanos / 1000000.0;
+        }
+
+        public synchronized double getTotalMillis() {
+            return totalNanos / 1000000.0;
+        }
+
+        /**
+         * @return number of durations per bucket, keyed by the label of the bucket like "&lt;= 10ms".
+         */
+        public synchronized Map<String, Long> getHistogram() {
+            final Map<String, Long> histogram = new LinkedHashMap<String, Long>();
+            for(int i = 0; i < buckets.length; i++) {
+                final String label = (i < BUCKETS.length) ? "<= " + BUCKETS[i] + "ms" : "> " + BUCKETS[i - 1] + "ms";
+                histogram.put(label, buckets[i]);
+            }
+            return histogram;
+        }
+
+        public synchronized JSONObject toJSON() {
+            final JSONObject json = new JSONObject();
+            json.put("count", count);
+            json.put("totalMillis", getTotalMillis());
+            json.put("meanMillis", getMeanMillis());
+            json.put("maxMillis", getMaxMillis());
+            final JSONArray histogram = new JSONArray();
+            for(int i = 0; i < buckets.length; i++) {
+                final JSONObject bucket = new JSONObject();
+                bucket.put("le", (i < BUCKETS.length) ? String.valueOf(BUCKETS[i]) : "inf");
+                bucket.put("count", buckets[i]);
+                histogram.add(bucket);
+            }
+            json.put("histogram", histogram);
+            return json;
+        }
+
+    }
+
+}
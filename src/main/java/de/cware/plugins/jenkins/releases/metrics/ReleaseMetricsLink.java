@@ -0,0 +1,56 @@
+package de.cware.plugins.jenkins.releases.metrics;
+
+import hudson.Extension;
+import hudson.model.ManagementLink;
+import jenkins.model.Jenkins;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+import org.kohsuke.stapler.interceptor.RequirePOST;
+
+import java.io.IOException;
+
+/**
+ * Shows the ReleaseMetrics on the "Manage Jenkins" page. The same information is available
+ * as JSON document at "manage/release-metrics/json".
+ */
+@Extension
+public class ReleaseMetricsLink extends ManagementLink {
+
+    @Override
+    public String getIconFileName() {
+        return "/plugin/release-plugin/img/release.png";
+    }
+
+    public String getDisplayName() {
+        return "Release Plugin Metrics";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Timers and counters of version lookups, pom parsing, page rendering and release builds.";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "release-metrics";
+    }
+
+    public ReleaseMetrics getMetrics() {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        return ReleaseMetrics.get();
+    }
+
+    public void doJson(StaplerRequest request, StaplerResponse response) throws IOException {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        response.setContentType("application/json;charset=UTF-8");
+        response.getWriter().write(ReleaseMetrics.get().toJSON().toString(2));
+    }
+
+    @RequirePOST
+    public void doReset(StaplerRequest request, StaplerResponse response) throws IOException {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        ReleaseMetrics.get().reset();
+        response.sendRedirect(".");
+    }
+
+}
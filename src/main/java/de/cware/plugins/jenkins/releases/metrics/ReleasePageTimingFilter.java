@@ -0,0 +1,60 @@
+package de.cware.plugins.jenkins.releases.metrics;
+
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.util.PluginServletFilter;
+
+import javax.servlet.*;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+
+/**
+ * Times the requests to the pages of the release plugin, the release page of the jobs
+ * as well as the plan and the orchestration pages.
+ */
+public class ReleasePageTimingFilter implements Filter {
+
+    @Initializer(after = InitMilestone.PLUGINS_STARTED)
+    public static void register() throws ServletException {
+        PluginServletFilter.addFilter(new ReleasePageTimingFilter());
+    }
+
+    public void init(FilterConfig filterConfig) throws ServletException {
+    }
+
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        final String page = (request instanceof HttpServletRequest) ?
+                getPageName(((HttpServletRequest) request).getRequestURI()) : null;
+        if(page == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        final long start = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReleaseMetrics.get().time("page." + page, start);
+        }
+    }
+
+    public void destroy() {
+    }
+
+    /**
+     * @return name of the page of this plugin or null, if the request is for another page.
+     */
+    protected String getPageName(String uri) {
+        if(uri.endsWith("/release/") || uri.endsWith("/release")) {
+            return "release";
+        }
+        if(uri.endsWith("/release/plan")) {
+            return "plan";
+        }
+        if(uri.endsWith("/release-orchestration/") || uri.endsWith("/release-orchestration")) {
+            return "orchestration";
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,97 @@
+package de.cware.plugins.jenkins.releases.orchestration;
+
+import hudson.maven.MavenModule;
+import hudson.maven.MavenModuleSet;
+import hudson.maven.ModuleDependency;
+
+import java.util.*;
+
+/**
+ * Graph of the dependencies between jobs. A job depends on another job, if any of its
+ * modules has a dependency to or a parent among the modules of the other job. The
+ * information is taken from the modules Jenkins has recorded during the last build of
+ * each job, so no poms have to be parsed.
+ *
+ * The jobs are ordered in waves: the jobs of a wave only depend on jobs of earlier waves,
+ * so all jobs of a wave can be released at the same time.
+ */
+public class JobGraph {
+
+    private final Map<String, MavenModuleSet> jobs = new TreeMap<String, MavenModuleSet>();
+    private final Map<String, String> moduleOwners = new HashMap<String, String>();
+    private final Map<String, Set<String>> requiredJobs = new HashMap<String, Set<String>>();
+
+    /**
+     * @param jobs the jobs that should be released.
+     */
+    public JobGraph(Collection<MavenModuleSet> jobs) {
+        for(final MavenModuleSet job : jobs) {
+            this.jobs.put(job.getFullName(), job);
+            for(final MavenModule module : job.getModules()) {
+                moduleOwners.put(getModuleKey(module), job.getFullName());
+            }
+        }
+        for(final MavenModuleSet job : jobs) {
+            final Set<String> required = new TreeSet<String>();
+            for(final MavenModule module : job.getModules()) {
+                for(final ModuleDependency dependency : module.getDependencies()) {
+                    final String owner = moduleOwners.get(dependency.groupId + ":" + dependency.artifactId);
+                    if((owner != null) && !owner.equals(job.getFullName())) {
+                        required.add(owner);
+                    }
+                }
+            }
+            requiredJobs.put(job.getFullName(), required);
+        }
+    }
+
+    public static String getModuleKey(MavenModule module) {
+        return module.getModuleName().groupId + ":" + module.getModuleName().artifactId;
+    }
+
+    /**
+     * @return names of the jobs the given job depends on.
+     */
+    public Set<String> getRequiredJobs(String jobName) {
+        final Set<String> required = requiredJobs.get(jobName);
+        return (required != null) ? required : Collections.<String>emptySet();
+    }
+
+    /**
+     * @return name of the job the module with the given key belongs to or null.
+     */
+    public String getOwner(String moduleKey) {
+        return moduleOwners.get(moduleKey);
+    }
+
+    /**
+     * Order the jobs in waves. Within a wave the jobs are sorted by name, so the order is
+     * the same every time.
+     *
+     * @return the waves of jobs.
+     * @throws IllegalStateException if the jobs depend on each other in a cycle.
+     */
+    public List<List<MavenModuleSet>> getWaves() {
+        final List<List<MavenModuleSet>> waves = new ArrayList<List<MavenModuleSet>>();
+        final Set<String> scheduled = new HashSet<String>();
+        while(scheduled.size() < jobs.size()) {
+            final List<MavenModuleSet> wave = new ArrayList<MavenModuleSet>();
+            for(final Map.Entry<String, MavenModuleSet> job : jobs.entrySet()) {
+                if(!scheduled.contains(job.getKey()) && scheduled.containsAll(getRequiredJobs(job.getKey()))) {
+                    wave.add(job.getValue());
+                }
+            }
+            if(wave.isEmpty()) {
+                final Set<String> cyclicJobs = new TreeSet<String>(jobs.keySet());
+                cyclicJobs.removeAll(scheduled);
+                throw new IllegalStateException("Cyclic dependencies between the jobs " + cyclicJobs);
+            }
+            for(final MavenModuleSet job : wave) {
+                scheduled.add(job.getFullName());
+            }
+            waves.add(wave);
+        }
+        return waves;
+    }
+
+}
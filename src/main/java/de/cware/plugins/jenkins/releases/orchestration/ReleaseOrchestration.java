@@ -0,0 +1,225 @@
+package de.cware.plugins.jenkins.releases.orchestration;
+
+import de.cware.plugins.jenkins.releases.MajorReleaseInterceptorAction;
+import de.cware.plugins.jenkins.releases.ReleaseLock;
+import de.cware.plugins.jenkins.releases.versions.VersionHandler;
+import hudson.maven.MavenModule;
+import hudson.maven.MavenModuleSet;
+import hudson.maven.MavenModuleSetBuild;
+import hudson.maven.ModuleDependency;
+import hudson.model.Result;
+import hudson.model.queue.QueueTaskFuture;
+import hudson.security.ACL;
+import org.acegisecurity.Authentication;
+import org.acegisecurity.context.SecurityContext;
+import org.acegisecurity.context.SecurityContextHolder;
+
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Releases a set of jobs in the order of their dependencies. All jobs of a wave of the
+ * JobGraph are scheduled at once, so Jenkins builds them in parallel on as many executors
+ * as are available. The next wave is only started after all releases of the current wave
+ * have finished successfully.
+ *
+ * The versions the modules of a wave have been released as are passed on to the release
+ * builds of the following waves, so SNAPSHOT dependencies to them are replaced by the
+ * versions just released.
+ */
+public class ReleaseOrchestration implements Runnable {
+
+    public enum JobState {
+        WAITING, RUNNING, RELEASED, FAILED, SKIPPED
+    }
+
+    private final List<List<MavenModuleSet>> waves;
+    private final Authentication authentication;
+    private final String userName;
+    private final long startTime;
+
+    private final Map<String, JobState> jobStates = new HashMap<String, JobState>();
+    private final Map<String, String> jobVersions = new HashMap<String, String>();
+    private final Map<String, Integer> jobBuildNumbers = new HashMap<String, Integer>();
+    private final Map<String, String> releaseVersions = new HashMap<String, String>();
+    private final Map<String, String> developmentVersions = new HashMap<String, String>();
+
+    private volatile int currentWave = -1;
+    private volatile boolean finished;
+    private volatile String message;
+
+    /**
+     * @param graph the dependency graph of the jobs.
+     * @param authentication the user starting the orchestration. The release builds are triggered as this user.
+     * @throws IllegalStateException if the jobs depend on each other in a cycle.
+     */
+    public ReleaseOrchestration(JobGraph graph, Authentication authentication) {
+        this.waves = graph.getWaves();
+        this.authentication = authentication;
+        this.userName = authentication.getName();
+        this.startTime = System.currentTimeMillis();
+        for(final List<MavenModuleSet> wave : waves) {
+            for(final MavenModuleSet job : wave) {
+                jobStates.put(job.getFullName(), JobState.WAITING);
+            }
+        }
+    }
+
+    public void run() {
+        final SecurityContext previousContext = ACL.impersonate(authentication);
+        try {
+            for(int i = 0; i < waves.size(); i++) {
+                currentWave = i;
+                if(!releaseWave(waves.get(i))) {
+                    skipRemainingJobs();
+                    break;
+                }
+            }
+        } catch(Exception e) {
+            e.printStackTrace();
+            message = e.getMessage();
+            skipRemainingJobs();
+        } finally {
+            finished = true;
+            SecurityContextHolder.setContext(previousContext);
+        }
+    }
+
+    /**
+     * Schedule the releases of all jobs of a wave and wait for them to finish.
+     *
+     * @return true if all jobs have been released.
+     */
+    protected boolean releaseWave(List<MavenModuleSet> wave) throws Exception {
+        final Map<MavenModuleSet, QueueTaskFuture<MavenModuleSetBuild>> builds =
+                new LinkedHashMap<MavenModuleSet, QueueTaskFuture<MavenModuleSetBuild>>();
+        final Map<MavenModuleSet, Map<String, String>> moduleVersions =
+                new HashMap<MavenModuleSet, Map<String, String>>();
+        boolean success = true;
+        for(final MavenModuleSet job : wave) {
+            // The versions of all jobs released before are known now.
+            final String version = new VersionHandler(job).getNextReleaseVersion(job.getRootModule().getModuleName());
+
+            final Map<String, String> dependencyReleaseVersions = new HashMap<String, String>();
+            final Map<String, String> dependencyDevelopmentVersions = new HashMap<String, String>();
+            final Map<String, String> currentVersions = new HashMap<String, String>();
+            for(final MavenModule module : job.getModules()) {
+                currentVersions.put(JobGraph.getModuleKey(module), module.getVersion());
+                for(final ModuleDependency dependency : module.getDependencies()) {
+                    final String dependencyKey = dependency.groupId + ":" + dependency.artifactId;
+                    if(releaseVersions.containsKey(dependencyKey)) {
+                        dependencyReleaseVersions.put(dependencyKey, releaseVersions.get(dependencyKey));
+                        dependencyDevelopmentVersions.put(dependencyKey, developmentVersions.get(dependencyKey));
+                    }
+                }
+            }
+            moduleVersions.put(job, currentVersions);
+
+            // Server side tagging only deploys the poms of the reactor, so the release plugin has
+            // to be used for replacing the dependencies to other jobs.
+            final MajorReleaseInterceptorAction action = new MajorReleaseInterceptorAction(version, false,
+                    dependencyReleaseVersions, dependencyDevelopmentVersions);
+            final QueueTaskFuture<MavenModuleSetBuild> build =
+                    ReleaseLock.forJob(job).scheduleExclusively(action);
+            if(build == null) {
+                setJobState(job, JobState.FAILED);
+                message = "The release of " + job.getFullName() + " couldn't be scheduled, as it is locked.";
+                success = false;
+                continue;
+            }
+            synchronized(this) {
+                jobVersions.put(job.getFullName(), version);
+            }
+            setJobState(job, JobState.RUNNING);
+            builds.put(job, build);
+        }
+
+        // Wait for all builds of the wave, even if one of them failed, so no build is left running.
+        for(final Map.Entry<MavenModuleSet, QueueTaskFuture<MavenModuleSetBuild>> build : builds.entrySet()) {
+            final MavenModuleSet job = build.getKey();
+            final MavenModuleSetBuild result;
+            try {
+                result = build.getValue().get();
+            } catch (CancellationException e) {
+                // The release has been removed from the queue, before it was started.
+                setJobState(job, JobState.FAILED);
+                message = "The release of " + job.getFullName() + " has been cancelled.";
+                success = false;
+                continue;
+            } catch (ExecutionException e) {
+                e.printStackTrace();
+                setJobState(job, JobState.FAILED);
+                message = "The release of " + job.getFullName() + " failed.";
+                success = false;
+                continue;
+            }
+            synchronized(this) {
+                jobBuildNumbers.put(job.getFullName(), result.getNumber());
+            }
+            if(result.getResult() != Result.SUCCESS) {
+                setJobState(job, JobState.FAILED);
+                message = "The release of " + job.getFullName() + " failed.";
+                success = false;
+                continue;
+            }
+            synchronized(this) {
+                for(final Map.Entry<String, String> moduleVersion : moduleVersions.get(job).entrySet()) {
+                    releaseVersions.put(moduleVersion.getKey(), jobVersions.get(job.getFullName()));
+                    developmentVersions.put(moduleVersion.getKey(), moduleVersion.getValue());
+                }
+            }
+            setJobState(job, JobState.RELEASED);
+        }
+        return success;
+    }
+
+    protected synchronized void skipRemainingJobs() {
+        for(final Map.Entry<String, JobState> jobState : jobStates.entrySet()) {
+            if(jobState.getValue() == JobState.WAITING) {
+                jobState.setValue(JobState.SKIPPED);
+            }
+        }
+    }
+
+    protected synchronized void setJobState(MavenModuleSet job, JobState state) {
+        jobStates.put(job.getFullName(), state);
+    }
+
+    public List<List<MavenModuleSet>> getWaves() {
+        return waves;
+    }
+
+    public int getCurrentWave() {
+        return currentWave;
+    }
+
+    public synchronized JobState getJobState(MavenModuleSet job) {
+        return jobStates.get(job.getFullName());
+    }
+
+    public synchronized String getJobVersion(MavenModuleSet job) {
+        return jobVersions.get(job.getFullName());
+    }
+
+    public synchronized Integer getJobBuildNumber(MavenModuleSet job) {
+        return jobBuildNumbers.get(job.getFullName());
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public Date getStartTime() {
+        return new Date(startTime);
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+}
@@ -0,0 +1,61 @@
+package de.cware.plugins.jenkins.releases.plan;
+
+import java.io.Serializable;
+
+/**
+ * Result of the ParallelismAdvisor: the number of threads that should be used for building
+ * the reactor together with the figures the decision was based on. All times are in
+ * milliseconds.
+ */
+public class ParallelismAdvice implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int threads;
+    private final int modules;
+    private final int width;
+    private final long criticalPath;
+    private final long totalWork;
+    private final long expectedDuration;
+
+    public ParallelismAdvice(int threads, int modules, int width, long criticalPath, long totalWork,
+                             long expectedDuration) {
+        this.threads = threads;
+        this.modules = modules;
+        this.width = width;
+        this.criticalPath = criticalPath;
+        this.totalWork = totalWork;
+        this.expectedDuration = expectedDuration;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getModules() {
+        return modules;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public long getCriticalPath() {
+        return criticalPath;
+    }
+
+    public long getTotalWork() {
+        return totalWork;
+    }
+
+    public long getExpectedDuration() {
+        return expectedDuration;
+    }
+
+    @Override
+    public String toString() {
+        return threads + " threads (" + modules + " modules, width " + width + ", critical path " +
+                criticalPath + "ms, total work " + totalWork + "ms, expected " + expectedDuration + "ms)";
+    }
+
+}
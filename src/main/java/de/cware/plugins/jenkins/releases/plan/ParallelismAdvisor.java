@@ -0,0 +1,188 @@
+package de.cware.plugins.jenkins.releases.plan;
+
+import jenkins.security.MasterToSlaveCallable;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+
+import java.util.*;
+
+/**
+ * Suggests the number of threads Maven should use for building the reactor of a release.
+ * The suggestion is based on the dependency graph of the modules and on the time each
+ * module took to build in previous builds:
+ *
+ * - the critical path is the longest chain of modules depending on each other, which can
+ *   never be built in parallel,
+ * - the width is the maximum number of modules on the same level of the graph,
+ *   which is the maximum number of modules that could be built at the same time.
+ *
+ * Using more threads than the total work divided by the critical path or more threads
+ * than the width of the graph doesn't make the build any faster. Neither does using more
+ * threads than the node building the release has processors.
+ */
+public class ParallelismAdvisor {
+
+    /**
+     * Duration assumed for modules, if no module has been built before.
+     */
+    private static final long DEFAULT_DURATION = 1000;
+
+    /**
+     * Returns the number of processors of the node it is executed on.
+     */
+    public static class AvailableProcessors extends MasterToSlaveCallable<Integer, RuntimeException> {
+
+        public Integer call() {
+            return Runtime.getRuntime().availableProcessors();
+        }
+
+    }
+
+    private final Map<String, Model> mavenModels;
+    private final Map<String, Long> moduleDurations;
+
+    /**
+     * @param mavenModels the models of all modules of the project.
+     * @param moduleDurations the durations of previous builds of the modules in milliseconds.
+     */
+    public ParallelismAdvisor(Map<String, Model> mavenModels, Map<String, Long> moduleDurations) {
+        this.mavenModels = mavenModels;
+        this.moduleDurations = moduleDurations;
+    }
+
+    /**
+     * @param moduleKeys keys of the modules which are part of the reactor.
+     * @param maxThreads the maximum number of threads to use or 0, if there is no limit.
+     * @return the suggested parallelism.
+     */
+    public ParallelismAdvice advise(Collection<String> moduleKeys, int maxThreads) {
+        final Set<String> modules = new HashSet<String>(moduleKeys);
+
+        // Modules that have never been built are assumed to take as long as an average module.
+        long knownDuration = 0;
+        int knownModules = 0;
+        for(final String moduleKey : modules) {
+            final Long duration = moduleDurations.get(moduleKey);
+            if(duration != null) {
+                knownDuration += duration;
+                knownModules++;
+            }
+        }
+        final long defaultDuration = (knownModules > 0) ? knownDuration / knownModules : DEFAULT_DURATION;
+
+        final Map<String, Long> finishTimes = new HashMap<String, Long>();
+        final Map<String, Integer> levels = new HashMap<String, Integer>();
+        long totalWork = 0;
+        long criticalPath = 0;
+        for(final String moduleKey : getReactorOrder(modules)) {
+            // Calculate the earliest time a module could be finished, if all modules it depends on
+            // are built as early as possible. Modules of a cycle are started without waiting for
+            // each other, Maven would refuse to build a cyclic reactor anyway.
+            long startTime = 0;
+            int level = 0;
+            for(final String requiredModuleKey : getRequiredModules(moduleKey, modules)) {
+                if(finishTimes.containsKey(requiredModuleKey)) {
+                    startTime = Math.max(startTime, finishTimes.get(requiredModuleKey));
+                    level = Math.max(level, levels.get(requiredModuleKey) + 1);
+                }
+            }
+            final Long duration = moduleDurations.get(moduleKey);
+            final long moduleDuration = (duration != null) ? duration : defaultDuration;
+            finishTimes.put(moduleKey, startTime + moduleDuration);
+            levels.put(moduleKey, level);
+            totalWork += moduleDuration;
+            criticalPath = Math.max(criticalPath, startTime + moduleDuration);
+        }
+
+        final Map<Integer, Integer> levelWidths = new HashMap<Integer, Integer>();
+        int width = 0;
+        for(final Integer level : levels.values()) {
+            final int levelWidth = levelWidths.containsKey(level) ? levelWidths.get(level) + 1 : 1;
+            levelWidths.put(level, levelWidth);
+            width = Math.max(width, levelWidth);
+        }
+
+        int threads = (criticalPath > 0) ? (int) ((totalWork + criticalPath - 1) / criticalPath) : 1;
+        threads = Math.min(threads, width);
+        if(maxThreads > 0) {
+            threads = Math.min(threads, maxThreads);
+        }
+        threads = Math.max(threads, 1);
+
+        return new ParallelismAdvice(threads, modules.size(), width, criticalPath, totalWork,
+                Math.max(criticalPath, totalWork / threads));
+    }
+
+    /**
+     * Sort the modules so every module comes after the modules it requires, the way the
+     * Maven reactor does. If the remaining modules only require each other, the cycle is
+     * broken at the first of them.
+     */
+    private List<String> getReactorOrder(Set<String> modules) {
+        final Map<String, Integer> missingModules = new HashMap<String, Integer>();
+        final Map<String, List<String>> dependentModules = new HashMap<String, List<String>>();
+        for(final String moduleKey : modules) {
+            final List<String> requiredModules = getRequiredModules(moduleKey, modules);
+            missingModules.put(moduleKey, requiredModules.size());
+            for(final String requiredModuleKey : requiredModules) {
+                if(!dependentModules.containsKey(requiredModuleKey)) {
+                    dependentModules.put(requiredModuleKey, new ArrayList<String>());
+                }
+                dependentModules.get(requiredModuleKey).add(moduleKey);
+            }
+        }
+
+        final List<String> order = new ArrayList<String>(modules.size());
+        final SortedSet<String> remainingModules = new TreeSet<String>(modules);
+        final SortedSet<String> readyModules = new TreeSet<String>();
+        for(final String moduleKey : remainingModules) {
+            if(missingModules.get(moduleKey) == 0) {
+                readyModules.add(moduleKey);
+            }
+        }
+        while(!remainingModules.isEmpty()) {
+            if(readyModules.isEmpty()) {
+                readyModules.add(remainingModules.first());
+            }
+            final String moduleKey = readyModules.first();
+            readyModules.remove(moduleKey);
+            remainingModules.remove(moduleKey);
+            order.add(moduleKey);
+            if(dependentModules.containsKey(moduleKey)) {
+                for(final String dependentModuleKey : dependentModules.get(moduleKey)) {
+                    final int missing = missingModules.get(dependentModuleKey) - 1;
+                    missingModules.put(dependentModuleKey, missing);
+                    if((missing == 0) && remainingModules.contains(dependentModuleKey)) {
+                        readyModules.add(dependentModuleKey);
+                    }
+                }
+            }
+        }
+        return order;
+    }
+
+    /**
+     * @return keys of the parent and the dependencies of a module, which are part of the reactor.
+     */
+    private List<String> getRequiredModules(String moduleKey, Set<String> modules) {
+        final List<String> requiredModules = new ArrayList<String>();
+        final Model model = mavenModels.get(moduleKey);
+        if(model == null) {
+            return requiredModules;
+        }
+        if(model.getParent() != null) {
+            final String parentKey = model.getParent().getGroupId() + ":" + model.getParent().getArtifactId();
+            if(modules.contains(parentKey)) {
+                requiredModules.add(parentKey);
+            }
+        }
+        for(final Dependency dependency : model.getDependencies()) {
+            final String dependencyKey = dependency.getGroupId() + ":" + dependency.getArtifactId();
+            if(modules.contains(dependencyKey) && !requiredModules.contains(dependencyKey)) {
+                requiredModules.add(dependencyKey);
+            }
+        }
+        return requiredModules;
+    }
+
+}
@@ -0,0 +1,48 @@
+package de.cware.plugins.jenkins.releases.plan;
+
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.io.xpp3.MavenXpp3Writer;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Collection;
+
+/**
+ * The release plugin changes the versions of all modules and the scm section in every pom
+ * of a release. In order to find out if a pom was actually changed, these parts have to be
+ * removed before comparing two versions of a pom.
+ */
+public class PomNormalizer {
+
+    /**
+     * @param model the model to normalize. The model itself is not changed.
+     * @param projectModules keys of all modules of the project.
+     * @return the normalized pom.
+     */
+    public static String normalize(Model model, Collection<String> projectModules) throws IOException {
+        final Model normalizedModel = model.clone();
+        normalizedModel.setVersion(null);
+        normalizedModel.setScm(null);
+        if((normalizedModel.getParent() != null) && projectModules.contains(
+                normalizedModel.getParent().getGroupId() + ":" + normalizedModel.getParent().getArtifactId())) {
+            normalizedModel.getParent().setVersion(null);
+        }
+        for(final Dependency dependency : normalizedModel.getDependencies()) {
+            if(projectModules.contains(dependency.getGroupId() + ":" + dependency.getArtifactId())) {
+                dependency.setVersion(null);
+            }
+        }
+        if(normalizedModel.getDependencyManagement() != null) {
+            for(final Dependency dependency : normalizedModel.getDependencyManagement().getDependencies()) {
+                if(projectModules.contains(dependency.getGroupId() + ":" + dependency.getArtifactId())) {
+                    dependency.setVersion(null);
+                }
+            }
+        }
+        final StringWriter writer = new StringWriter();
+        new MavenXpp3Writer().write(writer, normalizedModel);
+        return writer.toString();
+    }
+
+}
@@ -0,0 +1,244 @@
+package de.cware.plugins.jenkins.releases.plan;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of simulating a release without actually running Maven. The plan contains
+ * everything the release plugin would be told by the interceptor actions: the tag,
+ * the release and development versions of every module in the reactor, the modules
+ * that were automatically added because of parent or dependency relations and all
+ * SNAPSHOT references that would make the release fail.
+ *
+ * A plan is calculated by the ReleasePlanner and is only schedulable, if no modules
+ * are missing and no blocking SNAPSHOT references were found.
+ */
+public class ReleasePlan {
+
+    public enum Type {
+        MAJOR, MINOR
+    }
+
+    private final Type type;
+    private final String tagName;
+    private final String developmentVersion;
+
+    private final List<String> reactor = new ArrayList<String>();
+    private final Map<String, String> releaseVersions = new LinkedHashMap<String, String>();
+    private final Map<String, String> pinnedVersions = new LinkedHashMap<String, String>();
+
+    private final List<String> addedParents = new ArrayList<String>();
+    private final List<String> addedDependents = new ArrayList<String>();
+    private final List<String> missingModules = new ArrayList<String>();
+    private final List<SnapshotReference> snapshotReferences = new ArrayList<SnapshotReference>();
+    private final List<String> blockingSnapshots = new ArrayList<String>();
+    private final List<String> propertyCycles = new ArrayList<String>();
+    private final List<String> unverifiedReferences = new ArrayList<String>();
+
+    private long calculationTime;
+
+    public ReleasePlan(Type type, String tagName, String developmentVersion) {
+        this.type = type;
+        this.tagName = tagName;
+        this.developmentVersion = developmentVersion;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getTagName() {
+        return tagName;
+    }
+
+    public String getDevelopmentVersion() {
+        return developmentVersion;
+    }
+
+    /**
+     * @return list of the keys (groupId:artifactId) of all modules that will be part of
+     * the release reactor in the order Maven will build them.
+     */
+    public List<String> getReactor() {
+        return Collections.unmodifiableList(reactor);
+    }
+
+    /**
+     * @return map containing the release version of every module in the reactor.
+     */
+    public Map<String, String> getReleaseVersions() {
+        return Collections.unmodifiableMap(releaseVersions);
+    }
+
+    /**
+     * @return map containing the latest released version of every module that is not
+     * part of the reactor. These are passed to the release plugin, so references to
+     * these modules can be replaced with released versions.
+     */
+    public Map<String, String> getPinnedVersions() {
+        return Collections.unmodifiableMap(pinnedVersions);
+    }
+
+    public List<String> getAddedParents() {
+        return Collections.unmodifiableList(addedParents);
+    }
+
+    public List<String> getAddedDependents() {
+        return Collections.unmodifiableList(addedDependents);
+    }
+
+    public List<String> getMissingModules() {
+        return Collections.unmodifiableList(missingModules);
+    }
+
+    /**
+     * @return all SNAPSHOT references of the modules in the reactor.
+     */
+    public List<SnapshotReference> getSnapshotReferences() {
+        return Collections.unmodifiableList(snapshotReferences);
+    }
+
+    /**
+     * @return descriptions of all SNAPSHOT references that would make the release fail.
+     */
+    public List<String> getBlockingSnapshots() {
+        return Collections.unmodifiableList(blockingSnapshots);
+    }
+
+    /**
+     * @return descriptions of the property cycles, which prevented resolving some versions.
+     */
+    public List<String> getPropertyCycles() {
+        return Collections.unmodifiableList(propertyCycles);
+    }
+
+    /**
+     * @return descriptions of the references, whose versions couldn't be checked reliably.
+     */
+    public List<String> getUnverifiedReferences() {
+        return Collections.unmodifiableList(unverifiedReferences);
+    }
+
+    /**
+     * @return true if every version in the reactor could be resolved and checked, so the SNAPSHOT
+     * references are known completely and the release plugin doesn't have to check them.
+     */
+    public boolean isSnapshotsVerified() {
+        return propertyCycles.isEmpty() && unverifiedReferences.isEmpty();
+    }
+
+    public long getCalculationTime() {
+        return calculationTime;
+    }
+
+    /**
+     * @return true if scheduling a release build for this plan has a chance of succeeding.
+     */
+    public boolean isSchedulable() {
+        return missingModules.isEmpty() && blockingSnapshots.isEmpty();
+    }
+
+    public JSONObject toJSON() {
+        final JSONObject json = new JSONObject();
+        json.put("type", type.name().toLowerCase());
+        json.put("tag", tagName);
+        json.put("developmentVersion", developmentVersion);
+        json.put("schedulable", isSchedulable());
+        json.put("calculationTime", calculationTime);
+        json.put("reactor", JSONArray.fromObject(reactor));
+
+        final JSONArray modules = new JSONArray();
+        for(final String moduleKey : reactor) {
+            final JSONObject module = new JSONObject();
+            module.put("module", moduleKey);
+            module.put("releaseVersion", releaseVersions.get(moduleKey));
+            module.put("developmentVersion", developmentVersion);
+            if(addedParents.contains(moduleKey)) {
+                module.put("addedAs", "parent");
+            } else if(addedDependents.contains(moduleKey)) {
+                module.put("addedAs", "dependent");
+            }
+            modules.add(module);
+        }
+        json.put("modules", modules);
+
+        final JSONObject pinned = new JSONObject();
+        for(final Map.Entry<String, String> pinnedVersion : pinnedVersions.entrySet()) {
+            pinned.put(pinnedVersion.getKey(), pinnedVersion.getValue());
+        }
+        json.put("pinnedVersions", pinned);
+
+        json.put("addedParents", JSONArray.fromObject(addedParents));
+        json.put("addedDependents", JSONArray.fromObject(addedDependents));
+        json.put("missingModules", JSONArray.fromObject(missingModules));
+        json.put("blockingSnapshots", JSONArray.fromObject(blockingSnapshots));
+        json.put("propertyCycles", JSONArray.fromObject(propertyCycles));
+        json.put("unverifiedReferences", JSONArray.fromObject(unverifiedReferences));
+        json.put("snapshotsVerified", isSnapshotsVerified());
+
+        final JSONArray references = new JSONArray();
+        for(final SnapshotReference snapshotReference : snapshotReferences) {
+            final JSONObject reference = new JSONObject();
+            reference.put("module", snapshotReference.getModuleKey());
+            reference.put("reference", snapshotReference.getReferencedKey());
+            reference.put("version", snapshotReference.getReferencedVersion());
+            reference.put("parent", snapshotReference.isParent());
+            reference.put("classification",
+                    snapshotReference.getClassification().name().toLowerCase().replace('_', '-'));
+            references.add(reference);
+        }
+        json.put("snapshotReferences", references);
+        return json;
+    }
+
+    ////////////////////////////////////////////////////////////////
+    // Methods used by the ReleasePlanner to populate the plan.
+    ////////////////////////////////////////////////////////////////
+
+    void addReactorModule(String moduleKey, String releaseVersion) {
+        reactor.add(moduleKey);
+        releaseVersions.put(moduleKey, releaseVersion);
+    }
+
+    void addPinnedVersion(String moduleKey, String version) {
+        pinnedVersions.put(moduleKey, version);
+    }
+
+    void addAddedParent(String moduleKey) {
+        addedParents.add(moduleKey);
+    }
+
+    void addAddedDependent(String moduleKey) {
+        addedDependents.add(moduleKey);
+    }
+
+    void addMissingModule(String moduleKey) {
+        missingModules.add(moduleKey);
+    }
+
+    void addSnapshotReference(SnapshotReference reference) {
+        snapshotReferences.add(reference);
+        if(reference.isBlocking()) {
+            blockingSnapshots.add(reference.toString());
+        }
+    }
+
+    void addPropertyCycle(String cycle) {
+        propertyCycles.add(cycle);
+    }
+
+    void addUnverifiedReference(String reference) {
+        unverifiedReferences.add(reference);
+    }
+
+    void setCalculationTime(long calculationTime) {
+        this.calculationTime = calculationTime;
+    }
+
+}
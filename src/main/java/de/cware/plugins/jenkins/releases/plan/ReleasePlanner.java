@@ -0,0 +1,281 @@
+package de.cware.plugins.jenkins.releases.plan;
+
+import de.cware.plugins.jenkins.releases.versions.VersionHandler;
+import hudson.maven.ModuleName;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Parent;
+
+import java.util.*;
+
+/**
+ * Simulates major and minor releases based on the information the plugin already has:
+ * the parsed Maven models of the checked out project, the inverse dependency closure and
+ * the versions the VersionHandler found in the Maven repository. As no Maven process is
+ * involved, calculating a plan only takes a few milliseconds even for big projects.
+ *
+ * The same planner is used for scheduling the actual release builds, so the plan a user
+ * downloads is always the one that would be executed.
+ */
+public class ReleasePlanner {
+
+    private final String rootModuleKey;
+    private final Map<String, Model> mavenModels;
+    private final Map<String, List<String>> referencesClosure;
+    private final VersionHandler versionHandler;
+
+    /**
+     * @param rootModuleKey key of the root module of the project. Its release version is used as tag.
+     * @param mavenModels map containing the Maven model for each module of the project.
+     * @param referencesClosure map containing all modules (transitively) depending on a given module.
+     * @param versionHandler version handler providing the versions found in the Maven repository.
+     */
+    public ReleasePlanner(String rootModuleKey, Map<String, Model> mavenModels,
+                          Map<String, List<String>> referencesClosure, VersionHandler versionHandler) {
+        this.rootModuleKey = rootModuleKey;
+        this.mavenModels = mavenModels;
+        this.referencesClosure = referencesClosure;
+        this.versionHandler = versionHandler;
+    }
+
+    /**
+     * Plan a major release in which all modules are released with the same version.
+     *
+     * @param releaseVersion version all modules will be released as.
+     * @param developmentVersion version the modules will have after the release.
+     * @return the release plan.
+     */
+    public ReleasePlan planMajorRelease(String releaseVersion, String developmentVersion) {
+        final long startTime = System.currentTimeMillis();
+
+        final ReleasePlan plan = new ReleasePlan(ReleasePlan.Type.MAJOR, releaseVersion, developmentVersion);
+        for(final String moduleKey : getReactorOrder(mavenModels.keySet())) {
+            plan.addReactorModule(moduleKey, releaseVersion);
+        }
+        addSnapshotReferences(plan);
+
+        plan.setCalculationTime(System.currentTimeMillis() - startTime);
+        return plan;
+    }
+
+    /**
+     * Plan a minor release in which only the selected modules (and the modules they require)
+     * are released. All other modules are pinned to their latest released version.
+     *
+     * @param selectedModules keys of the modules the user selected for the release.
+     * @param requestedVersions versions requested by the user. Modules not contained in this
+     *                          map are released with the next version the VersionHandler suggests.
+     * @param autoSelectMissingModules if true, missing parents and dependents are added to the
+     *                                 release, otherwise they are reported as missing modules.
+     * @param developmentVersion version the modules will have after the release.
+     * @return the release plan.
+     */
+    public ReleasePlan planMinorRelease(Collection<String> selectedModules, Map<String, String> requestedVersions,
+                                        boolean autoSelectMissingModules, String developmentVersion) {
+        final long startTime = System.currentTimeMillis();
+
+        final Set<String> releasedModules = new LinkedHashSet<String>(selectedModules);
+
+        // Modules depending on a released module have to be released too, as otherwise they would
+        // reference a SNAPSHOT version. The parents of all of these have to be released as well.
+        final List<String> missingDependents = getMissingDependents(releasedModules);
+        final Set<String> withDependents = new LinkedHashSet<String>(releasedModules);
+        withDependents.addAll(missingDependents);
+        final List<String> missingParents = getMissingParents(withDependents);
+
+        if(autoSelectMissingModules) {
+            releasedModules.addAll(missingDependents);
+            releasedModules.addAll(missingParents);
+        }
+
+        final String tagName = getReleaseVersion(rootModuleKey, requestedVersions);
+        final ReleasePlan plan = new ReleasePlan(ReleasePlan.Type.MINOR, tagName, developmentVersion);
+
+        for(final String moduleKey : getReactorOrder(releasedModules)) {
+            plan.addReactorModule(moduleKey, getReleaseVersion(moduleKey, requestedVersions));
+        }
+        for(final String moduleKey : missingDependents) {
+            if(autoSelectMissingModules) {
+                plan.addAddedDependent(moduleKey);
+            } else {
+                plan.addMissingModule(moduleKey);
+            }
+        }
+        for(final String moduleKey : missingParents) {
+            if(autoSelectMissingModules) {
+                plan.addAddedParent(moduleKey);
+            } else if(!plan.getMissingModules().contains(moduleKey)) {
+                plan.addMissingModule(moduleKey);
+            }
+        }
+
+        // Pin all other modules to their latest released version.
+        for(final String moduleKey : getReactorOrder(mavenModels.keySet())) {
+            if(!releasedModules.contains(moduleKey)) {
+                final ModuleName moduleName = toModuleName(moduleKey);
+                if(!versionHandler.isNotReleased(moduleName)) {
+                    plan.addPinnedVersion(moduleKey, versionHandler.getCurrentReleaseVersion(moduleName));
+                }
+            }
+        }
+        addSnapshotReferences(plan);
+
+        plan.setCalculationTime(System.currentTimeMillis() - startTime);
+        return plan;
+    }
+
+    /**
+     * @param selectedModules keys of the selected modules.
+     * @return keys of all modules (transitively) depending on the selected modules, which are
+     * not part of the selection.
+     */
+    public List<String> getMissingDependents(Collection<String> selectedModules) {
+        final List<String> missingModules = new ArrayList<String>();
+        final Set<String> missingModuleSet = new HashSet<String>();
+        for(final String selectedModule : selectedModules) {
+            final List<String> referencingModules = referencesClosure.get(selectedModule);
+            if(referencingModules != null) {
+                for(final String referencingModule : referencingModules) {
+                    if(!selectedModules.contains(referencingModule) && missingModuleSet.add(referencingModule)) {
+                        missingModules.add(referencingModule);
+                    }
+                }
+            }
+        }
+        return missingModules;
+    }
+
+    /**
+     * @param selectedModules keys of the selected modules.
+     * @return keys of all parent modules of the selected modules which are part of this project,
+     * but not part of the selection.
+     */
+    public List<String> getMissingParents(Collection<String> selectedModules) {
+        final List<String> missingModules = new ArrayList<String>();
+        for(final String moduleName : selectedModules) {
+            final Model module = mavenModels.get(moduleName);
+            Parent parent = (module != null) ? module.getParent() : null;
+            while(parent != null) {
+                final String parentKey = parent.getGroupId() + ":" + parent.getArtifactId();
+
+                // The parent is no longer part of this project, so we can abort.
+                final Model parentModule = mavenModels.get(parentKey);
+                if(parentModule == null) {
+                    break;
+                }
+
+                if(!selectedModules.contains(parentKey) && !missingModules.contains(parentKey)) {
+                    missingModules.add(parentKey);
+                }
+                parent = parentModule.getParent();
+            }
+        }
+        return missingModules;
+    }
+
+    /**
+     * Sort the given modules in the order Maven would build them: parents and dependencies
+     * that are part of the project are always built before the modules referencing them.
+     *
+     * @param moduleKeys keys of the modules that should be sorted.
+     * @return sorted list of module keys.
+     */
+    public List<String> getReactorOrder(Collection<String> moduleKeys) {
+        final List<String> sortedKeys = new ArrayList<String>(moduleKeys);
+        Collections.sort(sortedKeys);
+
+        final Set<String> modules = new HashSet<String>(moduleKeys);
+        final Set<String> visited = new HashSet<String>();
+        final List<String> result = new ArrayList<String>(moduleKeys.size());
+        for(final String moduleKey : sortedKeys) {
+            addInReactorOrder(moduleKey, modules, visited, result);
+        }
+        return result;
+    }
+
+    /**
+     * Add the module after its parents and dependencies, which are part of the given modules.
+     * The modules are visited with an explicit stack instead of recursively, so long chains of
+     * modules can't overflow the stack of the request thread.
+     */
+    private void addInReactorOrder(String moduleKey, Set<String> modules, Set<String> visited, List<String> result) {
+        final Deque<String> stack = new ArrayDeque<String>();
+        final Set<String> expanded = new HashSet<String>();
+        stack.push(moduleKey);
+        while(!stack.isEmpty()) {
+            final String currentKey = stack.peek();
+            // All parents and dependencies of an expanded module have been added by now.
+            if(expanded.remove(currentKey)) {
+                stack.pop();
+                result.add(currentKey);
+                continue;
+            }
+            if(!visited.add(currentKey)) {
+                stack.pop();
+                continue;
+            }
+            expanded.add(currentKey);
+
+            final List<String> references = new ArrayList<String>();
+            final Model model = mavenModels.get(currentKey);
+            if(model != null) {
+                if(model.getParent() != null) {
+                    final String parentKey = model.getParent().getGroupId() + ":" + model.getParent().getArtifactId();
+                    if(modules.contains(parentKey)) {
+                        references.add(parentKey);
+                    }
+                }
+                for(final Dependency dependency : model.getDependencies()) {
+                    final String dependencyKey = dependency.getGroupId() + ":" + dependency.getArtifactId();
+                    if(modules.contains(dependencyKey)) {
+                        references.add(dependencyKey);
+                    }
+                }
+            }
+            // Pushed in reverse order, so they are processed in the order they are declared.
+            for(int i = references.size() - 1; i >= 0; i--) {
+                if(!visited.contains(references.get(i))) {
+                    stack.push(references.get(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Classify all SNAPSHOT references of the modules in the reactor of the plan. References
+     * to artifacts outside of the project or to modules that are neither released nor pinned
+     * to a released version will make the release plugin fail. Property cycles and
+     * references, whose versions couldn't be checked, keep the plan from being verified.
+     *
+     * @param plan plan to add the SNAPSHOT references to.
+     */
+    protected void addSnapshotReferences(ReleasePlan plan) {
+        final SnapshotAnalyzer analyzer = new SnapshotAnalyzer(mavenModels);
+        for(final SnapshotReference reference :
+                analyzer.analyze(plan.getReactor(), plan.getPinnedVersions().keySet())) {
+            plan.addSnapshotReference(reference);
+        }
+        for(final String propertyCycle : analyzer.getPropertyCycles()) {
+            plan.addPropertyCycle(propertyCycle);
+        }
+        for(final String unverifiedReference : analyzer.getUnverifiedReferences()) {
+            plan.addUnverifiedReference(unverifiedReference);
+        }
+    }
+
+    protected String getReleaseVersion(String moduleKey, Map<String, String> requestedVersions) {
+        if(moduleKey == null) {
+            return null;
+        }
+        if((requestedVersions != null) && requestedVersions.containsKey(moduleKey)) {
+            return requestedVersions.get(moduleKey);
+        }
+        return versionHandler.getNextReleaseVersion(toModuleName(moduleKey));
+    }
+
+    protected static ModuleName toModuleName(String moduleKey) {
+        final int separator = moduleKey.indexOf(':');
+        return new ModuleName(moduleKey.substring(0, separator), moduleKey.substring(separator + 1));
+    }
+
+}
@@ -0,0 +1,336 @@
+package de.cware.plugins.jenkins.releases.plan;
+
+import org.apache.maven.model.BuildBase;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.DependencyManagement;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Parent;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginManagement;
+import org.apache.maven.model.Profile;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Pre-flight check for SNAPSHOT references of the modules that are part of a release.
+ * As in a minor release only some of the modules are released, the release plugin is
+ * started with "-DignoreSnapshots=true". Without this check, references to SNAPSHOT
+ * versions of artifacts outside of the project or modules that were never released
+ * would only be detected after a long running build or not at all.
+ *
+ * The analyzer works on the cached Maven models of the ReleaseBuildAction, so analyzing
+ * even big projects only takes a few milliseconds.
+ *
+ * The parents, dependencies, plugins and plugin dependencies of the modules are classified.
+ * Some versions can't be checked reliably: versions with properties that can't be resolved
+ * within the project (e.g. defined by an external parent or forming a cycle), dependencies
+ * managed outside of the project and SNAPSHOTs in profiles or dependency and plugin management,
+ * which only matter if they are active or used. These are collected as unverified references
+ * instead, so the release plugin can check them itself.
+ */
+public class SnapshotAnalyzer {
+
+    private static final Pattern PROPERTY_PATTERN = Pattern.compile("\\$\\{([^}]+)\\}");
+
+    private final Map<String, Model> mavenModels;
+    private final List<String> propertyCycles = new ArrayList<String>();
+    private final List<String> unverifiedReferences = new ArrayList<String>();
+
+    /**
+     * @param mavenModels map containing the Maven model for each module of the project.
+     */
+    public SnapshotAnalyzer(Map<String, Model> mavenModels) {
+        this.mavenModels = mavenModels;
+    }
+
+    /**
+     * Find and classify all SNAPSHOT references of the released modules.
+     *
+     * @param releasedModules keys of the modules that are part of the release.
+     * @param pinnedModules keys of the modules that are not released, but have a released
+     *                      version the release plugin can use instead of the SNAPSHOT.
+     * @return list of all SNAPSHOT references.
+     */
+    public List<SnapshotReference> analyze(Collection<String> releasedModules, Collection<String> pinnedModules) {
+        final List<SnapshotReference> result = new ArrayList<SnapshotReference>();
+        for(final String moduleKey : releasedModules) {
+            final Model model = mavenModels.get(moduleKey);
+            if(model == null) {
+                continue;
+            }
+
+            final Parent parent = model.getParent();
+            if(parent != null) {
+                final String parentKey = parent.getGroupId() + ":" + parent.getArtifactId();
+                final String version = resolveProperties(model, parent.getVersion());
+                if(!isResolved(version)) {
+                    addUnverifiedReference(moduleKey, parentKey, version, "unresolved");
+                } else if(isSnapshot(version)) {
+                    result.add(new SnapshotReference(moduleKey, parentKey, version, true,
+                            classify(parentKey, releasedModules, pinnedModules)));
+                }
+            }
+
+            for(final Dependency dependency : model.getDependencies()) {
+                final String dependencyKey = dependency.getGroupId() + ":" + dependency.getArtifactId();
+                final String version = getDependencyVersion(model, dependency);
+                if(version == null) {
+                    addUnverifiedReference(moduleKey, dependencyKey, null, "managed outside of the project");
+                } else if(!isResolved(version)) {
+                    addUnverifiedReference(moduleKey, dependencyKey, version, "unresolved");
+                } else if(isSnapshot(version)) {
+                    result.add(new SnapshotReference(moduleKey, dependencyKey, version, false,
+                            classify(dependencyKey, releasedModules, pinnedModules)));
+                }
+            }
+
+            if(model.getBuild() != null) {
+                for(final Plugin plugin : model.getBuild().getPlugins()) {
+                    final List<Dependency> pluginArtifacts = new ArrayList<Dependency>(plugin.getDependencies());
+                    pluginArtifacts.add(0, toDependency(plugin));
+                    for(final Dependency pluginArtifact : pluginArtifacts) {
+                        final String artifactKey = pluginArtifact.getGroupId() + ":" + pluginArtifact.getArtifactId();
+                        final String version = resolveProperties(model, pluginArtifact.getVersion());
+                        if(!isResolved(version)) {
+                            addUnverifiedReference(moduleKey, artifactKey, version, "unresolved");
+                        } else if(isSnapshot(version)) {
+                            result.add(new SnapshotReference(moduleKey, artifactKey, version, false,
+                                    classify(artifactKey, releasedModules, pinnedModules)));
+                        }
+                    }
+                }
+            }
+
+            // Only used if they are managing a dependency or if the profile is active.
+            checkUnverifiedSection(model, moduleKey, "management", null, model.getDependencyManagement(),
+                    (model.getBuild() != null) ? model.getBuild().getPluginManagement() : null,
+                    releasedModules, pinnedModules);
+            for(final Profile profile : model.getProfiles()) {
+                final BuildBase build = profile.getBuild();
+                checkUnverifiedSection(model, moduleKey, "profile " + profile.getId(), profile.getDependencies(),
+                        profile.getDependencyManagement(), (build != null) ? build.getPluginManagement() : null,
+                        releasedModules, pinnedModules);
+                if(build != null) {
+                    checkUnverifiedPlugins(model, moduleKey, "profile " + profile.getId(), build.getPlugins(),
+                            releasedModules, pinnedModules);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return descriptions of all property cycles found while resolving versions,
+     * e.g. "a -> b -> a".
+     */
+    public List<String> getPropertyCycles() {
+        return Collections.unmodifiableList(propertyCycles);
+    }
+
+    /**
+     * @return descriptions of all references, whose versions couldn't be checked reliably.
+     */
+    public List<String> getUnverifiedReferences() {
+        return Collections.unmodifiableList(unverifiedReferences);
+    }
+
+    protected void checkUnverifiedSection(Model model, String moduleKey, String section,
+                                          List<Dependency> dependencies, DependencyManagement dependencyManagement,
+                                          PluginManagement pluginManagement,
+                                          Collection<String> releasedModules, Collection<String> pinnedModules) {
+        final List<Dependency> allDependencies = new ArrayList<Dependency>();
+        if(dependencies != null) {
+            allDependencies.addAll(dependencies);
+        }
+        if(dependencyManagement != null) {
+            allDependencies.addAll(dependencyManagement.getDependencies());
+        }
+        for(final Dependency dependency : allDependencies) {
+            checkUnverified(model, moduleKey, section, dependency, releasedModules, pinnedModules);
+        }
+        if(pluginManagement != null) {
+            checkUnverifiedPlugins(model, moduleKey, section, pluginManagement.getPlugins(),
+                    releasedModules, pinnedModules);
+        }
+    }
+
+    protected void checkUnverifiedPlugins(Model model, String moduleKey, String section, List<Plugin> plugins,
+                                          Collection<String> releasedModules, Collection<String> pinnedModules) {
+        for(final Plugin plugin : plugins) {
+            checkUnverified(model, moduleKey, section, toDependency(plugin), releasedModules, pinnedModules);
+            for(final Dependency dependency : plugin.getDependencies()) {
+                checkUnverified(model, moduleKey, section, dependency, releasedModules, pinnedModules);
+            }
+        }
+    }
+
+    /**
+     * Record the reference as unverified, if its version is unresolved or a SNAPSHOT, which
+     * the release plugin can't replace.
+     */
+    protected void checkUnverified(Model model, String moduleKey, String section, Dependency dependency,
+                                   Collection<String> releasedModules, Collection<String> pinnedModules) {
+        final String referencedKey = dependency.getGroupId() + ":" + dependency.getArtifactId();
+        final String version = resolveProperties(model, dependency.getVersion());
+        if(!isResolved(version)) {
+            addUnverifiedReference(moduleKey, referencedKey, version, "unresolved in " + section);
+        } else if(isSnapshot(version) && (classify(referencedKey, releasedModules, pinnedModules) !=
+                SnapshotReference.Classification.INTRA_REACTOR_PINNED)) {
+            addUnverifiedReference(moduleKey, referencedKey, version, section);
+        }
+    }
+
+    protected void addUnverifiedReference(String moduleKey, String referencedKey, String version, String reason) {
+        unverifiedReferences.add(referencedKey + ((version != null) ? ":" + version : "") + " (used by " +
+                moduleKey + ", " + reason + ")");
+    }
+
+    protected SnapshotReference.Classification classify(String referencedKey, Collection<String> releasedModules,
+                                                        Collection<String> pinnedModules) {
+        if(!mavenModels.containsKey(referencedKey)) {
+            return SnapshotReference.Classification.EXTERNAL;
+        }
+        if(releasedModules.contains(referencedKey) || pinnedModules.contains(referencedKey)) {
+            return SnapshotReference.Classification.INTRA_REACTOR_PINNED;
+        }
+        return SnapshotReference.Classification.INTRA_REACTOR_UNPINNED;
+    }
+
+    /**
+     * Get the effective version of a dependency. Property references are resolved and if
+     * the dependency has no version, the dependencyManagement sections of the model and of
+     * its parents, which are part of this project, are consulted.
+     *
+     * @param model model containing the dependency.
+     * @param dependency the dependency.
+     * @return the version or null, if it could not be determined.
+     */
+    public String getDependencyVersion(Model model, Dependency dependency) {
+        if(dependency.getVersion() != null) {
+            return resolveProperties(model, dependency.getVersion());
+        }
+        Model currentModel = model;
+        while(currentModel != null) {
+            if(currentModel.getDependencyManagement() != null) {
+                for(final Dependency managedDependency : currentModel.getDependencyManagement().getDependencies()) {
+                    if(managedDependency.getGroupId().equals(dependency.getGroupId()) &&
+                            managedDependency.getArtifactId().equals(dependency.getArtifactId()) &&
+                            (managedDependency.getVersion() != null)) {
+                        return resolveProperties(model, managedDependency.getVersion());
+                    }
+                }
+            }
+            currentModel = getParentModel(currentModel);
+        }
+        return null;
+    }
+
+    /**
+     * Resolve all properties in the value, which are either the version of the project or are
+     * defined in the model or one of its parents, which are part of this project. Properties
+     * that can't be resolved are left in the value. If the properties form a cycle, the cycle
+     * is recorded.
+     */
+    public String resolveProperties(Model model, String value) {
+        return resolveProperties(model, value, new LinkedHashSet<String>());
+    }
+
+    protected String resolveProperties(Model model, String value, Set<String> resolving) {
+        if((value == null) || !value.contains("${")) {
+            return value;
+        }
+        final Matcher matcher = PROPERTY_PATTERN.matcher(value);
+        final StringBuffer resolved = new StringBuffer();
+        while(matcher.find()) {
+            final String propertyValue = resolveProperty(model, matcher.group(1), resolving);
+            matcher.appendReplacement(resolved,
+                    Matcher.quoteReplacement((propertyValue != null) ? propertyValue : matcher.group()));
+        }
+        matcher.appendTail(resolved);
+        return resolved.toString();
+    }
+
+    /**
+     * @return the value of the property, as far as it can be resolved, or null if it isn't defined.
+     */
+    protected String resolveProperty(Model model, String propertyName, Set<String> resolving) {
+        if("project.version".equals(propertyName) || "pom.version".equals(propertyName) ||
+                "version".equals(propertyName)) {
+            return getModelVersion(model);
+        }
+        if("project.parent.version".equals(propertyName)) {
+            return (model.getParent() != null) ? model.getParent().getVersion() : null;
+        }
+        if(!resolving.add(propertyName)) {
+            final StringBuilder cycle = new StringBuilder();
+            boolean inCycle = false;
+            for(final String resolvingName : resolving) {
+                inCycle = inCycle || resolvingName.equals(propertyName);
+                if(inCycle) {
+                    cycle.append(resolvingName).append(" -> ");
+                }
+            }
+            cycle.append(propertyName);
+            if(!propertyCycles.contains(cycle.toString())) {
+                propertyCycles.add(cycle.toString());
+            }
+            return null;
+        }
+        try {
+            // Like Maven, properties inherited from a parent are resolved in the context of the model.
+            Model currentModel = model;
+            while(currentModel != null) {
+                final String propertyValue = currentModel.getProperties().getProperty(propertyName);
+                if(propertyValue != null) {
+                    return resolveProperties(model, propertyValue, resolving);
+                }
+                currentModel = getParentModel(currentModel);
+            }
+            return null;
+        } finally {
+            resolving.remove(propertyName);
+        }
+    }
+
+    protected String getModelVersion(Model model) {
+        if(model.getVersion() != null) {
+            return model.getVersion();
+        }
+        return (model.getParent() != null) ? model.getParent().getVersion() : null;
+    }
+
+    protected Model getParentModel(Model model) {
+        if(model.getParent() == null) {
+            return null;
+        }
+        return mavenModels.get(model.getParent().getGroupId() + ":" + model.getParent().getArtifactId());
+    }
+
+    protected static boolean isSnapshot(String version) {
+        return (version != null) && version.endsWith("-SNAPSHOT");
+    }
+
+    /**
+     * @return false, if the version still contains properties.
+     */
+    protected static boolean isResolved(String version) {
+        return (version == null) || !version.contains("${");
+    }
+
+    private static Dependency toDependency(Plugin plugin) {
+        final Dependency dependency = new Dependency();
+        dependency.setGroupId(plugin.getGroupId());
+        dependency.setArtifactId(plugin.getArtifactId());
+        dependency.setVersion(plugin.getVersion());
+        return dependency;
+    }
+
+}
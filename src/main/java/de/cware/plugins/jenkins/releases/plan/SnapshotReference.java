@@ -0,0 +1,78 @@
+package de.cware.plugins.jenkins.releases.plan;
+
+/**
+ * A reference from a module that is part of a release to a SNAPSHOT version of
+ * another artifact, either as parent or as dependency.
+ */
+public class SnapshotReference {
+
+    public enum Classification {
+        /**
+         * The referenced artifact is part of the project and is either released too or
+         * will be pinned to its latest released version. The release plugin will
+         * replace the SNAPSHOT version.
+         */
+        INTRA_REACTOR_PINNED,
+        /**
+         * The referenced artifact is part of the project, but it is neither released
+         * nor has it been released before, so there is no version it could be pinned to.
+         */
+        INTRA_REACTOR_UNPINNED,
+        /**
+         * The referenced artifact is not part of the project.
+         */
+        EXTERNAL
+    }
+
+    private final String moduleKey;
+    private final String referencedKey;
+    private final String referencedVersion;
+    private final boolean parent;
+    private final Classification classification;
+
+    public SnapshotReference(String moduleKey, String referencedKey, String referencedVersion, boolean parent,
+                             Classification classification) {
+        this.moduleKey = moduleKey;
+        this.referencedKey = referencedKey;
+        this.referencedVersion = referencedVersion;
+        this.parent = parent;
+        this.classification = classification;
+    }
+
+    /**
+     * @return key of the module containing the reference.
+     */
+    public String getModuleKey() {
+        return moduleKey;
+    }
+
+    public String getReferencedKey() {
+        return referencedKey;
+    }
+
+    public String getReferencedVersion() {
+        return referencedVersion;
+    }
+
+    public boolean isParent() {
+        return parent;
+    }
+
+    public Classification getClassification() {
+        return classification;
+    }
+
+    /**
+     * @return true if this reference will make the release plugin fail.
+     */
+    public boolean isBlocking() {
+        return classification != Classification.INTRA_REACTOR_PINNED;
+    }
+
+    @Override
+    public String toString() {
+        return referencedKey + ":" + referencedVersion + " (" + (parent ? "parent of " : "used by ") + moduleKey +
+                ", " + classification.name().toLowerCase().replace('_', '-') + ")";
+    }
+
+}
@@ -0,0 +1,54 @@
+package de.cware.plugins.jenkins.releases.queue;
+
+import hudson.model.Label;
+import hudson.model.labels.LabelAssignmentAction;
+import hudson.model.queue.SubTask;
+import jenkins.model.Jenkins;
+
+/**
+ * Assigns a release build to the release label of its job. Other than the label assigned
+ * to the job itself, which Jenkins uses for all builds of the job, this only applies to the
+ * build it is attached to.
+ */
+public class ReleaseLabelAssignmentAction implements LabelAssignmentAction {
+
+    private final String labelExpression;
+
+    /**
+     * @param labelExpression label expression of the nodes the release build has to run on.
+     */
+    public ReleaseLabelAssignmentAction(String labelExpression) {
+        this.labelExpression = labelExpression;
+    }
+
+    public String getLabelExpression() {
+        return labelExpression;
+    }
+
+    public Label getAssignedLabel(SubTask task) {
+        return Jenkins.getInstance().getLabel(labelExpression);
+    }
+
+    ////////////////////////////////////////////////////////////////
+    // Action methods
+    ////////////////////////////////////////////////////////////////
+    // Note:
+    //
+    // This Action does not contribute anything to the UI so by
+    // returning 'null' for all of the 3 Action interface methods
+    // this Action will be ignored by the Stapler framework.
+    ////////////////////////////////////////////////////////////////
+
+    public String getIconFileName() {
+        return null;
+    }
+
+    public String getDisplayName() {
+        return null;
+    }
+
+    public String getUrlName() {
+        return null;
+    }
+
+}
@@ -0,0 +1,102 @@
+package de.cware.plugins.jenkins.releases.queue;
+
+import de.cware.plugins.jenkins.releases.Messages;
+import de.cware.plugins.jenkins.releases.ReleaseBuildWrapper;
+import de.cware.plugins.jenkins.releases.ReleaseCause;
+import de.cware.plugins.jenkins.releases.ReleaseLock;
+import hudson.Extension;
+import hudson.maven.MavenModuleSet;
+import hudson.model.Label;
+import hudson.model.Node;
+import hudson.model.Queue;
+import hudson.model.queue.CauseOfBlockage;
+import hudson.model.queue.QueueTaskDispatcher;
+import jenkins.model.Jenkins;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Keeps other builds off the nodes reserved for release builds. If a job reserves the
+ * nodes matching its release label, no other build may use them, so a free executor is
+ * available as soon as a release is requested, even if the queue is full of CI builds.
+ * The release builds themselves are routed to these nodes by the ReleaseLabelAssignmentAction
+ * the ReleaseLock attaches to them, which overrides the label assigned to the job.
+ *
+ * The labels of all reserved nodes are collected from the jobs every minute, as the
+ * dispatcher is asked for every combination of node and queued build.
+ *
+ * While a maintenance task rolls back a release in the workspace of a job without a build,
+ * no build of the job may start, so nothing else touches the workspace in the meantime.
+ */
+@Extension
+public class ReleaseQueueDispatcher extends QueueTaskDispatcher {
+
+    private static final long RESERVED_LABELS_TTL = 60 * 1000;
+
+    private Set<Label> reservedLabels = new HashSet<Label>();
+    private long reservedLabelsTimestamp;
+
+    @Override
+    public CauseOfBlockage canTake(Node node, Queue.BuildableItem item) {
+        if(isReleaseBuild(item)) {
+            return null;
+        }
+
+        // Builds explicitly assigned to a release label may use the reserved nodes as usual.
+        final Set<Label> labels = getReservedLabels();
+        if(labels.contains(item.getAssignedLabel())) {
+            return null;
+        }
+        for(final Label label : labels) {
+            if(label.contains(node)) {
+                return CauseOfBlockage.fromMessage(Messages._ReleaseQueueDispatcher_ReservedNode(node.getDisplayName()));
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public CauseOfBlockage canRun(Queue.Item item) {
+        if((getReleaseBuildWrapper(item.task) != null) &&
+                ReleaseLock.forJob((MavenModuleSet) item.task).isLockedForMaintenance()) {
+            return CauseOfBlockage.fromMessage(Messages._ReleaseQueueDispatcher_Maintenance());
+        }
+        return null;
+    }
+
+    public static boolean isReleaseBuild(Queue.Item item) {
+        for(final Object cause : item.getCauses()) {
+            if(cause instanceof ReleaseCause) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the wrapper of the job of the task or null, if the task doesn't belong to a release job.
+     */
+    public static ReleaseBuildWrapper getReleaseBuildWrapper(Queue.Task task) {
+        if(!(task instanceof MavenModuleSet)) {
+            return null;
+        }
+        return ((MavenModuleSet) task).getBuildWrappersList().get(ReleaseBuildWrapper.class);
+    }
+
+    protected synchronized Set<Label> getReservedLabels() {
+        if(System.currentTimeMillis() - reservedLabelsTimestamp > RESERVED_LABELS_TTL) {
+            final Set<Label> labels = new HashSet<Label>();
+            for(final MavenModuleSet job : Jenkins.getInstance().getAllItems(MavenModuleSet.class)) {
+                final ReleaseBuildWrapper wrapper = job.getBuildWrappersList().get(ReleaseBuildWrapper.class);
+                if((wrapper != null) && wrapper.isReserveReleaseNodes() && (wrapper.getReleaseLabel() != null)) {
+                    labels.add(Jenkins.getInstance().getLabel(wrapper.getReleaseLabel()));
+                }
+            }
+            reservedLabels = labels;
+            reservedLabelsTimestamp = System.currentTimeMillis();
+        }
+        return reservedLabels;
+    }
+
+}
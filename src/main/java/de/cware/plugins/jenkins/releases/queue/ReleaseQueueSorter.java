@@ -0,0 +1,84 @@
+package de.cware.plugins.jenkins.releases.queue;
+
+import de.cware.plugins.jenkins.releases.ReleaseBuildWrapper;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.Queue;
+import hudson.model.queue.QueueSorter;
+import jenkins.model.Jenkins;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Moves release builds of jobs with a release priority ahead of all other buildable items.
+ * Among themselves release builds as well as all other builds keep the order of the sorter
+ * that was installed before, or the default order by the time they became buildable.
+ *
+ * Jenkins only uses one QueueSorter, so this sorter is installed in front of the one that
+ * is installed when Jenkins starts. If another plugin, like the Priority Sorter plugin,
+ * replaces the sorter later on, release builds are no longer prioritized.
+ */
+public class ReleaseQueueSorter extends QueueSorter {
+
+    private static final Comparator<Queue.BuildableItem> BUILDABLE_SINCE = new Comparator<Queue.BuildableItem>() {
+        public int compare(Queue.BuildableItem item1, Queue.BuildableItem item2) {
+            final long difference = item1.buildableStartMilliseconds - item2.buildableStartMilliseconds;
+            return (difference < 0) ? -1 : ((difference > 0) ? 1 : 0);
+        }
+    };
+
+    private static final Comparator<Queue.BuildableItem> RELEASES_FIRST = new Comparator<Queue.BuildableItem>() {
+        public int compare(Queue.BuildableItem item1, Queue.BuildableItem item2) {
+            return (isPrioritized(item1) ? 0 : 1) - (isPrioritized(item2) ? 0 : 1);
+        }
+    };
+
+    private final QueueSorter previousSorter;
+
+    public ReleaseQueueSorter(QueueSorter previousSorter) {
+        this.previousSorter = previousSorter;
+    }
+
+    public QueueSorter getPreviousSorter() {
+        return previousSorter;
+    }
+
+    @Override
+    public void sortBuildableItems(List<Queue.BuildableItem> items) {
+        if(previousSorter != null) {
+            previousSorter.sortBuildableItems(items);
+        } else {
+            Collections.sort(items, BUILDABLE_SINCE);
+        }
+        // The sort is stable, so the order within releases and other builds is kept.
+        Collections.sort(items, RELEASES_FIRST);
+    }
+
+    protected static boolean isPrioritized(Queue.BuildableItem item) {
+        if(!ReleaseQueueDispatcher.isReleaseBuild(item)) {
+            return false;
+        }
+        final ReleaseBuildWrapper wrapper = ReleaseQueueDispatcher.getReleaseBuildWrapper(item.task);
+        return (wrapper != null) && wrapper.isPrioritizeReleases();
+    }
+
+    /**
+     * Install the sorter in front of the current one. If no sorter has been installed yet,
+     * the first registered one is used, like Jenkins itself would do.
+     */
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void install() {
+        final Queue queue = Jenkins.getInstance().getQueue();
+        QueueSorter previousSorter = queue.getSorter();
+        if(previousSorter instanceof ReleaseQueueSorter) {
+            return;
+        }
+        if((previousSorter == null) && !QueueSorter.all().isEmpty()) {
+            previousSorter = QueueSorter.all().get(0);
+        }
+        queue.setSorter(new ReleaseQueueSorter(previousSorter));
+    }
+
+}
@@ -0,0 +1,263 @@
+package de.cware.plugins.jenkins.releases.reuse;
+
+import de.cware.plugins.jenkins.releases.versions.AggregatingTransferListener;
+import de.cware.plugins.jenkins.releases.versions.Booter;
+import de.cware.plugins.jenkins.releases.versions.DeploymentChecker;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.apache.maven.model.io.xpp3.MavenXpp3Writer;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.deployment.DeployRequest;
+import org.eclipse.aether.deployment.DeploymentException;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+
+import java.io.*;
+import java.util.Collection;
+import java.util.Properties;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Publishes the artifacts of an already released version of a module as a new version,
+ * without building the module again. The artifacts are downloaded from the repository,
+ * the versions in the pom are changed to the new version and everything is deployed
+ * again under the new version.
+ *
+ * Only the pom, the main artifact and the sources and javadoc artifacts are promoted. The
+ * attachments are copied byte for byte. In the main artifact the Maven descriptor
+ * (META-INF/maven/groupId/artifactId/pom.xml and pom.properties) is replaced with the one of
+ * the new version, all other entries are copied unchanged.
+ */
+public class ArtifactPromoter {
+
+    private static final String[] CLASSIFIERS = {"sources", "javadoc"};
+
+    private final RepositorySystem system;
+    private final RemoteRepository resolveRepo;
+    private final RemoteRepository deployRepo;
+    private final File localRepoDir;
+    private final DefaultRepositorySystemSession session;
+
+    /**
+     * @param resolveRepo repository the released artifacts are downloaded from.
+     * @param deployRepo repository the promoted artifacts are deployed to.
+     * @param log stream transfers are logged to or null, if they shouldn't be logged.
+     * @param jobName name of the job, used for sharing the requests to the repository fairly between jobs.
+     */
+    public ArtifactPromoter(RemoteRepository resolveRepo, RemoteRepository deployRepo, PrintStream log,
+                            String jobName) throws IOException {
+        this.resolveRepo = resolveRepo;
+        this.deployRepo = deployRepo;
+        system = Booter.newRepositorySystem();
+
+        // Use an empty local repository, so nothing from previous builds is mixed up with the release.
+        localRepoDir = File.createTempFile("release-promote", "");
+        if(!localRepoDir.delete() || !localRepoDir.mkdirs()) {
+            throw new IOException("Could not create temporary repository " + localRepoDir);
+        }
+        session = Booter.newRepositorySystemSession(system, localRepoDir, log);
+        Booter.setRateLimited(session, jobName);
+    }
+
+    /**
+     * @param moduleKey key (groupId:artifactId) of the module.
+     * @param packaging the packaging of the module.
+     * @param oldVersion the version that has already been released.
+     * @param newVersion the version the artifacts should be published as.
+     * @param projectModules keys of all modules of the project, references to these are updated too.
+     */
+    public void promote(String moduleKey, String packaging, String oldVersion, String newVersion,
+                        Collection<String> projectModules) throws IOException {
+        final String[] coordinates = moduleKey.split(":");
+        try {
+            final DeployRequest request = new DeployRequest();
+            request.setRepository(deployRepo);
+
+            final Artifact oldPom = resolve(coordinates[0], coordinates[1], null, "pom", oldVersion);
+            final File newPomFile = new File(localRepoDir, coordinates[1] + "-" + newVersion + ".pom");
+            rewritePom(oldPom.getFile(), newPomFile, oldVersion, newVersion, projectModules);
+            request.addArtifact(new DefaultArtifact(coordinates[0], coordinates[1], null, "pom", newVersion)
+                    .setFile(newPomFile));
+
+            final String extension = DeploymentChecker.getExtension(packaging);
+            if(extension != null) {
+                final Artifact oldArtifact = resolve(coordinates[0], coordinates[1], null, extension, oldVersion);
+                final File newArtifactFile = new File(localRepoDir,
+                        coordinates[1] + "-" + newVersion + "." + extension);
+                rewriteMavenDescriptor(oldArtifact.getFile(), newArtifactFile, coordinates[0], coordinates[1],
+                        newVersion, newPomFile);
+                request.addArtifact(new DefaultArtifact(coordinates[0], coordinates[1], null, extension, newVersion)
+                        .setFile(newArtifactFile));
+                for(final String classifier : CLASSIFIERS) {
+                    try {
+                        final Artifact oldAttachment = resolve(coordinates[0], coordinates[1], classifier, "jar",
+                                oldVersion);
+                        request.addArtifact(new DefaultArtifact(coordinates[0], coordinates[1], classifier, "jar",
+                                newVersion).setFile(oldAttachment.getFile()));
+                    } catch (ArtifactResolutionException e) {
+                        // Not every module has these attachments.
+                    }
+                }
+            }
+
+            system.deploy(session, request);
+        } catch (ArtifactResolutionException e) {
+            throw new IOException("Could not download " + moduleKey + ":" + oldVersion, e);
+        } catch (DeploymentException e) {
+            throw new IOException("Could not deploy " + moduleKey + ":" + newVersion, e);
+        } catch (XmlPullParserException e) {
+            throw new IOException("Could not parse the pom of " + moduleKey + ":" + oldVersion, e);
+        }
+    }
+
+    protected Artifact resolve(String groupId, String artifactId, String classifier, String extension, String version)
+            throws ArtifactResolutionException {
+        final ArtifactRequest request = new ArtifactRequest();
+        request.setArtifact(new DefaultArtifact(groupId, artifactId, classifier, extension, version));
+        request.addRepository(resolveRepo);
+        return system.resolveArtifact(session, request).getArtifact();
+    }
+
+    /**
+     * Replace the old version with the new one in all places the release plugin would have changed.
+     */
+    protected void rewritePom(File oldPomFile, File newPomFile, String oldVersion, String newVersion,
+                              Collection<String> projectModules) throws IOException, XmlPullParserException {
+        final Reader reader = new FileReader(oldPomFile);
+        final Model model;
+        try {
+            model = new MavenXpp3Reader().read(reader);
+        } finally {
+            reader.close();
+        }
+
+        if(model.getVersion() != null) {
+            model.setVersion(newVersion);
+        }
+        if((model.getParent() != null) && oldVersion.equals(model.getParent().getVersion()) &&
+                projectModules.contains(model.getParent().getGroupId() + ":" + model.getParent().getArtifactId())) {
+            model.getParent().setVersion(newVersion);
+        }
+        for(final Dependency dependency : model.getDependencies()) {
+            replaceVersion(dependency, oldVersion, newVersion, projectModules);
+        }
+        if(model.getDependencyManagement() != null) {
+            for(final Dependency dependency : model.getDependencyManagement().getDependencies()) {
+                replaceVersion(dependency, oldVersion, newVersion, projectModules);
+            }
+        }
+        if((model.getScm() != null) && oldVersion.equals(model.getScm().getTag())) {
+            model.getScm().setTag(newVersion);
+        }
+
+        final Writer writer = new FileWriter(newPomFile);
+        try {
+            new MavenXpp3Writer().write(writer, model);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Copy the archive and replace the pom.xml and pom.properties Maven packs into
+     * META-INF/maven/groupId/artifactId with the ones of the new version. Files that
+     * are no zip archives are copied unchanged.
+     */
+    protected void rewriteMavenDescriptor(File oldArchive, File newArchive, String groupId, String artifactId,
+                                          String newVersion, File newPomFile) throws IOException {
+        final String descriptorDir = "META-INF/maven/" + groupId + "/" + artifactId + "/";
+        final ZipInputStream in = new ZipInputStream(new BufferedInputStream(new FileInputStream(oldArchive)));
+        try {
+            final ZipOutputStream out = new ZipOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(newArchive)));
+            try {
+                ZipEntry entry = in.getNextEntry();
+                if(entry == null) {
+                    // Not a zip archive (or an empty one), so there is no descriptor to replace.
+                    out.close();
+                    copy(oldArchive, newArchive);
+                    return;
+                }
+                final byte[] buffer = new byte[8192];
+                while(entry != null) {
+                    final ZipEntry newEntry = new ZipEntry(entry.getName());
+                    newEntry.setTime(entry.getTime());
+                    out.putNextEntry(newEntry);
+                    if((descriptorDir + "pom.xml").equals(entry.getName())) {
+                        final InputStream pom = new FileInputStream(newPomFile);
+                        try {
+                            int read;
+                            while((read = pom.read(buffer)) != -1) {
+                                out.write(buffer, 0, read);
+                            }
+                        } finally {
+                            pom.close();
+                        }
+                    } else if((descriptorDir + "pom.properties").equals(entry.getName())) {
+                        final Properties properties = new Properties();
+                        properties.load(in);
+                        properties.setProperty("version", newVersion);
+                        properties.store(out, "Promoted by the Jenkins release plugin");
+                    } else {
+                        int read;
+                        while((read = in.read(buffer)) != -1) {
+                            out.write(buffer, 0, read);
+                        }
+                    }
+                    out.closeEntry();
+                    entry = in.getNextEntry();
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void copy(File source, File target) throws IOException {
+        final InputStream in = new FileInputStream(source);
+        try {
+            final OutputStream out = new FileOutputStream(target);
+            try {
+                final byte[] buffer = new byte[8192];
+                int read;
+                while((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private void replaceVersion(Dependency dependency, String oldVersion, String newVersion,
+                                Collection<String> projectModules) {
+        if(oldVersion.equals(dependency.getVersion()) &&
+                projectModules.contains(dependency.getGroupId() + ":" + dependency.getArtifactId())) {
+            dependency.setVersion(newVersion);
+        }
+    }
+
+    /**
+     * Remove the temporary local repository.
+     */
+    public void dispose() {
+        final AggregatingTransferListener transferListener = Booter.getTransferListener(session);
+        if(transferListener != null) {
+            transferListener.printSummary("Promotion");
+        }
+        Booter.deleteDirectory(localRepoDir);
+    }
+
+}
@@ -0,0 +1,161 @@
+package de.cware.plugins.jenkins.releases.reuse;
+
+import de.cware.plugins.jenkins.releases.plan.PomNormalizer;
+import org.apache.maven.model.BuildBase;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.Profile;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.*;
+
+/**
+ * Calculates the content hash of every module. The content hash of a module covers its
+ * sources, its pom without the versions the release plugin changes and the content hashes
+ * of its parent and all dependencies, which are part of the project. So if a module or
+ * any module it requires changes, the content hash changes too.
+ *
+ * A module with an unchanged content hash can only be reused, if no module that is built
+ * requires it, as the built modules reference the new release version, which doesn't exist
+ * before the reused modules are promoted after the build.
+ */
+public class ContentHashCalculator {
+
+    private final Map<String, Model> mavenModels;
+    private final Map<String, String> sourceHashes;
+
+    /**
+     * @param mavenModels the models of all modules of the project.
+     * @param sourceHashes the hashes of the sources of all modules, as calculated by the SourceHasher.
+     */
+    public ContentHashCalculator(Map<String, Model> mavenModels, Map<String, String> sourceHashes) {
+        this.mavenModels = mavenModels;
+        this.sourceHashes = sourceHashes;
+    }
+
+    /**
+     * @return map containing the content hash for every module key.
+     */
+    public Map<String, String> calculate() throws IOException {
+        final Map<String, String> contentHashes = new HashMap<String, String>();
+        for(final String moduleKey : mavenModels.keySet()) {
+            calculate(moduleKey, contentHashes, new HashSet<String>());
+        }
+        return contentHashes;
+    }
+
+    /**
+     * Select the modules, which can be excluded from the build and promoted from the previous
+     * release. A module whose content hash changed is built and so is every module of the project
+     * it requires as parent, dependency, imported dependency management or build plugin, as these
+     * have to be available in the new version while the other modules are built.
+     *
+     * @param contentHashes the content hashes of the modules to release.
+     * @param previousHashes the content hashes of the modules in the previous release.
+     * @param builtModules keys of the modules, which have to be built in any case.
+     * @return keys of the reusable modules in alphabetical order.
+     */
+    public List<String> getReusableModules(Map<String, String> contentHashes, Map<String, String> previousHashes,
+                                           Collection<String> builtModules) {
+        final Set<String> required = new HashSet<String>();
+        final Deque<String> pending = new ArrayDeque<String>();
+        for(final String moduleKey : mavenModels.keySet()) {
+            final String contentHash = contentHashes.get(moduleKey);
+            if(builtModules.contains(moduleKey) || (contentHash == null) ||
+                    !contentHash.equals(previousHashes.get(moduleKey))) {
+                required.add(moduleKey);
+                pending.add(moduleKey);
+            }
+        }
+        while(!pending.isEmpty()) {
+            for(final String requiredModuleKey : getReferencedModules(mavenModels.get(pending.poll()))) {
+                if(mavenModels.containsKey(requiredModuleKey) && required.add(requiredModuleKey)) {
+                    pending.add(requiredModuleKey);
+                }
+            }
+        }
+
+        final List<String> reusableModules = new ArrayList<String>();
+        for(final String moduleKey : new TreeSet<String>(mavenModels.keySet())) {
+            if(!required.contains(moduleKey)) {
+                reusableModules.add(moduleKey);
+            }
+        }
+        return reusableModules;
+    }
+
+    /**
+     * @return keys of all artifacts the model needs for being built, including those in its profiles.
+     */
+    protected Set<String> getReferencedModules(Model model) {
+        final Set<String> referencedModules = new HashSet<String>();
+        if(model.getParent() != null) {
+            referencedModules.add(model.getParent().getGroupId() + ":" + model.getParent().getArtifactId());
+        }
+        addReferencedModules(model.getDependencies(), model.getDependencyManagement() != null ?
+                model.getDependencyManagement().getDependencies() : null, model.getBuild(), referencedModules);
+        for(final Profile profile : model.getProfiles()) {
+            addReferencedModules(profile.getDependencies(), profile.getDependencyManagement() != null ?
+                    profile.getDependencyManagement().getDependencies() : null, profile.getBuild(), referencedModules);
+        }
+        return referencedModules;
+    }
+
+    private static void addReferencedModules(List<Dependency> dependencies, List<Dependency> managedDependencies,
+                                             BuildBase build, Set<String> referencedModules) {
+        for(final Dependency dependency : dependencies) {
+            referencedModules.add(dependency.getGroupId() + ":" + dependency.getArtifactId());
+        }
+        if(managedDependencies != null) {
+            for(final Dependency dependency : managedDependencies) {
+                if("import".equals(dependency.getScope())) {
+                    referencedModules.add(dependency.getGroupId() + ":" + dependency.getArtifactId());
+                }
+            }
+        }
+        if(build != null) {
+            for(final Plugin plugin : build.getPlugins()) {
+                referencedModules.add(plugin.getGroupId() + ":" + plugin.getArtifactId());
+                for(final Dependency dependency : plugin.getDependencies()) {
+                    referencedModules.add(dependency.getGroupId() + ":" + dependency.getArtifactId());
+                }
+            }
+        }
+    }
+
+    private String calculate(String moduleKey, Map<String, String> contentHashes, Set<String> visiting)
+            throws IOException {
+        if(contentHashes.containsKey(moduleKey)) {
+            return contentHashes.get(moduleKey);
+        }
+        // Maven would refuse to build a cyclic reactor anyway, so we simply ignore the cycle.
+        if(!visiting.add(moduleKey)) {
+            return "";
+        }
+        final Model model = mavenModels.get(moduleKey);
+        final MessageDigest digest = SourceHasher.newDigest();
+        digest.update(moduleKey.getBytes("UTF-8"));
+        digest.update(String.valueOf(sourceHashes.get(moduleKey)).getBytes("UTF-8"));
+        digest.update(PomNormalizer.normalize(model, mavenModels.keySet()).getBytes("UTF-8"));
+
+        final SortedSet<String> requiredModules = new TreeSet<String>();
+        if(model.getParent() != null) {
+            requiredModules.add(model.getParent().getGroupId() + ":" + model.getParent().getArtifactId());
+        }
+        for(final Dependency dependency : model.getDependencies()) {
+            requiredModules.add(dependency.getGroupId() + ":" + dependency.getArtifactId());
+        }
+        for(final String requiredModuleKey : requiredModules) {
+            if(mavenModels.containsKey(requiredModuleKey)) {
+                digest.update(calculate(requiredModuleKey, contentHashes, visiting).getBytes("UTF-8"));
+            }
+        }
+
+        final String contentHash = SourceHasher.toHex(digest.digest());
+        contentHashes.put(moduleKey, contentHash);
+        return contentHash;
+    }
+
+}
@@ -0,0 +1,108 @@
+package de.cware.plugins.jenkins.releases.reuse;
+
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Calculates a hash of the sources of every module in the workspace. All files in the
+ * directory of a module are included, except the pom (which is compared separately, as
+ * the release plugin changes it), build output, files of the release plugin and the
+ * directories of other modules.
+ *
+ * The hasher is executed on the node the workspace is located on.
+ */
+public class SourceHasher extends MasterToSlaveFileCallable<Map<String, String>> {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Set<String> IGNORED_NAMES = new HashSet<String>(Arrays.asList(
+            "target", ".svn", "pom.xml", "pom.xml.releaseBackup", "release.properties"));
+
+    private final Map<String, String> modulePaths;
+
+    /**
+     * @param modulePaths map containing the path relative to the workspace for every module key.
+     */
+    public SourceHasher(Map<String, String> modulePaths) {
+        this.modulePaths = new HashMap<String, String>(modulePaths);
+    }
+
+    /**
+     * @param workspace the workspace.
+     * @param channel the channel.
+     * @return map containing the hash of the sources for every module key.
+     */
+    public Map<String, String> invoke(File workspace, VirtualChannel channel) throws IOException, InterruptedException {
+        final Set<File> moduleDirs = new HashSet<File>();
+        for(final String modulePath : modulePaths.values()) {
+            moduleDirs.add(new File(workspace, modulePath).getCanonicalFile());
+        }
+
+        final Map<String, String> hashes = new HashMap<String, String>();
+        for(final Map.Entry<String, String> modulePath : modulePaths.entrySet()) {
+            final File moduleDir = new File(workspace, modulePath.getValue()).getCanonicalFile();
+            final MessageDigest digest = newDigest();
+            hashDirectory(moduleDir, "", moduleDirs, digest);
+            hashes.put(modulePath.getKey(), toHex(digest.digest()));
+        }
+        return hashes;
+    }
+
+    protected void hashDirectory(File dir, String path, Set<File> moduleDirs, MessageDigest digest)
+            throws IOException {
+        final File[] files = dir.listFiles();
+        if(files == null) {
+            return;
+        }
+        // Always process the files in the same order, so the hash doesn't depend on the file system.
+        Arrays.sort(files);
+        for(final File file : files) {
+            if(IGNORED_NAMES.contains(file.getName())) {
+                continue;
+            }
+            final String filePath = path + "/" + file.getName();
+            if(file.isDirectory()) {
+                if(!moduleDirs.contains(file.getCanonicalFile())) {
+                    hashDirectory(file, filePath, moduleDirs, digest);
+                }
+                continue;
+            }
+            digest.update(filePath.getBytes("UTF-8"));
+            final InputStream in = new FileInputStream(file);
+            try {
+                final byte[] buffer = new byte[8192];
+                int read;
+                while((read = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                }
+            } finally {
+                in.close();
+            }
+        }
+    }
+
+    protected static MessageDigest newDigest() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    protected static String toHex(byte[] bytes) {
+        final StringBuilder result = new StringBuilder();
+        for(final byte b : bytes) {
+            result.append(String.format("%02x", b));
+        }
+        return result.toString();
+    }
+
+}
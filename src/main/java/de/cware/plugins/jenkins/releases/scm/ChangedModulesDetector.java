@@ -0,0 +1,195 @@
+package de.cware.plugins.jenkins.releases.scm;
+
+import de.cware.plugins.jenkins.releases.plan.PomNormalizer;
+import hudson.maven.MavenModule;
+import hudson.maven.MavenModuleSet;
+import hudson.scm.SubversionSCM;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+import org.tmatesoft.svn.core.SVNDepth;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNNodeKind;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.wc.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Finds out which modules have been changed since the last release by comparing the
+ * directory of every module in the tag of the last release with the revision of the
+ * last build of the project. The comparison is done on the server using the SVNKit
+ * version bundled with the Subversion plugin, so nothing has to be checked out.
+ *
+ * As the release plugin changes the versions in all poms of a release, changes to a
+ * pom.xml only count as change, if the poms still differ after all versions of the
+ * modules of this project have been removed.
+ */
+public class ChangedModulesDetector {
+
+    private static final String POM_FILE = "pom.xml";
+
+    private final MavenModuleSet project;
+    private final Map<String, Model> mavenModels;
+
+    /**
+     * @param project the project.
+     * @param mavenModels the models of all modules of the project.
+     */
+    public ChangedModulesDetector(MavenModuleSet project, Map<String, Model> mavenModels) {
+        this.project = project;
+        this.mavenModels = mavenModels;
+    }
+
+    /**
+     * @param tagName name of the tag of the last release.
+     * @param revision revision the modules should be compared with.
+     * @return keys of all modules which contain changes since the given tag.
+     * @throws SVNException if the repository could not be accessed, for example if the tag doesn't exist.
+     */
+    public Set<String> getChangedModules(String tagName, long revision) throws SVNException {
+        final Set<String> changedModules = new HashSet<String>();
+        if(!(project.getScm() instanceof SubversionSCM)) {
+            return changedModules;
+        }
+        final SubversionSCM.ModuleLocation location = ((SubversionSCM) project.getScm()).getLocations()[0];
+        final SVNURL currentUrl = location.getSVNURL();
+        final SVNURL tagUrl = getTagUrl(currentUrl, tagName);
+        if(tagUrl == null) {
+            return changedModules;
+        }
+        final String localDirPrefix = ((location.getLocalDir() == null) || ".".equals(location.getLocalDir())) ?
+                "" : location.getLocalDir() + "/";
+
+        // Map the relative path of every module to its key, longest paths first, so a change is
+        // always assigned to the module directly containing it.
+        final SortedMap<String, String> modulePaths = new TreeMap<String, String>(new Comparator<String>() {
+            public int compare(String path1, String path2) {
+                return (path1.length() != path2.length()) ? path2.length() - path1.length() : path1.compareTo(path2);
+            }
+        });
+        for(final MavenModule module : project.getModules()) {
+            String relativePath = module.getRelativePath().replace('\\', '/');
+            if(relativePath.startsWith(localDirPrefix)) {
+                relativePath = relativePath.substring(localDirPrefix.length());
+            }
+            modulePaths.put(relativePath, module.getModuleName().groupId + ":" + module.getModuleName().artifactId);
+        }
+
+        final SVNClientManager clientManager = SubversionSCM.createSvnClientManager(project);
+        try {
+            final List<String> changedPaths = new ArrayList<String>();
+            clientManager.getDiffClient().doDiffStatus(tagUrl, SVNRevision.HEAD, currentUrl,
+                    SVNRevision.create(revision), SVNDepth.INFINITY, false, new ISVNDiffStatusHandler() {
+                public void handleDiffStatus(SVNDiffStatus diffStatus) throws SVNException {
+                    if((diffStatus.getKind() == SVNNodeKind.FILE) ||
+                            (diffStatus.getModificationType() != SVNStatusType.STATUS_MODIFIED)) {
+                        changedPaths.add(diffStatus.getPath());
+                    }
+                }
+            });
+
+            for(final String changedPath : changedPaths) {
+                final String moduleKey = getModuleKey(changedPath, modulePaths);
+                if((moduleKey == null) || changedModules.contains(moduleKey)) {
+                    continue;
+                }
+                if(changedPath.equals(POM_FILE) || changedPath.endsWith("/" + POM_FILE)) {
+                    if(!isPomChanged(clientManager.getWCClient(), tagUrl.appendPath(changedPath, false),
+                            currentUrl.appendPath(changedPath, false), revision)) {
+                        continue;
+                    }
+                }
+                changedModules.add(moduleKey);
+            }
+        } finally {
+            clientManager.dispose();
+        }
+        return changedModules;
+    }
+
+    /**
+     * Get the url of a tag. If the root pom configures a "tagBase" for the release plugin, this
+     * is used, otherwise the standard "trunk", "branches", "tags" layout is assumed.
+     *
+     * @return url of the tag or null, if it can't be determined.
+     */
+    public SVNURL getTagUrl(SVNURL currentUrl, String tagName) throws SVNException {
+        final String tagBase = getConfiguredTagBase();
+        if(tagBase != null) {
+            return SVNURL.parseURIEncoded(tagBase).appendPath(tagName, false);
+        }
+        final String url = currentUrl.toString();
+        int layoutIndex = url.lastIndexOf("/trunk");
+        if(layoutIndex == -1) {
+            layoutIndex = url.lastIndexOf("/branches/");
+        }
+        if(layoutIndex == -1) {
+            return null;
+        }
+        return SVNURL.parseURIEncoded(url.substring(0, layoutIndex) + "/tags").appendPath(tagName, false);
+    }
+
+    protected String getConfiguredTagBase() {
+        final MavenModule rootModule = project.getRootModule();
+        final Model rootModel = mavenModels.get(rootModule.getModuleName().groupId + ":" +
+                rootModule.getModuleName().artifactId);
+        if((rootModel == null) || (rootModel.getBuild() == null)) {
+            return null;
+        }
+        final List<Plugin> plugins = new ArrayList<Plugin>(rootModel.getBuild().getPlugins());
+        if(rootModel.getBuild().getPluginManagement() != null) {
+            plugins.addAll(rootModel.getBuild().getPluginManagement().getPlugins());
+        }
+        for(final Plugin plugin : plugins) {
+            if("maven-release-plugin".equals(plugin.getArtifactId()) && (plugin.getConfiguration() instanceof Xpp3Dom)) {
+                final Xpp3Dom tagBase = ((Xpp3Dom) plugin.getConfiguration()).getChild("tagBase");
+                if((tagBase != null) && (tagBase.getValue() != null) && !tagBase.getValue().contains("${")) {
+                    return tagBase.getValue().trim();
+                }
+            }
+        }
+        return null;
+    }
+
+    protected String getModuleKey(String changedPath, SortedMap<String, String> modulePaths) {
+        for(final Map.Entry<String, String> modulePath : modulePaths.entrySet()) {
+            final String path = modulePath.getKey();
+            if(path.length() == 0 || changedPath.equals(path) || changedPath.startsWith(path + "/")) {
+                return modulePath.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Compare two versions of a pom, ignoring the versions of the modules of this project.
+     */
+    protected boolean isPomChanged(SVNWCClient wcClient, SVNURL tagPomUrl, SVNURL currentPomUrl, long revision) {
+        try {
+            final String tagPom = normalizePom(getContent(wcClient, tagPomUrl, SVNRevision.HEAD));
+            final String currentPom = normalizePom(getContent(wcClient, currentPomUrl, SVNRevision.create(revision)));
+            return !tagPom.equals(currentPom);
+        } catch (Exception e) {
+            // If in doubt, treat the pom as changed.
+            return true;
+        }
+    }
+
+    protected byte[] getContent(SVNWCClient wcClient, SVNURL url, SVNRevision revision) throws SVNException {
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        wcClient.doGetFileContents(url, revision, revision, false, content);
+        return content.toByteArray();
+    }
+
+    protected String normalizePom(byte[] content) throws IOException, XmlPullParserException {
+        return PomNormalizer.normalize(new MavenXpp3Reader().read(new ByteArrayInputStream(content)),
+                mavenModels.keySet());
+    }
+
+}
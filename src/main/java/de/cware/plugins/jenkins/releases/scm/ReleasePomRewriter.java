@@ -0,0 +1,354 @@
+package de.cware.plugins.jenkins.releases.scm;
+
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+import org.apache.maven.model.*;
+import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.apache.maven.model.io.xpp3.MavenXpp3Writer;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Changes the versions in the poms of the workspace from the SNAPSHOT versions to the
+ * release versions and back again. Every module gets its own release version. The poms are
+ * changed using the Maven model, so only the version of the module itself, the version of
+ * its parent and the versions of dependencies and plugins, which are modules of the
+ * reactor, are changed. Versions of external artifacts stay untouched, even if they
+ * happen to be the same. Only SNAPSHOT versions are replaced, versions defined by
+ * properties are left to Maven.
+ *
+ * Without the release plugin nobody else checks the released poms for SNAPSHOT references.
+ * So after the versions have been replaced, the versions of the modules, their parents,
+ * dependencies, managed dependencies and plugins, including those of profiles, are resolved
+ * with the properties of the poms. If any of them is still a SNAPSHOT version, the rewriter
+ * fails without changing any pom.
+ *
+ * As the poms are written by the Maven model writer, comments and formatting of the
+ * changed poms are not kept. Before a pom is changed, a backup is created, which is used
+ * for restoring the original pom.
+ *
+ * The rewriter is executed on the node the workspace is located on.
+ */
+public class ReleasePomRewriter extends MasterToSlaveFileCallable<Map<String, byte[][]>> {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String BACKUP_SUFFIX = ".tagBackup";
+
+    private final List<String> pomPaths;
+    private final Map<String, String> releaseVersions;
+
+    private ReleasePomRewriter(List<String> pomPaths, Map<String, String> releaseVersions) {
+        this.pomPaths = new ArrayList<String>(pomPaths);
+        this.releaseVersions = (releaseVersions != null) ? new HashMap<String, String>(releaseVersions) : null;
+    }
+
+    /**
+     * @param pomPaths paths of the poms relative to the workspace.
+     * @param releaseVersions the release version of every module of the reactor, keyed by "groupId:artifactId".
+     * @return rewriter replacing the SNAPSHOT versions of the modules with their release versions.
+     */
+    public static ReleasePomRewriter rewrite(List<String> pomPaths, Map<String, String> releaseVersions) {
+        return new ReleasePomRewriter(pomPaths, releaseVersions);
+    }
+
+    /**
+     * @param pomPaths paths of the poms relative to the workspace.
+     * @return rewriter restoring the backups of the poms.
+     */
+    public static ReleasePomRewriter restore(List<String> pomPaths) {
+        return new ReleasePomRewriter(pomPaths, null);
+    }
+
+    /**
+     * @return map containing the original and the changed content for every changed pom.
+     * @throws IOException if a pom couldn't be changed or still references a SNAPSHOT version.
+     */
+    public Map<String, byte[][]> invoke(File workspace, VirtualChannel channel)
+            throws IOException, InterruptedException {
+        final Map<String, byte[][]> changedPoms = new LinkedHashMap<String, byte[][]>();
+        if(releaseVersions == null) {
+            for(final String pomPath : pomPaths) {
+                final File pomFile = new File(workspace, pomPath);
+                final File backupFile = new File(workspace, pomPath + BACKUP_SUFFIX);
+                if(backupFile.exists() && (!pomFile.delete() || !backupFile.renameTo(pomFile))) {
+                    throw new IOException("Could not restore " + pomFile);
+                }
+            }
+            return changedPoms;
+        }
+
+        // Change all models first, the properties of a parent might be needed for checking its modules.
+        final Map<String, Model> models = new LinkedHashMap<String, Model>();
+        final Map<String, byte[]> originalContents = new HashMap<String, byte[]>();
+        final Set<String> changedPaths = new HashSet<String>();
+        for(final String pomPath : pomPaths) {
+            final File pomFile = new File(workspace, pomPath);
+            if(!pomFile.exists()) {
+                continue;
+            }
+            final byte[] originalContent = read(pomFile);
+            final Model model;
+            try {
+                model = new MavenXpp3Reader().read(new ByteArrayInputStream(originalContent));
+            } catch (XmlPullParserException e) {
+                throw new IOException("Could not parse " + pomFile, e);
+            }
+            if(applyReleaseVersions(model)) {
+                changedPaths.add(pomPath);
+            }
+            models.put(pomPath, model);
+            originalContents.put(pomPath, originalContent);
+        }
+
+        final List<String> snapshotReferences = new SnapshotChecker(models.values()).getSnapshotReferences();
+        if(!snapshotReferences.isEmpty()) {
+            throw new IOException("The released poms still reference the SNAPSHOT versions " + snapshotReferences);
+        }
+
+        for(final Map.Entry<String, Model> model : models.entrySet()) {
+            final String pomPath = model.getKey();
+            if(!changedPaths.contains(pomPath)) {
+                continue;
+            }
+            final ByteArrayOutputStream releaseContent = new ByteArrayOutputStream();
+            new MavenXpp3Writer().write(releaseContent, model.getValue());
+            write(new File(workspace, pomPath + BACKUP_SUFFIX), originalContents.get(pomPath));
+            write(new File(workspace, pomPath), releaseContent.toByteArray());
+            changedPoms.put(pomPath, new byte[][] {originalContents.get(pomPath), releaseContent.toByteArray()});
+        }
+        return changedPoms;
+    }
+
+    /**
+     * Replace the SNAPSHOT versions of all reactor modules referenced by the model.
+     *
+     * @return true, if the model has been changed.
+     */
+    protected boolean applyReleaseVersions(Model model) {
+        boolean changed = false;
+        final Parent parent = model.getParent();
+        final String groupId = ((model.getGroupId() == null) && (parent != null)) ?
+                parent.getGroupId() : model.getGroupId();
+        final String version = getReleaseVersion(groupId, model.getArtifactId(), model.getVersion());
+        if(version != null) {
+            model.setVersion(version);
+            changed = true;
+        }
+        if(parent != null) {
+            final String parentVersion = getReleaseVersion(parent.getGroupId(), parent.getArtifactId(),
+                    parent.getVersion());
+            if(parentVersion != null) {
+                parent.setVersion(parentVersion);
+                changed = true;
+            }
+        }
+        changed |= applyReleaseVersions(model.getDependencies(), model.getDependencyManagement(), model.getBuild());
+        for(final Profile profile : model.getProfiles()) {
+            changed |= applyReleaseVersions(profile.getDependencies(), profile.getDependencyManagement(),
+                    profile.getBuild());
+        }
+        return changed;
+    }
+
+    protected boolean applyReleaseVersions(List<Dependency> dependencies, DependencyManagement dependencyManagement,
+                                           BuildBase build) {
+        final List<Dependency> allDependencies = new ArrayList<Dependency>(dependencies);
+        if(dependencyManagement != null) {
+            allDependencies.addAll(dependencyManagement.getDependencies());
+        }
+        boolean changed = false;
+        for(final Dependency dependency : allDependencies) {
+            final String version = getReleaseVersion(dependency.getGroupId(), dependency.getArtifactId(),
+                    dependency.getVersion());
+            if(version != null) {
+                dependency.setVersion(version);
+                changed = true;
+            }
+        }
+        if(build != null) {
+            final List<Plugin> plugins = new ArrayList<Plugin>(build.getPlugins());
+            if(build.getPluginManagement() != null) {
+                plugins.addAll(build.getPluginManagement().getPlugins());
+            }
+            for(final Plugin plugin : plugins) {
+                final String version = getReleaseVersion(plugin.getGroupId(), plugin.getArtifactId(),
+                        plugin.getVersion());
+                if(version != null) {
+                    plugin.setVersion(version);
+                    changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @return the release version of the given artifact or null, if it's not a module of the
+     *         reactor or the version is not a SNAPSHOT version.
+     */
+    protected String getReleaseVersion(String groupId, String artifactId, String currentVersion) {
+        if((currentVersion == null) || !currentVersion.endsWith("-SNAPSHOT")) {
+            return null;
+        }
+        return releaseVersions.get(groupId + ":" + artifactId);
+    }
+
+    /**
+     * Finds the SNAPSHOT versions referenced by the released poms. Properties are resolved with
+     * the properties of the pom itself and of its parents, as far as they are part of the poms.
+     */
+    protected static class SnapshotChecker {
+
+        private static final Pattern PROPERTY_PATTERN = Pattern.compile("\\$\\{([^}]+)\\}");
+
+        private final Map<String, Model> models = new HashMap<String, Model>();
+
+        protected SnapshotChecker(Iterable<Model> models) {
+            for(final Model model : models) {
+                this.models.put(getGroupId(model) + ":" + model.getArtifactId(), model);
+            }
+        }
+
+        /**
+         * @return descriptions of all SNAPSHOT references in the form "module -> groupId:artifactId:version".
+         */
+        protected List<String> getSnapshotReferences() {
+            final List<String> snapshotReferences = new ArrayList<String>();
+            for(final Map.Entry<String, Model> entry : models.entrySet()) {
+                final Model model = entry.getValue();
+                check(model, entry.getKey(), getGroupId(model), model.getArtifactId(), getVersion(model),
+                        snapshotReferences);
+                if(model.getParent() != null) {
+                    check(model, entry.getKey(), model.getParent().getGroupId(), model.getParent().getArtifactId(),
+                            model.getParent().getVersion(), snapshotReferences);
+                }
+                check(model, entry.getKey(), model.getDependencies(), model.getDependencyManagement(),
+                        model.getBuild(), snapshotReferences);
+                for(final Profile profile : model.getProfiles()) {
+                    check(model, entry.getKey(), profile.getDependencies(), profile.getDependencyManagement(),
+                            profile.getBuild(), snapshotReferences);
+                }
+            }
+            return snapshotReferences;
+        }
+
+        private void check(Model model, String moduleKey, List<Dependency> dependencies,
+                           DependencyManagement dependencyManagement, BuildBase build,
+                           List<String> snapshotReferences) {
+            final List<Dependency> allDependencies = new ArrayList<Dependency>(dependencies);
+            if(dependencyManagement != null) {
+                allDependencies.addAll(dependencyManagement.getDependencies());
+            }
+            if(build != null) {
+                final List<Plugin> plugins = new ArrayList<Plugin>(build.getPlugins());
+                if(build.getPluginManagement() != null) {
+                    plugins.addAll(build.getPluginManagement().getPlugins());
+                }
+                for(final Plugin plugin : plugins) {
+                    check(model, moduleKey, plugin.getGroupId(), plugin.getArtifactId(), plugin.getVersion(),
+                            snapshotReferences);
+                    allDependencies.addAll(plugin.getDependencies());
+                }
+            }
+            for(final Dependency dependency : allDependencies) {
+                check(model, moduleKey, dependency.getGroupId(), dependency.getArtifactId(), dependency.getVersion(),
+                        snapshotReferences);
+            }
+        }
+
+        private void check(Model model, String moduleKey, String groupId, String artifactId, String version,
+                           List<String> snapshotReferences) {
+            final String resolvedVersion = resolve(model, version, new HashSet<String>());
+            if((resolvedVersion != null) && resolvedVersion.endsWith("-SNAPSHOT")) {
+                snapshotReferences.add(moduleKey + " -> " + groupId + ":" + artifactId + ":" + resolvedVersion);
+            }
+        }
+
+        /**
+         * Replace all properties in the value, which are defined by the model or its parents.
+         */
+        protected String resolve(Model model, String value, Set<String> resolving) {
+            if((value == null) || !value.contains("${")) {
+                return value;
+            }
+            final Matcher matcher = PROPERTY_PATTERN.matcher(value);
+            final StringBuffer resolved = new StringBuffer();
+            while(matcher.find()) {
+                final String propertyName = matcher.group(1);
+                String propertyValue = null;
+                if("project.version".equals(propertyName) || "pom.version".equals(propertyName) ||
+                        "version".equals(propertyName)) {
+                    propertyValue = getVersion(model);
+                } else if("project.parent.version".equals(propertyName) && (model.getParent() != null)) {
+                    propertyValue = model.getParent().getVersion();
+                } else if(resolving.add(propertyName)) {
+                    Model currentModel = model;
+                    while((currentModel != null) && (propertyValue == null)) {
+                        propertyValue = currentModel.getProperties().getProperty(propertyName);
+                        currentModel = getParentModel(currentModel);
+                    }
+                    propertyValue = resolve(model, propertyValue, resolving);
+                    resolving.remove(propertyName);
+                }
+                matcher.appendReplacement(resolved,
+                        Matcher.quoteReplacement((propertyValue != null) ? propertyValue : matcher.group()));
+            }
+            matcher.appendTail(resolved);
+            return resolved.toString();
+        }
+
+        private Model getParentModel(Model model) {
+            if(model.getParent() == null) {
+                return null;
+            }
+            return models.get(model.getParent().getGroupId() + ":" + model.getParent().getArtifactId());
+        }
+
+        private static String getGroupId(Model model) {
+            return ((model.getGroupId() == null) && (model.getParent() != null)) ?
+                    model.getParent().getGroupId() : model.getGroupId();
+        }
+
+        private static String getVersion(Model model) {
+            return ((model.getVersion() == null) && (model.getParent() != null)) ?
+                    model.getParent().getVersion() : model.getVersion();
+        }
+
+    }
+
+    protected static byte[] read(File file) throws IOException {
+        final InputStream in = new FileInputStream(file);
+        try {
+            final ByteArrayOutputStream content = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int read;
+            while((read = in.read(buffer)) != -1) {
+                content.write(buffer, 0, read);
+            }
+            return content.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    protected static void write(File file, byte[] content) throws IOException {
+        final OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+    }
+
+}
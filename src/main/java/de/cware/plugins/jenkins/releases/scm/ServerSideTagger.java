@@ -0,0 +1,142 @@
+package de.cware.plugins.jenkins.releases.scm;
+
+import hudson.maven.MavenModuleSet;
+import hudson.scm.SubversionSCM;
+import org.tmatesoft.svn.core.SVNCommitInfo;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.io.ISVNEditor;
+import org.tmatesoft.svn.core.io.SVNRepository;
+import org.tmatesoft.svn.core.io.diff.SVNDeltaGenerator;
+import org.tmatesoft.svn.core.wc.SVNClientManager;
+import org.tmatesoft.svn.core.wc.SVNCopySource;
+import org.tmatesoft.svn.core.wc.SVNRevision;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Creates the tag of a release directly on the Subversion server instead of letting the
+ * release plugin commit the working copy. The tag is created as a copy of the revision
+ * the workspace was checked out from, which Subversion does in constant time, and only
+ * the poms with the changed versions are committed to the tag afterwards. As the poms
+ * are sent as deltas, the amount of data transferred is independent of the size of the
+ * project. The trunk or branch itself is not changed at all.
+ *
+ * Everything is done using the SVNKit version of the Subversion plugin, without a working
+ * copy, so it works with all repository urls SVNKit supports, including file:// urls.
+ */
+public class ServerSideTagger {
+
+    private final MavenModuleSet project;
+
+    public ServerSideTagger(MavenModuleSet project) {
+        this.project = project;
+    }
+
+    /**
+     * @return client manager using the credentials configured for the project.
+     */
+    protected SVNClientManager createClientManager() {
+        return SubversionSCM.createSvnClientManager(project);
+    }
+
+    /**
+     * @param sourceUrl url the workspace was checked out from.
+     * @param revision revision the workspace was checked out from.
+     * @param tagUrl url of the tag that should be created.
+     * @param changedFiles map containing the original and the changed content of every changed file,
+     *                     with paths relative to the source url.
+     * @return revision of the commit containing the changed files.
+     * @throws SVNException if the tag already exists or something went wrong when talking to the server.
+     */
+    public long createTag(SVNURL sourceUrl, long revision, SVNURL tagUrl, Map<String, byte[][]> changedFiles,
+                          String tagName) throws SVNException {
+        final SVNClientManager clientManager = createClientManager();
+        try {
+            final SVNRevision svnRevision = SVNRevision.create(revision);
+            final SVNCommitInfo copyInfo = clientManager.getCopyClient().doCopy(
+                    new SVNCopySource[] {new SVNCopySource(svnRevision, svnRevision, sourceUrl)}, tagUrl,
+                    false, true, true, "[release] create tag " + tagName, null);
+            if(copyInfo.getErrorMessage() != null) {
+                throw new SVNException(copyInfo.getErrorMessage());
+            }
+            if(changedFiles.isEmpty()) {
+                return copyInfo.getNewRevision();
+            }
+
+            final SVNRepository repository = clientManager.createRepository(tagUrl, true);
+            try {
+                return commitFiles(repository, changedFiles, "[release] prepare release " + tagName).getNewRevision();
+            } finally {
+                repository.closeSession();
+            }
+        } finally {
+            clientManager.dispose();
+        }
+    }
+
+    /**
+     * Commit the changed files using a commit editor. The editor requires the directories to be
+     * opened and closed in a depth-first order, so the files are processed in sorted order.
+     */
+    protected SVNCommitInfo commitFiles(SVNRepository repository, Map<String, byte[][]> changedFiles, String message)
+            throws SVNException {
+        final ISVNEditor editor = repository.getCommitEditor(message, null);
+        try {
+            editor.openRoot(-1);
+            final LinkedList<String> openDirs = new LinkedList<String>();
+            final SVNDeltaGenerator deltaGenerator = new SVNDeltaGenerator();
+            for(final Map.Entry<String, byte[][]> changedFile : new TreeMap<String, byte[][]>(changedFiles).entrySet()) {
+                final String path = changedFile.getKey().replace('\\', '/');
+                final List<String> dirs = getParentDirs(path);
+
+                // Close all directories not containing the current file and open the missing ones.
+                while(!openDirs.isEmpty() && !dirs.contains(openDirs.getLast())) {
+                    editor.closeDir();
+                    openDirs.removeLast();
+                }
+                for(final String dir : dirs) {
+                    if(!openDirs.contains(dir)) {
+                        editor.openDir(dir, -1);
+                        openDirs.add(dir);
+                    }
+                }
+
+                editor.openFile(path, -1);
+                editor.applyTextDelta(path, null);
+                final String checksum = deltaGenerator.sendDelta(path,
+                        new ByteArrayInputStream(changedFile.getValue()[0]), 0,
+                        new ByteArrayInputStream(changedFile.getValue()[1]), editor, true);
+                editor.closeFile(path, checksum);
+            }
+            while(!openDirs.isEmpty()) {
+                editor.closeDir();
+                openDirs.removeLast();
+            }
+            editor.closeDir();
+            return editor.closeEdit();
+        } catch (SVNException e) {
+            editor.abortEdit();
+            throw e;
+        }
+    }
+
+    /**
+     * @return all parent directories of the given path, starting with the top most one.
+     */
+    protected static List<String> getParentDirs(String path) {
+        final List<String> dirs = new ArrayList<String>();
+        int separator = path.indexOf('/');
+        while(separator != -1) {
+            dirs.add(path.substring(0, separator));
+            separator = path.indexOf('/', separator + 1);
+        }
+        return dirs;
+    }
+
+}
@@ -0,0 +1,197 @@
+package de.cware.plugins.jenkins.releases.versions;
+
+import org.eclipse.aether.transfer.AbstractTransferListener;
+import org.eclipse.aether.transfer.ArtifactNotFoundException;
+import org.eclipse.aether.transfer.MetadataNotFoundException;
+import org.eclipse.aether.transfer.TransferEvent;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transfer listener writing to the log of a build or a job instead of System.out. It
+ * doesn't print a line for every transfer and every progress event. Progress events only
+ * update a few counters and at most one status line is printed per interval. Failed
+ * transfers are always logged.
+ *
+ * Bytes, time and number of transfers are collected per repository and can be printed as
+ * summary at the end of each lookup.
+ */
+public class AggregatingTransferListener extends AbstractTransferListener {
+
+    /**
+     * Default interval between two progress lines in milliseconds.
+     */
+    public static final long DEFAULT_INTERVAL = 5000;
+
+    /**
+     * Transfer statistics of one repository.
+     */
+    public static class RepositoryStatistics {
+
+        private final AtomicInteger transfers = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+        private final AtomicInteger errors = new AtomicInteger();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong transferTime = new AtomicLong();
+
+        public int getTransfers() {
+            return transfers.get();
+        }
+
+        public int getFailures() {
+            return failures.get();
+        }
+
+        /**
+         * @return number of failed transfers, which failed for another reason than the resource not existing.
+         */
+        public int getErrors() {
+            return errors.get();
+        }
+
+        public long getBytes() {
+            return bytes.get();
+        }
+
+        /**
+         * @return the sum of the durations of all transfers in milliseconds.
+         */
+        public long getTransferTime() {
+            return transferTime.get();
+        }
+
+    }
+
+    private final PrintStream out;
+    private final long interval;
+
+    private final ConcurrentMap<String, RepositoryStatistics> statistics =
+            new ConcurrentHashMap<String, RepositoryStatistics>();
+    private final AtomicInteger activeTransfers = new AtomicInteger();
+    private final AtomicLong progressBytes = new AtomicLong();
+    private final AtomicLong lastProgress = new AtomicLong();
+    private final StringBuilder progressLine = new StringBuilder(64);
+    private volatile long startTime = System.currentTimeMillis();
+
+    public AggregatingTransferListener(PrintStream out) {
+        this(out, DEFAULT_INTERVAL);
+    }
+
+    /**
+     * @param out stream the log is written to.
+     * @param interval minimum time between two progress lines in milliseconds.
+     */
+    public AggregatingTransferListener(PrintStream out, long interval) {
+        this.out = out;
+        this.interval = interval;
+        lastProgress.set(System.currentTimeMillis());
+    }
+
+    @Override
+    public void transferInitiated(TransferEvent event) {
+        activeTransfers.incrementAndGet();
+    }
+
+    @Override
+    public void transferProgressed(TransferEvent event) {
+        progressBytes.addAndGet(event.getDataLength());
+
+        // Only one thread gets to print the progress of the interval.
+        final long now = System.currentTimeMillis();
+        final long last = lastProgress.get();
+        if((now - last >= interval) && lastProgress.compareAndSet(last, now)) {
+            synchronized(progressLine) {
+                progressLine.setLength(0);
+                progressLine.append("[release] ").append(activeTransfers.get()).append(" transfers active, ")
+                        .append(progressBytes.get() / 1024).append(" KB transferred");
+                out.println(progressLine);
+            }
+        }
+    }
+
+    @Override
+    public void transferSucceeded(TransferEvent event) {
+        activeTransfers.decrementAndGet();
+        final RepositoryStatistics repositoryStatistics = getStatistics(event.getResource().getRepositoryUrl());
+        repositoryStatistics.transfers.incrementAndGet();
+        repositoryStatistics.bytes.addAndGet(Math.max(event.getTransferredBytes(), 0));
+        repositoryStatistics.transferTime.addAndGet(
+                System.currentTimeMillis() - event.getResource().getTransferStartTime());
+    }
+
+    @Override
+    public void transferFailed(TransferEvent event) {
+        activeTransfers.decrementAndGet();
+        final RepositoryStatistics repositoryStatistics = getStatistics(event.getResource().getRepositoryUrl());
+        repositoryStatistics.failures.incrementAndGet();
+        if(!(event.getException() instanceof ArtifactNotFoundException) &&
+                !(event.getException() instanceof MetadataNotFoundException)) {
+            repositoryStatistics.errors.incrementAndGet();
+        }
+        // Missing metadata and checksums are expected, so they are only counted.
+        if(!isExpectedFailure(event)) {
+            out.println("[release] Transfer of " + event.getResource().getRepositoryUrl() +
+                    event.getResource().getResourceName() + " failed: " + getMessage(event));
+        }
+    }
+
+    @Override
+    public void transferCorrupted(TransferEvent event) {
+        out.println("[release] Transfer of " + event.getResource().getRepositoryUrl() +
+                event.getResource().getResourceName() + " is corrupted: " + getMessage(event));
+    }
+
+    public Map<String, RepositoryStatistics> getStatistics() {
+        return new TreeMap<String, RepositoryStatistics>(statistics);
+    }
+
+    /**
+     * Print the bytes, time and throughput of all repositories since the listener was created
+     * or last reset.
+     *
+     * @param what description of the lookup, for example "Version lookup".
+     */
+    public void printSummary(String what) {
+        final long duration = System.currentTimeMillis() - startTime;
+        for(final Map.Entry<String, RepositoryStatistics> repository : getStatistics().entrySet()) {
+            final RepositoryStatistics stats = repository.getValue();
+            final long throughput = (stats.getTransferTime() > 0) ?
+                    stats.getBytes() * 1000 / 1024 / stats.getTransferTime() : 0;
+            out.println("[release] " + what + " " + repository.getKey() + ": " + stats.getTransfers() +
+                    " transfers, " + stats.getFailures() + " failed, " + (stats.getBytes() / 1024) + " KB in " +
+                    duration + "ms (" + throughput + " KB/s per transfer)");
+        }
+    }
+
+    public void reset() {
+        statistics.clear();
+        progressBytes.set(0);
+        startTime = System.currentTimeMillis();
+    }
+
+    protected RepositoryStatistics getStatistics(String repositoryUrl) {
+        RepositoryStatistics repositoryStatistics = statistics.get(repositoryUrl);
+        if(repositoryStatistics == null) {
+            statistics.putIfAbsent(repositoryUrl, new RepositoryStatistics());
+            repositoryStatistics = statistics.get(repositoryUrl);
+        }
+        return repositoryStatistics;
+    }
+
+    protected boolean isExpectedFailure(TransferEvent event) {
+        final String resourceName = event.getResource().getResourceName();
+        return resourceName.endsWith("maven-metadata.xml") || resourceName.endsWith(".sha1") ||
+                resourceName.endsWith(".md5");
+    }
+
+    private static String getMessage(TransferEvent event) {
+        return (event.getException() != null) ? event.getException().getMessage() : "unknown reason";
+    }
+
+}
@@ -12,10 +12,14 @@ import org.apache.maven.repository.internal.MavenRepositorySystemUtils;
 import org.eclipse.aether.DefaultRepositorySystemSession;
 import org.eclipse.aether.RepositorySystem;
 import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.repository.Authentication;
 import org.eclipse.aether.repository.LocalRepository;
 import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.transfer.TransferListener;
+import org.eclipse.aether.util.repository.AuthenticationBuilder;
 
 import java.io.File;
+import java.io.PrintStream;
 
 /**
  * A helper to boot the repository system and a repository system session.
@@ -33,13 +37,72 @@ public class Booter {
         // Clear the local repo.
         deleteDirectory(localRepo.getBasedir());
         session.setLocalRepositoryManager(system.newLocalRepositoryManager(session, localRepo));
+        setLog(session, null);
 
-        session.setTransferListener(new ConsoleTransferListener());
-        session.setRepositoryListener(new ConsoleRepositoryListener());
+        return session;
+    }
+
+    /**
+     * Create a session using the given directory as local repository. Other than the default
+     * session, the directory is not cleared, so multiple sessions can be used concurrently.
+     */
+    public static DefaultRepositorySystemSession newRepositorySystemSession(RepositorySystem system, File localRepoDir) {
+        return newRepositorySystemSession(system, localRepoDir, null);
+    }
+
+    /**
+     * Create a session using the given directory as local repository, which logs transfers
+     * and repository events to the given stream. If no stream is given, nothing is logged.
+     */
+    public static DefaultRepositorySystemSession newRepositorySystemSession(RepositorySystem system, File localRepoDir,
+                                                                            PrintStream log) {
+        DefaultRepositorySystemSession session = MavenRepositorySystemUtils.newSession();
+
+        LocalRepository localRepo = new LocalRepository(localRepoDir);
+        session.setLocalRepositoryManager(system.newLocalRepositoryManager(session, localRepo));
+        setLog(session, log);
 
         return session;
     }
 
+    /**
+     * Log the events of a session to the given stream. Progress of transfers is aggregated,
+     * so large downloads don't flood the log. Without a stream, the events of the session
+     * are not logged at all, as writing them to System.out only ends up in the log of the
+     * Jenkins server.
+     */
+    public static void setLog(DefaultRepositorySystemSession session, PrintStream log) {
+        if(log != null) {
+            session.setTransferListener(new AggregatingTransferListener(log));
+            session.setRepositoryListener(new BuildLogRepositoryListener(log));
+        } else {
+            session.setTransferListener(null);
+            session.setRepositoryListener(null);
+        }
+    }
+
+    /**
+     * Make all transfers of the session wait for the RepositoryRateLimiter. Only used for
+     * sessions on the Jenkins master, as the limits are shared by all jobs of the master.
+     *
+     * @param jobName name of the job the session is used for.
+     */
+    public static void setRateLimited(DefaultRepositorySystemSession session, String jobName) {
+        session.setTransferListener(new ThrottlingTransferListener(jobName, session.getTransferListener()));
+    }
+
+    /**
+     * @return the aggregating transfer listener of the session or null, if the session doesn't log transfers.
+     */
+    public static AggregatingTransferListener getTransferListener(RepositorySystemSession session) {
+        TransferListener transferListener = session.getTransferListener();
+        if(transferListener instanceof ThrottlingTransferListener) {
+            transferListener = ((ThrottlingTransferListener) transferListener).getDelegate();
+        }
+        return (transferListener instanceof AggregatingTransferListener) ?
+                (AggregatingTransferListener) transferListener : null;
+    }
+
     public static RemoteRepository newCentralRepository(String repoUrl) {
         if (repoUrl != null) {
             return new RemoteRepository.Builder("central", "default", repoUrl).build();
@@ -48,6 +111,19 @@ public class Booter {
         }
     }
 
+    /**
+     * Create a remote repository, which uses the given credentials, if both username and password are provided.
+     */
+    public static RemoteRepository newRemoteRepository(String repoUrl, String username, String password) {
+        RemoteRepository repo = newCentralRepository(repoUrl);
+        if ((username != null) && (password != null)) {
+            Authentication authentication = new AuthenticationBuilder()
+                    .addUsername(username).addPassword(password).build();
+            repo = new RemoteRepository.Builder(repo).setAuthentication(authentication).build();
+        }
+        return repo;
+    }
+
     static public boolean deleteDirectory(File path) {
         if( path.exists() ) {
             File[] files = path.listFiles();
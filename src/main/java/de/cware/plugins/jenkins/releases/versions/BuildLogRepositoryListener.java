@@ -0,0 +1,43 @@
+package de.cware.plugins.jenkins.releases.versions;
+
+import org.eclipse.aether.AbstractRepositoryListener;
+import org.eclipse.aether.RepositoryEvent;
+
+import java.io.PrintStream;
+
+/**
+ * Repository listener for the log of a build or a job. It ignores the resolving,
+ * downloading and installing of artifacts and metadata, which happens for every single
+ * dependency, and only logs the deployed artifacts and problems with descriptors and
+ * metadata.
+ */
+public class BuildLogRepositoryListener extends AbstractRepositoryListener {
+
+    private final PrintStream out;
+
+    public BuildLogRepositoryListener(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void artifactDeployed(RepositoryEvent event) {
+        out.println("[release] Deployed " + event.getArtifact() + " to " + event.getRepository().getId());
+    }
+
+    @Override
+    public void artifactDescriptorInvalid(RepositoryEvent event) {
+        out.println("[release] Invalid artifact descriptor for " + event.getArtifact() + ": " +
+                ((event.getException() != null) ? event.getException().getMessage() : "unknown reason"));
+    }
+
+    @Override
+    public void artifactDescriptorMissing(RepositoryEvent event) {
+        out.println("[release] Missing artifact descriptor for " + event.getArtifact());
+    }
+
+    @Override
+    public void metadataInvalid(RepositoryEvent event) {
+        out.println("[release] Invalid metadata " + event.getMetadata());
+    }
+
+}
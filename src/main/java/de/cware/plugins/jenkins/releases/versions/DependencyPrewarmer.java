@@ -0,0 +1,297 @@
+package de.cware.plugins.jenkins.releases.versions;
+
+import de.cware.plugins.jenkins.releases.plan.SnapshotAnalyzer;
+import hudson.model.TaskListener;
+import jenkins.security.MasterToSlaveCallable;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Parent;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.collection.CollectRequest;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResult;
+import org.eclipse.aether.resolution.DependencyRequest;
+import org.eclipse.aether.transfer.TransferEvent;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Resolves the external dependencies of all modules of the reactor into the local Maven
+ * repository of the node the release is performed on. Maven resolves the dependencies of
+ * one module after another, the prewarmer resolves the dependencies of all modules in
+ * parallel, so Maven starts with a warm local repository.
+ *
+ * The local repository is found the same way Maven finds it: the location chosen by the
+ * local repository strategy of the job, or the localRepository of the user settings
+ * (the settings of the job or ~/.m2/settings.xml), or the localRepository of the global
+ * settings (the global settings of the job or conf/settings.xml of the Maven installation),
+ * or ~/.m2/repository of the user running the agent.
+ *
+ * Resolution failures are only logged, as Maven will report them properly anyway.
+ */
+public class DependencyPrewarmer extends MasterToSlaveCallable<Integer, IOException> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Map<String, List<String>> moduleDependencies;
+    private static final Pattern PROPERTY_PATTERN = Pattern.compile("\\$\\{([^}]+)\\}");
+
+    private final String localRepoPath;
+    private final String userSettingsPath;
+    private final String globalSettingsPath;
+    private final String repoUrl;
+    private final String repoUser;
+    private final String repoPassword;
+    private final int threads;
+    private final TaskListener listener;
+
+    /**
+     * @param moduleDependencies map containing the coordinates of the external dependencies of every module.
+     * @param localRepoPath path of the local repository on the node or null, if it is defined by the settings.
+     * @param userSettingsPath path of the user settings on the node or null for ~/.m2/settings.xml.
+     * @param globalSettingsPath path of the global settings on the node or null, if there are none.
+     * @param repoUrl url of the repository the dependencies are resolved from.
+     * @param repoUser username used for authenticating (optional).
+     * @param repoPassword password used for authenticating (optional).
+     * @param threads number of modules resolved in parallel.
+     * @param listener listener used for logging.
+     */
+    public DependencyPrewarmer(Map<String, List<String>> moduleDependencies, String localRepoPath,
+                               String userSettingsPath, String globalSettingsPath, String repoUrl,
+                               String repoUser, String repoPassword, int threads, TaskListener listener) {
+        this.moduleDependencies = new LinkedHashMap<String, List<String>>(moduleDependencies);
+        this.localRepoPath = localRepoPath;
+        this.userSettingsPath = userSettingsPath;
+        this.globalSettingsPath = globalSettingsPath;
+        this.repoUrl = repoUrl;
+        this.repoUser = repoUser;
+        this.repoPassword = repoPassword;
+        this.threads = Math.max(1, threads);
+        this.listener = listener;
+    }
+
+    /**
+     * @return number of artifacts which had to be downloaded.
+     */
+    public Integer call() throws IOException {
+        final File localRepoDir = getLocalRepository();
+
+        final RepositorySystem system = Booter.newRepositorySystem();
+        final RemoteRepository repo = Booter.newRemoteRepository(repoUrl, repoUser, repoPassword);
+        final DefaultRepositorySystemSession session =
+                Booter.newRepositorySystemSession(system, localRepoDir, listener.getLogger());
+        final AtomicInteger downloadedArtifacts = new AtomicInteger();
+        final AtomicLong downloadedBytes = new AtomicLong();
+        final AggregatingTransferListener transferListener = new AggregatingTransferListener(listener.getLogger()) {
+            @Override
+            public void transferSucceeded(TransferEvent event) {
+                super.transferSucceeded(event);
+                final String resourceName = event.getResource().getResourceName();
+                if(!resourceName.endsWith(".sha1") && !resourceName.endsWith(".md5") &&
+                        !resourceName.endsWith("maven-metadata.xml")) {
+                    downloadedArtifacts.incrementAndGet();
+                }
+                downloadedBytes.addAndGet(event.getTransferredBytes());
+            }
+        };
+        session.setTransferListener(transferListener);
+
+        final long startTime = System.currentTimeMillis();
+        final AtomicInteger resolvedArtifacts = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final Map<String, Future<Integer>> results = new LinkedHashMap<String, Future<Integer>>();
+            for(final Map.Entry<String, List<String>> module : moduleDependencies.entrySet()) {
+                results.put(module.getKey(), executor.submit(new Callable<Integer>() {
+                    public Integer call() throws Exception {
+                        return resolve(system, session, repo, module.getValue());
+                    }
+                }));
+            }
+            for(final Map.Entry<String, Future<Integer>> result : results.entrySet()) {
+                try {
+                    resolvedArtifacts.addAndGet(result.getValue().get());
+                } catch (ExecutionException e) {
+                    listener.getLogger().println("[release] Could not resolve all dependencies of " +
+                            result.getKey() + ": " + e.getCause().getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            throw new IOException("Interrupted while resolving dependencies", e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        listener.getLogger().println("[release] Pre-warmed local repository " + localRepoDir + ": resolved " +
+                resolvedArtifacts.get() + " artifacts, fetched " + downloadedArtifacts.get() + " (" +
+                (downloadedBytes.get() / 1024) + " KB) in " + (System.currentTimeMillis() - startTime) + "ms");
+        transferListener.printSummary("Pre-warming from");
+        return downloadedArtifacts.get();
+    }
+
+    /**
+     * @return the local repository Maven will be using on this node.
+     */
+    protected File getLocalRepository() {
+        if(localRepoPath != null) {
+            return new File(localRepoPath);
+        }
+        final File m2Dir = new File(System.getProperty("user.home"), ".m2");
+        // The user settings override the global settings.
+        final File userSettings = (userSettingsPath != null) ?
+                new File(userSettingsPath) : new File(m2Dir, "settings.xml");
+        String localRepository = readLocalRepository(userSettings);
+        if((localRepository == null) && (globalSettingsPath != null)) {
+            localRepository = readLocalRepository(new File(globalSettingsPath));
+        }
+        if(localRepository != null) {
+            return new File(interpolate(localRepository));
+        }
+        return new File(m2Dir, "repository");
+    }
+
+    /**
+     * @return the localRepository defined in the settings file or null, if it doesn't define one.
+     */
+    protected String readLocalRepository(File settingsFile) {
+        if(!settingsFile.isFile()) {
+            return null;
+        }
+        try {
+            final Element settings =
+                    DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(settingsFile).getDocumentElement();
+            for(Node child = settings.getFirstChild(); child != null; child = child.getNextSibling()) {
+                if("localRepository".equals(child.getNodeName()) || "localRepository".equals(child.getLocalName())) {
+                    final String localRepository = child.getTextContent().trim();
+                    return (localRepository.length() > 0) ? localRepository : null;
+                }
+            }
+        } catch (Exception e) {
+            listener.getLogger().println("[release] Could not read " + settingsFile + ": " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Replace "${env.NAME}" with environment variables and all other "${name}" with system
+     * properties, like Maven does when reading the settings.
+     */
+    protected static String interpolate(String value) {
+        final Matcher matcher = PROPERTY_PATTERN.matcher(value);
+        final StringBuffer result = new StringBuffer();
+        while(matcher.find()) {
+            final String name = matcher.group(1);
+            final String replacement = name.startsWith("env.") ?
+                    System.getenv(name.substring(4)) : System.getProperty(name);
+            matcher.appendReplacement(result,
+                    Matcher.quoteReplacement((replacement != null) ? replacement : matcher.group()));
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+
+    /**
+     * Resolve the given dependencies including their transitive dependencies. Poms of
+     * external parents are only resolved as artifact, as they have no dependencies.
+     *
+     * @return number of resolved artifacts.
+     */
+    protected int resolve(RepositorySystem system, DefaultRepositorySystemSession session, RemoteRepository repo,
+                          List<String> coordinates) throws Exception {
+        final CollectRequest collectRequest = new CollectRequest();
+        collectRequest.addRepository(repo);
+        int resolved = 0;
+        for(final String coordinate : coordinates) {
+            final DefaultArtifact artifact = new DefaultArtifact(coordinate);
+            if("pom".equals(artifact.getExtension())) {
+                final ArtifactRequest artifactRequest = new ArtifactRequest();
+                artifactRequest.setArtifact(artifact);
+                artifactRequest.addRepository(repo);
+                system.resolveArtifact(session, artifactRequest);
+                resolved++;
+            } else {
+                collectRequest.addDependency(new org.eclipse.aether.graph.Dependency(artifact, null));
+            }
+        }
+        if(collectRequest.getDependencies().isEmpty()) {
+            return resolved;
+        }
+        final List<ArtifactResult> artifactResults =
+                system.resolveDependencies(session, new DependencyRequest(collectRequest, null)).getArtifactResults();
+        return resolved + artifactResults.size();
+    }
+
+    /**
+     * Collect the coordinates of all dependencies and parents of the given modules, which
+     * are not part of the reactor. Dependencies with versions that can't be determined or
+     * system scope are skipped.
+     *
+     * @param mavenModels the models of all modules of the reactor.
+     * @return map containing the coordinates of the external dependencies of every module.
+     */
+    public static Map<String, List<String>> getExternalDependencies(Map<String, Model> mavenModels) {
+        final SnapshotAnalyzer analyzer = new SnapshotAnalyzer(mavenModels);
+        final Map<String, List<String>> moduleDependencies = new LinkedHashMap<String, List<String>>();
+        for(final Map.Entry<String, Model> entry : mavenModels.entrySet()) {
+            final Model model = entry.getValue();
+            final List<String> coordinates = new ArrayList<String>();
+            final Parent parent = model.getParent();
+            if((parent != null) && !mavenModels.containsKey(parent.getGroupId() + ":" + parent.getArtifactId()) &&
+                    isResolvable(parent.getVersion())) {
+                coordinates.add(parent.getGroupId() + ":" + parent.getArtifactId() + ":pom:" + parent.getVersion());
+            }
+            for(final Dependency dependency : model.getDependencies()) {
+                if(mavenModels.containsKey(dependency.getGroupId() + ":" + dependency.getArtifactId()) ||
+                        "system".equals(dependency.getScope())) {
+                    continue;
+                }
+                final String version = analyzer.getDependencyVersion(model, dependency);
+                if(!isResolvable(version) || (dependency.getGroupId().indexOf("${") != -1)) {
+                    continue;
+                }
+                final StringBuilder coordinate = new StringBuilder();
+                coordinate.append(dependency.getGroupId()).append(":").append(dependency.getArtifactId());
+                coordinate.append(":").append(getExtension(dependency.getType()));
+                if(dependency.getClassifier() != null) {
+                    coordinate.append(":").append(dependency.getClassifier());
+                } else if("test-jar".equals(dependency.getType())) {
+                    coordinate.append(":tests");
+                }
+                coordinate.append(":").append(version);
+                coordinates.add(coordinate.toString());
+            }
+            if(!coordinates.isEmpty()) {
+                moduleDependencies.put(entry.getKey(), coordinates);
+            }
+        }
+        return moduleDependencies;
+    }
+
+    protected static String getExtension(String type) {
+        if((type == null) || "test-jar".equals(type)) {
+            return "jar";
+        }
+        return DeploymentChecker.getExtension(type) != null ? DeploymentChecker.getExtension(type) : "pom";
+    }
+
+    protected static boolean isResolvable(String version) {
+        return (version != null) && (version.indexOf("${") == -1);
+    }
+
+}
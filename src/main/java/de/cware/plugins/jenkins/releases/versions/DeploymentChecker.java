@@ -0,0 +1,264 @@
+package de.cware.plugins.jenkins.releases.versions;
+
+import de.cware.plugins.jenkins.releases.ReleaseBuildWrapper;
+
+import javax.xml.bind.DatatypeConverter;
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Little helper class that checks which modules of a release have already been deployed
+ * to the Maven repository. The existence of the pom and the main artifact of a module is
+ * checked with HEAD requests first, so missing modules are detected without downloading
+ * anything:
+ *
+ * - A module is deployed, if its pom and its main artifact exist, match their .sha1
+ *   checksums and the metadata of the module lists the version, which the
+ *   maven-deploy-plugin updates after the artifacts.
+ * - A module is partially deployed, if only some of these exist or an artifact doesn't
+ *   match its checksum, e.g. because the upload was interrupted. As release repositories
+ *   usually don't allow redeploying artifacts, such a module can neither be skipped nor
+ *   deployed again, so it has to be cleaned up in the repository first.
+ *
+ * If the repository can't be asked, e.g. because it denies access, the check fails, as
+ * assuming the modules are missing would make the resumed release deploy them again.
+ */
+public class DeploymentChecker {
+
+    public enum Deployment {
+        DEPLOYED, PARTIAL, MISSING
+    }
+
+    private final String repoUrl;
+    private final String authorization;
+    private final String jobName;
+
+    /**
+     * @param releaseBuildWrapper the wrapper of the job containing the repository settings.
+     * @param jobName name of the job, used for sharing the requests to the repository fairly between jobs.
+     */
+    public DeploymentChecker(ReleaseBuildWrapper releaseBuildWrapper, String jobName) throws IOException {
+        final String url = Booter.newRemoteRepository(releaseBuildWrapper.getMavenRepoUrl(), null, null).getUrl();
+        this.repoUrl = url.endsWith("/") ? url : url + "/";
+        if((releaseBuildWrapper.getMavenRepoUser() != null) && (releaseBuildWrapper.getMavenRepoPassword() != null)) {
+            authorization = "Basic " + DatatypeConverter.printBase64Binary((releaseBuildWrapper.getMavenRepoUser() +
+                    ":" + releaseBuildWrapper.getMavenRepoPassword()).getBytes("UTF-8"));
+        } else {
+            authorization = null;
+        }
+        this.jobName = jobName;
+    }
+
+    /**
+     * @param moduleVersions map containing the released version for every module key.
+     * @param packagings map containing the packaging of every module key.
+     * @param threads number of modules to check in parallel.
+     * @return the deployment state of every module.
+     * @throws IOException if the deployment state of a module couldn't be checked.
+     */
+    public Map<String, Deployment> getDeployments(Map<String, String> moduleVersions,
+                                                  final Map<String, String> packagings, int threads)
+            throws IOException, InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            final Map<String, Future<Deployment>> results = new LinkedHashMap<String, Future<Deployment>>();
+            for(final Map.Entry<String, String> moduleVersion : moduleVersions.entrySet()) {
+                results.put(moduleVersion.getKey(), executor.submit(new Callable<Deployment>() {
+                    public Deployment call() throws Exception {
+                        return getDeployment(moduleVersion.getKey(), moduleVersion.getValue(),
+                                packagings.get(moduleVersion.getKey()));
+                    }
+                }));
+            }
+
+            final Map<String, Deployment> deployments = new LinkedHashMap<String, Deployment>();
+            for(final Map.Entry<String, Future<Deployment>> result : results.entrySet()) {
+                try {
+                    deployments.put(result.getKey(), result.getValue().get());
+                } catch (ExecutionException e) {
+                    throw new IOException("Checking the deployment of " + result.getKey() + " failed", e.getCause());
+                }
+            }
+            return Collections.unmodifiableMap(deployments);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @param moduleKey key (groupId:artifactId) of the module.
+     * @param version the version of the module.
+     * @param packaging the packaging of the module, defaults to "jar" if null.
+     * @return the deployment state of the module.
+     */
+    public Deployment getDeployment(String moduleKey, String version, String packaging)
+            throws IOException, InterruptedException {
+        final String[] coordinates = moduleKey.split(":");
+        final String modulePath = coordinates[0].replace('.', '/') + "/" + coordinates[1] + "/";
+        final String artifactPath = modulePath + version + "/" + coordinates[1] + "-" + version + ".";
+
+        final List<String> paths = new ArrayList<String>();
+        paths.add(artifactPath + "pom");
+        final String extension = getExtension(packaging);
+        if(extension != null) {
+            paths.add(artifactPath + extension);
+        }
+        final List<Boolean> found = new ArrayList<Boolean>();
+        for(final String path : paths) {
+            found.add(exists(path));
+        }
+        if(!found.contains(Boolean.TRUE)) {
+            return Deployment.MISSING;
+        }
+        if(found.contains(Boolean.FALSE)) {
+            return Deployment.PARTIAL;
+        }
+        final String metadata = read(modulePath + "maven-metadata.xml");
+        if((metadata == null) || !metadata.contains("<version>" + version + "</version>")) {
+            return Deployment.PARTIAL;
+        }
+        // A truncated upload still exists, so only the checksums tell it apart.
+        for(final String path : paths) {
+            if(!isChecksumValid(path)) {
+                return Deployment.PARTIAL;
+            }
+        }
+        return Deployment.DEPLOYED;
+    }
+
+    /**
+     * Download the file and compare its SHA-1 checksum to the one deployed next to it.
+     *
+     * @return true, if the checksum of the file matches the deployed checksum.
+     */
+    protected boolean isChecksumValid(String path) throws IOException, InterruptedException {
+        final String checksum = read(path + ".sha1");
+        if(checksum == null) {
+            return false;
+        }
+        // Some tools write the name of the file after the checksum.
+        final String expectedChecksum = checksum.trim().split("\\s+")[0].toLowerCase();
+        final URLConnection connection = open(path);
+        if((connection instanceof HttpURLConnection) &&
+                (getResponseCode((HttpURLConnection) connection) != HttpURLConnection.HTTP_OK)) {
+            ((HttpURLConnection) connection).disconnect();
+            return false;
+        }
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        try {
+            final InputStream in = connection.getInputStream();
+            try {
+                final byte[] buffer = new byte[8192];
+                int read;
+                while((read = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                }
+            } finally {
+                in.close();
+            }
+        } catch (FileNotFoundException e) {
+            return false;
+        }
+        return DatatypeConverter.printHexBinary(digest.digest()).toLowerCase().equals(expectedChecksum);
+    }
+
+    /**
+     * @return true, if the file exists in the repository.
+     */
+    protected boolean exists(String path) throws IOException, InterruptedException {
+        final URLConnection connection = open(path);
+        if(!(connection instanceof HttpURLConnection)) {
+            try {
+                connection.getInputStream().close();
+                return true;
+            } catch (FileNotFoundException e) {
+                return false;
+            }
+        }
+        final HttpURLConnection httpConnection = (HttpURLConnection) connection;
+        httpConnection.setRequestMethod("HEAD");
+        try {
+            return getResponseCode(httpConnection) == HttpURLConnection.HTTP_OK;
+        } finally {
+            httpConnection.disconnect();
+        }
+    }
+
+    /**
+     * @return the content of the file or null, if it doesn't exist in the repository.
+     */
+    protected String read(String path) throws IOException, InterruptedException {
+        final URLConnection connection = open(path);
+        if((connection instanceof HttpURLConnection) &&
+                (getResponseCode((HttpURLConnection) connection) != HttpURLConnection.HTTP_OK)) {
+            ((HttpURLConnection) connection).disconnect();
+            return null;
+        }
+        try {
+            final InputStream in = connection.getInputStream();
+            try {
+                final ByteArrayOutputStream content = new ByteArrayOutputStream();
+                final byte[] buffer = new byte[8192];
+                int read;
+                while((read = in.read(buffer)) != -1) {
+                    content.write(buffer, 0, read);
+                }
+                return content.toString("UTF-8");
+            } finally {
+                in.close();
+            }
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+    }
+
+    protected URLConnection open(String path) throws IOException, InterruptedException {
+        RepositoryRateLimiter.get().acquire(repoUrl, jobName);
+        final URLConnection connection = new URL(repoUrl + path).openConnection();
+        connection.setConnectTimeout(30000);
+        connection.setReadTimeout(30000);
+        if(authorization != null) {
+            connection.setRequestProperty("Authorization", authorization);
+        }
+        return connection;
+    }
+
+    private static int getResponseCode(HttpURLConnection connection) throws IOException {
+        final int responseCode = connection.getResponseCode();
+        if((responseCode != HttpURLConnection.HTTP_OK) && (responseCode != HttpURLConnection.HTTP_NOT_FOUND)) {
+            throw new IOException("Repository answered " + responseCode + " for " + connection.getURL());
+        }
+        return responseCode;
+    }
+
+    /**
+     * @param packaging the packaging of a module.
+     * @return the file extension of the main artifact of a module or null, if only a pom is deployed.
+     */
+    public static String getExtension(String packaging) {
+        if((packaging == null) || "jar".equals(packaging) || "bundle".equals(packaging) ||
+                "maven-plugin".equals(packaging) || "ejb".equals(packaging)) {
+            return "jar";
+        }
+        if("pom".equals(packaging)) {
+            return null;
+        }
+        return packaging;
+    }
+
+}
@@ -0,0 +1,177 @@
+package de.cware.plugins.jenkins.releases.versions;
+
+import de.cware.plugins.jenkins.releases.ReleaseBuildWrapperDescriptor;
+import de.cware.plugins.jenkins.releases.metrics.ReleaseMetrics;
+import jenkins.model.Jenkins;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Limits the number of requests per second all jobs of this Jenkins send to the same Maven
+ * repository, so opening a lot of release pages at the same time doesn't overload it.
+ *
+ * There is one token bucket per repository url. A bucket allows bursts of up to twice the
+ * configured number of requests per second. Requests which have to wait are served fair
+ * between the jobs: one request of every waiting job is served before the next request
+ * of the same job, so one big job can't starve all others.
+ *
+ * The limits are configured in the global configuration of the ReleaseBuildWrapper. The
+ * time requests had to wait is reported as "repository.throttle" metric.
+ */
+public class RepositoryRateLimiter {
+
+    private static final RepositoryRateLimiter INSTANCE = new RepositoryRateLimiter();
+
+    private final ConcurrentMap<String, Bucket> buckets = new ConcurrentHashMap<String, Bucket>();
+
+    public static RepositoryRateLimiter get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Wait until a request to the given repository may be sent.
+     *
+     * @param repositoryUrl url of the repository.
+     * @param jobName name of the job the request is sent for.
+     */
+    public void acquire(String repositoryUrl, String jobName) throws InterruptedException {
+        final String key = normalize(repositoryUrl);
+        Bucket bucket = buckets.get(key);
+        if(bucket == null) {
+            buckets.putIfAbsent(key, new Bucket(getRequestsPerSecond(key)));
+            bucket = buckets.get(key);
+        }
+        if(bucket.isUnlimited()) {
+            return;
+        }
+        final long startTime = System.nanoTime();
+        if(bucket.acquire((jobName != null) ? jobName : "")) {
+            final ReleaseMetrics metrics = ReleaseMetrics.get();
+            metrics.increment("repository.throttled");
+            metrics.time("repository.throttle", startTime);
+            metrics.time("repository.throttle." + key, startTime);
+        }
+    }
+
+    /**
+     * Forget all buckets, so changed limits are applied.
+     */
+    public void reset() {
+        buckets.clear();
+    }
+
+    /**
+     * @return the limit configured for the given repository, 0 if it's unlimited.
+     */
+    protected int getRequestsPerSecond(String repositoryUrl) {
+        final Jenkins jenkins = Jenkins.getInstance();
+        if(jenkins == null) {
+            return 0;
+        }
+        final ReleaseBuildWrapperDescriptor descriptor =
+                jenkins.getDescriptorByType(ReleaseBuildWrapperDescriptor.class);
+        if(descriptor == null) {
+            return 0;
+        }
+        final Map<String, Integer> limits = descriptor.getRepositoryRateLimitMap();
+        for(final Map.Entry<String, Integer> limit : limits.entrySet()) {
+            if(normalize(limit.getKey()).equals(repositoryUrl)) {
+                return limit.getValue();
+            }
+        }
+        return descriptor.getRepositoryRequestsPerSecond();
+    }
+
+    protected static String normalize(String repositoryUrl) {
+        String url = (repositoryUrl != null) ? repositoryUrl.trim() : "";
+        while(url.endsWith("/")) {
+            url = url.substring(0, url.length() - 1);
+        }
+        return url;
+    }
+
+    /**
+     * Token bucket with fair queueing of the waiting requests per job.
+     */
+    static class Bucket {
+
+        private final double rate;
+        private final double capacity;
+        private double tokens;
+        private long lastRefill;
+
+        // Waiting requests per job, the job of the next request to serve comes first.
+        private final LinkedHashMap<String, LinkedList<Object>> waiting = new LinkedHashMap<String, LinkedList<Object>>();
+
+        Bucket(int requestsPerSecond) {
+            this.rate = requestsPerSecond / 1000.0;
+            this.capacity = Math.max(1, 2 * requestsPerSecond);
+            this.tokens = capacity;
+            this.lastRefill = System.currentTimeMillis();
+        }
+
+        boolean isUnlimited() {
+            return rate <= 0;
+        }
+
+        /**
+         * @return true, if the request had to wait.
+         */
+        synchronized boolean acquire(String jobName) throws InterruptedException {
+            refill();
+            if(waiting.isEmpty() && (tokens >= 1)) {
+                tokens -= 1;
+                return false;
+            }
+
+            final Object request = new Object();
+            LinkedList<Object> jobRequests = waiting.get(jobName);
+            if(jobRequests == null) {
+                jobRequests = new LinkedList<Object>();
+                waiting.put(jobName, jobRequests);
+            }
+            jobRequests.add(request);
+            try {
+                while(true) {
+                    refill();
+                    final Map.Entry<String, LinkedList<Object>> next = waiting.entrySet().iterator().next();
+                    final boolean isNext = next.getValue().getFirst() == request;
+                    if(isNext && (tokens >= 1)) {
+                        tokens -= 1;
+                        // Move the job to the end, so the other jobs are served first.
+                        waiting.remove(jobName);
+                        jobRequests.removeFirst();
+                        if(!jobRequests.isEmpty()) {
+                            waiting.put(jobName, jobRequests);
+                        }
+                        notifyAll();
+                        return true;
+                    }
+                    if(isNext) {
+                        wait(Math.max(1, (long) Math.ceil((1 - tokens) / rate)));
+                    } else {
+                        // Woken up as soon as another request has been served.
+                        wait();
+                    }
+                }
+            } catch (InterruptedException e) {
+                jobRequests.remove(request);
+                if(jobRequests.isEmpty()) {
+                    waiting.remove(jobName);
+                }
+                notifyAll();
+                throw e;
+            }
+        }
+
+        private void refill() {
+            final long now = System.currentTimeMillis();
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * rate);
+            lastRefill = now;
+        }
+
+    }
+
+}
@@ -0,0 +1,72 @@
+package de.cware.plugins.jenkins.releases.versions;
+
+import org.eclipse.aether.transfer.TransferCancelledException;
+import org.eclipse.aether.transfer.TransferEvent;
+import org.eclipse.aether.transfer.TransferListener;
+
+/**
+ * Transfer listener making every transfer wait for the RepositoryRateLimiter before it is
+ * started. All events are passed on to the listener the session used before.
+ */
+public class ThrottlingTransferListener implements TransferListener {
+
+    private final String jobName;
+    private final TransferListener delegate;
+
+    /**
+     * @param jobName name of the job the transfers are done for.
+     * @param delegate listener the events are passed on to or null.
+     */
+    public ThrottlingTransferListener(String jobName, TransferListener delegate) {
+        this.jobName = jobName;
+        this.delegate = delegate;
+    }
+
+    public TransferListener getDelegate() {
+        return delegate;
+    }
+
+    public void transferInitiated(TransferEvent event) throws TransferCancelledException {
+        try {
+            RepositoryRateLimiter.get().acquire(event.getResource().getRepositoryUrl(), jobName);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransferCancelledException("Interrupted while waiting for " +
+                    event.getResource().getRepositoryUrl());
+        }
+        if(delegate != null) {
+            delegate.transferInitiated(event);
+        }
+    }
+
+    public void transferStarted(TransferEvent event) throws TransferCancelledException {
+        if(delegate != null) {
+            delegate.transferStarted(event);
+        }
+    }
+
+    public void transferProgressed(TransferEvent event) throws TransferCancelledException {
+        if(delegate != null) {
+            delegate.transferProgressed(event);
+        }
+    }
+
+    public void transferCorrupted(TransferEvent event) throws TransferCancelledException {
+        if(delegate != null) {
+            delegate.transferCorrupted(event);
+        }
+    }
+
+    public void transferSucceeded(TransferEvent event) {
+        if(delegate != null) {
+            delegate.transferSucceeded(event);
+        }
+    }
+
+    public void transferFailed(TransferEvent event) {
+        if(delegate != null) {
+            delegate.transferFailed(event);
+        }
+    }
+
+}
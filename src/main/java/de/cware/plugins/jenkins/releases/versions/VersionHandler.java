@@ -1,22 +1,27 @@
 package de.cware.plugins.jenkins.releases.versions;
 
 import de.cware.plugins.jenkins.releases.ReleaseBuildWrapper;
+import de.cware.plugins.jenkins.releases.history.ReleaseHistoryIndex;
+import de.cware.plugins.jenkins.releases.metrics.ReleaseMetrics;
 import hudson.maven.MavenModule;
 import hudson.maven.MavenModuleSet;
 import hudson.maven.ModuleName;
+import org.eclipse.aether.DefaultRepositorySystemSession;
 import org.eclipse.aether.RepositorySystem;
 import org.eclipse.aether.RepositorySystemSession;
 import org.eclipse.aether.artifact.Artifact;
 import org.eclipse.aether.artifact.DefaultArtifact;
-import org.eclipse.aether.repository.Authentication;
 import org.eclipse.aether.repository.RemoteRepository;
 import org.eclipse.aether.resolution.VersionRangeRequest;
 import org.eclipse.aether.resolution.VersionRangeResult;
-import org.eclipse.aether.util.repository.AuthenticationBuilder;
+import org.eclipse.aether.util.version.GenericVersionScheme;
 import org.eclipse.aether.version.Version;
+import org.eclipse.aether.version.VersionScheme;
 
-import java.util.HashMap;
+import java.io.*;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Little helper class that wraps accessing a nexus server for retrieving
@@ -28,52 +33,165 @@ import java.util.Map;
  */
 public class VersionHandler {
 
+    /**
+     * Name of the log in the directory of the job, the transfers of version lookups are logged to.
+     */
+    public static final String LOG_FILE_NAME = "release-versions.log";
+
+    private static final long MAX_LOG_SIZE = 1024 * 1024;
+
+    private static final ConcurrentMap<String, Object> LOG_LOCKS = new ConcurrentHashMap<String, Object>();
+
     protected MavenModuleSet project;
 
-    protected String majorVersion;
+    protected volatile String majorVersion;
 
-    protected Map<String, String> moduleVersions;
+    protected volatile Map<String, String> moduleVersions;
 
     public VersionHandler(MavenModuleSet project) {
         this.project = project;
+        refresh(false);
+    }
 
+    /**
+     * Determine the latest released versions of all modules again. The versions currently
+     * known stay available until the new ones have been determined.
+     *
+     * @param reconcile true, if the versions should be looked up in the repository, even if
+     *                  the release history of the job has been reconciled recently.
+     */
+    public synchronized void refresh(boolean reconcile) {
         // Die Major Version besteht aus der version des root Projektes,
         // bei dem der Suffix "-SNAPSHOT" abgeschitten wird.
         if ((project.getRootModule() != null) && (project.getRootModule().getModuleName() != null)) {
             final String rootModuleVersion = project.getRootModule().getVersion();
+            final String currentMajorVersion;
             if(rootModuleVersion.contains("-SNAPSHOT")) {
-                majorVersion = rootModuleVersion.substring(0, rootModuleVersion.indexOf("-SNAPSHOT"));
+                currentMajorVersion = rootModuleVersion.substring(0, rootModuleVersion.indexOf("-SNAPSHOT"));
             } else {
-                majorVersion = rootModuleVersion;
+                currentMajorVersion = rootModuleVersion;
             }
 
-            moduleVersions = new HashMap<String, String>();
+            // Updated by the ReleaseHistoryListener while the release page is reading it.
+            final Map<String, String> latestVersions = new ConcurrentHashMap<String, String>();
+            final long startTime = System.nanoTime();
             try {
-                final ReleaseBuildWrapper releaseBuildWrapper =
-                        project.getBuildWrappersList().get(ReleaseBuildWrapper.class);
-                RemoteRepository repo = Booter.newCentralRepository(releaseBuildWrapper.getMavenRepoUrl());
-                final RepositorySystem system = Booter.newRepositorySystem();
-                final RepositorySystemSession session = Booter.newRepositorySystemSession(system);
-
-                // If authentication credentials are provided, use them to authenticate.
-                if ((releaseBuildWrapper.getMavenRepoUser() != null) &&
-                        (releaseBuildWrapper.getMavenRepoPassword() != null)) {
-                    Authentication authentication = new AuthenticationBuilder()
-                            .addUsername(releaseBuildWrapper.getMavenRepoUser())
-                            .addPassword(releaseBuildWrapper.getMavenRepoPassword()).build();
-                    repo = new RemoteRepository.Builder(repo).setAuthentication(authentication).build();
+                // The versions released by the builds of this job are known without asking the repository.
+                // The repository is only asked from time to time, to find releases done without Jenkins.
+                final ReleaseHistoryIndex index = ReleaseHistoryIndex.forJob(project);
+                final String nextMajorVersion = getNextVersion(currentMajorVersion);
+                if(!reconcile && index.isReconciled(currentMajorVersion, nextMajorVersion)) {
+                    ReleaseMetrics.get().increment("versions.index.hit");
+                } else {
+                    ReleaseMetrics.get().increment("versions.index.reconcile");
+                    if(lookupLatestVersions(currentMajorVersion, latestVersions)) {
+                        index.reconcile(currentMajorVersion, nextMajorVersion, latestVersions);
+                    }
                 }
-
-                populateLatestVersionForMajorReleaseMap(majorVersion, project.getRootModule(), repo, system, session);
+                latestVersions.putAll(index.getLatestVersions(currentMajorVersion, nextMajorVersion));
             } catch (Exception e) {
                 e.printStackTrace();
             }
+            majorVersion = currentMajorVersion;
+            moduleVersions = latestVersions;
+            ReleaseMetrics.get().time("versions.handler.init", startTime);
+        }
+    }
+
+    /**
+     * @param maxAge maximum time in milliseconds since the versions were last looked up in the repository.
+     * @return true, if the versions haven't been looked up in the repository within the given time.
+     */
+    public boolean isStale(long maxAge) {
+        if(majorVersion == null) {
+            return false;
+        }
+        try {
+            return !ReleaseHistoryIndex.forJob(project).isReconciled(majorVersion, getNextVersion(majorVersion), maxAge);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Look up the latest versions of all modules in the Maven repository.
+     *
+     * @param majorVersion the major version of the project.
+     * @param latestVersions map the latest version of every released module is added to.
+     * @return true, if the repository could be accessed.
+     */
+    protected boolean lookupLatestVersions(String majorVersion, Map<String, String> latestVersions) {
+        // The transfers are collected per lookup and appended to the log of the job afterwards,
+        // so concurrent lookups of the same job don't mix up their output.
+        final ByteArrayOutputStream transfers = new ByteArrayOutputStream();
+        File localRepoDir = null;
+        try {
+            final ReleaseBuildWrapper releaseBuildWrapper =
+                    project.getBuildWrappersList().get(ReleaseBuildWrapper.class);
+            // If authentication credentials are provided, use them to authenticate.
+            final RemoteRepository repo = Booter.newRemoteRepository(releaseBuildWrapper.getMavenRepoUrl(),
+                    releaseBuildWrapper.getMavenRepoUser(), releaseBuildWrapper.getMavenRepoPassword());
+            final RepositorySystem system = Booter.newRepositorySystem();
+            // Every lookup uses its own empty local repository, which is removed afterwards.
+            localRepoDir = File.createTempFile("release-versions", "");
+            if(!localRepoDir.delete() || !localRepoDir.mkdirs()) {
+                throw new IOException("Could not create temporary repository " + localRepoDir);
+            }
+            final DefaultRepositorySystemSession session = Booter.newRepositorySystemSession(system, localRepoDir,
+                    new PrintStream(transfers, true, "UTF-8"));
+            Booter.setRateLimited(session, project.getFullName());
+
+            populateLatestVersionForMajorReleaseMap(majorVersion, project.getRootModule(), repo, system, session,
+                    latestVersions);
+            final AggregatingTransferListener transferListener = Booter.getTransferListener(session);
+            transferListener.printSummary("Version lookup of " + latestVersions.size() + " modules from");
+            // Missing metadata only means the module has never been released, anything else means
+            // the repository could not be asked properly.
+            for(final AggregatingTransferListener.RepositoryStatistics statistics :
+                    transferListener.getStatistics().values()) {
+                if(statistics.getErrors() > 0) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            if(localRepoDir != null) {
+                Booter.deleteDirectory(localRepoDir);
+            }
+            appendToLog(transfers.toByteArray());
+        }
+    }
+
+    /**
+     * There is no build a lookup belongs to, so transfers are logged to a log of the job.
+     * It is started over as soon as it gets too big.
+     */
+    protected void appendToLog(byte[] content) {
+        final File logFile = new File(project.getRootDir(), LOG_FILE_NAME);
+        LOG_LOCKS.putIfAbsent(logFile.getAbsolutePath(), new Object());
+        synchronized (LOG_LOCKS.get(logFile.getAbsolutePath())) {
+            try {
+                final OutputStream out = new FileOutputStream(logFile, logFile.length() < MAX_LOG_SIZE);
+                try {
+                    out.write(content);
+                } finally {
+                    out.close();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
         }
     }
 
     protected void populateLatestVersionForMajorReleaseMap(String majorVersion, MavenModule module,
                                                            RemoteRepository repo, RepositorySystem system,
-                                                           RepositorySystemSession session) {
+                                                           RepositorySystemSession session,
+                                                           Map<String, String> latestVersions) {
+        final ReleaseMetrics metrics = ReleaseMetrics.get();
+        final long startTime = System.nanoTime();
         try {
             final String versionRange = "[" + majorVersion + "," + getNextVersion(majorVersion) + ")";
             final Artifact artifact = new DefaultArtifact(module.getModuleName().groupId + ":" +
@@ -85,19 +203,60 @@ public class VersionHandler {
             final Version newestVersion = rangeResult.getHighestVersion();
             if (newestVersion != null) {
                 final String key = module.getModuleName().groupId + ":" + module.getModuleName().artifactId;
-                moduleVersions.put(key, newestVersion.toString());
+                latestVersions.put(key, newestVersion.toString());
+                metrics.increment("versions.lookup.hit");
+                metrics.increment("versions.lookup.hit." + repo.getUrl());
+            } else {
+                metrics.increment("versions.lookup.miss");
+                metrics.increment("versions.lookup.miss." + repo.getUrl());
             }
         } catch (Exception e) {
             // Ignore.
+            metrics.increment("versions.lookup.error");
+            metrics.increment("versions.lookup.error." + repo.getUrl());
         }
+        metrics.time("versions.lookup", startTime);
+        metrics.time("versions.lookup." + repo.getUrl(), startTime);
 
         if (module.getChildren() != null && !module.getChildren().isEmpty()) {
             for (final MavenModule child : module.getChildren()) {
-                populateLatestVersionForMajorReleaseMap(majorVersion, child, repo, system, session);
+                populateLatestVersionForMajorReleaseMap(majorVersion, child, repo, system, session, latestVersions);
             }
         }
     }
 
+    /**
+     * Update the versions of the modules released by a build, without asking the repository,
+     * which might still serve stale metadata right after the release. Only the released
+     * modules are touched. Versions of other major versions and versions older than the
+     * known ones are ignored.
+     *
+     * @param releaseVersions the released versions, keyed by "groupId:artifactId".
+     */
+    public void released(Map<String, String> releaseVersions) {
+        if((majorVersion == null) || (moduleVersions == null)) {
+            return;
+        }
+        final VersionScheme versionScheme = new GenericVersionScheme();
+        try {
+            final Version lowerBound = versionScheme.parseVersion(majorVersion);
+            final Version upperBound = versionScheme.parseVersion(getNextVersion(majorVersion));
+            for(final Map.Entry<String, String> releaseVersion : releaseVersions.entrySet()) {
+                final Version version = versionScheme.parseVersion(releaseVersion.getValue());
+                if((version.compareTo(lowerBound) < 0) || (version.compareTo(upperBound) >= 0)) {
+                    continue;
+                }
+                final String knownVersion = moduleVersions.get(releaseVersion.getKey());
+                if((knownVersion == null) || (version.compareTo(versionScheme.parseVersion(knownVersion)) > 0)) {
+                    moduleVersions.put(releaseVersion.getKey(), releaseVersion.getValue());
+                    ReleaseMetrics.get().increment("versions.cache.update");
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
     public String getMajorVersion() {
         return majorVersion + ".0";
     }
@@ -0,0 +1,155 @@
+package de.cware.plugins.jenkins.releases.versions;
+
+import de.cware.plugins.jenkins.releases.ReleaseBuildAction;
+import de.cware.plugins.jenkins.releases.ReleaseBuildWrapper;
+import de.cware.plugins.jenkins.releases.history.ReleaseHistoryIndex;
+import de.cware.plugins.jenkins.releases.metrics.ReleaseMetrics;
+import hudson.Extension;
+import hudson.maven.MavenModuleSet;
+import hudson.maven.MavenModuleSetBuild;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.TaskListener;
+import hudson.security.ACL;
+import jenkins.model.Jenkins;
+import org.acegisecurity.context.SecurityContext;
+import org.acegisecurity.context.SecurityContextHolder;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Looks up the released versions of all jobs using the release plugin in the background,
+ * before the versions known to the release pages become stale. This way the release page
+ * is always served without waiting for the Maven repository.
+ *
+ * - Jobs without any build within IDLE_DAYS are skipped, nobody is going to release them.
+ * - Jobs with recent releases are refreshed first.
+ * - At most CONCURRENCY jobs are refreshed at the same time and every lookup is delayed by
+ *   a random time of up to JITTER, so the repository doesn't get all requests at once.
+ *
+ * All settings can be changed using system properties prefixed with the name of this class.
+ */
+@Extension
+public class VersionPrefetcher extends AsyncPeriodicWork {
+
+    private static final String PREFIX = VersionPrefetcher.class.getName();
+
+    /**
+     * Time in milliseconds between two runs.
+     */
+    public static final long PERIOD = Long.getLong(PREFIX + ".period", 15L * 60L * 1000L);
+
+    /**
+     * Number of jobs refreshed in parallel.
+     */
+    public static final int CONCURRENCY = Integer.getInteger(PREFIX + ".concurrency", 2);
+
+    /**
+     * Maximum random delay in milliseconds before refreshing a job.
+     */
+    public static final long JITTER = Long.getLong(PREFIX + ".jitter", 10L * 1000L);
+
+    /**
+     * Jobs without builds for this number of days are not refreshed.
+     */
+    public static final int IDLE_DAYS = Integer.getInteger(PREFIX + ".idleDays", 30);
+
+    private final Random random = new Random();
+
+    public VersionPrefetcher() {
+        super("Release version prefetch");
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return PERIOD;
+    }
+
+    @Override
+    protected void execute(TaskListener listener) throws IOException, InterruptedException {
+        final SecurityContext previousContext = ACL.impersonate(ACL.SYSTEM);
+        try {
+            final List<MavenModuleSet> projects = getProjects();
+            if(projects.isEmpty()) {
+                return;
+            }
+            listener.getLogger().println("[release] Refreshing the versions of " + projects.size() + " jobs");
+            final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, CONCURRENCY));
+            try {
+                final Map<MavenModuleSet, Future<?>> refreshes = new LinkedHashMap<MavenModuleSet, Future<?>>();
+                for(final MavenModuleSet project : projects) {
+                    refreshes.put(project, executor.submit(new Runnable() {
+                        public void run() {
+                            refresh(project);
+                        }
+                    }));
+                }
+                for(final Map.Entry<MavenModuleSet, Future<?>> refresh : refreshes.entrySet()) {
+                    try {
+                        refresh.getValue().get();
+                    } catch (ExecutionException e) {
+                        e.getCause().printStackTrace(listener.error("[release] Refreshing the versions of " +
+                                refresh.getKey().getFullName() + " failed"));
+                    }
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        } finally {
+            SecurityContextHolder.setContext(previousContext);
+        }
+    }
+
+    /**
+     * @return all jobs, whose versions should be refreshed, jobs with the most recent releases first.
+     */
+    protected List<MavenModuleSet> getProjects() {
+        final long idleSince = System.currentTimeMillis() - IDLE_DAYS * 24L * 60L * 60L * 1000L;
+        final Map<MavenModuleSet, Long> lastReleaseTimes = new HashMap<MavenModuleSet, Long>();
+        for(final MavenModuleSet project : Jenkins.getInstance().getAllItems(MavenModuleSet.class)) {
+            if(project.isDisabled() || (project.getBuildWrappersList().get(ReleaseBuildWrapper.class) == null)) {
+                continue;
+            }
+            final MavenModuleSetBuild lastBuild = project.getLastBuild();
+            if((lastBuild == null) || (lastBuild.getTimeInMillis() < idleSince)) {
+                continue;
+            }
+            lastReleaseTimes.put(project, ReleaseHistoryIndex.forJob(project).getLastReleaseTime());
+        }
+        final List<MavenModuleSet> projects = new ArrayList<MavenModuleSet>(lastReleaseTimes.keySet());
+        Collections.sort(projects, new Comparator<MavenModuleSet>() {
+            public int compare(MavenModuleSet project1, MavenModuleSet project2) {
+                final long time1 = lastReleaseTimes.get(project1);
+                final long time2 = lastReleaseTimes.get(project2);
+                return (time1 != time2) ? ((time1 > time2) ? -1 : 1) :
+                        project1.getFullName().compareTo(project2.getFullName());
+            }
+        });
+        return projects;
+    }
+
+    /**
+     * Look up the versions of a job in the repository, if they would become stale before the next run.
+     */
+    protected void refresh(MavenModuleSet project) {
+        final ReleaseBuildAction releaseBuildAction = project.getAction(ReleaseBuildAction.class);
+        if((releaseBuildAction == null) || (releaseBuildAction.getVersionHandler() == null)) {
+            return;
+        }
+        final VersionHandler versionHandler = releaseBuildAction.getVersionHandler();
+        if(!versionHandler.isStale(ReleaseHistoryIndex.RECONCILE_INTERVAL - PERIOD)) {
+            return;
+        }
+        try {
+            Thread.sleep((JITTER > 0) ? (long) (random.nextDouble() * JITTER) : 0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        final long startTime = System.nanoTime();
+        versionHandler.refresh(true);
+        ReleaseMetrics.get().time("versions.prefetch", startTime);
+    }
+
+}
@@ -0,0 +1,87 @@
+package de.cware.plugins.jenkins.releases;
+
+import hudson.maven.MavenModuleSet;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Schedules release requests for a job without executors, so the builds stay in the queue
+ * and hold the lock.
+ */
+public class ReleaseLockTest {
+
+    @Rule
+    public JenkinsRule jenkins = new JenkinsRule();
+
+    private MavenModuleSet project;
+    private ReleaseBuildWrapper wrapper;
+
+    @Before
+    public void setUp() throws Exception {
+        jenkins.jenkins.setNumExecutors(0);
+        project = jenkins.jenkins.createProject(MavenModuleSet.class, "release-job");
+        wrapper = new ReleaseBuildWrapper(null, null, null, null);
+        project.getBuildWrappersList().add(wrapper);
+    }
+
+    @Test
+    public void coalescesIdenticalRequests() {
+        final ReleaseLock lock = ReleaseLock.forJob(project);
+        assertEquals(ReleaseLock.Result.SCHEDULED, lock.schedule(new MajorReleaseInterceptorAction("1.0.0")));
+        assertEquals(ReleaseLock.Result.COALESCED, lock.schedule(new MajorReleaseInterceptorAction("1.0.0")));
+        assertEquals(ReleaseLock.Result.LOCKED, lock.schedule(new MajorReleaseInterceptorAction("2.0.0")));
+        assertEquals(1, jenkins.jenkins.getQueue().getItems(project).size());
+        assertEquals(new MajorReleaseInterceptorAction("1.0.0"), lock.getHolder().getAction());
+    }
+
+    @Test
+    public void batchesMinorReleases() {
+        wrapper.setBatchWindowSeconds(600);
+        final ReleaseLock lock = ReleaseLock.forJob(project);
+        assertEquals(ReleaseLock.Result.SCHEDULED, lock.schedule(minorRelease("core", "1.0.1", "web", "1.0.0")));
+        assertEquals(ReleaseLock.Result.BATCHED, lock.schedule(minorRelease("web", "1.1.0", "core", "1.0.0")));
+        // Only minor releases are merged into the waiting build.
+        assertEquals(ReleaseLock.Result.LOCKED, lock.schedule(new MajorReleaseInterceptorAction("2.0.0")));
+        assertEquals(1, jenkins.jenkins.getQueue().getItems(project).size());
+
+        final MinorReleaseInterceptorAction batchedAction =
+                (MinorReleaseInterceptorAction) lock.getHolder().getAction();
+        final Map<String, String> releaseVersions = new HashMap<String, String>();
+        releaseVersions.put("de.cware.test:core", "1.0.1");
+        releaseVersions.put("de.cware.test:web", "1.1.0");
+        assertEquals(releaseVersions, batchedAction.getReleaseVersions());
+        assertTrue(batchedAction.getLatestVersions().isEmpty());
+    }
+
+    @Test
+    public void locksForMaintenance() {
+        final ReleaseLock lock = ReleaseLock.forJob(project);
+        assertTrue(lock.lockForMaintenance(new MajorReleaseInterceptorAction("1.0.0")));
+        assertFalse(lock.lockForMaintenance(new MajorReleaseInterceptorAction("1.0.0")));
+        assertEquals(ReleaseLock.Result.LOCKED, lock.schedule(new MajorReleaseInterceptorAction("1.0.0")));
+        assertEquals(0, jenkins.jenkins.getQueue().getItems(project).size());
+
+        lock.unlockMaintenance();
+        assertEquals(ReleaseLock.Result.SCHEDULED, lock.schedule(new MajorReleaseInterceptorAction("1.0.0")));
+        // Now the queued build holds the lock.
+        assertFalse(lock.lockForMaintenance(new MajorReleaseInterceptorAction("1.0.0")));
+    }
+
+    private static MinorReleaseInterceptorAction minorRelease(String releasedArtifactId, String releaseVersion,
+                                                              String pinnedArtifactId, String latestVersion) {
+        return new MinorReleaseInterceptorAction(
+                Collections.singletonMap("de.cware.test:" + releasedArtifactId, releaseVersion),
+                Collections.singletonMap("de.cware.test:" + pinnedArtifactId, latestVersion), true);
+    }
+
+}
@@ -0,0 +1,121 @@
+package de.cware.plugins.jenkins.releases;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Feeds the output of release builds through the parser and checks the reported events.
+ */
+public class ReleaseLogParserTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final List<String> events = new ArrayList<String>();
+
+    @Test
+    public void reportsModulesOfForkedBuilds() throws IOException {
+        final String log =
+                "[INFO] --- maven-release-plugin:2.5.3:prepare (default-cli) @ root ---\n" +
+                "[INFO] [INFO] ------------------< de.cware.test:core >------------------\n" +
+                "[INFO] [INFO] --- maven-compiler-plugin:3.1:compile (default-compile) @ core ---\n" +
+                "[INFO] [INFO] --- maven-jar-plugin:2.4:jar (default-jar) @ core ---\n" +
+                "[INFO] [INFO] --- maven-compiler-plugin:3.1:compile (default-compile) @ web ---\n" +
+                "[INFO] [INFO] BUILD SUCCESS\n" +
+                "[INFO] --- maven-release-plugin:2.5.3:perform (default-cli) @ root ---\n" +
+                "[INFO] [INFO] --- maven-deploy-plugin:2.7:deploy (default-deploy) @ core ---\n" +
+                "[INFO] [INFO] Uploaded: http://repo/de/cware/test/core/maven-metadata.xml (300 B at 1.0 KB/sec)\n" +
+                "[INFO] [ERROR] BUILD FAILURE\n";
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        parse(createParser(out), log);
+
+        assertEquals(Arrays.asList(
+                "phase prepare",
+                "module prepare de.cware.test:core",
+                "goal prepare de.cware.test:core maven-compiler-plugin:compile",
+                "goal prepare de.cware.test:core maven-jar-plugin:jar",
+                "module prepare web",
+                "goal prepare web maven-compiler-plugin:compile",
+                "finished prepare true",
+                "phase perform",
+                "module perform core",
+                "goal perform core maven-deploy-plugin:deploy",
+                "metadata perform http://repo/de/cware/test/core/maven-metadata.xml",
+                "finished perform false"), events);
+        // The log itself is passed on unchanged.
+        assertArrayEquals(log.getBytes(UTF8), out.toByteArray());
+    }
+
+    @Test
+    public void onlyReportsUploadsOfParallelBuilds() throws IOException {
+        final String log =
+                "[INFO] --- maven-release-plugin:2.5.3:perform (default-cli) @ root ---\n" +
+                "[INFO] Executing: /bin/sh -c cd /workspace/target/checkout && mvn -B -T 4 deploy\n" +
+                "[INFO] [INFO] --- maven-deploy-plugin:2.7:deploy (default-deploy) @ web ---\n" +
+                "[INFO] [INFO] --- maven-deploy-plugin:2.7:deploy (default-deploy) @ core ---\n" +
+                "[INFO] [INFO] Uploaded to releases: http://repo/de/cware/test/web/maven-metadata.xml (300 B)\n" +
+                "[INFO] [INFO] BUILD SUCCESS\n";
+        parse(createParser(new ByteArrayOutputStream()), log);
+
+        assertEquals(Arrays.asList(
+                "phase perform",
+                "metadata perform http://repo/de/cware/test/web/maven-metadata.xml",
+                "finished perform true"), events);
+    }
+
+    @Test
+    public void parsesDirectBuilds() throws IOException {
+        final ReleaseLogParser parser = createParser(new ByteArrayOutputStream());
+        parser.setDirectPhase(ReleaseTimelineAction.PERFORM, false);
+        parse(parser,
+                "[INFO] -------------------< de.cware.test:core >-------------------\n" +
+                "[INFO] --- maven-deploy-plugin:2.7:deploy (default-deploy) @ core ---\n" +
+                "[INFO] BUILD SUCCESS\n");
+
+        assertEquals(Arrays.asList(
+                "phase perform",
+                "module perform de.cware.test:core",
+                "goal perform de.cware.test:core maven-deploy-plugin:deploy",
+                "finished perform true"), events);
+    }
+
+    private ReleaseLogParser createParser(ByteArrayOutputStream out) {
+        final ReleaseLogParser parser = new ReleaseLogParser(out, UTF8);
+        parser.addListener(new ReleaseLogParser.Listener() {
+            public void phaseStarted(String phase) {
+                events.add("phase " + phase);
+            }
+
+            public void moduleStarted(String phase, String module) {
+                events.add("module " + phase + " " + module);
+            }
+
+            public void goalStarted(String phase, String module, String plugin, String goal) {
+                events.add("goal " + phase + " " + module + " " + plugin + ":" + goal);
+            }
+
+            public void metadataUploaded(String phase, String metadataUrl) {
+                events.add("metadata " + phase + " " + metadataUrl);
+            }
+
+            public void forkedBuildFinished(String phase, boolean success) {
+                events.add("finished " + phase + " " + success);
+            }
+        });
+        return parser;
+    }
+
+    private static void parse(ReleaseLogParser parser, String log) throws IOException {
+        parser.write(log.getBytes(UTF8));
+        parser.close();
+    }
+
+}
@@ -0,0 +1,142 @@
+package de.cware.plugins.jenkins.releases.load;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local stand-in for the Nexus server the VersionHandler queries. For every artifact it
+ * answers requests for the maven-metadata.xml with a configurable number of released
+ * versions. Every other request is answered with 404. Latency and a random error rate
+ * can be configured, so the behaviour of the plugin with a slow or flaky repository can
+ * be measured.
+ */
+public class FakeNexus implements HttpHandler {
+
+    private static final String METADATA_FILE = "maven-metadata.xml";
+
+    private final HttpServer server;
+    private final String majorVersion;
+    private final int versionCount;
+    private final long latency;
+    private final double errorRate;
+    private final Random random = new Random(42);
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger metadataRequests = new AtomicInteger();
+    private final AtomicInteger errors = new AtomicInteger();
+
+    /**
+     * @param majorVersion the major version all released versions start with, for example "1.0".
+     * @param versionCount the number of released versions of every artifact.
+     * @param latency the time in milliseconds every request is delayed.
+     * @param errorRate the probability of a request failing with a 500.
+     */
+    public FakeNexus(String majorVersion, int versionCount, long latency, double errorRate) throws IOException {
+        this.majorVersion = majorVersion;
+        this.versionCount = versionCount;
+        this.latency = latency;
+        this.errorRate = errorRate;
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this);
+        server.setExecutor(Executors.newCachedThreadPool());
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    public void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+            if(latency > 0) {
+                Thread.sleep(latency);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        final boolean fail;
+        synchronized(random) {
+            fail = random.nextDouble() < errorRate;
+        }
+        final String path = exchange.getRequestURI().getPath();
+        if(fail) {
+            errors.incrementAndGet();
+            respond(exchange, 500, "Simulated error");
+        } else if(path.endsWith("/" + METADATA_FILE) && "GET".equals(exchange.getRequestMethod())) {
+            metadataRequests.incrementAndGet();
+            respond(exchange, 200, createMetadata(path));
+        } else if(path.endsWith("/" + METADATA_FILE)) {
+            respond(exchange, 200, null);
+        } else {
+            respond(exchange, 404, "Not found");
+        }
+    }
+
+    /**
+     * Create the metadata of an artifact from the path of the request, which has the form
+     * "/group/path/artifactId/maven-metadata.xml".
+     */
+    protected String createMetadata(String path) {
+        final String artifactPath = path.substring(1, path.length() - METADATA_FILE.length() - 1);
+        final int artifactIdIndex = artifactPath.lastIndexOf('/');
+        final String groupId = artifactPath.substring(0, artifactIdIndex).replace('/', '.');
+        final String artifactId = artifactPath.substring(artifactIdIndex + 1);
+
+        final StringBuilder metadata = new StringBuilder();
+        metadata.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<metadata>\n");
+        metadata.append("  <groupId>").append(groupId).append("</groupId>\n");
+        metadata.append("  <artifactId>").append(artifactId).append("</artifactId>\n");
+        metadata.append("  <versioning>\n");
+        if(versionCount > 0) {
+            metadata.append("    <release>").append(majorVersion).append(".").append(versionCount - 1).append("</release>\n");
+        }
+        metadata.append("    <versions>\n");
+        for(int i = 0; i < versionCount; i++) {
+            metadata.append("      <version>").append(majorVersion).append(".").append(i).append("</version>\n");
+        }
+        metadata.append("    </versions>\n  </versioning>\n</metadata>\n");
+        return metadata.toString();
+    }
+
+    protected void respond(HttpExchange exchange, int status, String body) throws IOException {
+        final byte[] content = (body != null) ? body.getBytes("UTF-8") : new byte[0];
+        exchange.sendResponseHeaders(status, (body != null) ? content.length : -1);
+        final OutputStream out = exchange.getResponseBody();
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+            exchange.close();
+        }
+    }
+
+    public int getRequests() {
+        return requests.get();
+    }
+
+    public int getMetadataRequests() {
+        return metadataRequests.get();
+    }
+
+    public int getErrors() {
+        return errors.get();
+    }
+
+}
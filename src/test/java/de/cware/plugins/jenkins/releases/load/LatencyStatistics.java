@@ -0,0 +1,51 @@
+package de.cware.plugins.jenkins.releases.load;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Collects the latencies of requests and calculates percentiles using the nearest rank method.
+ */
+public class LatencyStatistics {
+
+    private final List<Long> latencies = new ArrayList<Long>();
+    private int failures;
+
+    public synchronized void add(long latency) {
+        latencies.add(latency);
+    }
+
+    public synchronized void addFailure() {
+        failures++;
+    }
+
+    public synchronized int getCount() {
+        return latencies.size();
+    }
+
+    public synchronized int getFailures() {
+        return failures;
+    }
+
+    /**
+     * @param percentile the percentile between 0 and 100.
+     * @return the latency in milliseconds or -1, if nothing has been measured.
+     */
+    public synchronized long getPercentile(double percentile) {
+        if(latencies.isEmpty()) {
+            return -1;
+        }
+        final List<Long> sorted = new ArrayList<Long>(latencies);
+        Collections.sort(sorted);
+        final int rank = (int) Math.ceil(percentile / 100 * sorted.size());
+        return sorted.get(Math.min(Math.max(rank, 1), sorted.size()) - 1);
+    }
+
+    @Override
+    public String toString() {
+        return "requests=" + getCount() + " failures=" + getFailures() + " p50=" + getPercentile(50) +
+                "ms p90=" + getPercentile(90) + "ms p99=" + getPercentile(99) + "ms max=" + getPercentile(100) + "ms";
+    }
+
+}
@@ -0,0 +1,231 @@
+package de.cware.plugins.jenkins.releases.load;
+
+import de.cware.plugins.jenkins.releases.ReleaseBuildAction;
+import de.cware.plugins.jenkins.releases.ReleaseBuildWrapper;
+import hudson.maven.MavenModuleSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Scalability test of the release page: a job with many modules is created, whose versions
+ * are looked up in a FakeNexus, and many users open the release page at the same time. The
+ * test reports the latency percentiles of the page, the number of requests the plugin sent
+ * to the repository and the heap used by the controller.
+ *
+ * The test is only run with the "load-tests" profile. All figures can be configured with
+ * system properties:
+ *
+ *   mvn test -Pload-tests -Dload.modules=1000 -Dload.users=50 -Dnexus.latency=100
+ *
+ * The results are printed and written to target/load-report.txt.
+ */
+public class ReleasePageLoadTest {
+
+    private static final int MODULES = Integer.getInteger("load.modules", 200);
+    private static final int USERS = Integer.getInteger("load.users", 20);
+    private static final int REQUESTS_PER_USER = Integer.getInteger("load.requests", 10);
+    private static final int NEXUS_VERSIONS = Integer.getInteger("nexus.versions", 10);
+    private static final long NEXUS_LATENCY = Long.getLong("nexus.latency", 20);
+    private static final double NEXUS_ERROR_RATE = Double.parseDouble(System.getProperty("nexus.errorRate", "0"));
+
+    private static final String GROUP_ID = "de.cware.load";
+    private static final String VERSION = "1.0-SNAPSHOT";
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private FakeNexus nexus;
+
+    @Before
+    public void startNexus() throws Exception {
+        nexus = new FakeNexus("1.0", NEXUS_VERSIONS, NEXUS_LATENCY, NEXUS_ERROR_RATE);
+        nexus.start();
+    }
+
+    @After
+    public void stopNexus() {
+        nexus.stop();
+    }
+
+    @Test
+    public void releasePageUnderLoad() throws Exception {
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        memory.gc();
+        final long heapBefore = memory.getHeapMemoryUsage().getUsed();
+
+        // Create and initialize the job. Only the poms are parsed, nothing is actually built.
+        final long setupStart = System.currentTimeMillis();
+        final MavenModuleSet project = createProject(MODULES);
+        final int setupNexusRequests = nexus.getRequests();
+        final long setupTime = System.currentTimeMillis() - setupStart;
+        assertEquals(MODULES + 1, project.getModules().size());
+        assertNotNull(project.getAction(ReleaseBuildAction.class));
+
+        // Many users opening the release page at the same time.
+        final String pageUrl = j.getURL() + project.getUrl() + "release/";
+        final LatencyStatistics statistics = new LatencyStatistics();
+        final AtomicLong maxHeap = new AtomicLong();
+        final ScheduledExecutorService heapSampler = Executors.newSingleThreadScheduledExecutor();
+        heapSampler.scheduleAtFixedRate(new Runnable() {
+            public void run() {
+                final long used = memory.getHeapMemoryUsage().getUsed();
+                if(used > maxHeap.get()) {
+                    maxHeap.set(used);
+                }
+            }
+        }, 0, 100, TimeUnit.MILLISECONDS);
+
+        final ExecutorService users = Executors.newFixedThreadPool(USERS);
+        final List<Future<?>> futures = new ArrayList<Future<?>>();
+        final long loadStart = System.currentTimeMillis();
+        for(int i = 0; i < USERS; i++) {
+            futures.add(users.submit(new Runnable() {
+                public void run() {
+                    for(int k = 0; k < REQUESTS_PER_USER; k++) {
+                        requestPage(pageUrl, statistics);
+                    }
+                }
+            }));
+        }
+        for(final Future<?> future : futures) {
+            future.get();
+        }
+        final long loadTime = System.currentTimeMillis() - loadStart;
+        users.shutdown();
+        heapSampler.shutdownNow();
+
+        memory.gc();
+        final long heapAfter = memory.getHeapMemoryUsage().getUsed();
+
+        final StringBuilder report = new StringBuilder();
+        report.append("Release page load test\n");
+        report.append("  modules=").append(MODULES).append(" users=").append(USERS)
+                .append(" requestsPerUser=").append(REQUESTS_PER_USER).append("\n");
+        report.append("  nexus: versions=").append(NEXUS_VERSIONS).append(" latency=").append(NEXUS_LATENCY)
+                .append("ms errorRate=").append(NEXUS_ERROR_RATE).append("\n");
+        report.append("  setup: ").append(setupTime).append("ms, nexus requests=").append(setupNexusRequests).append("\n");
+        report.append("  page latency: ").append(statistics).append("\n");
+        report.append("  throughput: ").append((loadTime > 0) ? statistics.getCount() * 1000L / loadTime : 0)
+                .append(" pages/s\n");
+        report.append("  nexus requests during load: ").append(nexus.getRequests() - setupNexusRequests)
+                .append(" (metadata=").append(nexus.getMetadataRequests()).append(", errors=")
+                .append(nexus.getErrors()).append(" in total)\n");
+        report.append("  heap: before=").append(heapBefore / (1024 * 1024)).append("MB max=")
+                .append(maxHeap.get() / (1024 * 1024)).append("MB after=").append(heapAfter / (1024 * 1024))
+                .append("MB\n");
+        System.out.print(report);
+        writeReport(report.toString());
+
+        assertEquals("Failed page requests", 0, statistics.getFailures());
+    }
+
+    protected void requestPage(String pageUrl, LatencyStatistics statistics) {
+        final long start = System.currentTimeMillis();
+        try {
+            final HttpURLConnection connection = (HttpURLConnection) new URL(pageUrl).openConnection();
+            final InputStream in = connection.getResponseCode() < 400 ?
+                    connection.getInputStream() : connection.getErrorStream();
+            if(in != null) {
+                final byte[] buffer = new byte[8192];
+                while(in.read(buffer) != -1) {
+                    // Only the time of the complete response is of interest.
+                }
+                in.close();
+            }
+            if(connection.getResponseCode() >= 400) {
+                statistics.addFailure();
+                return;
+            }
+            statistics.add(System.currentTimeMillis() - start);
+        } catch (IOException e) {
+            statistics.addFailure();
+        }
+    }
+
+    /**
+     * Create a job with the given number of modules, each depending on the module before it,
+     * and run a build, which only parses the poms, so Jenkins knows the modules.
+     */
+    protected MavenModuleSet createProject(int modules) throws Exception {
+        j.configureDefaultMaven();
+        final MavenModuleSet project = j.createMavenProject("load");
+        final File workspace = new File(j.jenkins.getRootDir(), "load-workspace");
+        writeReactor(workspace, modules);
+        project.setCustomWorkspace(workspace.getAbsolutePath());
+        project.setGoals("-o validate");
+        project.getBuildWrappersList().add(new ReleaseBuildWrapper(null, nexus.getUrl(), null, null));
+        project.scheduleBuild2(0).get();
+
+        // Saving the configuration recreates the project actions, so the ReleaseBuildAction
+        // sees the modules of the build.
+        return j.configRoundtrip(project);
+    }
+
+    protected void writeReactor(File directory, int modules) throws IOException {
+        final StringBuilder moduleList = new StringBuilder();
+        for(int i = 0; i < modules; i++) {
+            moduleList.append("    <module>module-").append(i).append("</module>\n");
+
+            final StringBuilder pom = new StringBuilder();
+            pom.append("<project>\n  <modelVersion>4.0.0</modelVersion>\n");
+            pom.append("  <parent>\n    <groupId>").append(GROUP_ID).append("</groupId>\n");
+            pom.append("    <artifactId>root</artifactId>\n    <version>").append(VERSION).append("</version>\n");
+            pom.append("  </parent>\n");
+            pom.append("  <artifactId>module-").append(i).append("</artifactId>\n");
+            pom.append("  <packaging>pom</packaging>\n");
+            if(i > 0) {
+                pom.append("  <dependencies>\n    <dependency>\n");
+                pom.append("      <groupId>").append(GROUP_ID).append("</groupId>\n");
+                pom.append("      <artifactId>module-").append(i - 1).append("</artifactId>\n");
+                pom.append("      <version>").append(VERSION).append("</version>\n");
+                pom.append("      <type>pom</type>\n");
+                pom.append("    </dependency>\n  </dependencies>\n");
+            }
+            pom.append("</project>\n");
+            writeFile(new File(new File(directory, "module-" + i), "pom.xml"), pom.toString());
+        }
+
+        final StringBuilder rootPom = new StringBuilder();
+        rootPom.append("<project>\n  <modelVersion>4.0.0</modelVersion>\n");
+        rootPom.append("  <groupId>").append(GROUP_ID).append("</groupId>\n");
+        rootPom.append("  <artifactId>root</artifactId>\n  <version>").append(VERSION).append("</version>\n");
+        rootPom.append("  <packaging>pom</packaging>\n");
+        rootPom.append("  <modules>\n").append(moduleList).append("  </modules>\n");
+        rootPom.append("</project>\n");
+        writeFile(new File(directory, "pom.xml"), rootPom.toString());
+    }
+
+    protected void writeFile(File file, String content) throws IOException {
+        if(!file.getParentFile().isDirectory() && !file.getParentFile().mkdirs()) {
+            throw new IOException("Couldn't create " + file.getParentFile());
+        }
+        final Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+    }
+
+    protected void writeReport(String report) throws IOException {
+        final File reportFile = new File("target", "load-report.txt");
+        writeFile(reportFile, report);
+    }
+
+}
@@ -0,0 +1,78 @@
+package de.cware.plugins.jenkins.releases.plan;
+
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Suggests the reactor threads for chains, wide graphs and cycles of modules.
+ */
+public class ParallelismAdvisorTest {
+
+    private final Map<String, Model> mavenModels = new HashMap<String, Model>();
+    private final Map<String, Long> moduleDurations = new HashMap<String, Long>();
+
+    @Test
+    public void handlesLongChains() {
+        // Deep enough to overflow the stack, if the finish times were calculated recursively.
+        addModule("module-0", 10);
+        for(int i = 1; i < 20000; i++) {
+            addModule("module-" + i, 10, "module-" + (i - 1));
+        }
+
+        final ParallelismAdvice advice = new ParallelismAdvisor(mavenModels, moduleDurations)
+                .advise(mavenModels.keySet(), 0);
+        assertEquals(1, advice.getThreads());
+        assertEquals(1, advice.getWidth());
+        assertEquals(200000, advice.getCriticalPath());
+        assertEquals(200000, advice.getTotalWork());
+    }
+
+    @Test
+    public void limitsThreads() {
+        addModule("root", 100);
+        for(int i = 0; i < 8; i++) {
+            addModule("module-" + i, 100, "root");
+        }
+
+        final ParallelismAdvisor advisor = new ParallelismAdvisor(mavenModels, moduleDurations);
+        final ParallelismAdvice advice = advisor.advise(mavenModels.keySet(), 0);
+        assertEquals(8, advice.getWidth());
+        assertEquals(200, advice.getCriticalPath());
+        // 900ms of work on a critical path of 200ms.
+        assertEquals(5, advice.getThreads());
+        assertEquals(2, advisor.advise(mavenModels.keySet(), 2).getThreads());
+    }
+
+    @Test
+    public void ignoresCycles() {
+        addModule("root", 100);
+        addModule("module-a", 100, "root", "module-b");
+        addModule("module-b", 100, "root", "module-a");
+
+        final ParallelismAdvice advice = new ParallelismAdvisor(mavenModels, moduleDurations)
+                .advise(mavenModels.keySet(), 0);
+        assertEquals(300, advice.getTotalWork());
+        assertEquals(300, advice.getCriticalPath());
+        assertEquals(1, advice.getThreads());
+    }
+
+    private void addModule(String artifactId, long duration, String... dependencyArtifactIds) {
+        final Model model = new Model();
+        model.setGroupId("de.cware.test");
+        model.setArtifactId(artifactId);
+        for(final String dependencyArtifactId : dependencyArtifactIds) {
+            final Dependency dependency = new Dependency();
+            dependency.setGroupId("de.cware.test");
+            dependency.setArtifactId(dependencyArtifactId);
+            model.addDependency(dependency);
+        }
+        mavenModels.put("de.cware.test:" + artifactId, model);
+        moduleDurations.put("de.cware.test:" + artifactId, duration);
+    }
+
+}
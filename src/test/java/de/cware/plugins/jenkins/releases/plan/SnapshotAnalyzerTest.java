@@ -0,0 +1,160 @@
+package de.cware.plugins.jenkins.releases.plan;
+
+import org.apache.maven.model.Build;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.DependencyManagement;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Parent;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.Profile;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Classifies the SNAPSHOT references of a released module and collects the references,
+ * whose versions can't be checked reliably.
+ */
+public class SnapshotAnalyzerTest {
+
+    private final Map<String, Model> mavenModels = new HashMap<String, Model>();
+
+    @Test
+    public void reportsPropertyCycles() {
+        final Model module = addModule("module-a", "root");
+        addModule("root", null);
+        module.getProperties().setProperty("library.version", "${base.version}");
+        module.getProperties().setProperty("base.version", "${library.version}");
+        module.getProperties().setProperty("self.version", "${self.version}");
+        final Dependency dependency = addDependency(module.getDependencies(), "org.external:library",
+                "${library.version}");
+        final SnapshotAnalyzer analyzer = new SnapshotAnalyzer(mavenModels);
+
+        assertEquals("1.0-SNAPSHOT", analyzer.resolveProperties(module, "${project.version}"));
+        assertEquals("${library.version}", analyzer.getDependencyVersion(module, dependency));
+        assertEquals("${self.version}", analyzer.resolveProperties(module, "${self.version}"));
+        assertEquals(2, analyzer.getPropertyCycles().size());
+        assertTrue(analyzer.getPropertyCycles().contains("library.version -> base.version -> library.version"));
+        assertTrue(analyzer.getPropertyCycles().contains("self.version -> self.version"));
+    }
+
+    @Test
+    public void classifiesReferences() {
+        addModule("root", null).getProperties().setProperty("core.version", "1.0");
+        addModule("core", "root");
+        addModule("legacy", "root");
+        final Model web = addModule("web", "root");
+        addDependency(web.getDependencies(), "de.cware.test:core", "${core.version}-SNAPSHOT");
+        addDependency(web.getDependencies(), "de.cware.test:legacy", "1.0-SNAPSHOT");
+        addDependency(web.getDependencies(), "org.external:library", "2.0-SNAPSHOT");
+        addDependency(web.getDependencies(), "org.external:released", "2.0");
+        final Plugin plugin = addPlugin(web, "org.external:plugin", "1.0");
+        addDependency(plugin.getDependencies(), "org.external:plugin-library", "3.0-SNAPSHOT");
+
+        final SnapshotAnalyzer analyzer = new SnapshotAnalyzer(mavenModels);
+        final Map<String, SnapshotReference.Classification> classifications =
+                classify(analyzer.analyze(Arrays.asList("de.cware.test:root", "de.cware.test:web"),
+                        Collections.singleton("de.cware.test:core")));
+
+        final Map<String, SnapshotReference.Classification> expected =
+                new HashMap<String, SnapshotReference.Classification>();
+        expected.put("de.cware.test:root:1.0-SNAPSHOT", SnapshotReference.Classification.INTRA_REACTOR_PINNED);
+        expected.put("de.cware.test:core:1.0-SNAPSHOT", SnapshotReference.Classification.INTRA_REACTOR_PINNED);
+        expected.put("de.cware.test:legacy:1.0-SNAPSHOT", SnapshotReference.Classification.INTRA_REACTOR_UNPINNED);
+        expected.put("org.external:library:2.0-SNAPSHOT", SnapshotReference.Classification.EXTERNAL);
+        expected.put("org.external:plugin-library:3.0-SNAPSHOT", SnapshotReference.Classification.EXTERNAL);
+        assertEquals(expected, classifications);
+        assertTrue(analyzer.getUnverifiedReferences().isEmpty());
+    }
+
+    @Test
+    public void collectsUnverifiedReferences() {
+        final Model root = addModule("root", null);
+        final Parent externalParent = new Parent();
+        externalParent.setGroupId("org.external");
+        externalParent.setArtifactId("parent");
+        externalParent.setVersion("1.0");
+        root.setParent(externalParent);
+        final Model web = addModule("web", "root");
+
+        // Defined by the external parent or managed by it.
+        addDependency(web.getDependencies(), "org.external:library", "${library.version}-SNAPSHOT");
+        addDependency(web.getDependencies(), "org.external:managed", null);
+        // Only used, if a module depends on it or the profile is active.
+        web.setDependencyManagement(new DependencyManagement());
+        addDependency(web.getDependencyManagement().getDependencies(), "org.external:unused", "1.0-SNAPSHOT");
+        final Profile profile = new Profile();
+        profile.setId("integration");
+        addDependency(profile.getDependencies(), "org.external:tests", "1.0-SNAPSHOT");
+        web.addProfile(profile);
+
+        final SnapshotAnalyzer analyzer = new SnapshotAnalyzer(mavenModels);
+        // Only the parent can be classified.
+        assertEquals(1, analyzer.analyze(Arrays.asList("de.cware.test:root", "de.cware.test:web"),
+                Collections.<String>emptySet()).size());
+        final List<String> unverifiedReferences = analyzer.getUnverifiedReferences();
+        assertEquals(unverifiedReferences.toString(), 4, unverifiedReferences.size());
+        assertTrue(unverifiedReferences.get(0).startsWith("org.external:library:${library.version}-SNAPSHOT"));
+        assertTrue(unverifiedReferences.get(1).startsWith("org.external:managed"));
+        assertTrue(unverifiedReferences.get(2).startsWith("org.external:unused:1.0-SNAPSHOT"));
+        assertTrue(unverifiedReferences.get(3).contains("profile integration"));
+
+        final ReleasePlan plan = new ReleasePlan(ReleasePlan.Type.MINOR, "1.0.0", "1.1-SNAPSHOT");
+        assertTrue(plan.isSnapshotsVerified());
+        plan.addUnverifiedReference(unverifiedReferences.get(0));
+        assertFalse(plan.isSnapshotsVerified());
+    }
+
+    private Model addModule(String artifactId, String parentArtifactId) {
+        final Model model = new Model();
+        model.setArtifactId(artifactId);
+        if(parentArtifactId != null) {
+            final Parent parent = new Parent();
+            parent.setGroupId("de.cware.test");
+            parent.setArtifactId(parentArtifactId);
+            parent.setVersion("1.0-SNAPSHOT");
+            model.setParent(parent);
+        } else {
+            model.setGroupId("de.cware.test");
+            model.setVersion("1.0-SNAPSHOT");
+        }
+        mavenModels.put("de.cware.test:" + artifactId, model);
+        return model;
+    }
+
+    private static Dependency addDependency(List<Dependency> dependencies, String key, String version) {
+        final Dependency dependency = new Dependency();
+        dependency.setGroupId(key.substring(0, key.indexOf(':')));
+        dependency.setArtifactId(key.substring(key.indexOf(':') + 1));
+        dependency.setVersion(version);
+        dependencies.add(dependency);
+        return dependency;
+    }
+
+    private static Plugin addPlugin(Model model, String key, String version) {
+        if(model.getBuild() == null) {
+            model.setBuild(new Build());
+        }
+        final Plugin plugin = new Plugin();
+        plugin.setGroupId(key.substring(0, key.indexOf(':')));
+        plugin.setArtifactId(key.substring(key.indexOf(':') + 1));
+        plugin.setVersion(version);
+        model.getBuild().addPlugin(plugin);
+        return plugin;
+    }
+
+    private static Map<String, SnapshotReference.Classification> classify(List<SnapshotReference> references) {
+        final Map<String, SnapshotReference.Classification> classifications =
+                new HashMap<String, SnapshotReference.Classification>();
+        for(final SnapshotReference reference : references) {
+            classifications.put(reference.getReferencedKey() + ":" + reference.getReferencedVersion(),
+                    reference.getClassification());
+        }
+        return classifications;
+    }
+
+}
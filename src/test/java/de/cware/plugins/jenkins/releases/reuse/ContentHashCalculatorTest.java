@@ -0,0 +1,75 @@
+package de.cware.plugins.jenkins.releases.reuse;
+
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Parent;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Selects the reusable modules of a project, in which a changed module depends on unchanged ones.
+ */
+public class ContentHashCalculatorTest {
+
+    private final Map<String, Model> mavenModels = new HashMap<String, Model>();
+
+    @Test
+    public void buildsUnchangedModulesRequiredByChangedOnes() {
+        addModule("root", null);
+        addModule("util", "root");
+        addModule("core", "root", "util");
+        addModule("web", "root", "core");
+        addModule("tools", "root");
+
+        final Map<String, String> previousHashes = new HashMap<String, String>();
+        final Map<String, String> contentHashes = new HashMap<String, String>();
+        for(final String moduleKey : mavenModels.keySet()) {
+            previousHashes.put(moduleKey, "unchanged");
+            contentHashes.put(moduleKey, "unchanged");
+        }
+        contentHashes.put("de.cware.test:web", "changed");
+
+        // web needs core in the new version and core needs util, only tools can be promoted.
+        final List<String> reusableModules = new ContentHashCalculator(mavenModels, null).getReusableModules(
+                contentHashes, previousHashes, Collections.singleton("de.cware.test:root"));
+        assertEquals(Collections.singletonList("de.cware.test:tools"), reusableModules);
+    }
+
+    @Test
+    public void reusesAllUnchangedModules() {
+        addModule("root", null);
+        addModule("core", "root");
+        addModule("web", "root", "core");
+
+        final Map<String, String> hashes = new HashMap<String, String>();
+        for(final String moduleKey : mavenModels.keySet()) {
+            hashes.put(moduleKey, "unchanged");
+        }
+        final List<String> reusableModules = new ContentHashCalculator(mavenModels, null).getReusableModules(
+                hashes, hashes, Collections.singleton("de.cware.test:root"));
+        assertEquals(Arrays.asList("de.cware.test:core", "de.cware.test:web"), reusableModules);
+    }
+
+    private void addModule(String artifactId, String parentArtifactId, String... dependencyArtifactIds) {
+        final Model model = new Model();
+        model.setGroupId("de.cware.test");
+        model.setArtifactId(artifactId);
+        if(parentArtifactId != null) {
+            final Parent parent = new Parent();
+            parent.setGroupId("de.cware.test");
+            parent.setArtifactId(parentArtifactId);
+            model.setParent(parent);
+        }
+        for(final String dependencyArtifactId : dependencyArtifactIds) {
+            final Dependency dependency = new Dependency();
+            dependency.setGroupId("de.cware.test");
+            dependency.setArtifactId(dependencyArtifactId);
+            model.addDependency(dependency);
+        }
+        mavenModels.put("de.cware.test:" + artifactId, model);
+    }
+
+}
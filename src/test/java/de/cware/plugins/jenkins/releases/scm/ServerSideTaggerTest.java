@@ -0,0 +1,199 @@
+package de.cware.plugins.jenkins.releases.scm;
+
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.tmatesoft.svn.core.SVNDepth;
+import org.tmatesoft.svn.core.SVNProperties;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.internal.io.fs.FSRepositoryFactory;
+import org.tmatesoft.svn.core.io.SVNRepository;
+import org.tmatesoft.svn.core.io.SVNRepositoryFactory;
+import org.tmatesoft.svn.core.wc.SVNClientManager;
+
+import java.io.*;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tags a multi-module project in a local file:// repository. The modules have diverged
+ * SNAPSHOT versions. Poms which would still reference SNAPSHOT versions after the release
+ * versions have been applied must not be tagged.
+ */
+public class ServerSideTaggerTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private SVNURL repositoryUrl;
+    private File workspace;
+
+    @Before
+    public void createRepository() throws Exception {
+        FSRepositoryFactory.setup();
+        repositoryUrl = SVNRepositoryFactory.createLocalRepository(tmp.newFolder("repository"), true, false);
+        workspace = tmp.newFolder("trunk");
+    }
+
+    /**
+     * Import a project consisting of a root module and module-a into the trunk.
+     *
+     * @param externalVersion version of the external library managed by the root module.
+     * @param moduleDependency additional dependency declared by module-a.
+     */
+    private void importTrunk(String externalVersion, String moduleDependency) throws Exception {
+        writePom(new File(workspace, "pom.xml"),
+                "<project>\n" +
+                "  <modelVersion>4.0.0</modelVersion>\n" +
+                "  <groupId>de.cware.test</groupId>\n" +
+                "  <artifactId>root</artifactId>\n" +
+                "  <version>1.0-SNAPSHOT</version>\n" +
+                "  <packaging>pom</packaging>\n" +
+                "  <properties>\n" +
+                "    <root.version>1.0-SNAPSHOT</root.version>\n" +
+                "  </properties>\n" +
+                "  <modules>\n" +
+                "    <module>module-a</module>\n" +
+                "  </modules>\n" +
+                "  <dependencyManagement>\n" +
+                "    <dependencies>\n" +
+                "      <dependency>\n" +
+                "        <groupId>org.external</groupId>\n" +
+                "        <artifactId>library</artifactId>\n" +
+                "        <version>" + externalVersion + "</version>\n" +
+                "      </dependency>\n" +
+                "    </dependencies>\n" +
+                "  </dependencyManagement>\n" +
+                "</project>\n");
+        writePom(new File(workspace, "module-a/pom.xml"),
+                "<project>\n" +
+                "  <modelVersion>4.0.0</modelVersion>\n" +
+                "  <parent>\n" +
+                "    <groupId>de.cware.test</groupId>\n" +
+                "    <artifactId>root</artifactId>\n" +
+                "    <version>1.0-SNAPSHOT</version>\n" +
+                "  </parent>\n" +
+                "  <artifactId>module-a</artifactId>\n" +
+                "  <version>1.2-SNAPSHOT</version>\n" +
+                "  <dependencies>\n" +
+                "    <dependency>\n" +
+                "      <groupId>org.external</groupId>\n" +
+                "      <artifactId>library</artifactId>\n" +
+                "    </dependency>\n" +
+                moduleDependency +
+                "  </dependencies>\n" +
+                "</project>\n");
+
+        final SVNClientManager clientManager = SVNClientManager.newInstance();
+        try {
+            clientManager.getCommitClient().doImport(workspace, repositoryUrl.appendPath("trunk", false),
+                    "Initial import", null, false, false, SVNDepth.INFINITY);
+            clientManager.getCommitClient().doMkDir(new SVNURL[] {repositoryUrl.appendPath("tags", false)},
+                    "Create tags");
+        } finally {
+            clientManager.dispose();
+        }
+    }
+
+    @Test
+    public void tagsEveryModuleWithItsReleaseVersion() throws Exception {
+        importTrunk("1.0", "");
+        final Map<String, String> releaseVersions = new HashMap<String, String>();
+        releaseVersions.put("de.cware.test:root", "1.0.0");
+        releaseVersions.put("de.cware.test:module-a", "1.2.0");
+        final List<String> pomPaths = Arrays.asList("pom.xml", "module-a/pom.xml");
+
+        final Map<String, byte[][]> changedPoms =
+                ReleasePomRewriter.rewrite(pomPaths, releaseVersions).invoke(workspace, null);
+        assertEquals(2, changedPoms.size());
+
+        final SVNURL tagUrl = repositoryUrl.appendPath("tags/1.0.0", false);
+        new ServerSideTagger(null) {
+            @Override
+            protected SVNClientManager createClientManager() {
+                return SVNClientManager.newInstance();
+            }
+        }.createTag(repositoryUrl.appendPath("trunk", false), 1, tagUrl, changedPoms, "1.0.0");
+
+        final SVNRepository repository = SVNRepositoryFactory.create(repositoryUrl);
+        try {
+            final Model root = readPom(repository, "tags/1.0.0/pom.xml");
+            assertEquals("1.0.0", root.getVersion());
+            assertEquals("1.0", root.getDependencyManagement().getDependencies().get(0).getVersion());
+
+            final Model module = readPom(repository, "tags/1.0.0/module-a/pom.xml");
+            assertEquals("1.2.0", module.getVersion());
+            assertEquals("1.0.0", module.getParent().getVersion());
+            final Dependency external = module.getDependencies().get(0);
+            assertNull(external.getVersion());
+
+            // The trunk itself stays untouched.
+            assertEquals("1.2-SNAPSHOT", readPom(repository, "trunk/module-a/pom.xml").getVersion());
+        } finally {
+            repository.closeSession();
+        }
+
+        // Restoring the workspace brings back the original poms.
+        ReleasePomRewriter.restore(pomPaths).invoke(workspace, null);
+        assertTrue(new String(ReleasePomRewriter.read(new File(workspace, "module-a/pom.xml")), "UTF-8")
+                .contains("<version>1.2-SNAPSHOT</version>"));
+        assertTrue(!new File(workspace, "module-a/pom.xml" + ReleasePomRewriter.BACKUP_SUFFIX).exists());
+    }
+
+    @Test
+    public void rejectsExternalSnapshots() throws Exception {
+        importTrunk("1.0-SNAPSHOT", "");
+        assertRejected();
+    }
+
+    @Test
+    public void rejectsSnapshotsDefinedByProperties() throws Exception {
+        // The rewriter doesn't touch properties, so the reference to the root module stays a SNAPSHOT.
+        importTrunk("1.0", "    <dependency>\n" +
+                "      <groupId>de.cware.test</groupId>\n" +
+                "      <artifactId>root</artifactId>\n" +
+                "      <version>${root.version}</version>\n" +
+                "      <type>pom</type>\n" +
+                "    </dependency>\n");
+        assertRejected();
+    }
+
+    private void assertRejected() throws Exception {
+        final byte[] originalPom = ReleasePomRewriter.read(new File(workspace, "module-a/pom.xml"));
+        final Map<String, String> releaseVersions = new HashMap<String, String>();
+        releaseVersions.put("de.cware.test:root", "1.0.0");
+        releaseVersions.put("de.cware.test:module-a", "1.2.0");
+        try {
+            ReleasePomRewriter.rewrite(Arrays.asList("pom.xml", "module-a/pom.xml"), releaseVersions)
+                    .invoke(workspace, null);
+            fail("The SNAPSHOT reference has not been detected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("-SNAPSHOT"));
+        }
+
+        // Nothing has been changed, so there is nothing to tag.
+        assertTrue(Arrays.equals(originalPom, ReleasePomRewriter.read(new File(workspace, "module-a/pom.xml"))));
+        assertTrue(!new File(workspace, "pom.xml" + ReleasePomRewriter.BACKUP_SUFFIX).exists());
+        assertTrue(!new File(workspace, "module-a/pom.xml" + ReleasePomRewriter.BACKUP_SUFFIX).exists());
+    }
+
+    private static void writePom(File file, String content) throws IOException {
+        assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+        ReleasePomRewriter.write(file, content.getBytes("UTF-8"));
+    }
+
+    private static Model readPom(SVNRepository repository, String path) throws Exception {
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        repository.getFile(path, -1, new SVNProperties(), content);
+        return new MavenXpp3Reader().read(new ByteArrayInputStream(content.toByteArray()));
+    }
+
+}
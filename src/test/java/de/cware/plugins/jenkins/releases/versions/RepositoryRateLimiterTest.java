@@ -0,0 +1,96 @@
+package de.cware.plugins.jenkins.releases.versions;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the token bucket of the RepositoryRateLimiter: bursts, the order waiting requests
+ * of several jobs are served in and the cleanup of interrupted requests.
+ */
+public class RepositoryRateLimiterTest {
+
+    private final List<String> served = Collections.synchronizedList(new ArrayList<String>());
+
+    @Test
+    public void allowsBursts() throws InterruptedException {
+        final RepositoryRateLimiter.Bucket bucket = new RepositoryRateLimiter.Bucket(5);
+        // Twice the requests per second are served without waiting.
+        for(int i = 0; i < 10; i++) {
+            assertFalse(bucket.acquire("job"));
+        }
+        assertTrue(bucket.acquire("job"));
+    }
+
+    @Test
+    public void servesJobsRoundRobin() throws InterruptedException {
+        final RepositoryRateLimiter.Bucket bucket = drain(new RepositoryRateLimiter.Bucket(2));
+        final List<Thread> requests = new ArrayList<Thread>();
+        for(final String request : new String[] {"big-job-1", "big-job-2", "big-job-3", "small-job-1"}) {
+            requests.add(startRequest(bucket, request));
+        }
+        for(final Thread request : requests) {
+            request.join(10000);
+        }
+
+        // The small job doesn't have to wait for all requests of the big job.
+        assertEquals(Arrays.asList("big-job-1", "small-job-1", "big-job-2", "big-job-3"), served);
+    }
+
+    @Test
+    public void removesInterruptedRequests() throws InterruptedException {
+        final RepositoryRateLimiter.Bucket bucket = drain(new RepositoryRateLimiter.Bucket(2));
+        final Thread interruptedRequest = startRequest(bucket, "big-job-1");
+        final Thread request = startRequest(bucket, "small-job-1");
+        interruptedRequest.interrupt();
+        interruptedRequest.join(10000);
+        request.join(10000);
+        assertEquals(Arrays.asList("interrupted big-job-1", "small-job-1"), served);
+
+        // Nothing of the interrupted request is left, which could block the job.
+        startRequest(bucket, "big-job-2").join(10000);
+        assertEquals(Arrays.asList("interrupted big-job-1", "small-job-1", "big-job-2"), served);
+    }
+
+    /**
+     * Use up all tokens, so the following requests have to wait.
+     */
+    private static RepositoryRateLimiter.Bucket drain(RepositoryRateLimiter.Bucket bucket)
+            throws InterruptedException {
+        while(!bucket.acquire("drain")) {
+            // Keep taking tokens, until a request had to wait for one.
+        }
+        return bucket;
+    }
+
+    /**
+     * Start a request named "<job>-<number>" and return as soon as it is waiting for a token.
+     */
+    private Thread startRequest(final RepositoryRateLimiter.Bucket bucket, final String request)
+            throws InterruptedException {
+        final Thread thread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    bucket.acquire(request.substring(0, request.lastIndexOf('-')));
+                    served.add(request);
+                } catch (InterruptedException e) {
+                    served.add("interrupted " + request);
+                }
+            }
+        });
+        thread.start();
+        while(thread.isAlive() && (thread.getState() != Thread.State.WAITING) &&
+                (thread.getState() != Thread.State.TIMED_WAITING)) {
+            Thread.sleep(1);
+        }
+        return thread;
+    }
+
+}